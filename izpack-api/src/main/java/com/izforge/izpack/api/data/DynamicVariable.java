@@ -70,6 +70,27 @@ public interface DynamicVariable extends Serializable
 
     void setCheckonce(boolean checkonce);
 
+    /**
+     * @return the no. of milliseconds the results of commands and registry lookups may be reused for
+     */
+    long getCacheTTL();
+
+    /**
+     * @param cacheTTL the no. of milliseconds the results of commands and registry lookups may be reused for.
+     *                 If <tt>0</tt>, they are resolved on each evaluation
+     */
+    void setCacheTTL(long cacheTTL);
+
+    /**
+     * @return <tt>true</tt> if the value may be resolved in the background before the first refresh
+     */
+    boolean isPrefetch();
+
+    /**
+     * @param prefetch if <tt>true</tt>, the value may be resolved in the background before the first refresh
+     */
+    void setPrefetch(boolean prefetch);
+
     void setIgnoreFailure(boolean ignore);
 
     void addFilter(ValueFilter filter);
@@ -54,6 +54,17 @@ public class Info implements Serializable
      */
     public static final int REBOOT_ACTION_ALWAYS = 3;
 
+    /**
+     * Pack format where each pack is a single stream of file headers and file data, read sequentially.
+     */
+    public static final int PACK_FORMAT_STREAM = 1;
+
+    /**
+     * Pack format where each pack starts with an index of its files, followed by the independently compressed
+     * data of each file. Files can be located without reading the preceding data.
+     */
+    public static final int PACK_FORMAT_INDEXED = 2;
+
     /**
      * The application name and version
      */
@@ -125,6 +136,11 @@ public class Info implements Serializable
 
     private boolean pack200Compression;
 
+    /**
+     * The pack format version.
+     */
+    private int packFormatVersion = PACK_FORMAT_STREAM;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -398,6 +414,26 @@ public class Info implements Serializable
         return pack200Compression;
     }
 
+    /**
+     * Returns the pack format version.
+     *
+     * @return one of {@link #PACK_FORMAT_STREAM} or {@link #PACK_FORMAT_INDEXED}
+     */
+    public int getPackFormatVersion()
+    {
+        return packFormatVersion;
+    }
+
+    /**
+     * Sets the pack format version.
+     *
+     * @param version one of {@link #PACK_FORMAT_STREAM} or {@link #PACK_FORMAT_INDEXED}
+     */
+    public void setPackFormatVersion(int version)
+    {
+        this.packFormatVersion = version;
+    }
+
     /**
      * This class represents an author.
      *
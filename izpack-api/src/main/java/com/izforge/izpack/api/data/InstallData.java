@@ -52,11 +52,63 @@ public interface InstallData
      */
     String MODIFY_INSTALLATION = "modify.izpack.install";
 
+    /**
+     * The no. of threads used to write unpacked files. If unset or less than 2, files are written by the unpacking
+     * thread.
+     */
+    String UNPACKER_THREADS = "izpack.unpacker.threads";
+
+    /**
+     * The maximum no. of packs to unpack at the same time. If unset or less than 2, packs are unpacked in sequence.
+     */
+    String UNPACKER_PACK_THREADS = "izpack.unpacker.pack.threads";
+
+    /**
+     * Determines if the directories of a pack are created before its files are unpacked. Only applies to packs in
+     * the indexed pack format, when no installer listeners are notified of file events.
+     */
+    String UNPACKER_CREATE_DIRECTORIES = "izpack.unpacker.createDirectories";
+
+    /**
+     * Determines if unpacking progress is journalled, so that an interrupted installation can be resumed.
+     * Journalling is enabled unless this is <tt>false</tt>.
+     */
+    String UNPACKER_JOURNAL = "izpack.unpacker.journal";
+
+    /**
+     * Determines if files that are unchanged since a previous installation to the same location, and identical to
+     * those being installed, are skipped rather than written again. Only applies to packs in the indexed pack
+     * format. Defaults to the value of {@link #MODIFY_INSTALLATION}, i.e. it is only enabled by default when the
+     * installation is being modified.
+     * <p/>
+     * Installed files are compared by length, modification time and the CRC-32 checksum of their pack data. As
+     * CRC-32 is not collision resistant, a changed file with the same length and checksum as the one previously
+     * installed may be skipped; set this to <tt>false</tt> where that matters.
+     */
+    String UNPACKER_SKIP_UNCHANGED = "izpack.unpacker.skipUnchanged";
+
+    /**
+     * The size of the buffers used to copy and unpack files, in bytes. This is rounded up to a power of two.
+     * If unset, 64KB buffers are used.
+     */
+    String IO_BUFFER_SIZE = "izpack.io.bufferSize";
+
+    /**
+     * The maximum no. of bytes of free buffers retained for reuse. If unset, up to 16MB is retained.
+     */
+    String IO_BUFFER_POOL_SIZE = "izpack.io.bufferPoolSize";
+
     /**
      * Installation information file name.
      */
     String INSTALLATION_INFORMATION = ".installationinformation";
 
+    /**
+     * Installation journal file name. This only exists while an installation is in progress, or if it was
+     * interrupted.
+     */
+    String INSTALLATION_JOURNAL = ".installationjournal";
+
     /**
      * Sets a variable to the specified value.
      * <p/>
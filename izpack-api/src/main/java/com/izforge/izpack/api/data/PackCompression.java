@@ -0,0 +1,64 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The compression method of a pack file entry in an {@link Info#PACK_FORMAT_INDEXED indexed} pack.
+ */
+public enum PackCompression
+{
+    STORE("store"), DEFLATE("deflate"), XZ("xz");
+
+    private static Map<String, PackCompression> lookup;
+
+    private String attribute;
+
+    PackCompression(String attribute)
+    {
+        this.attribute = attribute;
+    }
+
+    static
+    {
+        lookup = new HashMap<String, PackCompression>();
+        for (PackCompression compression : EnumSet.allOf(PackCompression.class))
+        {
+            lookup.put(compression.getAttribute(), compression);
+        }
+    }
+
+    public String getAttribute()
+    {
+        return attribute;
+    }
+
+    public static PackCompression getCompressionFromAttribute(String attribute)
+    {
+        if (attribute != null && lookup.containsKey(attribute))
+        {
+            return lookup.get(attribute);
+        }
+        return null;
+    }
+}
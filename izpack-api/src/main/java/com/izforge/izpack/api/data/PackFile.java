@@ -119,6 +119,26 @@ public class PackFile implements Serializable
      */
     private String condition = null;
 
+    /**
+     * The compression method of the file data, if it is stored in an indexed pack.
+     */
+    private PackCompression compression = null;
+
+    /**
+     * The offset of the file data, relative to the data section of an indexed pack.
+     */
+    private long entryOffset = -1;
+
+    /**
+     * The length of the stored (i.e. compressed) file data in an indexed pack.
+     */
+    private long entryLength = 0;
+
+    /**
+     * The CRC-32 checksum of the uncompressed file data in an indexed pack.
+     */
+    private long checksum = 0;
+
     /**
      * Constructs and initializes from a source file.
      *
@@ -203,6 +223,39 @@ public class PackFile implements Serializable
         this(src, FileUtil.getRelativeFileName(src, baseDir), target, osList, override, overrideRenameTo, blockable, additionals);
     }
 
+    /**
+     * Constructs a <tt>PackFile</tt> from its stored attributes.
+     * <p/>
+     * This is used when reading file headers from an indexed pack, where there is no source file.
+     *
+     * @param relativePath     the path relative to the compiletime's basedirectory. May be <tt>null</tt>
+     * @param targetPath       the path to install the file to
+     * @param osList           OS constraints. May be <tt>null</tt>
+     * @param length           the length of the file in bytes
+     * @param mtime            the last-modification time of the file
+     * @param isDirectory      determines if the file is a directory
+     * @param override         what to do when the file already exists
+     * @param overrideRenameTo the globmapper expression for renaming the file if it exists. May be <tt>null</tt>
+     * @param blockable        determines if the file might be blocked by the operating system
+     * @param additionals      additional attributes. May be <tt>null</tt>
+     */
+    public PackFile(String relativePath, String targetPath, List<OsModel> osList, long length, long mtime,
+                    boolean isDirectory, OverrideType override, String overrideRenameTo, Blockable blockable,
+                    Map additionals)
+    {
+        this.relativePath = relativePath;
+        this.targetPath = targetPath;
+        this.osConstraints = osList;
+        this.length = length;
+        this.size = length;
+        this.mtime = mtime;
+        this.isDirectory = isDirectory;
+        this.override = override;
+        this.overrideRenameTo = overrideRenameTo;
+        this.blockable = blockable;
+        this.additionals = additionals;
+    }
+
     public void setPreviousPackFileRef(String previousPackId, Long offsetInPreviousPack)
     {
         this.previousPackId = previousPackId;
@@ -339,6 +392,72 @@ public class PackFile implements Serializable
         this.pack200Jar = pack200Jar;
     }
 
+    /**
+     * Sets the location of the file data in an indexed pack.
+     *
+     * @param compression the compression method of the data
+     * @param offset      the offset of the data, relative to the data section of the pack
+     * @param length      the length of the stored data
+     * @param checksum    the CRC-32 checksum of the uncompressed data
+     */
+    public void setEntry(PackCompression compression, long offset, long length, long checksum)
+    {
+        this.compression = compression;
+        this.entryOffset = offset;
+        this.entryLength = length;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Determines if the file data is stored as an entry of an indexed pack.
+     *
+     * @return <tt>true</tt> if the data is stored in an indexed pack
+     */
+    public boolean isIndexed()
+    {
+        return compression != null;
+    }
+
+    /**
+     * Returns the compression method of the file data in an indexed pack.
+     *
+     * @return the compression method, or <tt>null</tt> if the file isn't stored in an indexed pack
+     */
+    public PackCompression getCompression()
+    {
+        return compression;
+    }
+
+    /**
+     * Returns the offset of the file data, relative to the data section of an indexed pack.
+     *
+     * @return the entry offset, or <tt>-1</tt> if the file isn't stored in an indexed pack
+     */
+    public long getEntryOffset()
+    {
+        return entryOffset;
+    }
+
+    /**
+     * Returns the length of the stored file data in an indexed pack.
+     *
+     * @return the stored length
+     */
+    public long getEntryLength()
+    {
+        return entryLength;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the uncompressed file data in an indexed pack.
+     *
+     * @return the checksum
+     */
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
     public void setLoosePackInfo(boolean loose)
     {
         if (loose)
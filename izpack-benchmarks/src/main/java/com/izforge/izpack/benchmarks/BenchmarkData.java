@@ -0,0 +1,296 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Generates the synthetic data that the benchmarks run against.
+ * <p/>
+ * All data is derived from a fixed seed, so that each run of a benchmark processes exactly the same bytes, and
+ * results can be compared between releases.
+ */
+public final class BenchmarkData
+{
+
+    /**
+     * The seed all data is generated from.
+     */
+    public static final long SEED = 0x1294a5e5L;
+
+    /**
+     * Every <tt>BINARY_INTERVAL</tt>th file is filled with random bytes, the others with text.
+     */
+    private static final int BINARY_INTERVAL = 4;
+
+    /**
+     * The words text content is made up of.
+     */
+    private static final String[] WORDS = {
+            "install", "package", "directory", "file", "the", "a", "of", "to", "and", "is", "${INSTALL_PATH}",
+            "configuration", "panel", "user", "condition", "variable", "pack", "jar", "class", "public", "void",
+            "return", "if", "else", "for", "new", "String", "license", "copyright", "version", "=", ";", "{", "}"};
+
+    /**
+     * The shapes of pack content.
+     */
+    public enum Shape
+    {
+        /**
+         * Many small files, where per-file overheads dominate.
+         */
+        SMALL_FILES(2000, 4 * 1024),
+
+        /**
+         * A few huge files, where throughput dominates.
+         */
+        LARGE_FILES(4, 16 * 1024 * 1024);
+
+        /**
+         * The no. of files.
+         */
+        private final int count;
+
+        /**
+         * The size of each file.
+         */
+        private final int size;
+
+        /**
+         * Constructs a <tt>Shape</tt>.
+         *
+         * @param count the no. of files
+         * @param size  the size of each file, in bytes
+         */
+        private Shape(int count, int size)
+        {
+            this.count = count;
+            this.size = size;
+        }
+
+        /**
+         * Returns the no. of files.
+         *
+         * @return the no. of files
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Returns the size of each file.
+         *
+         * @return the size of each file, in bytes
+         */
+        public int getSize()
+        {
+            return size;
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private BenchmarkData()
+    {
+    }
+
+    /**
+     * Creates files of a given shape, spread across sub-directories of 100 files each.
+     *
+     * @param dir   the directory to create the files in
+     * @param shape the shape of the files
+     * @return the files
+     * @throws IOException if a file cannot be created
+     */
+    public static List<File> createFiles(File dir, Shape shape) throws IOException
+    {
+        List<File> result = new ArrayList<File>();
+        for (int i = 0; i < shape.getCount(); ++i)
+        {
+            File file = new File(dir, "dir" + (i / 100) + File.separator + "file" + i + ".dat");
+            write(file, createContent(i, shape.getSize()));
+            result.add(file);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a directory tree.
+     * <p/>
+     * Each directory contains <tt>files</tt> empty files with a mix of <em>.txt</em>, <em>.xml</em> and
+     * <em>.jar</em> extensions, and <tt>width</tt> sub-directories, down to <tt>depth</tt> levels.
+     *
+     * @param dir   the root of the tree
+     * @param depth the depth of the tree
+     * @param width the no. of sub-directories of each directory
+     * @param files the no. of files in each directory
+     * @return the no. of files created
+     * @throws IOException if a file or directory cannot be created
+     */
+    public static int createTree(File dir, int depth, int width, int files) throws IOException
+    {
+        String[] extensions = {".txt", ".xml", ".jar"};
+        mkdirs(dir);
+        int result = 0;
+        for (int i = 0; i < files; ++i)
+        {
+            File file = new File(dir, "file" + i + extensions[i % extensions.length]);
+            if (!file.createNewFile())
+            {
+                throw new IOException("Failed to create " + file);
+            }
+            ++result;
+        }
+        if (depth > 0)
+        {
+            for (int i = 0; i < width; ++i)
+            {
+                result += createTree(new File(dir, "dir" + i), depth - 1, width, files);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the content of a file.
+     * <p/>
+     * Most files are text, which compresses well. Every {@link #BINARY_INTERVAL}th file is random, and is
+     * incompressible.
+     *
+     * @param index the file index, used to vary the content of each file reproducibly
+     * @param size  the size of the content
+     * @return the content
+     */
+    public static byte[] createContent(int index, int size)
+    {
+        Random random = new Random(SEED + index);
+        byte[] result = new byte[size];
+        if (index % BINARY_INTERVAL == BINARY_INTERVAL - 1)
+        {
+            random.nextBytes(result);
+        }
+        else
+        {
+            int pos = 0;
+            while (pos < size)
+            {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                for (int i = 0; i < word.length() && pos < size; ++i)
+                {
+                    result[pos++] = (byte) word.charAt(i);
+                }
+                if (pos < size)
+                {
+                    result[pos++] = (byte) (random.nextInt(10) == 0 ? '\n' : ' ');
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates text containing variable references, for substitution.
+     *
+     * @param size      the approximate size of the text, in characters
+     * @param variables the no. of distinct variables referred to. These are named <em>var0</em> ..
+     *                  <em>var&lt;n-1&gt;</em>
+     * @return the text
+     */
+    public static String createText(int size, int variables)
+    {
+        Random random = new Random(SEED);
+        StringBuilder result = new StringBuilder(size + 64);
+        while (result.length() < size)
+        {
+            if (random.nextInt(8) == 0)
+            {
+                result.append("${var").append(random.nextInt(variables)).append('}');
+            }
+            else
+            {
+                result.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            result.append(random.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Creates a new temporary directory.
+     *
+     * @param prefix the directory name prefix
+     * @return the new directory
+     * @throws IOException if the directory cannot be created
+     */
+    public static File createTempDir(String prefix) throws IOException
+    {
+        File result = File.createTempFile(prefix, "");
+        if (!result.delete() || !result.mkdir())
+        {
+            throw new IOException("Failed to create temporary directory " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Writes content to a file, creating its parent directory if required.
+     *
+     * @param file    the file
+     * @param content the content to write
+     * @throws IOException for any I/O error
+     */
+    private static void write(File file, byte[] content) throws IOException
+    {
+        mkdirs(file.getParentFile());
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try
+        {
+            out.write(content);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates a directory, if it doesn't exist.
+     *
+     * @param dir the directory
+     * @throws IOException if the directory cannot be created
+     */
+    private static void mkdirs(File dir) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("Failed to create " + dir);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Properties;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.packager.impl.Packager;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.merge.MergeManager;
+
+
+/**
+ * A {@link Packager} that only writes packs, so that packaging can be benchmarked without building a complete
+ * installer.
+ */
+public class BenchmarkPackager extends Packager
+{
+
+    /**
+     * The prefix of the pack entries in the installer jar.
+     */
+    public static final String PACK_PREFIX = "resources/packs/pack-";
+
+    /**
+     * The installer jar stream.
+     */
+    private final JarOutputStream jar;
+
+
+    /**
+     * Constructs a <tt>BenchmarkPackager</tt>.
+     *
+     * @param jar        the stream to write packs to
+     * @param compressor the pack compressor
+     */
+    public BenchmarkPackager(JarOutputStream jar, PackCompressor compressor)
+    {
+        super(new Properties(), null, jar, compressor, jar, createMergeManager(), null, null,
+              new CompilerData("", "", "", true));
+        this.jar = jar;
+    }
+
+    /**
+     * Writes packs to an installer jar.
+     *
+     * @param installer  the installer jar to write
+     * @param format     the pack format. One of {@link Info#PACK_FORMAT_STREAM} or {@link Info#PACK_FORMAT_INDEXED}
+     * @param compressor the pack compressor
+     * @param packs      the packs to write
+     * @return the size of the installer jar
+     * @throws IOException for any I/O error
+     */
+    public static long write(File installer, int format, PackCompressor compressor, List<PackInfo> packs)
+            throws IOException
+    {
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(installer));
+        jar.setPreventClose(true);
+        try
+        {
+            BenchmarkPackager packager = new BenchmarkPackager(jar, compressor);
+            Info info = new Info();
+            info.setPackFormatVersion(format);
+            packager.setInfo(info);
+            for (PackInfo pack : packs)
+            {
+                packager.addPack(pack);
+            }
+            packager.writePacks();
+        }
+        finally
+        {
+            jar.closeAlways();
+        }
+        return installer.length();
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param name    the pack name
+     * @param baseDir the base directory of the files. Files are installed relative to <em>$INSTALL_PATH</em>
+     * @param files   the files in the pack
+     * @return a new pack
+     * @throws IOException if a file cannot be added
+     */
+    public static PackInfo createPack(String name, File baseDir, List<File> files) throws IOException
+    {
+        PackInfo result = new PackInfo(name, name, null, true, false, null, true, 0);
+        String base = baseDir.getPath();
+        for (File file : files)
+        {
+            String path = file.getPath().substring(base.length() + 1).replace(File.separatorChar, '/');
+            result.addFile(baseDir, file, "$INSTALL_PATH/" + path, null, OverrideType.OVERRIDE_TRUE, null,
+                           Blockable.BLOCKABLE_NONE, null, null);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the packs.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void writePacks() throws IOException
+    {
+        super.writePacks();
+        jar.flush();
+    }
+
+    /**
+     * Creates a merge manager that ignores merges. Benchmarks don't build complete installers, so there is nothing
+     * to merge into.
+     *
+     * @return a new merge manager
+     */
+    static MergeManager createMergeManager()
+    {
+        return (MergeManager) Proxy.newProxyInstance(MergeManager.class.getClassLoader(),
+                                                     new Class[]{MergeManager.class}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks.
+ * <p/>
+ * Accepts the standard JMH command line options. Unless a result format or file is specified, results are written
+ * as JSON to <em>izpack-benchmarks.json</em>, so that runs can be compared.
+ */
+public class BenchmarkRunner
+{
+
+    /**
+     * The default result file.
+     */
+    private static final String RESULT_FILE = "izpack-benchmarks.json";
+
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the JMH command line arguments
+     * @throws Exception for any error
+     */
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions options = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue() && !options.getResult().hasValue())
+        {
+            builder.resultFormat(ResultFormatType.JSON).result(RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.util.file.DirectoryCache;
+import com.izforge.izpack.util.file.DirectoryScanner;
+
+
+/**
+ * Benchmarks {@link DirectoryScanner#scan()} over a generated directory tree, with and without a read-ahead
+ * {@link DirectoryCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectoryScannerBenchmark
+{
+
+    /**
+     * The no. of threads reading ahead. <tt>-1</tt> scans without a cache, <tt>0</tt> uses a cache without read-ahead.
+     */
+    @Param({"-1", "0", "4"})
+    public int threads;
+
+    /**
+     * The root of the directory tree.
+     */
+    private File dir;
+
+
+    /**
+     * Generates the directory tree.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = BenchmarkData.createTempDir("scanner");
+        BenchmarkData.createTree(dir, 4, 6, 10);
+    }
+
+    /**
+     * Deletes the directory tree.
+     *
+     * @throws IOException for any I/O error
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Scans the directory tree.
+     *
+     * @return the no. of included files
+     * @throws Exception for any error
+     */
+    @Benchmark
+    public int scan() throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(dir);
+        scanner.setIncludes(new String[]{"**/*.txt", "**/*.xml"});
+        scanner.setExcludes(new String[]{"**/dir3/**", "**/file1.*"});
+        if (threads >= 0)
+        {
+            scanner.setDirectoryCache(new DirectoryCache(threads));
+        }
+        scanner.scan();
+        return scanner.getIncludedFilesCount();
+    }
+}
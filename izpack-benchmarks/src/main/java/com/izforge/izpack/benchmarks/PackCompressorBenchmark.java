@@ -0,0 +1,157 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.compiler.compressor.BZip2PackCompressor;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.compressor.RawPackCompressor;
+import com.izforge.izpack.compiler.compressor.XZPackCompressor;
+import com.izforge.izpack.merge.MergeManager;
+
+
+/**
+ * Benchmarks each {@link PackCompressor}, compressing a mix of text and binary content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackCompressorBenchmark
+{
+
+    /**
+     * The size of each block of content.
+     */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The no. of blocks of content.
+     */
+    private static final int BLOCKS = 128;
+
+    /**
+     * The compression format.
+     */
+    @Param({"default", "raw", "bzip2", "xz"})
+    public String compressor;
+
+    /**
+     * The content to compress.
+     */
+    private byte[][] content;
+
+    /**
+     * The pack compressor.
+     */
+    private PackCompressor packCompressor;
+
+
+    /**
+     * Generates the content, and creates the compressor.
+     */
+    @Setup
+    public void setUp()
+    {
+        content = new byte[BLOCKS][];
+        for (int i = 0; i < BLOCKS; ++i)
+        {
+            content[i] = BenchmarkData.createContent(i, BLOCK_SIZE);
+        }
+        MergeManager mergeManager = BenchmarkPackager.createMergeManager();
+        if ("raw".equals(compressor))
+        {
+            packCompressor = new RawPackCompressor();
+        }
+        else if ("bzip2".equals(compressor))
+        {
+            packCompressor = new BZip2PackCompressor(mergeManager);
+        }
+        else if ("xz".equals(compressor))
+        {
+            packCompressor = new XZPackCompressor(mergeManager);
+        }
+        else
+        {
+            packCompressor = new DefaultPackCompressor();
+        }
+    }
+
+    /**
+     * Compresses the content.
+     *
+     * @return the compressed size
+     * @throws IOException for any I/O error
+     */
+    @Benchmark
+    public long compress() throws IOException
+    {
+        CountingOutputStream counter = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        Deflater deflater = null;
+        OutputStream out;
+        if (packCompressor.useStandardCompression())
+        {
+            deflater = new Deflater(packCompressor.getCompressionLevel());
+            out = new DeflaterOutputStream(counter, deflater);
+        }
+        else
+        {
+            out = packCompressor.getOutputStream(counter);
+        }
+        try
+        {
+            for (byte[] block : content)
+            {
+                out.write(block);
+            }
+            out.close();
+        }
+        finally
+        {
+            if (deflater != null)
+            {
+                deflater.end();
+            }
+        }
+        return counter.getByteCount();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+
+
+/**
+ * Benchmarks {@link com.izforge.izpack.compiler.packager.impl.Packager#writePacks()}, in each pack format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackagerBenchmark
+{
+
+    /**
+     * The pack format.
+     */
+    @Param({"indexed", "stream"})
+    public String format;
+
+    /**
+     * The shape of the pack content.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES"})
+    public BenchmarkData.Shape shape;
+
+    /**
+     * The working directory.
+     */
+    private File dir;
+
+    /**
+     * The base directory of the pack files.
+     */
+    private File baseDir;
+
+    /**
+     * The pack files.
+     */
+    private List<File> files;
+
+    /**
+     * The installer jar.
+     */
+    private File installer;
+
+
+    /**
+     * Generates the pack files.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = BenchmarkData.createTempDir("packager");
+        baseDir = new File(dir, "src");
+        files = BenchmarkData.createFiles(baseDir, shape);
+        installer = new File(dir, "installer.jar");
+    }
+
+    /**
+     * Deletes the generated files.
+     *
+     * @throws IOException for any I/O error
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Writes a pack containing all of the files.
+     *
+     * @return the size of the installer jar
+     * @throws IOException for any I/O error
+     */
+    @Benchmark
+    public long writePacks() throws IOException
+    {
+        int version = "indexed".equals(format) ? Info.PACK_FORMAT_INDEXED : Info.PACK_FORMAT_STREAM;
+        return BenchmarkPackager.write(installer, version, new DefaultPackCompressor(),
+                                       Collections.singletonList(BenchmarkPackager.createPack("pack", baseDir, files)));
+    }
+}
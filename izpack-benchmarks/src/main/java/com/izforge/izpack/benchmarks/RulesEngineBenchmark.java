@@ -0,0 +1,110 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.rules.RulesEngineImpl;
+import com.izforge.izpack.core.rules.process.VariableCondition;
+import com.izforge.izpack.util.Platforms;
+
+
+/**
+ * Benchmarks {@link RulesEngineImpl#isConditionTrue(String)}, for simple condition identifiers and for
+ * condition expressions that must be parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RulesEngineBenchmark
+{
+
+    /**
+     * The no. of conditions registered with the rules engine.
+     */
+    private static final int CONDITIONS = 100;
+
+    /**
+     * The condition to evaluate.
+     */
+    @Param({"cond42", "cond1+cond2", "@cond1 && cond2 || !cond3 ^ cond4"})
+    public String condition;
+
+    /**
+     * The rules engine.
+     */
+    private RulesEngineImpl rules;
+
+
+    /**
+     * Registers variable conditions <em>cond0</em> .. <em>cond&lt;n-1&gt;</em> with the rules engine, every other
+     * one of which is true.
+     */
+    @Setup
+    public void setUp()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        AutomatedInstallData installData = new AutomatedInstallData(variables, Platforms.LINUX);
+        rules = new RulesEngineImpl(installData, null, Platforms.LINUX);
+        variables.setRules(rules);
+
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        for (int i = 0; i < CONDITIONS; ++i)
+        {
+            String id = "cond" + i;
+            variables.set("var" + i, (i % 2 == 0) ? "true" : "false");
+            VariableCondition variable = new VariableCondition("var" + i, "true");
+            variable.setId(id);
+            conditions.put(id, variable);
+        }
+        rules.readConditionMap(conditions);
+    }
+
+    /**
+     * Evaluates the condition.
+     *
+     * @return the result of the condition
+     */
+    @Benchmark
+    public boolean isConditionTrue()
+    {
+        return rules.isConditionTrue(condition);
+    }
+}
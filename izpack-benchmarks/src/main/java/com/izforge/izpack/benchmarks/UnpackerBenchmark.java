@@ -0,0 +1,403 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.exception.ResourceException;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import com.izforge.izpack.api.handler.AbstractPrompt;
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.io.StoredZipEntry;
+import com.izforge.izpack.core.rules.RulesEngineImpl;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.installer.unpacker.AbstractPackResources;
+import com.izforge.izpack.installer.unpacker.FileQueueFactory;
+import com.izforge.izpack.installer.unpacker.Unpacker;
+import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.Platform;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Platforms;
+
+
+/**
+ * Benchmarks {@link com.izforge.izpack.installer.unpacker.UnpackerBase#unpack()}, installing packs generated by
+ * the {@link BenchmarkPackager} in each pack format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class UnpackerBenchmark
+{
+
+    /**
+     * The pack format.
+     */
+    @Param({"indexed", "stream"})
+    public String format;
+
+    /**
+     * The shape of the pack content.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES"})
+    public BenchmarkData.Shape shape;
+
+    /**
+     * The no. of threads writing files. <tt>1</tt> writes files on the unpacking thread.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    /**
+     * The no. of packs unpacked at the same time. <tt>1</tt> unpacks packs in sequence.
+     */
+    @Param({"1", "4"})
+    public int packThreads;
+
+    /**
+     * The no. of packs the content is split across.
+     */
+    private static final int PACKS = 4;
+
+    /**
+     * The working directory.
+     */
+    private File dir;
+
+    /**
+     * The installation directory.
+     */
+    private File installDir;
+
+    /**
+     * The installer jar.
+     */
+    private JarFile installer;
+
+    /**
+     * The packs to install.
+     */
+    private List<Pack> packs;
+
+    /**
+     * The current platform.
+     */
+    private Platform platform;
+
+
+    /**
+     * Generates the pack files, and writes them to an installer.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = BenchmarkData.createTempDir("unpacker");
+        File baseDir = new File(dir, "src");
+        List<File> files = BenchmarkData.createFiles(baseDir, shape);
+        List<PackInfo> packInfos = new ArrayList<PackInfo>();
+        packs = new ArrayList<Pack>();
+        for (int i = 0; i < PACKS; ++i)
+        {
+            List<File> packFiles = new ArrayList<File>();
+            for (int j = i; j < files.size(); j += PACKS)
+            {
+                packFiles.add(files.get(j));
+            }
+            PackInfo pack = BenchmarkPackager.createPack("pack" + i, baseDir, packFiles);
+            packInfos.add(pack);
+            packs.add(pack.getPack());
+        }
+        File jar = new File(dir, "installer.jar");
+        BenchmarkPackager.write(jar, getFormat(), new DefaultPackCompressor(), packInfos);
+        installer = new JarFile(jar);
+        installDir = new File(dir, "install");
+        platform = new Platforms().getCurrentPlatform();
+    }
+
+    /**
+     * Removes the previous installation, so that each invocation installs from scratch.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Setup(Level.Invocation)
+    public void clean() throws IOException
+    {
+        FileUtils.deleteDirectory(installDir);
+    }
+
+    /**
+     * Deletes the generated files.
+     *
+     * @throws IOException for any I/O error
+     */
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        installer.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Installs the packs.
+     *
+     * @return the installation directory
+     */
+    @Benchmark
+    public File unpack()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        AutomatedInstallData installData = new AutomatedInstallData(variables, platform);
+        Info info = new Info();
+        info.setPackFormatVersion(getFormat());
+        info.setWriteInstallationInformation(false);
+        installData.setInfo(info);
+        installData.setInstallPath(installDir.getPath());
+        installData.setSelectedPacks(packs);
+        installData.setVariable(InstallData.UNPACKER_THREADS, Integer.toString(threads));
+        installData.setVariable(InstallData.UNPACKER_PACK_THREADS, Integer.toString(packThreads));
+        RulesEngine rules = new RulesEngineImpl(installData, null, platform);
+        variables.setRules(rules);
+
+        Prompt prompt = new FailingPrompt();
+        Unpacker unpacker = new Unpacker(installData, new JarPackResources(installer, installData), rules,
+                                         new VariableSubstitutorImpl(variables), new UninstallData(),
+                                         new FileQueueFactory(platform, null), new Housekeeper(),
+                                         new InstallerListeners(installData, prompt), prompt,
+                                         new PlatformModelMatcher(new Platforms(), platform));
+        unpacker.setProgressListener(new NullProgressListener());
+        unpacker.unpack();
+        if (!unpacker.getResult())
+        {
+            throw new IllegalStateException("Unpack failed");
+        }
+        return installDir;
+    }
+
+    /**
+     * Returns the pack format.
+     *
+     * @return the pack format
+     */
+    private int getFormat()
+    {
+        return "indexed".equals(format) ? Info.PACK_FORMAT_INDEXED : Info.PACK_FORMAT_STREAM;
+    }
+
+    /**
+     * Reads packs from the installer jar written by the {@link BenchmarkPackager}.
+     */
+    private static class JarPackResources extends AbstractPackResources
+    {
+
+        /**
+         * The installer jar.
+         */
+        private final JarFile installer;
+
+        /**
+         * Constructs a <tt>JarPackResources</tt>.
+         *
+         * @param installer   the installer jar
+         * @param installData the installation data
+         */
+        public JarPackResources(JarFile installer, InstallData installData)
+        {
+            super(null, installData);
+            this.installer = installer;
+        }
+
+        /**
+         * Returns a stream to a local pack.
+         *
+         * @param name the pack name
+         * @return the pack stream
+         * @throws ResourceNotFoundException if the pack doesn't exist
+         * @throws ResourceException         if the pack cannot be read
+         */
+        @Override
+        protected InputStream getLocalPackStream(String name)
+        {
+            ZipEntry entry = installer.getEntry(BenchmarkPackager.PACK_PREFIX + name);
+            if (entry == null)
+            {
+                throw new ResourceNotFoundException("Pack not found: " + name);
+            }
+            try
+            {
+                return installer.getInputStream(entry);
+            }
+            catch (IOException exception)
+            {
+                throw new ResourceException("Failed to read pack: " + name, exception);
+            }
+        }
+
+        /**
+         * Returns the location of a pack stored uncompressed in the installer jar.
+         *
+         * @param name the pack name
+         * @return the location of the pack, or <tt>null</tt> if the pack isn't stored uncompressed
+         * @throws ResourceException if the installer cannot be read
+         */
+        @Override
+        public StoredZipEntry getStoredPackEntry(String name)
+        {
+            try
+            {
+                return getStoredEntries(new File(installer.getName())).get(BenchmarkPackager.PACK_PREFIX + name);
+            }
+            catch (IOException exception)
+            {
+                throw new ResourceException("Failed to read installer: " + installer.getName(), exception);
+            }
+        }
+
+        /**
+         * Web packs aren't supported.
+         *
+         * @param name      the resource name
+         * @param webDirURL the web URL to load the resource from
+         * @return never
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        protected InputStream getWebPackStream(String name, String webDirURL)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A prompt that fails the benchmark. The unpacker only prompts on error.
+     */
+    private static class FailingPrompt extends AbstractPrompt
+    {
+
+        /**
+         * Fails with the message.
+         *
+         * @param type    the type of the message
+         * @param title   the message title
+         * @param message the message
+         * @throws IllegalStateException always
+         */
+        @Override
+        public void message(Type type, String title, String message)
+        {
+            throw new IllegalStateException(message);
+        }
+
+        /**
+         * Fails with the message.
+         *
+         * @param type          the type of the message
+         * @param title         the message title
+         * @param message       the message
+         * @param options       the options
+         * @param defaultOption the default option
+         * @return never
+         * @throws IllegalStateException always
+         */
+        @Override
+        public Option confirm(Type type, String title, String message, Options options, Option defaultOption)
+        {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * A progress listener that ignores progress.
+     */
+    private static class NullProgressListener implements ProgressListener
+    {
+        @Override
+        public void startAction(String name, int steps)
+        {
+        }
+
+        @Override
+        public void stopAction()
+        {
+        }
+
+        @Override
+        public void nextStep(String stepName, int step, int subSteps)
+        {
+        }
+
+        @Override
+        public void setSubStepNo(int subSteps)
+        {
+        }
+
+        @Override
+        public void progress(String message)
+        {
+        }
+
+        @Override
+        public void progress(int subStep, String message)
+        {
+        }
+
+        @Override
+        public void restartAction(String name, String overallMessage, String tip, int steps)
+        {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+
+
+/**
+ * Benchmarks {@link com.izforge.izpack.core.substitutor.VariableSubstitutorBase#substitute(String,
+ * SubstitutionType)} and {@link com.izforge.izpack.core.substitutor.VariableSubstitutorBase#substitute(
+ * java.io.Reader, java.io.Writer, SubstitutionType)}, for each substitution type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VariableSubstitutorBenchmark
+{
+
+    /**
+     * The no. of distinct variables referred to by the text.
+     */
+    private static final int VARIABLES = 50;
+
+    /**
+     * The substitution type.
+     */
+    @Param({"TYPE_PLAIN", "TYPE_XML", "TYPE_JAVA_PROPERTIES", "TYPE_SHELL"})
+    public SubstitutionType type;
+
+    /**
+     * The size of the text, in characters.
+     */
+    @Param({"1024", "1048576"})
+    public int size;
+
+    /**
+     * The text to substitute.
+     */
+    private String text;
+
+    /**
+     * The substitutor.
+     */
+    private VariableSubstitutorImpl substitutor;
+
+
+    /**
+     * Generates the text, and populates the variables it refers to.
+     */
+    @Setup
+    public void setUp()
+    {
+        text = BenchmarkData.createText(size, VARIABLES);
+        DefaultVariables variables = new DefaultVariables();
+        for (int i = 0; i < VARIABLES; ++i)
+        {
+            variables.set("var" + i, "value<" + i + ">\\");
+        }
+        substitutor = new VariableSubstitutorImpl(variables);
+    }
+
+    /**
+     * Substitutes the variables in the text.
+     *
+     * @return the substituted text
+     */
+    @Benchmark
+    public String substitute()
+    {
+        return substitutor.substitute(text, type);
+    }
+
+    /**
+     * Substitutes the variables in the text, read from a reader.
+     *
+     * @return the writer containing the substituted text
+     * @throws Exception for any error
+     */
+    @Benchmark
+    public StringWriter substituteStream() throws Exception
+    {
+        StringWriter writer = new StringWriter(text.length());
+        substitutor.substitute(new StringReader(text), writer, type);
+        return writer;
+    }
+}
@@ -41,7 +41,9 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -57,7 +59,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -75,6 +76,7 @@ import com.izforge.izpack.api.data.Info.TempDir;
 import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.LookAndFeels;
 import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackCompression;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.data.PanelActionConfiguration;
 import com.izforge.izpack.api.data.binding.Help;
@@ -96,6 +98,7 @@ import com.izforge.izpack.compiler.helper.TargetFileSet;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
 import com.izforge.izpack.compiler.listener.CompilerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.compiler.packager.CompressionPolicy;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
 import com.izforge.izpack.compiler.util.CompilerClassLoader;
@@ -111,6 +114,8 @@ import com.izforge.izpack.core.variable.RegistryValue;
 import com.izforge.izpack.core.variable.ZipEntryConfigFileValue;
 import com.izforge.izpack.core.variable.filters.LocationFilter;
 import com.izforge.izpack.core.variable.filters.RegularExpressionFilter;
+import com.izforge.izpack.data.Archive;
+import com.izforge.izpack.data.ArchiveEntry;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
@@ -126,9 +131,9 @@ import com.izforge.izpack.panels.treepacks.PackValidator;
 import com.izforge.izpack.panels.userinput.UserInputPanel;
 import com.izforge.izpack.panels.userinput.field.UserInputPanelSpec;
 import com.izforge.izpack.util.FileUtil;
-import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsConstraintHelper;
 import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.file.DirectoryCache;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileUtils;
 
@@ -209,6 +214,11 @@ public class CompilerConfig extends Thread
      */
     private final CompilerClassLoader classLoader;
 
+    /**
+     * Caches the directories scanned by filesets, so that filesets sharing a directory tree only list it once.
+     */
+    private final DirectoryCache directoryCache = new DirectoryCache(Runtime.getRuntime().availableProcessors());
+
     private static final String TEMP_DIR_ELEMENT_NAME = "tempdir";
 
     private static final String TEMP_DIR_PREFIX_ATTRIBUTE = "prefix";
@@ -323,6 +333,7 @@ public class CompilerConfig extends Thread
         addPanels(data);
         addListeners(data);
         addPacks(data);
+        directoryCache.clear();
         addInstallerRequirement(data);
 
         // merge multiple packlang.xml files
@@ -767,6 +778,7 @@ public class CompilerConfig extends Thread
             pack.setParent(parent);
             pack.setCondition(conditionid);
             pack.setHidden(hidden);
+            pack.setCompression(getPackCompression(packElement));
 
             // unverified
             // if the pack belongs to an excludeGroup it's not preselected by default
@@ -875,6 +887,7 @@ public class CompilerConfig extends Thread
             ds.setIncludes(includes);
             ds.setBasedir(dir);
             ds.setCaseSensitive(true);
+            ds.setDirectoryCache(directoryCache);
 
             // loop through all found fils and handle them as normal refpack files
             String[] files;
@@ -903,6 +916,36 @@ public class CompilerConfig extends Thread
         notifyCompilerListener("addPacksSingle", CompilerListener.END, data);
     }
 
+    /**
+     * Returns the compression method specified by the <tt>compression</tt> attribute of a pack.
+     *
+     * @param packElement the pack element
+     * @return the compression method, or <tt>null</tt> if none is specified
+     * @throws CompilerException if the compression method is invalid
+     */
+    private PackCompression getPackCompression(IXMLElement packElement) throws CompilerException
+    {
+        PackCompression result = null;
+        String compression = packElement.getAttribute("compression");
+        if (compression != null)
+        {
+            if ("raw".equalsIgnoreCase(compression))
+            {
+                result = PackCompression.STORE;
+            }
+            else
+            {
+                result = PackCompression.getCompressionFromAttribute(compression.toLowerCase());
+                if (result == null)
+                {
+                    assertionHelper.parseError(packElement, "Invalid pack compression: " + compression
+                            + ". Expected one of: raw, deflate, xz");
+                }
+            }
+        }
+        return result;
+    }
+
     private void processUpdateCheckChildren(IXMLElement packElement, PackInfo pack) throws CompilerException
     {
         for (IXMLElement updateNode : packElement.getChildrenNamed("updatecheck"))
@@ -935,9 +978,10 @@ public class CompilerConfig extends Thread
         {
             try
             {
+                DirectoryScanner scanner = fs.getDirectoryScanner();
                 String[][] includedFilesAndDirs = new String[][]{
-                        fs.getDirectoryScanner().getIncludedDirectories(),
-                        fs.getDirectoryScanner().getIncludedFiles()
+                        scanner.getIncludedDirectories(),
+                        scanner.getIncludedFiles()
                 };
                 for (String[] filesOrDirs : includedFilesAndDirs)
                 {
@@ -1019,6 +1063,7 @@ public class CompilerConfig extends Thread
             boolean unpack = Boolean.parseBoolean(fileNode.getAttribute("unpack"));
 
             TargetFileSet fs = new TargetFileSet();
+            fs.setDirectoryCache(directoryCache);
             try
             {
                 File relsrcfile = new File(src);
@@ -1064,8 +1109,9 @@ public class CompilerConfig extends Thread
                 }
 
                 LinkedList<String> srcfiles = new LinkedList<String>();
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedDirectories());
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedFiles());
+                DirectoryScanner scanner = fs.getDirectoryScanner();
+                Collections.addAll(srcfiles, scanner.getIncludedDirectories());
+                Collections.addAll(srcfiles, scanner.getIncludedFiles());
                 for (String filePath : srcfiles)
                 {
                     if (!filePath.isEmpty())
@@ -1302,6 +1348,7 @@ public class CompilerConfig extends Thread
         }
         directoryScanner.setBasedir(dir);
         directoryScanner.setCaseSensitive(casesensitive);
+        directoryScanner.setDirectoryCache(directoryCache);
         try
         {
             directoryScanner.scan();
@@ -1404,7 +1451,9 @@ public class CompilerConfig extends Thread
     }
 
     /**
-     * Add files in an archive to a pack
+     * Add files in an archive to a pack.
+     * <p/>
+     * The entries are not extracted; the packager reads them directly from the archive.
      *
      * @param archive     the archive file to unpack
      * @param targetdir   the target directory where the content of the archive will be installed
@@ -1419,60 +1468,48 @@ public class CompilerConfig extends Thread
                                      Blockable blockable, PackInfo pack, Map additionals,
                                      String condition) throws IOException
     {
-
-        FileInputStream fin = new FileInputStream(archive);
-        ZipInputStream zin = new ZipInputStream(fin);
-        List<String> allDirList = new ArrayList<String>();
-        while (true)
+        Archive source = new Archive(archive);
+        List<ArchiveEntry> allDirList = new ArrayList<ArchiveEntry>();
+        ZipFile zip = new ZipFile(archive);
+        try
         {
-            ZipEntry zentry = zin.getNextEntry();
-            if (zentry == null)
-            {
-                break;
-            }
-            if (zentry.isDirectory())
-            {
-                // add to all dir listing/empty dir needs to be handle
-                String dName = zentry.getName().substring(0, zentry.getName().length() - 1);
-                allDirList.add(dName);
-                continue;
-            }
-
-            try
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
             {
-                File temp = FileUtils.createTempFile("izpack", null);
-                temp.deleteOnExit();
-
-                FileOutputStream out = new FileOutputStream(temp);
-                IoHelper.copyStream(zin, out);
-                out.close();
+                ArchiveEntry entry = new ArchiveEntry(source, entries.nextElement());
+                if (entry.isDirectory())
+                {
+                    // add to all dir listing/empty dir needs to be handle
+                    allDirList.add(entry);
+                    continue;
+                }
 
-                String target = targetdir + "/" + zentry.getName();
-                logger.info("Adding file " + zentry.getName() + " from archive as target file=" + target);
-                pack.addFile(baseDir, temp, target, osList, override,
-                             overrideRenameTo, blockable, additionals, condition);
+                String target = targetdir + "/" + entry.getName();
+                logger.info("Adding file " + entry.getName() + " from archive as target file=" + target);
+                pack.addArchiveEntry(entry, target, osList, override, overrideRenameTo, blockable, additionals,
+                                     condition);
             }
-            catch (IOException e)
-            {
-                throw new IOException("Couldn't create temporary file for " + zentry.getName()
-                                              + " in archive " + archive + " (" + e.getMessage() + ")");
-            }
-
+        }
+        finally
+        {
+            zip.close();
         }
 
         // This corrects issues that could arise due to subfolders
-        Collections.sort(allDirList);
-        for (String dirName : allDirList)
-        {
-            File tmp = new File(dirName);
-            org.apache.commons.io.FileUtils.forceMkdir(tmp);
-            org.apache.commons.io.FileUtils.forceDeleteOnExit(tmp); 
-            String target = targetdir + "/" + dirName;
-            logger.info("Adding file: " + tmp + ", as target file=" + target);
-            pack.addFile(baseDir, tmp, target, osList,
-                         override, overrideRenameTo, blockable, additionals, condition);
-        }
-        fin.close();
+        Collections.sort(allDirList, new Comparator<ArchiveEntry>()
+        {
+            public int compare(ArchiveEntry entry1, ArchiveEntry entry2)
+            {
+                return entry1.getName().compareTo(entry2.getName());
+            }
+        });
+        for (ArchiveEntry entry : allDirList)
+        {
+            String target = targetdir + "/" + entry.getName();
+            logger.info("Adding directory " + entry.getName() + " from archive as target file=" + target);
+            pack.addArchiveEntry(entry, target, osList, override, overrideRenameTo, blockable, additionals,
+                                 condition);
+        }
     }
 
     /**
@@ -1904,6 +1941,45 @@ public class CompilerConfig extends Thread
         IXMLElement pack200 = root.getFirstChildNamed("pack200");
         info.setPack200Compression(pack200 != null);
 
+        // Pack format
+        IXMLElement packFormat = root.getFirstChildNamed("packformat");
+        if (packFormat != null)
+        {
+            String content = packFormat.getContent();
+            if ("stream".equalsIgnoreCase(content))
+            {
+                info.setPackFormatVersion(Info.PACK_FORMAT_STREAM);
+            }
+            else if ("indexed".equalsIgnoreCase(content))
+            {
+                info.setPackFormatVersion(Info.PACK_FORMAT_INDEXED);
+            }
+            else
+            {
+                throw new CompilerException("Invalid value ''" + content + "'' of element ''packformat''");
+            }
+        }
+
+        // Compression policy for the indexed pack format
+        IXMLElement compressionPolicy = root.getFirstChildNamed("compressionpolicy");
+        if (compressionPolicy != null)
+        {
+            boolean sample = xmlCompilerHelper.validateYesNoAttribute(compressionPolicy, "sample", YES);
+            List<String> rawExtensions = Arrays.asList(CompressionPolicy.DEFAULT_RAW_EXTENSIONS);
+            String extensions = compressionPolicy.getAttribute("rawextensions");
+            if (extensions != null)
+            {
+                rawExtensions = new ArrayList<String>();
+                StringTokenizer tokenizer = new StringTokenizer(extensions, ", ", false);
+                while (tokenizer.hasMoreTokens())
+                {
+                    String extension = tokenizer.nextToken();
+                    rawExtensions.add(extension.startsWith(".") ? extension.substring(1) : extension);
+                }
+            }
+            packager.setCompressionPolicy(new CompressionPolicy(rawExtensions, sample));
+        }
+
         // Privileged execution
         IXMLElement privileged = root.getFirstChildNamed("run-privileged");
         info.setRequirePrivilegedExecution(privileged != null);
@@ -2328,6 +2404,27 @@ public class CompilerConfig extends Thread
                 dynamicVariable.setCheckonce(Boolean.valueOf(value));
             }
 
+            // Check how long the results of commands and registry lookups may be reused for
+            value = var.getAttribute("cachettl");
+            if (value != null)
+            {
+                try
+                {
+                    dynamicVariable.setCacheTTL(Long.parseLong(value));
+                }
+                catch (NumberFormatException exception)
+                {
+                    assertionHelper.parseError(var, "Bad cachettl " + value + " given for dynamic variable " + name);
+                }
+            }
+
+            // Check whether the value may be resolved in the background before the first evaluation
+            value = var.getAttribute("prefetch");
+            if (value != null)
+            {
+                dynamicVariable.setPrefetch(Boolean.valueOf(value));
+            }
+
             // Check whether evaluation failures of the dynamic variable should be ignored
             value = var.getAttribute("ignorefailure");
             if (value != null)
@@ -2978,6 +3075,7 @@ public class CompilerConfig extends Thread
     private TargetFileSet readFileSet(IXMLElement fileSetNode) throws CompilerException
     {
         TargetFileSet fs = new TargetFileSet();
+        fs.setDirectoryCache(directoryCache);
 
         fs.setTargetDir(xmlCompilerHelper.requireAttribute(fileSetNode, "targetdir"));
         List<OsModel> osList = OsConstraintHelper.getOsList(fileSetNode); // TODO: unverified
@@ -45,6 +45,8 @@ public class CliAnalyzer {
     private static final String ARG_OUTPUT = "o";
     private static final String ARG_COMPRESSION_FORMAT = "c";
     private static final String ARG_COMPRESSION_LEVEL = "l";
+    private static final String ARG_THREADS = "t";
+    private static final String ARG_CACHE = "d";
 
 
     /**
@@ -63,9 +65,13 @@ public class CliAnalyzer {
         options.addOption(ARG_KIND, true, "kind : indicates the kind of installer to generate, default is standard");
         options.addOption(ARG_OUTPUT, true, "out  : indicates the output file name default is the xml file name\n");
         options.addOption(ARG_COMPRESSION_FORMAT, true, "compression : indicates the compression format to be used for packs " +
-                "default is the internal deflate compression\n");
+                "(default, raw, bzip2 or xz), default is the internal deflate compression\n");
         options.addOption(ARG_COMPRESSION_LEVEL, true, "compression-level : indicates the level for the used compression format"
                 + " if supported. Only integer are valid\n");
+        options.addOption(ARG_THREADS, true, "threads : indicates the number of threads used to write packs,"
+                + " default is 1. The installer produced is the same whatever the number of threads\n");
+        options.addOption(ARG_CACHE, true, "cache-dir : indicates a directory to cache packs between compilations."
+                + " Unchanged packs are copied from the cache rather than compressed again. Indexed pack format only\n");
         return options;
     }
 
@@ -109,6 +115,10 @@ public class CliAnalyzer {
         System.out.println("-> Kind        : " + result.getKind());
         System.out.println("-> Compression : " + result.getComprFormat());
         System.out.println("-> Compr. level: " + result.getComprLevel());
+        System.out.println("-> Threads     : " + result.getPackagerThreads());
+        if (result.getPackCacheDir() != null) {
+            System.out.println("-> Pack cache  : " + result.getPackCacheDir());
+        }
         System.out.println("-> IzPack home : " + CompilerData.IZPACK_HOME);
         System.out.println("");
     }
@@ -164,6 +174,12 @@ public class CliAnalyzer {
         if (commandLine.hasOption(ARG_COMPRESSION_LEVEL)) {
             compilerData.setComprLevel(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_LEVEL).trim()));
         }
+        if (commandLine.hasOption(ARG_THREADS)) {
+            compilerData.setPackagerThreads(Integer.parseInt(commandLine.getOptionValue(ARG_THREADS).trim()));
+        }
+        if (commandLine.hasOption(ARG_CACHE)) {
+            compilerData.setPackCacheDir(commandLine.getOptionValue(ARG_CACHE).trim());
+        }
         if (commandLine.hasOption(ARG_IZPACK_HOME)) {
             CompilerData.setIzpackHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
         }
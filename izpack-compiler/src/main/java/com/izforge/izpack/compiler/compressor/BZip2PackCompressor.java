@@ -22,6 +22,11 @@
 
 package com.izforge.izpack.compiler.compressor;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+
 import com.izforge.izpack.merge.MergeManager;
 
 
@@ -50,5 +55,21 @@ public class BZip2PackCompressor extends PackCompressorBase
         encoderClassName = THIS_ENCODER_CLASS_NAME;
     }
 
-
+    /**
+     * Returns a stream that bzip2 encodes the data written to it.
+     * <p/>
+     * The stream doesn't include the "BZ" magic, as the installer decoder doesn't expect it.
+     * The compression level is used as the block size, in units of 100k. It defaults to <tt>9</tt>.
+     *
+     * @param os the stream to write the encoded data to
+     * @return a new encoding stream
+     * @throws IOException for any I/O error
+     */
+    public OutputStream getOutputStream(OutputStream os) throws IOException
+    {
+        int level = getCompressionLevel();
+        int blockSize = (level >= CBZip2OutputStream.MIN_BLOCKSIZE && level <= CBZip2OutputStream.MAX_BLOCKSIZE)
+                ? level : CBZip2OutputStream.MAX_BLOCKSIZE;
+        return new CBZip2OutputStream(os, blockSize);
+    }
 }
@@ -19,12 +19,8 @@
 
 package com.izforge.izpack.compiler.container.provider;
 
-import java.io.IOException;
 import java.io.OutputStream;
 
-import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorStreamFactory;
-import org.apache.tools.zip.ZipEntry;
 import org.picocontainer.injectors.Provider;
 
 import com.izforge.izpack.compiler.data.CompilerData;
@@ -38,23 +34,19 @@ import com.izforge.izpack.compiler.stream.JarOutputStream;
 public class CompressedOutputStreamProvider implements Provider
 {
 
-    public OutputStream provide(CompilerData compilerData, JarOutputStream jarOutputStream) throws CompressorException, IOException
+    /**
+     * Returns the stream that packs are written to.
+     * <p/>
+     * The stream isn't encoded here, as a single encoding stream can't be shared between pack entries. The packager
+     * encodes each pack using {@link com.izforge.izpack.compiler.compressor.PackCompressor#getOutputStream}, so that
+     * each pack can be decoded independently by the installer.
+     *
+     * @param compilerData    the compiler data
+     * @param jarOutputStream the installer jar stream
+     * @return the installer jar stream
+     */
+    public OutputStream provide(CompilerData compilerData, JarOutputStream jarOutputStream)
     {
-        OutputStream outputStream = jarOutputStream;
-        String comprFormat = compilerData.getComprFormat();
-        if (comprFormat.equals("bzip2"))
-        {
-            ZipEntry entry = new ZipEntry("bzip2");
-            entry.setMethod(ZipEntry.STORED);
-            entry.setComment("bzip2");
-            // We must set the entry before we get the compressed stream
-            // because some writes initialize data (e.g. bzip2).
-            jarOutputStream.putNextEntry(entry);
-            jarOutputStream.flush(); // flush before we start counting
-
-            outputStream = new CompressorStreamFactory().createCompressorOutputStream("bzip2", jarOutputStream);
-            jarOutputStream.closeEntry();
-        }
-        return outputStream;
+        return jarOutputStream;
     }
 }
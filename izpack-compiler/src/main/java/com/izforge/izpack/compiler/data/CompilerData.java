@@ -90,6 +90,16 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * The number of threads used to write packs. A value of <tt>1</tt> writes packs sequentially.
+     */
+    private int packagerThreads = 1;
+
+    /**
+     * The directory used to cache packs between compilations. May be <tt>null</tt>
+     */
+    private String packCacheDir;
+
     /**
      * External Information
      */
@@ -228,6 +238,52 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    /**
+     * Returns the number of threads used to write packs.
+     *
+     * @return the number of packager threads. Always <tt>&gt;= 1</tt>
+     */
+    public int getPackagerThreads()
+    {
+        return packagerThreads;
+    }
+
+    /**
+     * Sets the number of threads used to write packs.
+     * <p/>
+     * Packs written concurrently are assembled in declaration order, so the installer is identical to that
+     * produced by a sequential run.
+     *
+     * @param threads the number of threads. Values less than <tt>1</tt> are treated as <tt>1</tt>
+     */
+    public void setPackagerThreads(int threads)
+    {
+        this.packagerThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns the directory used to cache packs between compilations.
+     *
+     * @return the pack cache directory, or <tt>null</tt> if packs aren't cached
+     */
+    public String getPackCacheDir()
+    {
+        return packCacheDir;
+    }
+
+    /**
+     * Sets the directory used to cache packs between compilations.
+     * <p/>
+     * Packs that haven't changed since they were cached are copied to the installer, rather than being written
+     * and compressed again. This is only supported by the indexed pack format.
+     *
+     * @param packCacheDir the pack cache directory, or <tt>null</tt> to disable caching
+     */
+    public void setPackCacheDir(String packCacheDir)
+    {
+        this.packCacheDir = packCacheDir;
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
@@ -0,0 +1,228 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.data.PackInfo;
+
+
+/**
+ * Determines the compression method of individual files in the
+ * {@link com.izforge.izpack.api.data.Info#PACK_FORMAT_INDEXED indexed} pack format.
+ * <p/>
+ * Files that are already compressed gain nothing from being compressed again, but cost CPU time to compress when
+ * the installer is compiled, and to decompress when it is installed. These are stored raw, even if the rest of
+ * the pack is compressed. A file is considered incompressible if:
+ * <ul>
+ * <li>its extension is one of the raw extensions; or</li>
+ * <li>sampling is enabled, and compressing its first block doesn't save at least 5%</li>
+ * </ul>
+ * This class is thread safe.
+ */
+public class CompressionPolicy
+{
+
+    /**
+     * The default extensions of files that are already compressed.
+     */
+    public static final String[] DEFAULT_RAW_EXTENSIONS = {
+            "7z", "bz2", "ear", "gif", "gz", "jar", "jpeg", "jpg", "lzma", "mp3", "mp4", "ogg", "png", "rar", "tgz",
+            "war", "xz", "zip"};
+
+    /**
+     * The no. of bytes sampled at the start of a file.
+     */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    /**
+     * The maximum ratio of compressed to uncompressed sample size, for a file to be considered compressible.
+     */
+    private static final double MAX_RATIO = 0.95;
+
+    /**
+     * The lower-case extensions of files to store raw.
+     */
+    private final Set<String> rawExtensions = new HashSet<String>();
+
+    /**
+     * Determines if files are sampled to detect incompressible content.
+     */
+    private final boolean sample;
+
+
+    /**
+     * Constructs a <tt>CompressionPolicy</tt> with the {@link #DEFAULT_RAW_EXTENSIONS default raw extensions},
+     * and sampling enabled.
+     */
+    public CompressionPolicy()
+    {
+        this(Arrays.asList(DEFAULT_RAW_EXTENSIONS), true);
+    }
+
+    /**
+     * Constructs a <tt>CompressionPolicy</tt>.
+     *
+     * @param rawExtensions the extensions of files to store raw, without the leading '.'
+     * @param sample        if <tt>true</tt>, sample files to detect incompressible content
+     */
+    public CompressionPolicy(Collection<String> rawExtensions, boolean sample)
+    {
+        for (String extension : rawExtensions)
+        {
+            this.rawExtensions.add(extension.toLowerCase());
+        }
+        this.sample = sample;
+    }
+
+    /**
+     * Returns the extensions of files to store raw.
+     *
+     * @return the lower-case extensions, in alphabetical order
+     */
+    public Set<String> getRawExtensions()
+    {
+        return Collections.unmodifiableSet(new TreeSet<String>(rawExtensions));
+    }
+
+    /**
+     * Determines if files are sampled to detect incompressible content.
+     *
+     * @return <tt>true</tt> if files are sampled
+     */
+    public boolean isSample()
+    {
+        return sample;
+    }
+
+    /**
+     * Returns the compression method for a file.
+     *
+     * @param file        the file
+     * @param compression the compression method of the pack
+     * @return the compression method for the file. This is {@link PackCompression#STORE} if the file is
+     *         incompressible, otherwise <tt>compression</tt>
+     * @throws IOException if the file cannot be sampled
+     */
+    public PackCompression getCompression(File file, PackCompression compression) throws IOException
+    {
+        PackCompression result = compression;
+        if (compression != PackCompression.STORE && (isRawExtension(file.getName())
+                || (sample && !isCompressible(new FileInputStream(file), file.length()))))
+        {
+            result = PackCompression.STORE;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the compression method for a pack file, which may have been added from an archive.
+     *
+     * @param packInfo    the pack
+     * @param packFile    the pack file
+     * @param compression the compression method of the pack
+     * @return the compression method for the file. This is {@link PackCompression#STORE} if the file is
+     *         incompressible, otherwise <tt>compression</tt>
+     * @throws IOException if the file cannot be sampled
+     */
+    public PackCompression getCompression(PackInfo packInfo, PackFile packFile, PackCompression compression)
+            throws IOException
+    {
+        PackCompression result = compression;
+        if (compression != PackCompression.STORE && (isRawExtension(packFile.getTargetPath())
+                || (sample && !isCompressible(packInfo.getInputStream(packFile), packFile.length()))))
+        {
+            result = PackCompression.STORE;
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a file name has one of the raw extensions.
+     *
+     * @param name the file name or path
+     * @return <tt>true</tt> if the file should be stored raw
+     */
+    private boolean isRawExtension(String name)
+    {
+        int index = name.lastIndexOf('.');
+        return index > name.lastIndexOf('/') && rawExtensions.contains(name.substring(index + 1).toLowerCase());
+    }
+
+    /**
+     * Determines if content is compressible, by compressing its first block.
+     *
+     * @param in     the stream to read the content from. This is closed
+     * @param length the length of the content
+     * @return <tt>true</tt> if the content is compressible
+     * @throws IOException for any I/O error
+     */
+    private boolean isCompressible(InputStream in, long length) throws IOException
+    {
+        byte[] buffer = new byte[(int) Math.min(SAMPLE_SIZE, length)];
+        int count = 0;
+        try
+        {
+            int read;
+            while (count < buffer.length && (read = in.read(buffer, count, buffer.length - count)) != -1)
+            {
+                count += read;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        if (count == 0)
+        {
+            return true;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try
+        {
+            deflater.setInput(buffer, 0, count);
+            deflater.finish();
+            byte[] output = new byte[8192];
+            long compressed = 0;
+            while (!deflater.finished())
+            {
+                compressed += deflater.deflate(output);
+            }
+            return compressed <= count * MAX_RATIO;
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+}
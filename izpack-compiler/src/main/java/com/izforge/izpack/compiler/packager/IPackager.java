@@ -75,6 +75,13 @@ public interface IPackager
      */
     void setSplashScreenImage(File file);
 
+    /**
+     * Sets the policy that determines which files are stored raw in the indexed pack format.
+     *
+     * @param policy the compression policy
+     */
+    void setCompressionPolicy(CompressionPolicy policy);
+
     /**
      * Allows access to add, remove and update the variables for the project, which are maintained
      * in the packager.
@@ -0,0 +1,194 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Generates keys that identify the content of files, so that files with the same content can be stored once.
+ * <p/>
+ * A SHA-256 digest is only calculated for files that share their length with another file. Files with a unique length
+ * are identified by their {@link PackInfo#getSource(PackFile) source}, i.e. the file or archive entry itself.
+ */
+class ContentKeys
+{
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The distinct sources, keyed on length.
+     */
+    private final Map<Long, Set<Object>> lengths = new HashMap<Long, Set<Object>>();
+
+    /**
+     * The content keys of sources that have been digested, keyed on source.
+     */
+    private final Map<Object, ContentKey> digests = new HashMap<Object, ContentKey>();
+
+
+    /**
+     * Registers a file that may need to be stored.
+     * <p/>
+     * All files must be registered prior to invoking {@link #getKey}.
+     *
+     * @param packInfo the pack
+     * @param packFile the pack file
+     */
+    public void add(PackInfo packInfo, PackFile packFile)
+    {
+        Long length = packFile.length();
+        Set<Object> sources = lengths.get(length);
+        if (sources == null)
+        {
+            sources = new HashSet<Object>();
+            lengths.put(length, sources);
+        }
+        sources.add(packInfo.getSource(packFile));
+    }
+
+    /**
+     * Returns a key identifying the content of a file.
+     * <p/>
+     * Files with the same content have equal keys, unless they are to be stored differently.
+     *
+     * @param packInfo the pack
+     * @param packFile the pack file
+     * @param pack200  determines if the file is stored as a Pack200 jar
+     * @return the content key
+     * @throws IOException if the file cannot be read
+     */
+    public Object getKey(PackInfo packInfo, PackFile packFile, boolean pack200) throws IOException
+    {
+        Object source = packInfo.getSource(packFile);
+        Set<Object> sources = lengths.get(packFile.length());
+        if (sources == null || sources.size() <= 1)
+        {
+            return source;
+        }
+        ContentKey key = digests.get(source);
+        if (key == null)
+        {
+            key = new ContentKey(digest(packInfo.getInputStream(packFile)), pack200);
+            digests.put(source, key);
+        }
+        return key;
+    }
+
+    /**
+     * Calculates the digest of a file.
+     *
+     * @param in the stream to read the file from. This is closed
+     * @return the file digest
+     * @throws IOException if the file cannot be read
+     */
+    private byte[] digest(InputStream in) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create " + ALGORITHM + " digest", exception);
+        }
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            FileUtils.close(in);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Identifies file content by its digest.
+     */
+    private static class ContentKey
+    {
+
+        /**
+         * The content digest.
+         */
+        private final byte[] digest;
+
+        /**
+         * Determines if the content is stored as a Pack200 jar.
+         */
+        private final boolean pack200;
+
+
+        /**
+         * Constructs a <tt>ContentKey</tt>.
+         *
+         * @param digest  the content digest
+         * @param pack200 determines if the content is stored as a Pack200 jar
+         */
+        public ContentKey(byte[] digest, boolean pack200)
+        {
+            this.digest = digest;
+            this.pack200 = pack200;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (!(other instanceof ContentKey))
+            {
+                return false;
+            }
+            ContentKey key = (ContentKey) other;
+            return pack200 == key.pack200 && Arrays.equals(digest, key.digest);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode(digest) + (pack200 ? 1 : 0);
+        }
+    }
+}
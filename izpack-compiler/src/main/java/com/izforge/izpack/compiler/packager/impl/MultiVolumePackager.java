@@ -22,8 +22,8 @@
 package com.izforge.izpack.compiler.packager.impl;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.util.List;
 import java.util.Properties;
@@ -34,6 +34,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.tools.zip.ZipEntry;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.XPackFile;
@@ -43,6 +44,7 @@ import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
+import com.izforge.izpack.core.io.PackInfoWriter;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
@@ -171,6 +173,26 @@ public class MultiVolumePackager extends PackagerBase
         }
     }
 
+    /**
+     * Sets the installer information.
+     * <p/>
+     * Multi-volume installers store file data in the volumes, so only support the
+     * {@link Info#PACK_FORMAT_STREAM stream} pack format.
+     *
+     * @param info the installer information
+     */
+    @Override
+    public void setInfo(Info info)
+    {
+        super.setInfo(info);
+        if (info.getPackFormatVersion() != Info.PACK_FORMAT_STREAM)
+        {
+            sendMsg("Multi-volume installers don't support the indexed pack format. Using the stream format",
+                    PackagerListener.MSG_WARN);
+            info.setPackFormatVersion(Info.PACK_FORMAT_STREAM);
+        }
+    }
+
     /**
      * Writes packs to one or more <em>.pak</em> volumes.
      * <p/>
@@ -210,14 +232,12 @@ public class MultiVolumePackager extends PackagerBase
 
         // Now that we know sizes, write pack metadata to primary jar.
         installerJar.putNextEntry(new ZipEntry(RESOURCES_PATH + "packs.info"));
-        out = new ObjectOutputStream(installerJar);
-        out.writeInt(count);
-
+        PackInfoWriter packInfoWriter = new PackInfoWriter();
         for (PackInfo pack : packs)
         {
-            out.writeObject(pack.getPack());
+            packInfoWriter.addPack(pack.getPack());
         }
-        out.flush();
+        packInfoWriter.writeTo(installerJar);
         installerJar.closeEntry();
     }
 
@@ -319,19 +339,27 @@ public class MultiVolumePackager extends PackagerBase
         for (PackFile packfile : files)
         {
             XPackFile pf = new XPackFile(packfile);
-            File file = packInfo.getFile(packfile);
-            logger.fine("Next file: " + file.getAbsolutePath());
+            Object source = packInfo.getSource(packfile);
+            logger.fine("Next file: " + source);
 
             if (!pf.isDirectory())
             {
-                if (!pack.isLoose())
+                InputStream in = packInfo.getInputStream(packfile);
+                try
                 {
-                    writePackFile(file, volumes, pf);
+                    if (!pack.isLoose())
+                    {
+                        writePackFile(source, in, volumes, pf);
+                    }
+                    else
+                    {
+                        // just copy the file to the target directory
+                        FileUtils.copyInputStreamToFile(in, new File(targetDir, pf.getRelativeSourcePath()));
+                    }
                 }
-                else
+                finally
                 {
-                    // just copy the file to the target directory
-                    FileUtils.copyFile(file, new File(targetDir, pf.getRelativeSourcePath()));
+                    in.close();
                 }
             }
 
@@ -351,12 +379,14 @@ public class MultiVolumePackager extends PackagerBase
     /**
      * Writes a pack file to the volumes.
      *
-     * @param file     the file to write
+     * @param source   the file or archive entry to write
+     * @param in       the stream to read the file from
      * @param volumes  the volumes
      * @param packFile the pack file
      * @throws IOException for any I/O error
      */
-    private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
+    private void writePackFile(Object source, InputStream in, FileSpanningOutputStream volumes, XPackFile packFile)
+            throws IOException
     {
         long beforePosition = volumes.getFilePointer();
         packFile.setArchiveFilePosition(beforePosition);
@@ -364,14 +394,13 @@ public class MultiVolumePackager extends PackagerBase
         // write the file to the volumes
         int volumeCount = volumes.getVolumes();
 
-        FileInputStream in = new FileInputStream(file);
         long bytesWritten = IoHelper.copyStream(in, volumes);
         long afterPosition = volumes.getFilePointer();
         logger.fine("File (" + packFile.sourcePath + ") " + beforePosition + " <-> " + afterPosition);
 
         if (volumes.getFilePointer() != (beforePosition + bytesWritten))
         {
-            logger.fine("file: " + file.getName());
+            logger.fine("file: " + source);
             logger.fine("(Filepos/BytesWritten/ExpectedNewFilePos/NewFilePointer) ("
                                 + beforePosition + "/" + bytesWritten + "/" + (beforePosition + bytesWritten)
                                 + "/" + volumes.getFilePointer() + ")");
@@ -381,9 +410,8 @@ public class MultiVolumePackager extends PackagerBase
 
         if (bytesWritten != packFile.length())
         {
-            throw new IOException("File size mismatch when reading " + file);
+            throw new IOException("File size mismatch when reading " + source);
         }
-        in.close();
     }
 
 }
\ No newline at end of file
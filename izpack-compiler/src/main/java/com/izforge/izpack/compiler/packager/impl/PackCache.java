@@ -0,0 +1,355 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * A persistent cache of packs written in the {@link com.izforge.izpack.api.data.Info#PACK_FORMAT_INDEXED indexed}
+ * pack format, so that packs that haven't changed since a previous compilation needn't be compressed again.
+ * <p/>
+ * Packs are cached on a {@link Key key} derived from everything that determines their content: the pack definition,
+ * the file headers and meta-data, the content of the source files, the compression settings, and the keys of the
+ * packs they refer to. Each pack is stored in a separate file named after its key, preceded by its CRC-32 checksum.
+ * Files are written under a temporary name and renamed, so that concurrent compilations may share a cache.
+ */
+class PackCache
+{
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The version of the cache. This must be incremented if the way packs are written changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The cache file suffix.
+     */
+    private static final String SUFFIX = ".pack";
+
+    /**
+     * The size of the checksum preceding the pack data.
+     */
+    private static final int CHECKSUM_SIZE = 8;
+
+    /**
+     * The cache directory.
+     */
+    private final File directory;
+
+
+    /**
+     * Constructs a <tt>PackCache</tt>.
+     *
+     * @param directory the cache directory. Created if it doesn't exist
+     * @throws IOException if the directory cannot be created
+     */
+    public PackCache(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create pack cache directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a new key.
+     *
+     * @return a new key
+     * @throws IOException if the key cannot be created
+     */
+    public Key createKey() throws IOException
+    {
+        return new Key();
+    }
+
+    /**
+     * Returns a cached pack.
+     *
+     * @param key the pack key
+     * @return the cached pack, or <tt>null</tt> if it isn't cached
+     * @throws IOException if the cached pack cannot be read
+     */
+    public Entry get(String key) throws IOException
+    {
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile() || file.length() < CHECKSUM_SIZE)
+        {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            return new Entry(file, in.readLong());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Caches a pack.
+     *
+     * @param key      the pack key
+     * @param pack     the file containing the pack
+     * @param checksum the CRC-32 checksum of the pack
+     * @throws IOException if the pack cannot be cached
+     */
+    public void put(String key, File pack, long checksum) throws IOException
+    {
+        File temp = File.createTempFile("izpack-pack", null, directory);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try
+            {
+                out.writeLong(checksum);
+                InputStream in = new FileInputStream(pack);
+                try
+                {
+                    IoHelper.copyStream(in, out);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            File file = new File(directory, key + SUFFIX);
+            // another compilation may have cached the same pack in the meantime
+            if (!file.exists() && !temp.renameTo(file) && !file.exists())
+            {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+        }
+        finally
+        {
+            if (temp.exists())
+            {
+                FileUtils.delete(temp);
+            }
+        }
+    }
+
+    /**
+     * A cached pack.
+     */
+    public static class Entry
+    {
+
+        /**
+         * The cache file.
+         */
+        private final File file;
+
+        /**
+         * The CRC-32 checksum of the pack.
+         */
+        private final long checksum;
+
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param file     the cache file
+         * @param checksum the CRC-32 checksum of the pack
+         */
+        public Entry(File file, long checksum)
+        {
+            this.file = file;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Returns the size of the pack.
+         *
+         * @return the size of the pack, in bytes
+         */
+        public long getLength()
+        {
+            return file.length() - CHECKSUM_SIZE;
+        }
+
+        /**
+         * Returns the CRC-32 checksum of the pack.
+         *
+         * @return the checksum
+         */
+        public long getChecksum()
+        {
+            return checksum;
+        }
+
+        /**
+         * Returns a stream to read the pack.
+         *
+         * @return a new stream, positioned at the start of the pack
+         * @throws IOException if the stream cannot be opened
+         */
+        public InputStream getInputStream() throws IOException
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                in.readLong(); // skip the checksum
+            }
+            catch (IOException exception)
+            {
+                in.close();
+                throw exception;
+            }
+            return in;
+        }
+
+        /**
+         * Copies the pack to a stream.
+         *
+         * @param out the stream to copy to
+         * @throws IOException for any I/O error
+         */
+        public void copyTo(OutputStream out) throws IOException
+        {
+            InputStream in = getInputStream();
+            try
+            {
+                IoHelper.copyStream(in, out);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Builds the key of a pack, by digesting everything written to its {@link #getStream() stream}.
+     */
+    public static class Key
+    {
+
+        /**
+         * The digest.
+         */
+        private final MessageDigest digest;
+
+        /**
+         * The stream to write key data to.
+         */
+        private final DataOutputStream stream;
+
+
+        /**
+         * Constructs a <tt>Key</tt>.
+         *
+         * @throws IOException if the digest cannot be created
+         */
+        private Key() throws IOException
+        {
+            try
+            {
+                digest = MessageDigest.getInstance(ALGORITHM);
+            }
+            catch (NoSuchAlgorithmException exception)
+            {
+                throw new IOException("Failed to create " + ALGORITHM + " digest", exception);
+            }
+            stream = new DataOutputStream(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest));
+            stream.writeInt(VERSION);
+        }
+
+        /**
+         * Returns the stream to write key data to.
+         *
+         * @return the stream
+         */
+        public DataOutputStream getStream()
+        {
+            return stream;
+        }
+
+        /**
+         * Adds the content of a pack file to the key.
+         *
+         * @param packInfo the pack
+         * @param packFile the pack file
+         * @throws IOException if the file cannot be read
+         */
+        public void addContent(PackInfo packInfo, PackFile packFile) throws IOException
+        {
+            stream.writeLong(packFile.length());
+            InputStream in = packInfo.getInputStream(packFile);
+            try
+            {
+                IoHelper.copyStream(in, stream);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        /**
+         * Returns the key value.
+         *
+         * @return the key, as a hexadecimal string
+         * @throws IOException for any I/O error
+         */
+        public String getValue() throws IOException
+        {
+            stream.flush();
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest())
+            {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16));
+                result.append(Character.forDigit(b & 0xF, 16));
+            }
+            return result.toString();
+        }
+    }
+}
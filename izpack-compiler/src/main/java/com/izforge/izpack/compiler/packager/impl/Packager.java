@@ -20,30 +20,54 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackCompression;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.compressor.RawPackCompressor;
+import com.izforge.izpack.compiler.compressor.XZPackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.compiler.packager.CompressionPolicy;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.core.io.ByteCountingOutputStream;
+import com.izforge.izpack.core.io.IndexedPack;
+import com.izforge.izpack.core.io.PackIndexReader;
+import com.izforge.izpack.core.io.PackIndexWriter;
+import com.izforge.izpack.core.io.PackInfoWriter;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
@@ -51,6 +75,7 @@ import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.FileUtils;
 
 /**
  * The packager class. The packager is used by the compiler to put files into an installer, and
@@ -63,8 +88,8 @@ public class Packager extends PackagerBase
 {
 
     /**
-     * Decoration of the installer jar stream.
-     * May be compressed or not depending on the compiler data.
+     * Decoration of the installer jar stream, that packs in the stream pack format are written to.
+     * If the pack compressor doesn't use standard compression, each pack is encoded before being written to it.
      */
     private final OutputStream outputStream;
 
@@ -94,6 +119,13 @@ public class Packager extends PackagerBase
 
     /**
      * Write packs to the installer jar, or each to a separate jar.
+     * <p/>
+     * If the compiler data specifies more than one {@link CompilerData#getPackagerThreads() packager thread},
+     * packs are written concurrently to temporary files, which are then copied to the installer in pack order.
+     * The resulting installer is identical to that produced by a single thread.
+     * <p/>
+     * If the compiler data specifies a {@link CompilerData#getPackCacheDir() pack cache}, packs in the indexed pack
+     * format that haven't changed since they were cached are copied from the cache, rather than written again.
      *
      * @throws IOException for any I/O error
      */
@@ -104,80 +136,281 @@ public class Packager extends PackagerBase
         final int num = packs.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, Object[]> storedFiles = new HashMap<File, Object[]>();
-
-        // Pack200 files map
+        // Determine the back references and Pack200 files before writing, so packs can be written independently
+        StoredFiles storedFiles = new StoredFiles();
         Map<Integer, File> pack200Map = new HashMap<Integer, File>();
-        int pack200Counter = 0;
+        Map<PackFile, Integer> pack200Ids = new HashMap<PackFile, Integer>();
+        prepare(packs, storedFiles, pack200Map, pack200Ids);
 
         // Force UTF-8 encoding in order to have proper ZipEntry names.
         JarOutputStream installerJar = getInstallerJar();
         installerJar.setEncoding("utf-8");
 
+        boolean indexed = getInfo().getPackFormatVersion() == Info.PACK_FORMAT_INDEXED;
+        List<PackCompression> compressions = getPackCompressions(packs, indexed);
+
+        // Determine the packs that can be copied from the cache. These must be restored before any pack is written,
+        // as later packs may refer to their data.
+        PackCache cache = getPackCache(indexed);
+        List<String> cacheKeys = null;
+        List<PackCache.Entry> cached = null;
+        if (cache != null)
+        {
+            cacheKeys = getCacheKeys(cache, packs, compressions, storedFiles, pack200Ids);
+            cached = new ArrayList<PackCache.Entry>();
+            int hits = 0;
+            for (int i = 0; i < num; ++i)
+            {
+                PackCache.Entry entry = cache.get(cacheKeys.get(i));
+                if (entry != null)
+                {
+                    restore(packs.get(i), entry, storedFiles);
+                    ++hits;
+                }
+                cached.add(entry);
+            }
+            sendMsg("Copying " + hits + " of " + num + " Pack" + (num > 1 ? "s" : "") + " from the pack cache");
+        }
+
+        // Packs in the indexed format are written to temporary files first, as the index precedes the file data,
+        // and the stored jar entry requires the size and checksum up front.
+        int threads = Math.min(getCompilerData().getPackagerThreads(), num);
+        ExecutorService executor = null;
+        List<File> spills = null;
+        List<Future<Long>> spillers = null;
+        if (threads > 1 || indexed)
+        {
+            spills = new ArrayList<File>();
+            for (int i = 0; i < num; ++i)
+            {
+                spills.add(FileUtils.createTempFile("izpack-pack", null));
+            }
+        }
+        if (threads > 1)
+        {
+            sendMsg("Writing packs using " + threads + " threads", PackagerListener.MSG_VERBOSE);
+            executor = Executors.newFixedThreadPool(threads);
+            spillers = new ArrayList<Future<Long>>();
+            for (int i = 0; i < num; ++i)
+            {
+                if (cached != null && cached.get(i) != null)
+                {
+                    spillers.add(null);
+                }
+                else
+                {
+                    spillers.add(executor.submit(new PackSpiller(packs.get(i), spills.get(i), storedFiles,
+                                                                 pack200Ids, compressions.get(i))));
+                }
+            }
+        }
+
         // First write the serialized files and file metadata data for each pack
         // while counting bytes.
 
         int packNumber = 0;
         IXMLElement root = new XMLElementImpl("packs");
 
-        for (PackInfo packInfo : packs)
+        try
         {
-            Pack pack = packInfo.getPack();
-            pack.setFileSize(0);
+            for (PackInfo packInfo : packs)
+            {
+                Pack pack = packInfo.getPack();
 
-            // create a pack specific jar if required
-            // REFACTOR : Repare web installer
-            // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+                // create a pack specific jar if required
+                // REFACTOR : Repare web installer
+                // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
 
 //            if (packJarsSeparate) {
-            // See installer.Unpacker#getPackAsStream for the counterpart
+                // See installer.Unpacker#getPackAsStream for the counterpart
 //                String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
 //                packStream = IoHelper.getJarOutputStream(name, baseFile.getParentFile());
 //            }
 
-            sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
+                sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
 
-            // Retrieve the correct output stream
-            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
-                    RESOURCES_PATH + "packs/pack-" + pack.getName());
-            installerJar.putNextEntry(entry);
-            installerJar.flush(); // flush before we start counting
+                // Retrieve the correct output stream
+                org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
+                        RESOURCES_PATH + "packs/pack-" + pack.getName());
 
-            ByteCountingOutputStream dos = new ByteCountingOutputStream(outputStream);
-            ObjectOutputStream objOut = new ObjectOutputStream(dos);
+                OutputStream packStream = null;
+                PackCache.Entry cachedPack = (cached != null) ? cached.get(packNumber) : null;
+                if (cachedPack != null)
+                {
+                    sendMsg("Copying Pack " + packNumber + " from the pack cache", PackagerListener.MSG_VERBOSE);
+                    entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+                    entry.setSize(cachedPack.getLength());
+                    entry.setCrc(cachedPack.getChecksum());
+                    installerJar.putNextEntry(entry);
+                    installerJar.flush();
+                    packStream = installerJar;
+                    cachedPack.copyTo(packStream);
+                }
+                else if (spills == null)
+                {
+                    installerJar.putNextEntry(entry);
+                    installerJar.flush(); // flush before we start counting
+                    packStream = getPackStream();
+                    writePack(packInfo, packStream, storedFiles, pack200Ids);
+                    if (!getCompressor().useStandardCompression())
+                    {
+                        // complete the encoding of the pack
+                        packStream.close();
+                    }
+                }
+                else
+                {
+                    // wait for the pack to be written by its thread, and copy it to the installer
+                    File spill = spills.get(packNumber);
+                    long checksum;
+                    if (spillers != null)
+                    {
+                        checksum = await(spillers.get(packNumber));
+                    }
+                    else
+                    {
+                        checksum = new PackSpiller(packInfo, spill, storedFiles, pack200Ids,
+                                                   compressions.get(packNumber)).call();
+                    }
+                    if (indexed)
+                    {
+                        // store the pack uncompressed, so that the installer can seek within it
+                        entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+                        entry.setSize(spill.length());
+                        entry.setCrc(checksum);
+                        if (cache != null)
+                        {
+                            cache.put(cacheKeys.get(packNumber), spill, checksum);
+                        }
+                    }
+                    installerJar.putNextEntry(entry);
+                    installerJar.flush();
+                    // the spill is already encoded, so is copied as is
+                    packStream = indexed ? installerJar : outputStream;
+                    FileInputStream in = new FileInputStream(spill);
+                    try
+                    {
+                        IoHelper.copyStream(in, packStream);
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                    FileUtils.delete(spill);
+                }
+
+                installerJar.closeEntry();
+
+                // close pack specific jar if required
+                if (packSeparateJars())
+                {
+                    installerJar.closeAlways();
+                }
+
+                IXMLElement child = new XMLElementImpl("pack", root);
+                child.setAttribute("name", pack.getName());
+                child.setAttribute("size", Long.toString(pack.getSize()));
+                child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
+                if (pack.getLangPackId() != null)
+                {
+                    child.setAttribute("id", pack.getLangPackId());
+                }
+                root.addChild(child);
+
+                packNumber++;
+            }
+        }
+        finally
+        {
+            cleanup(executor, storedFiles, spills);
+        }
 
-            // We write the actual pack files
-            objOut.writeInt(packInfo.getPackFiles().size());
+        // Now that we know sizes, write pack metadata to primary jar.
+        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
+        PackInfoWriter packInfoWriter = new PackInfoWriter();
+        for (PackInfo packInfo : packs)
+        {
+            packInfoWriter.addPack(packInfo.getPack());
+        }
+        packInfoWriter.writeTo(installerJar);
+        installerJar.closeEntry();
 
+        // Pack200 files
+        Pack200.Packer packer = createAgressivePack200Packer();
+        for (Integer key : pack200Map.keySet())
+        {
+            File file = pack200Map.get(key);
+            installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
+            JarFile jar = new JarFile(file);
+            packer.pack(jar, installerJar);
+            jar.close();
+            installerJar.closeEntry();
+        }
+    }
+
+    /**
+     * Determines, in pack order, which files are to be written as back references, and which are Pack200 jars.
+     * <p/>
+     * Files are identified by their content, so that identical files are only stored once, regardless of their
+     * source path or pack.
+     *
+     * @param packs       the packs
+     * @param storedFiles tracks the files to store, and the files to write as back references
+     * @param pack200Map  collects the Pack200 files, keyed on Pack200 identifier
+     * @param pack200Ids  collects the Pack200 identifiers, keyed on pack file
+     * @throws IOException for any I/O error
+     */
+    private void prepare(List<PackInfo> packs, StoredFiles storedFiles, Map<Integer, File> pack200Map,
+                         Map<PackFile, Integer> pack200Ids) throws IOException
+    {
+        ContentKeys keys = new ContentKeys();
+        for (PackInfo packInfo : packs)
+        {
+            if (!packInfo.getPack().isLoose())
+            {
+                for (PackFile packFile : packInfo.getPackFiles())
+                {
+                    if (!packFile.isDirectory())
+                    {
+                        keys.add(packInfo, packFile);
+                    }
+                }
+            }
+        }
+
+        int pack200Counter = 0;
+        int references = 0;
+        long saved = 0;
+        for (PackInfo packInfo : packs)
+        {
+            boolean addFile = !packInfo.getPack().isLoose();
             for (PackFile packFile : packInfo.getPackFiles())
             {
-                boolean addFile = !pack.isLoose();
-                boolean pack200 = false;
+                // files added from archives are read directly from the archive, so are never Pack200 encoded
                 File file = packInfo.getFile(packFile);
-
-                if (file.getName().toLowerCase().endsWith(".jar") && getInfo().isPack200Compression()
+                boolean pack200 = false;
+                if (file != null && file.getName().toLowerCase().endsWith(".jar") && getInfo().isPack200Compression()
                         && isNotSignedJar(file))
                 {
                     packFile.setPack200Jar(true);
                     pack200 = true;
                 }
-
-                // use a back reference if file was in previous pack, and in
-                // same jar
-                Object[] info = storedFiles.get(file);
-                if (info != null && !packSeparateJars())
+                if (!addFile || packFile.isDirectory())
                 {
-                    packFile.setPreviousPackFileRef((String) info[0], (Long) info[1]);
-                    addFile = false;
+                    continue;
                 }
 
-                objOut.writeObject(packFile); // base info
-
-                if (addFile && !packFile.isDirectory())
+                Object key = keys.getKey(packInfo, packFile, pack200);
+                // use a back reference if the content was in a previous pack, and in same jar
+                if (!packSeparateJars() && storedFiles.isClaimed(key))
                 {
-                    long pos = dos.getByteCount(); // get the position
-
+                    storedFiles.addReference(packFile, key);
+                    ++references;
+                    saved += packFile.length();
+                }
+                else
+                {
+                    storedFiles.claim(packFile, key);
                     if (pack200)
                     {
                         /*
@@ -189,104 +422,574 @@ public class Packager extends PackagerBase
                          * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
                          */
                         pack200Map.put(pack200Counter, file);
-                        objOut.writeInt(pack200Counter);
+                        pack200Ids.put(packFile, pack200Counter);
                         pack200Counter = pack200Counter + 1;
                     }
-                    else
+                }
+            }
+        }
+        if (references > 0)
+        {
+            sendMsg("Stored " + references + " duplicate file" + (references > 1 ? "s" : "")
+                            + " as references, saving " + saved + " bytes");
+        }
+    }
+
+    /**
+     * Writes the files and file meta-data of a pack.
+     *
+     * @param packInfo     the pack to write
+     * @param outputStream the stream to write to
+     * @param storedFiles  tracks the files stored, and the files to write as back references
+     * @param pack200Ids   the Pack200 identifiers, keyed on pack file
+     * @throws IOException for any I/O error
+     */
+    private void writePack(PackInfo packInfo, OutputStream outputStream, StoredFiles storedFiles,
+                           Map<PackFile, Integer> pack200Ids) throws IOException
+    {
+        Pack pack = packInfo.getPack();
+        pack.setFileSize(0);
+
+        ByteCountingOutputStream dos = new ByteCountingOutputStream(outputStream);
+        ObjectOutputStream objOut = new ObjectOutputStream(dos);
+
+        // We write the actual pack files
+        objOut.writeInt(packInfo.getPackFiles().size());
+
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            boolean addFile = !pack.isLoose();
+
+            Object reference = storedFiles.getReference(packFile);
+            if (reference != null)
+            {
+                StoredFiles.Location location = storedFiles.getLocation(reference);
+                packFile.setPreviousPackFileRef(location.getPackName(), location.getOffset());
+                addFile = false;
+            }
+
+            objOut.writeObject(packFile); // base info
+
+            if (addFile && !packFile.isDirectory())
+            {
+                long pos = dos.getByteCount(); // get the position
+
+                Integer pack200Id = pack200Ids.get(packFile);
+                if (pack200Id != null)
+                {
+                    objOut.writeInt(pack200Id);
+                }
+                else
+                {
+                    InputStream inStream = packInfo.getInputStream(packFile);
+                    long bytesWritten = IoHelper.copyStream(inStream, objOut);
+                    inStream.close();
+                    if (bytesWritten != packFile.length())
                     {
-                        FileInputStream inStream = new FileInputStream(file);
-                        long bytesWritten = IoHelper.copyStream(inStream, objOut);
-                        inStream.close();
-                        if (bytesWritten != packFile.length())
+                        throw new IOException("File size mismatch when reading " + packInfo.getSource(packFile));
+                    }
+                }
+
+                storedFiles.stored(storedFiles.getClaim(packFile), pack.getName(), pos, packFile);
+            }
+
+            // even if not written, it counts towards pack size
+            pack.addFileSize(packFile.size());
+        }
+
+        if (pack.getFileSize() > pack.getSize())
+        {
+            pack.setSize(pack.getFileSize());
+        }
+
+        writeMetaData(packInfo, objOut);
+        objOut.flush();
+    }
+
+    /**
+     * Writes a pack in the {@link Info#PACK_FORMAT_INDEXED indexed} pack format.
+     * <p/>
+     * The data of each file is compressed independently, and its location recorded in the file header. The file
+     * headers and meta-data are written as an index, ahead of the file data, using {@link PackIndexWriter}.
+     * <p/>
+     * Files that the {@link #getCompressionPolicy() compression policy} determines to be incompressible are stored
+     * raw.
+     *
+     * @param packInfo     the pack to write
+     * @param outputStream the stream to write to
+     * @param storedFiles  tracks the files stored, and the files to write as back references
+     * @param pack200Ids   the Pack200 identifiers, keyed on pack file
+     * @param compression  the compression method for file data
+     * @throws IOException for any I/O error
+     */
+    private void writeIndexedPack(PackInfo packInfo, OutputStream outputStream, StoredFiles storedFiles,
+                                  Map<PackFile, Integer> pack200Ids, PackCompression compression)
+            throws IOException
+    {
+        Pack pack = packInfo.getPack();
+        pack.setFileSize(0);
+        int level = getCompressor().getCompressionLevel();
+
+        File data = FileUtils.createTempFile("izpack-data", null);
+        try
+        {
+            PackIndexWriter index = new PackIndexWriter();
+            ByteCountingOutputStream dataOut = new ByteCountingOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(data)));
+            try
+            {
+                for (PackFile packFile : packInfo.getPackFiles())
+                {
+                    Object reference = storedFiles.getReference(packFile);
+                    if (reference != null)
+                    {
+                        // refer to the data of the pack file that stored it
+                        StoredFiles.Location location = storedFiles.getLocation(reference);
+                        PackFile stored = location.getFile();
+                        packFile.setEntry(stored.getCompression(), stored.getEntryOffset(), stored.getEntryLength(),
+                                          stored.getChecksum());
+                        packFile.setPreviousPackFileRef(location.getPackName(), location.getOffset());
+                    }
+                    else if (!pack.isLoose() && !packFile.isDirectory())
+                    {
+                        long offset = dataOut.getByteCount();
+                        Integer pack200Id = pack200Ids.get(packFile);
+                        PackCompression method = (pack200Id != null) ? PackCompression.STORE
+                                : getCompressionPolicy().getCompression(packInfo, packFile, compression);
+                        CRC32 checksum = new CRC32();
+                        OutputStream entry = new CheckedOutputStream(
+                                IndexedPack.getOutputStream(method, dataOut, level), checksum);
+                        try
                         {
-                            throw new IOException("File size mismatch when reading " + file);
+                            if (pack200Id != null)
+                            {
+                                DataOutputStream entryData = new DataOutputStream(entry);
+                                entryData.writeInt(pack200Id);
+                                entryData.flush();
+                            }
+                            else
+                            {
+                                InputStream inStream = packInfo.getInputStream(packFile);
+                                long bytesWritten;
+                                try
+                                {
+                                    bytesWritten = IoHelper.copyStream(inStream, entry);
+                                }
+                                finally
+                                {
+                                    inStream.close();
+                                }
+                                if (bytesWritten != packFile.length())
+                                {
+                                    throw new IOException("File size mismatch when reading "
+                                                                  + packInfo.getSource(packFile));
+                                }
+                            }
                         }
+                        finally
+                        {
+                            entry.close();
+                        }
+                        packFile.setEntry(method, offset, dataOut.getByteCount() - offset, checksum.getValue());
+                        storedFiles.stored(storedFiles.getClaim(packFile), pack.getName(), offset, packFile);
                     }
+                    index.addFile(packFile);
 
-                    storedFiles.put(file, new Object[]{pack.getName(), pos}); // TODO - see IZPACK-799
+                    // even if not written, it counts towards pack size
+                    pack.addFileSize(packFile.size());
                 }
 
-                // even if not written, it counts towards pack size
-                pack.addFileSize(packFile.size());
+                if (pack.getFileSize() > pack.getSize())
+                {
+                    pack.setSize(pack.getFileSize());
+                }
+
+                for (ParsableFile parsableFile : packInfo.getParsables())
+                {
+                    index.addParsable(parsableFile);
+                }
+                for (ExecutableFile executableFile : packInfo.getExecutables())
+                {
+                    index.addExecutable(executableFile);
+                }
+                for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+                {
+                    index.addUpdateCheck(updateCheck);
+                }
+            }
+            finally
+            {
+                dataOut.close();
             }
 
-            if (pack.getFileSize() > pack.getSize())
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            index.writeTo(indexBytes);
+            IndexedPack.writeHeader(outputStream, indexBytes.size());
+            indexBytes.writeTo(outputStream);
+            FileInputStream in = new FileInputStream(data);
+            try
+            {
+                IoHelper.copyStream(in, outputStream);
+            }
+            finally
             {
-                pack.setSize(pack.getFileSize());
+                in.close();
             }
+            outputStream.flush();
+        }
+        finally
+        {
+            FileUtils.delete(data);
+        }
+    }
+
+    /**
+     * Writes the parsable, executable and update check meta-data of a pack.
+     *
+     * @param packInfo the pack
+     * @param objOut   the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeMetaData(PackInfo packInfo, ObjectOutputStream objOut) throws IOException
+    {
+        // Write out information about parsable files
+        objOut.writeInt(packInfo.getParsables().size());
+
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            objOut.writeObject(parsableFile);
+        }
+
+        // Write out information about executable files
+        objOut.writeInt(packInfo.getExecutables().size());
+        for (ExecutableFile executableFile : packInfo.getExecutables())
+        {
+            objOut.writeObject(executableFile);
+        }
+
+        // Write out information about updatecheck files
+        objOut.writeInt(packInfo.getUpdateChecks().size());
+        for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+        {
+            objOut.writeObject(updateCheck);
+        }
+    }
+
+    /**
+     * Returns the pack cache, if one is configured.
+     *
+     * @param indexed if <tt>true</tt>, the packs are written in the indexed pack format
+     * @return the pack cache, or <tt>null</tt> if packs aren't cached
+     * @throws IOException if the cache directory cannot be created
+     */
+    private PackCache getPackCache(boolean indexed) throws IOException
+    {
+        String dir = getCompilerData().getPackCacheDir();
+        if (dir == null)
+        {
+            return null;
+        }
+        if (!indexed)
+        {
+            sendMsg("The pack cache is only supported by the indexed pack format. Ignoring",
+                    PackagerListener.MSG_WARN);
+            return null;
+        }
+        return new PackCache(new File(dir));
+    }
 
-            // Write out information about parsable files
-            objOut.writeInt(packInfo.getParsables().size());
+    /**
+     * Returns the cache key of each pack.
+     * <p/>
+     * The key of a pack includes the keys of the packs it refers to, so a pack is written again if any data it
+     * refers to moves.
+     *
+     * @param cache        the pack cache
+     * @param packs        the packs
+     * @param compressions the compression method for the file data of each pack
+     * @param storedFiles  the files to store, and the files to write as back references
+     * @param pack200Ids   the Pack200 identifiers, keyed on pack file
+     * @return the cache keys, in pack order
+     * @throws IOException if a source file cannot be read
+     */
+    private List<String> getCacheKeys(PackCache cache, List<PackInfo> packs, List<PackCompression> compressions,
+                                      StoredFiles storedFiles, Map<PackFile, Integer> pack200Ids) throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        Map<Object, String> owners = new HashMap<Object, String>();
+        CompressionPolicy policy = getCompressionPolicy();
+        for (int i = 0; i < packs.size(); ++i)
+        {
+            PackInfo packInfo = packs.get(i);
+            Pack pack = packInfo.getPack();
+            PackCache.Key key = cache.createKey();
+            DataOutputStream out = key.getStream();
+            out.writeInt(IndexedPack.VERSION);
+            out.writeUTF(compressions.get(i).getAttribute());
+            out.writeInt(getCompressor().getCompressionLevel());
+            out.writeBoolean(policy.isSample());
+            out.writeUTF(policy.getRawExtensions().toString());
+            out.writeUTF(pack.getName());
+            out.writeBoolean(pack.isLoose());
 
+            // the file headers and meta-data, as they would be written if no file data was stored
+            PackIndexWriter index = new PackIndexWriter();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                index.addFile(packFile);
+            }
             for (ParsableFile parsableFile : packInfo.getParsables())
             {
-                objOut.writeObject(parsableFile);
+                index.addParsable(parsableFile);
             }
-
-            // Write out information about executable files
-            objOut.writeInt(packInfo.getExecutables().size());
             for (ExecutableFile executableFile : packInfo.getExecutables())
             {
-                objOut.writeObject(executableFile);
+                index.addExecutable(executableFile);
             }
-
-            // Write out information about updatecheck files
-            objOut.writeInt(packInfo.getUpdateChecks().size());
             for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
             {
-                objOut.writeObject(updateCheck);
+                index.addUpdateCheck(updateCheck);
             }
+            index.writeTo(out);
 
-            // Cleanup
-            objOut.flush();
-            if (!getCompressor().useStandardCompression())
+            // the file data
+            List<Object> claims = new ArrayList<Object>();
+            for (PackFile packFile : packInfo.getPackFiles())
             {
-                outputStream.close();
+                Object reference = storedFiles.getReference(packFile);
+                Object claim = storedFiles.getClaim(packFile);
+                if (reference != null)
+                {
+                    out.writeUTF(owners.get(reference));
+                }
+                else if (claim != null)
+                {
+                    claims.add(claim);
+                    Integer pack200Id = pack200Ids.get(packFile);
+                    if (pack200Id != null)
+                    {
+                        out.writeInt(pack200Id);
+                    }
+                    else
+                    {
+                        key.addContent(packInfo, packFile);
+                    }
+                }
+                else
+                {
+                    out.writeByte(0);
+                }
             }
 
-            installerJar.closeEntry();
+            String value = key.getValue();
+            for (Object claim : claims)
+            {
+                owners.put(claim, value);
+            }
+            result.add(value);
+        }
+        return result;
+    }
 
-            // close pack specific jar if required
-            if (packSeparateJars())
+    /**
+     * Restores the state of a pack copied from the cache, as if it had been written.
+     * <p/>
+     * The location of each file stored by the pack is read from the cached index, so that other packs can refer to
+     * it.
+     *
+     * @param packInfo    the pack
+     * @param entry       the cached pack
+     * @param storedFiles tracks the files stored
+     * @throws IOException if the cached pack is invalid, or for any I/O error
+     */
+    private void restore(PackInfo packInfo, PackCache.Entry entry, StoredFiles storedFiles) throws IOException
+    {
+        Pack pack = packInfo.getPack();
+        pack.setFileSize(0);
+        InputStream in = entry.getInputStream();
+        try
+        {
+            IndexedPack.readHeader(in);
+            PackIndexReader index = new PackIndexReader(in);
+            if (index.getFileCount() != packInfo.getPackFiles().size())
             {
-                installerJar.closeAlways();
+                throw new IOException("Cached pack '" + pack.getName() + "' doesn't match its definition");
             }
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                PackFile cachedFile = index.readFile();
+                if (cachedFile.isIndexed())
+                {
+                    packFile.setEntry(cachedFile.getCompression(), cachedFile.getEntryOffset(),
+                                      cachedFile.getEntryLength(), cachedFile.getChecksum());
+                }
+                if (cachedFile.isBackReference())
+                {
+                    packFile.setPreviousPackFileRef(cachedFile.previousPackId, cachedFile.offsetInPreviousPack);
+                }
+                else
+                {
+                    Object claim = storedFiles.getClaim(packFile);
+                    if (claim != null)
+                    {
+                        storedFiles.stored(claim, pack.getName(), cachedFile.getEntryOffset(), packFile);
+                    }
+                }
+                pack.addFileSize(packFile.size());
+            }
+        }
+        finally
+        {
+            in.close();
+        }
 
-            IXMLElement child = new XMLElementImpl("pack", root);
-            child.setAttribute("name", pack.getName());
-            child.setAttribute("size", Long.toString(pack.getSize()));
-            child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
-            if (pack.getLangPackId() != null)
+        if (pack.getFileSize() > pack.getSize())
+        {
+            pack.setSize(pack.getFileSize());
+        }
+    }
+
+    /**
+     * Returns the compression method for the file data of each pack.
+     * <p/>
+     * In the indexed pack format, a pack may override the compression method determined by the pack compressor.
+     * The stream pack format doesn't support this, as the installer decodes all packs the same way.
+     *
+     * @param packs   the packs
+     * @param indexed if <tt>true</tt>, the packs are written in the indexed pack format
+     * @return the compression methods, in pack order. These are <tt>null</tt> for the stream pack format
+     */
+    private List<PackCompression> getPackCompressions(List<PackInfo> packs, boolean indexed)
+    {
+        List<PackCompression> result = new ArrayList<PackCompression>();
+        PackCompression defaultCompression = indexed ? getPackCompression() : null;
+        for (PackInfo packInfo : packs)
+        {
+            PackCompression compression = defaultCompression;
+            if (packInfo.getCompression() != null)
             {
-                child.setAttribute("id", pack.getLangPackId());
+                if (indexed)
+                {
+                    compression = packInfo.getCompression();
+                }
+                else
+                {
+                    sendMsg("Pack '" + packInfo.getPack().getName() + "' specifies a compression method, which is "
+                                    + "only supported by the indexed pack format. Ignoring",
+                            PackagerListener.MSG_WARN);
+                }
             }
-            root.addChild(child);
+            result.add(compression);
+        }
+        return result;
+    }
 
-            packNumber++;
+    /**
+     * Returns the compression method for file data in the indexed pack format, based on the pack compressor.
+     *
+     * @return the compression method
+     */
+    private PackCompression getPackCompression()
+    {
+        PackCompressor compressor = getCompressor();
+        PackCompression result;
+        if (compressor.useStandardCompression())
+        {
+            result = PackCompression.DEFLATE;
+        }
+        else if (compressor instanceof RawPackCompressor)
+        {
+            result = PackCompression.STORE;
+        }
+        else if (compressor instanceof XZPackCompressor)
+        {
+            result = PackCompression.XZ;
         }
+        else
+        {
+            sendMsg("Compression format '" + compressor.getCompressionFormatSymbols()[0]
+                            + "' is not supported by the indexed pack format. Using deflate",
+                    PackagerListener.MSG_WARN);
+            result = PackCompression.DEFLATE;
+        }
+        return result;
+    }
 
-        // Now that we know sizes, write pack metadata to primary jar.
-        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
-        ObjectOutputStream out = new ObjectOutputStream(installerJar);
-        out.writeInt(packs.size());
+    /**
+     * Returns a stream to write a pack in the stream pack format to.
+     * <p/>
+     * If the pack compressor doesn't use the standard compression, a new encoding stream is returned for each pack,
+     * so that the installer can decode each pack independently. It must be closed to complete the encoding.
+     *
+     * @return the stream to write the pack to
+     * @throws IOException if the encoding stream cannot be created
+     */
+    private OutputStream getPackStream() throws IOException
+    {
+        PackCompressor compressor = getCompressor();
+        return compressor.useStandardCompression() ? outputStream : compressor.getOutputStream(outputStream);
+    }
 
-        for (PackInfo packInfo : packs)
+    /**
+     * Waits for a pack to be written by its thread.
+     *
+     * @param spiller the pack writing task
+     * @return the CRC-32 checksum of the written pack
+     * @throws IOException if the pack could not be written
+     */
+    private long await(Future<Long> spiller) throws IOException
+    {
+        try
         {
-            out.writeObject(packInfo.getPack());
+            return spiller.get();
         }
-        out.flush();
-        installerJar.closeEntry();
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted waiting for pack to be written");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to write pack", cause);
+        }
+    }
 
-        // Pack200 files
-        Pack200.Packer packer = createAgressivePack200Packer();
-        for (Integer key : pack200Map.keySet())
+    /**
+     * Stops the pack writing threads, and removes any temporary files that weren't copied to the installer.
+     *
+     * @param executor    the pack writing threads. May be <tt>null</tt>
+     * @param storedFiles the stored files
+     * @param spills      the temporary files. May be <tt>null</tt>
+     */
+    private void cleanup(ExecutorService executor, StoredFiles storedFiles, List<File> spills)
+    {
+        if (executor != null)
         {
-            File file = pack200Map.get(key);
-            installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
-            JarFile jar = new JarFile(file);
-            packer.pack(jar, installerJar);
-            jar.close();
-            installerJar.closeEntry();
+            // release any thread waiting on a pack that will never be written
+            storedFiles.abort();
+            executor.shutdownNow();
+            try
+            {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException ignore)
+            {
+                // do nothing
+            }
+        }
+        if (spills != null)
+        {
+            for (File spill : spills)
+            {
+                if (spill.exists())
+                {
+                    FileUtils.delete(spill);
+                }
+            }
         }
     }
 
@@ -337,4 +1040,100 @@ public class Packager extends PackagerBase
         // TODO Auto-generated method stub
 
     }
+
+    /**
+     * Writes a pack to a temporary file.
+     * <p/>
+     * Packs in the stream pack format are encoded with the pack compressor as they are written, so that the encoding
+     * is performed on the writing thread.
+     */
+    private class PackSpiller implements Callable<Long>
+    {
+
+        /**
+         * The pack to write.
+         */
+        private final PackInfo packInfo;
+
+        /**
+         * The file to write to.
+         */
+        private final File spill;
+
+        /**
+         * The stored files.
+         */
+        private final StoredFiles storedFiles;
+
+        /**
+         * The Pack200 identifiers, keyed on pack file.
+         */
+        private final Map<PackFile, Integer> pack200Ids;
+
+        /**
+         * The compression method for file data, or <tt>null</tt> to write the pack as a single stream.
+         */
+        private final PackCompression compression;
+
+        /**
+         * Constructs a <tt>PackSpiller</tt>.
+         *
+         * @param packInfo    the pack to write
+         * @param spill       the file to write to
+         * @param storedFiles the stored files
+         * @param pack200Ids  the Pack200 identifiers, keyed on pack file
+         * @param compression the compression method for file data, or <tt>null</tt> to write the pack as a single
+         *                    stream
+         */
+        public PackSpiller(PackInfo packInfo, File spill, StoredFiles storedFiles, Map<PackFile, Integer> pack200Ids,
+                           PackCompression compression)
+        {
+            this.packInfo = packInfo;
+            this.spill = spill;
+            this.storedFiles = storedFiles;
+            this.pack200Ids = pack200Ids;
+            this.compression = compression;
+        }
+
+        /**
+         * Writes the pack.
+         *
+         * @return the CRC-32 checksum of the written pack
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public Long call() throws IOException
+        {
+            CRC32 checksum = new CRC32();
+            OutputStream out = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(spill)),
+                                                       checksum);
+            try
+            {
+                if (compression != null)
+                {
+                    writeIndexedPack(packInfo, out, storedFiles, pack200Ids, compression);
+                }
+                else
+                {
+                    PackCompressor compressor = getCompressor();
+                    OutputStream packStream = compressor.useStandardCompression()
+                            ? out : compressor.getOutputStream(out);
+                    writePack(packInfo, packStream, storedFiles, pack200Ids);
+                    // complete the encoding of the pack
+                    packStream.close();
+                }
+            }
+            catch (IOException exception)
+            {
+                // don't leave other packs waiting on data from this one
+                storedFiles.abort();
+                throw exception;
+            }
+            finally
+            {
+                out.close();
+            }
+            return checksum.getValue();
+        }
+    }
 }
@@ -45,13 +45,16 @@ import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.GUIPrefs;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.InstallerRequirement;
+import com.izforge.izpack.api.data.PackCompression;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.compressor.XZPackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.PanelMerge;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.compiler.packager.CompressionPolicy;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.data.CustomData;
@@ -137,6 +140,11 @@ public abstract class PackagerBase implements IPackager
      */
     private File splashScreenImage;
 
+    /**
+     * Determines which files are stored raw in the indexed pack format.
+     */
+    private CompressionPolicy compressionPolicy = new CompressionPolicy();
+
     /**
      * The ordered panels.
      */
@@ -340,6 +348,17 @@ public abstract class PackagerBase implements IPackager
         splashScreenImage = file;
     }
 
+    /**
+     * Sets the policy that determines which files are stored raw in the indexed pack format.
+     *
+     * @param policy the compression policy
+     */
+    @Override
+    public void setCompressionPolicy(CompressionPolicy policy)
+    {
+        compressionPolicy = policy;
+    }
+
     /* (non-Javadoc)
     * @see com.izforge.izpack.compiler.packager.IPackager#setInfo(com.izforge.izpack.Info)
     */
@@ -401,7 +420,18 @@ public abstract class PackagerBase implements IPackager
 
         sendStart();
 
-        writeInstaller();
+        try
+        {
+            writeInstaller();
+        }
+        finally
+        {
+            // release the archives that pack files were read from
+            for (PackInfo packInfo : packsList)
+            {
+                packInfo.closeArchives();
+            }
+        }
 
         // Finish up. closeAlways is a hack for pack compressions other than
         // default. Some of it (e.g. BZip2) closes the slave of it also.
@@ -496,6 +526,18 @@ public abstract class PackagerBase implements IPackager
         mergeManager.addResourceToMerge("com/coi/tools/");
         mergeManager.addResourceToMerge("org/apache/tools/zip/");
         mergeManager.addResourceToMerge("org/apache/commons/io/FilenameUtils.class");
+        if (!(compressor instanceof XZPackCompressor))
+        {
+            for (PackInfo pack : packsList)
+            {
+                if (pack.getCompression() == PackCompression.XZ)
+                {
+                    // the installer needs the xz decoder for the pack
+                    mergeManager.addResourceToMerge(XZPackCompressor.XZ_PACKAGE);
+                    break;
+                }
+            }
+        }
         mergeManager.merge(installerJar);
     }
 
@@ -587,6 +629,26 @@ public abstract class PackagerBase implements IPackager
         return installerJar;
     }
 
+    /**
+     * Returns the compiler data.
+     *
+     * @return the compiler data
+     */
+    protected CompilerData getCompilerData()
+    {
+        return compilerData;
+    }
+
+    /**
+     * Returns the compression policy.
+     *
+     * @return the compression policy
+     */
+    protected CompressionPolicy getCompressionPolicy()
+    {
+        return compressionPolicy;
+    }
+
     /**
      * Returns the pack compressor.
      *
@@ -0,0 +1,243 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.izforge.izpack.api.data.PackFile;
+
+
+/**
+ * Tracks the location of pack file data written to the installer, so that subsequent copies of the same data can
+ * be written as back references.
+ * <p/>
+ * The first occurrence of each key is {@link #claim claimed} before any pack is written, in pack order. This
+ * allows packs to be written concurrently, while producing exactly the same back references as a sequential run.
+ * A pack that refers to data in another pack {@link #getLocation waits} until that data has been written.
+ */
+class StoredFiles
+{
+
+    /**
+     * The keys that have been claimed.
+     */
+    private final Set<Object> claimed = new HashSet<Object>();
+
+    /**
+     * The pack files responsible for writing data, and the key of the data they write.
+     */
+    private final Map<PackFile, Object> owners = new HashMap<PackFile, Object>();
+
+    /**
+     * The pack files that must be written as back references, and the key of the data they refer to.
+     */
+    private final Map<PackFile, Object> references = new HashMap<PackFile, Object>();
+
+    /**
+     * The location of stored data, keyed on data key.
+     */
+    private final Map<Object, Location> locations = new HashMap<Object, Location>();
+
+    /**
+     * Determines if writing has been aborted.
+     */
+    private boolean aborted;
+
+
+    /**
+     * Determines if the data identified by a key has been claimed.
+     *
+     * @param key the data key
+     * @return <tt>true</tt> if the data has been claimed
+     */
+    public synchronized boolean isClaimed(Object key)
+    {
+        return claimed.contains(key);
+    }
+
+    /**
+     * Claims the data identified by a key. The pack file that claims the data is responsible for writing it.
+     *
+     * @param file the pack file
+     * @param key  the data key
+     */
+    public synchronized void claim(PackFile file, Object key)
+    {
+        claimed.add(key);
+        owners.put(file, key);
+    }
+
+    /**
+     * Returns the key of the data that a pack file is responsible for writing.
+     *
+     * @param file the pack file
+     * @return the data key, or <tt>null</tt> if the pack file hasn't claimed any data
+     */
+    public synchronized Object getClaim(PackFile file)
+    {
+        return owners.get(file);
+    }
+
+    /**
+     * Registers a pack file as a back reference to claimed data.
+     *
+     * @param file the pack file
+     * @param key  the data key
+     */
+    public synchronized void addReference(PackFile file, Object key)
+    {
+        references.put(file, key);
+    }
+
+    /**
+     * Returns the key of the data that a pack file refers to.
+     *
+     * @param file the pack file
+     * @return the data key, or <tt>null</tt> if the pack file is not a back reference
+     */
+    public synchronized Object getReference(PackFile file)
+    {
+        return references.get(file);
+    }
+
+    /**
+     * Records the location of stored data.
+     *
+     * @param key      the data key
+     * @param packName the name of the pack the data was written to
+     * @param offset   the offset of the data in the pack stream
+     * @param file     the pack file that the data was written for
+     */
+    public synchronized void stored(Object key, String packName, long offset, PackFile file)
+    {
+        locations.put(key, new Location(packName, offset, file));
+        notifyAll();
+    }
+
+    /**
+     * Returns the location of stored data, waiting for it to be written if necessary.
+     *
+     * @param key the data key
+     * @return the location of the data
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     * @throws IOException            if writing has been aborted
+     */
+    public synchronized Location getLocation(Object key) throws IOException
+    {
+        Location result;
+        while ((result = locations.get(key)) == null)
+        {
+            if (aborted)
+            {
+                throw new IOException("Writing packs aborted");
+            }
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException exception)
+            {
+                throw new InterruptedIOException("Interrupted waiting for pack data to be written");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aborts writing, releasing any threads waiting on a location.
+     */
+    public synchronized void abort()
+    {
+        aborted = true;
+        notifyAll();
+    }
+
+    /**
+     * The location of stored data.
+     */
+    static class Location
+    {
+
+        /**
+         * The name of the pack the data was written to.
+         */
+        private final String packName;
+
+        /**
+         * The offset of the data in the pack stream.
+         */
+        private final long offset;
+
+        /**
+         * The pack file that the data was written for.
+         */
+        private final PackFile file;
+
+
+        /**
+         * Constructs a <tt>Location</tt>.
+         *
+         * @param packName the name of the pack the data was written to
+         * @param offset   the offset of the data in the pack stream
+         * @param file     the pack file that the data was written for
+         */
+        public Location(String packName, long offset, PackFile file)
+        {
+            this.packName = packName;
+            this.offset = offset;
+            this.file = file;
+        }
+
+        /**
+         * Returns the name of the pack the data was written to.
+         *
+         * @return the pack name
+         */
+        public String getPackName()
+        {
+            return packName;
+        }
+
+        /**
+         * Returns the offset of the data in the pack stream.
+         *
+         * @return the offset
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * Returns the pack file that the data was written for.
+         *
+         * @return the pack file
+         */
+        public PackFile getFile()
+        {
+            return file;
+        }
+    }
+}
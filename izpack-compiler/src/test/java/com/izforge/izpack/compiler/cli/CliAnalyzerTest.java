@@ -81,4 +81,24 @@ public class CliAnalyzerTest
         assertThat(data.getOutput(), Is.is("graou.jar"));
     }
 
+    @Test
+    public void threadsShouldBeParsed() throws Exception
+    {
+        CompilerData data = analyzer.parseArgs(new String[]{"myInstall.xml"});
+        assertThat(data.getPackagerThreads(), Is.is(1));
+
+        data = analyzer.parseArgs(new String[]{"myInstall.xml", "-t 4"});
+        assertThat(data.getPackagerThreads(), Is.is(4));
+    }
+
+    @Test
+    public void cacheDirShouldBeParsed() throws Exception
+    {
+        CompilerData data = analyzer.parseArgs(new String[]{"myInstall.xml"});
+        assertThat(data.getPackCacheDir(), Is.is((String) null));
+
+        data = analyzer.parseArgs(new String[]{"myInstall.xml", "-d build/cache"});
+        assertThat(data.getPackCacheDir(), Is.is("build/cache"));
+    }
+
 }
@@ -0,0 +1,135 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.PackCompression;
+
+
+/**
+ * Tests the {@link CompressionPolicy} class.
+ */
+public class CompressionPolicyTest
+{
+
+    /**
+     * Verifies that files with a raw extension are stored, regardless of their content.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRawExtension() throws IOException
+    {
+        File text = createFile(".ZIP", getText());
+        try
+        {
+            CompressionPolicy policy = new CompressionPolicy();
+            assertEquals(PackCompression.STORE, policy.getCompression(text, PackCompression.DEFLATE));
+
+            policy = new CompressionPolicy(Arrays.asList("txt"), false);
+            assertEquals(PackCompression.XZ, policy.getCompression(text, PackCompression.XZ));
+        }
+        finally
+        {
+            assertTrue(text.delete());
+        }
+    }
+
+    /**
+     * Verifies that sampling detects incompressible content.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSample() throws IOException
+    {
+        byte[] random = new byte[100000];
+        new Random(42).nextBytes(random);
+        File data = createFile(".dat", random);
+        File text = createFile(".dat", getText());
+        File empty = createFile(".dat", new byte[0]);
+        try
+        {
+            CompressionPolicy policy = new CompressionPolicy(Collections.<String>emptyList(), true);
+            assertEquals(PackCompression.STORE, policy.getCompression(data, PackCompression.DEFLATE));
+            assertEquals(PackCompression.DEFLATE, policy.getCompression(text, PackCompression.DEFLATE));
+            assertEquals(PackCompression.DEFLATE, policy.getCompression(empty, PackCompression.DEFLATE));
+
+            // without sampling, the pack compression is used
+            policy = new CompressionPolicy(Collections.<String>emptyList(), false);
+            assertEquals(PackCompression.DEFLATE, policy.getCompression(data, PackCompression.DEFLATE));
+        }
+        finally
+        {
+            assertTrue(data.delete());
+            assertTrue(text.delete());
+            assertTrue(empty.delete());
+        }
+    }
+
+    /**
+     * Returns compressible text.
+     *
+     * @return the text, as bytes
+     */
+    private byte[] getText()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; ++i)
+        {
+            builder.append("line ").append(i).append(" of some compressible text\n");
+        }
+        return builder.toString().getBytes();
+    }
+
+    /**
+     * Creates a temporary file.
+     *
+     * @param suffix  the file suffix
+     * @param content the file content
+     * @return a new file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(String suffix, byte[] content) throws IOException
+    {
+        File file = File.createTempFile("policy", suffix);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content);
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -34,7 +34,6 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.io.PrintStream;
 import java.net.URISyntaxException;
 import java.util.jar.JarEntry;
@@ -50,6 +49,7 @@ import com.izforge.izpack.api.data.GUIPrefs;
 import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.io.PackInfoReader;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
 
@@ -182,15 +182,13 @@ public abstract class AbstractPackagerTest
 
         InputStream jarEntry = getJarEntry("resources/packs.info", jar);
 
-        ObjectInputStream packStream = new ObjectInputStream(jarEntry);
-        int packs = packStream.readInt();
-        assertEquals(1, packs);
-        Pack pack = (Pack) packStream.readObject();
+        PackInfoReader reader = new PackInfoReader(jarEntry);
+        assertEquals(1, reader.getPackCount());
+        Pack pack = reader.readPack();
         assertEquals(expectedSize, pack.getSize());
         assertEquals(expectedFileSize, fileSize);
 
         jarEntry.close();
-        packStream.close();
         assertTrue(jar.delete());
     }
 
@@ -19,18 +19,57 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.compiler.compressor.BZip2PackCompressor;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.io.IndexedPack;
+import com.izforge.izpack.core.io.LimitedInputStream;
+import com.izforge.izpack.core.io.PackIndexReader;
+import com.izforge.izpack.data.Archive;
+import com.izforge.izpack.data.ArchiveEntry;
+import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.IoHelper;
 
 /**
  * Tests the {@link Packager}.
@@ -47,16 +86,532 @@ public class PackagerTest extends AbstractPackagerTest
      */
     @Override
     protected PackagerBase createPackager(JarOutputStream jar, MergeManager mergeManager)
+    {
+        return createPackager(jar, mergeManager, new CompilerData("", "", "", true));
+    }
+
+    /**
+     * Verifies that writing packs using multiple threads produces the same packs as a single thread, whether or not
+     * the packs are encoded by a pack compressor, including back references to files shared between packs.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testMultipleThreads() throws Exception
+    {
+        File shared = createFile(20000);
+        File file1 = createFile(5000);
+        File file2 = createFile(100000);
+        File file3 = createFile(10);
+        File[][] packs = {{file1, shared}, {shared, file2}, {file3, shared, file1}};
+
+        assertEntriesEquals(writePacks(1, createPacks(packs)), writePacks(3, createPacks(packs)));
+
+        // packs encoded by the pack compressor are encoded on the writing threads
+        PackCompressor compressor = new BZip2PackCompressor(Mockito.mock(MergeManager.class));
+        assertEntriesEquals(writePacks(1, createPacks(packs), new Info(), compressor),
+                            writePacks(3, createPacks(packs), new Info(), compressor));
+
+        for (File file : Arrays.asList(shared, file1, file2, file3))
+        {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Verifies that files with the same content are only stored once, regardless of their path.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDuplicateContent() throws Exception
+    {
+        File file1 = createFile(5000);
+        File file2 = createFile(5000);
+        File file3 = createFile(5000);
+        FileOutputStream out = new FileOutputStream(file3);
+        out.write(new byte[5000]);
+        out.close();
+
+        List<PackInfo> packs = createPacks(new File[][]{{file1}, {file2, file3}});
+        writePacks(1, packs);
+
+        List<PackFile> files = new ArrayList<PackFile>(packs.get(1).getPackFiles());
+        PackFile stored = packs.get(0).getPackFiles().iterator().next();
+        PackFile duplicate = files.get(0);
+        PackFile different = files.get(1);
+        assertFalse(stored.isBackReference());
+        assertTrue(duplicate.isBackReference());
+        assertEquals("pack0", duplicate.previousPackId);
+        assertFalse(different.isBackReference());
+
+        for (File file : Arrays.asList(file1, file2, file3))
+        {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Verifies that packs can be written in the indexed pack format, and that each file can be read independently
+     * using the index.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testIndexedFormat() throws Exception
+    {
+        File file1 = createFile(20000);
+        File file2 = createFile(100);
+        Info info = new Info();
+        info.setPackFormatVersion(Info.PACK_FORMAT_INDEXED);
+
+        TreeMap<String, byte[]> entries = writePacks(2, createPacks(new File[][]{{file1, file2}, {file2}}), info);
+
+        byte[] pack0 = entries.get("resources/packs/pack-pack0");
+        List<PackFile> files0 = readIndex(pack0);
+        assertEquals(2, files0.size());
+        for (PackFile file : files0)
+        {
+            assertTrue(file.isIndexed());
+            assertFalse(file.isBackReference());
+        }
+        assertEquals(PackCompression.DEFLATE, files0.get(0).getCompression());
+        assertTrue(files0.get(0).getEntryLength() < file1.length());
+
+        // the bytes of the small file are all distinct, so it doesn't compress, and is stored raw
+        assertEquals(PackCompression.STORE, files0.get(1).getCompression());
+        assertEquals(file2.length(), files0.get(1).getEntryLength());
+        assertArrayEquals(read(file1), readEntry(pack0, files0.get(0)));
+        assertArrayEquals(read(file2), readEntry(pack0, files0.get(1)));
+
+        List<PackFile> files1 = readIndex(entries.get("resources/packs/pack-pack1"));
+        assertEquals(1, files1.size());
+        PackFile reference = files1.get(0);
+        assertTrue(reference.isBackReference());
+        assertEquals("pack0", reference.previousPackId);
+        assertEquals(files0.get(1).getEntryOffset(), reference.getEntryOffset());
+        assertArrayEquals(read(file2), readEntry(pack0, reference));
+
+        assertTrue(file1.delete());
+        assertTrue(file2.delete());
+    }
+
+    /**
+     * Verifies that packs in the indexed format can override the compression method of the pack compressor.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPackCompression() throws Exception
+    {
+        File file1 = createFile(20000);
+        File file2 = createFile(5000);
+        List<PackInfo> packs = createPacks(new File[][]{{file1}, {file2}});
+        packs.get(0).setCompression(PackCompression.STORE);
+        packs.get(1).setCompression(PackCompression.XZ);
+        Info info = new Info();
+        info.setPackFormatVersion(Info.PACK_FORMAT_INDEXED);
+
+        TreeMap<String, byte[]> entries = writePacks(1, packs, info);
+
+        byte[] pack0 = entries.get("resources/packs/pack-pack0");
+        PackFile stored = readIndex(pack0).get(0);
+        assertEquals(PackCompression.STORE, stored.getCompression());
+        assertEquals(file1.length(), stored.getEntryLength());
+        assertArrayEquals(read(file1), readEntry(pack0, stored));
+
+        byte[] pack1 = entries.get("resources/packs/pack-pack1");
+        PackFile xz = readIndex(pack1).get(0);
+        assertEquals(PackCompression.XZ, xz.getCompression());
+        assertTrue(xz.getEntryLength() < file2.length());
+        assertArrayEquals(read(file2), readEntry(pack1, xz));
+
+        assertTrue(file1.delete());
+        assertTrue(file2.delete());
+    }
+
+    /**
+     * Verifies that each pack in the stream format is encoded independently by a pack compressor that doesn't use
+     * standard compression, so that the installer can decode any pack.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testEncodedPacks() throws Exception
+    {
+        File file1 = createFile(20000);
+        File file2 = createFile(5000);
+        List<PackInfo> packs = createPacks(new File[][]{{file1}, {file2}});
+        PackCompressor compressor = new BZip2PackCompressor(Mockito.mock(MergeManager.class));
+
+        TreeMap<String, byte[]> entries = writePacks(1, packs, new Info(), compressor);
+
+        File[] files = {file1, file2};
+        for (int i = 0; i < files.length; ++i)
+        {
+            InputStream in = new CBZip2InputStream(
+                    new ByteArrayInputStream(entries.get("resources/packs/pack-pack" + i)));
+            ObjectInputStream objIn = new ObjectInputStream(in);
+            assertEquals(1, objIn.readInt());
+            PackFile file = (PackFile) objIn.readObject();
+            assertEquals(files[i].length(), file.length());
+            byte[] data = new byte[(int) file.length()];
+            objIn.readFully(data);
+            assertArrayEquals(read(files[i]), data);
+            objIn.close();
+        }
+
+        assertTrue(file1.delete());
+        assertTrue(file2.delete());
+    }
+
+    /**
+     * Verifies that packs copied from the pack cache are identical to those written, and that only changed packs
+     * are written again.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPackCache() throws Exception
+    {
+        File file1 = createFile(20000);
+        File file2 = createFile(100);
+        File file3 = createFile(5000);
+        File cache = File.createTempFile("cache", null);
+        assertTrue(cache.delete());
+        Info info = new Info();
+        info.setPackFormatVersion(Info.PACK_FORMAT_INDEXED);
+        File[][] files = {{file1, file2}, {file2, file3}};
+        PackCompressor compressor = new DefaultPackCompressor();
+
+        TreeMap<String, byte[]> expected = writePacks(1, createPacks(files), info);
+        assertEntriesEquals(expected, writePacks(2, createPacks(files), info, compressor, cache));
+        assertEquals(2, cache.listFiles().length);
+
+        // nothing changed, so both packs are copied from the cache
+        assertEntriesEquals(expected, writePacks(2, createPacks(files), info, compressor, cache));
+        assertEquals(2, cache.listFiles().length);
+
+        // change the second pack. The first is still copied from the cache
+        FileOutputStream out = new FileOutputStream(file3);
+        out.write(new byte[1000]);
+        out.close();
+        expected = writePacks(1, createPacks(files), info);
+        assertEntriesEquals(expected, writePacks(1, createPacks(files), info, compressor, cache));
+        assertEquals(3, cache.listFiles().length);
+
+        for (File file : cache.listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(cache.delete());
+        assertTrue(file1.delete());
+        assertTrue(file2.delete());
+        assertTrue(file3.delete());
+    }
+
+    /**
+     * Verifies that archive entries are read directly from the archive, and that an entry with the same content
+     * as a file is stored once.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testArchiveEntries() throws Exception
+    {
+        File file = createFile(5000);
+        File archive = File.createTempFile("archive", ".zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        zip.putNextEntry(new ZipEntry("lib/"));
+        zip.putNextEntry(new ZipEntry("lib/copy.bin"));
+        zip.write(read(file));
+        zip.putNextEntry(new ZipEntry("readme.txt"));
+        zip.write("readme".getBytes("UTF-8"));
+        zip.close();
+
+        Info info = new Info();
+        info.setPackFormatVersion(Info.PACK_FORMAT_INDEXED);
+        List<PackInfo> packs = createPacks(new File[][]{{file}});
+        PackInfo packInfo = packs.get(0);
+        Archive source = new Archive(archive);
+        ZipFile zipFile = new ZipFile(archive);
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements())
+        {
+            ArchiveEntry entry = new ArchiveEntry(source, entries.nextElement());
+            packInfo.addArchiveEntry(entry, "$INSTALL_PATH/" + entry.getName(), null, OverrideType.OVERRIDE_TRUE,
+                                     null, Blockable.BLOCKABLE_NONE, null, null);
+        }
+        zipFile.close();
+
+        List<PackFile> files = readIndex(writePacks(1, packs, info).get("resources/packs/pack-pack0"));
+        assertEquals(4, files.size());
+        assertEquals("$INSTALL_PATH/lib", files.get(1).getTargetPath());
+        assertTrue(files.get(1).isDirectory());
+        assertEquals("$INSTALL_PATH/lib/copy.bin", files.get(2).getTargetPath());
+        assertEquals(file.length(), files.get(2).length());
+        assertEquals(files.get(0).getEntryOffset(), files.get(2).getEntryOffset());
+        assertEquals("$INSTALL_PATH/readme.txt", files.get(3).getTargetPath());
+        assertEquals(6, files.get(3).length());
+
+        // the archive is closed once the installer is written
+        assertTrue(archive.delete());
+        assertTrue(file.delete());
+    }
+
+    /**
+     * Helper to create a packager that uses standard compression.
+     *
+     * @param jar          the jar stream
+     * @param mergeManager the merge manager
+     * @param data         the compiler data
+     * @return a new packager
+     */
+    private Packager createPackager(JarOutputStream jar, MergeManager mergeManager, CompilerData data)
+    {
+        return createPackager(jar, mergeManager, data, new DefaultPackCompressor(), new Info());
+    }
+
+    /**
+     * Helper to create a packager.
+     *
+     * @param jar          the jar stream
+     * @param mergeManager the merge manager
+     * @param data         the compiler data
+     * @param compressor   the pack compressor
+     * @param info         the installer information
+     * @return a new packager
+     */
+    private Packager createPackager(JarOutputStream jar, MergeManager mergeManager, CompilerData data,
+                                    PackCompressor compressor, Info info)
     {
         Properties properties = new Properties();
         PackagerListener listener = null;
-        PackCompressor compressor = Mockito.mock(PackCompressor.class);
         CompilerPathResolver pathResolver = Mockito.mock(CompilerPathResolver.class);
         MergeableResolver resolver = Mockito.mock(MergeableResolver.class);
-        CompilerData data = new CompilerData("", "", "", true);
         Packager packager = new Packager(properties, listener, jar, compressor, jar, mergeManager,
                                          pathResolver, resolver, data);
-        packager.setInfo(new Info());
+        packager.setInfo(info);
         return packager;
     }
+
+    /**
+     * Writes packs to an installer in the default pack format, using the default compressor and no pack cache.
+     *
+     * @param threads the no. of threads to write packs with
+     * @param packs   the packs
+     * @return the pack entry content, keyed on entry name
+     * @throws Exception for any error
+     */
+    private TreeMap<String, byte[]> writePacks(int threads, List<PackInfo> packs) throws Exception
+    {
+        return writePacks(threads, packs, new Info());
+    }
+
+    /**
+     * Writes packs to an installer in the pack format given by the installer information, using the default
+     * compressor and no pack cache.
+     *
+     * @param threads the no. of threads to write packs with
+     * @param packs   the packs
+     * @param info    the installer information
+     * @return the pack entry content, keyed on entry name
+     * @throws Exception for any error
+     */
+    private TreeMap<String, byte[]> writePacks(int threads, List<PackInfo> packs, Info info) throws Exception
+    {
+        return writePacks(threads, packs, info, new DefaultPackCompressor());
+    }
+
+    /**
+     * Writes packs to an installer using the supplied compressor, without a pack cache.
+     *
+     * @param threads    the no. of threads to write packs with
+     * @param packs      the packs
+     * @param info       the installer information
+     * @param compressor the pack compressor
+     * @return the pack entry content, keyed on entry name
+     * @throws Exception for any error
+     */
+    private TreeMap<String, byte[]> writePacks(int threads, List<PackInfo> packs, Info info,
+                                               PackCompressor compressor) throws Exception
+    {
+        return writePacks(threads, packs, info, compressor, null);
+    }
+
+    /**
+     * Writes packs to an installer, and reads back the content of the pack entries.
+     * <p/>
+     * When the pack format is indexed, verifies that the pack entries are stored uncompressed.
+     *
+     * @param threads    the no. of threads to write packs with
+     * @param packs      the packs
+     * @param info       the installer information
+     * @param compressor the pack compressor
+     * @param cache      the pack cache directory. May be <tt>null</tt>
+     * @return the pack entry content, keyed on entry name
+     * @throws Exception for any error
+     */
+    private TreeMap<String, byte[]> writePacks(int threads, List<PackInfo> packs, Info info,
+                                               PackCompressor compressor, File cache) throws Exception
+    {
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+        CompilerData data = new CompilerData("", "", "", true);
+        data.setPackagerThreads(threads);
+        if (cache != null)
+        {
+            data.setPackCacheDir(cache.getPath());
+        }
+        Packager packager = createPackager(output, Mockito.mock(MergeManager.class), data, compressor, info);
+
+        for (PackInfo packInfo : packs)
+        {
+            packager.addPack(packInfo);
+        }
+        packager.createInstaller();
+
+        TreeMap<String, byte[]> result = new TreeMap<String, byte[]>();
+        JarInputStream input = new JarInputStream(new FileInputStream(jar));
+        JarEntry entry;
+        while ((entry = input.getNextJarEntry()) != null)
+        {
+            if (entry.getName().startsWith("resources/packs"))
+            {
+                if (info.getPackFormatVersion() == Info.PACK_FORMAT_INDEXED
+                        && entry.getName().startsWith("resources/packs/pack-"))
+                {
+                    // indexed packs must be stored uncompressed, so that the installer can seek within them
+                    assertEquals(ZipEntry.STORED, entry.getMethod());
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                IoHelper.copyStream(input, bytes);
+                result.put(entry.getName(), bytes.toByteArray());
+            }
+        }
+        input.close();
+        assertTrue(jar.delete());
+        return result;
+    }
+
+    /**
+     * Verifies that two sets of pack entries are identical.
+     *
+     * @param expected the expected entries
+     * @param actual   the actual entries
+     */
+    private void assertEntriesEquals(TreeMap<String, byte[]> expected, TreeMap<String, byte[]> actual)
+    {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String name : expected.keySet())
+        {
+            assertArrayEquals(name, expected.get(name), actual.get(name));
+        }
+    }
+
+    /**
+     * Helper to create packs.
+     *
+     * @param files the files of each pack
+     * @return the packs
+     * @throws Exception for any error
+     */
+    private List<PackInfo> createPacks(File[][] files) throws Exception
+    {
+        List<PackInfo> packs = new ArrayList<PackInfo>();
+        for (int i = 0; i < files.length; ++i)
+        {
+            PackInfo packInfo = new PackInfo("pack" + i, "pack" + i, null, true, false, null, true, 0);
+            for (File file : files[i])
+            {
+                packInfo.addFile(file.getParentFile(), file, "$INSTALL_PATH/" + i + "/" + file.getName(), null,
+                                 OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+            }
+            packs.add(packInfo);
+        }
+        return packs;
+    }
+
+    /**
+     * Reads the file headers from the index of a pack in the indexed pack format.
+     *
+     * @param pack the pack
+     * @return the file headers
+     * @throws Exception for any error
+     */
+    private List<PackFile> readIndex(byte[] pack) throws Exception
+    {
+        InputStream in = new ByteArrayInputStream(pack);
+        byte[] index = new byte[IndexedPack.readHeader(in)];
+        assertEquals(index.length, in.read(index));
+        PackIndexReader reader = new PackIndexReader(new ByteArrayInputStream(index));
+        List<PackFile> result = new ArrayList<PackFile>();
+        for (int i = 0; i < reader.getFileCount(); ++i)
+        {
+            result.add(reader.readFile());
+        }
+        return result;
+    }
+
+    /**
+     * Reads the uncompressed data of a file from a pack in the indexed pack format.
+     *
+     * @param pack the pack
+     * @param file the file header
+     * @return the file data
+     * @throws IOException for any I/O error
+     */
+    private byte[] readEntry(byte[] pack, PackFile file) throws IOException
+    {
+        InputStream in = new ByteArrayInputStream(pack);
+        int indexLength = IndexedPack.readHeader(in);
+        assertEquals(indexLength + file.getEntryOffset(), in.skip(indexLength + file.getEntryOffset()));
+        InputStream entry = IndexedPack.getInputStream(file.getCompression(),
+                                                       new LimitedInputStream(in, file.getEntryLength()));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        IoHelper.copyStream(entry, result);
+        entry.close();
+        CRC32 checksum = new CRC32();
+        checksum.update(result.toByteArray());
+        assertEquals(file.getChecksum(), checksum.getValue());
+        return result.toByteArray();
+    }
+
+    /**
+     * Reads the content of a file.
+     *
+     * @param file the file
+     * @return the file content
+     * @throws IOException for any I/O error
+     */
+    private byte[] read(File file) throws IOException
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        IoHelper.copyStream(in, result);
+        in.close();
+        return result.toByteArray();
+    }
+
+    /**
+     * Helper to create a temporary file of the specified size.
+     *
+     * @param size the file size
+     * @return a new file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(int size) throws IOException
+    {
+        File file = File.createTempFile("data", ".bin");
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i)
+        {
+            data[i] = (byte) (i % 251);
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        return file;
+    }
 }
@@ -22,21 +22,47 @@
 package com.izforge.izpack.core.data;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.ValueFilter;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.rules.RulesEngineImpl;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.core.variable.EnvironmentValue;
+import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.core.variable.ValueCache;
+import com.izforge.izpack.core.variable.ValueImpl;
+import com.izforge.izpack.core.variable.filters.LocationFilter;
+import com.izforge.izpack.core.variable.filters.RegularExpressionFilter;
 
 
 /**
  * Default implementation of the {@link Variables} interface.
+ * <p/>
+ * When dynamic variables are refreshed, the variables read by each dynamic variable and its condition are recorded,
+ * along with the outcome. If the dynamic variable depends solely on variables, the outcome is reused by subsequent
+ * refreshes until one of the variables it read changes. Dynamic variables that read configuration files, the
+ * registry, or run commands are evaluated on every refresh, as are those whose conditions depend on anything
+ * other than variables.
+ * <p/>
+ * On the first refresh, the results of values that are expensive to resolve, such as commands, may be prefetched
+ * concurrently on background threads, so that they are ready by the time each dynamic variable is evaluated. Only
+ * the values of dynamic variables that have a cache time-to-live, or that request prefetching, are prefetched.
  *
  * @author Tim Anderson
  */
@@ -63,6 +89,37 @@ public class DefaultVariables implements Variables
      */
     private RulesEngine rules;
 
+    /**
+     * The last evaluation of each dynamic variable that depends solely on variables.
+     */
+    private final Map<DynamicVariable, Evaluation> evaluations = new IdentityHashMap<DynamicVariable, Evaluation>();
+
+    /**
+     * The variables read by the dynamic variable being evaluated, and their values. Only reads by the
+     * {@link #recorder} thread are recorded.
+     */
+    private final Map<String, String> reads = new LinkedHashMap<String, String>();
+
+    /**
+     * The thread refreshing dynamic variables, while a dynamic variable is being evaluated. May be <tt>null</tt>
+     */
+    private volatile Thread recorder;
+
+    /**
+     * The cache of dynamic variable values that are expensive to resolve.
+     */
+    private final ValueCache cache = new ValueCache();
+
+    /**
+     * Determines if dynamic variable values have been prefetched.
+     */
+    private boolean prefetched;
+
+    /**
+     * The maximum no. of threads used to prefetch dynamic variable values.
+     */
+    private static final int PREFETCH_THREADS = 8;
+
 
     /**
      * The logger.
@@ -85,7 +142,7 @@ public class DefaultVariables implements Variables
     public DefaultVariables(Properties properties)
     {
         this.properties = properties;
-        replacer = new VariableSubstitutorImpl(properties);
+        replacer = new RecordingSubstitutor(properties);
     }
 
     /**
@@ -93,9 +150,10 @@ public class DefaultVariables implements Variables
      *
      * @param rules the rules
      */
-    public void setRules(RulesEngine rules)
+    public synchronized void setRules(RulesEngine rules)
     {
         this.rules = rules;
+        evaluations.clear();
     }
 
     /**
@@ -126,7 +184,7 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name)
     {
-        return properties.getProperty(name);
+        return record(name, properties.getProperty(name));
     }
 
     /**
@@ -138,7 +196,8 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name, String defaultValue)
     {
-        return properties.getProperty(name, defaultValue);
+        String value = get(name);
+        return (value != null) ? value : defaultValue;
     }
 
     /**
@@ -279,28 +338,54 @@ public class DefaultVariables implements Variables
 
     /**
      * Adds a dynamic variable.
+     * <p/>
+     * Values that are expensive to resolve cache their results in the cache owned by this, for the variable's
+     * {@link DynamicVariable#getCacheTTL() time-to-live}.
      *
      * @param variable the variable to add
      */
     @Override
     public synchronized void add(DynamicVariable variable)
     {
+        Value value = variable.getValue();
+        if (value instanceof ValueImpl)
+        {
+            ((ValueImpl) value).setCache(cache, variable.getCacheTTL());
+        }
         dynamicVariables.add(variable);
     }
 
     /**
      * Refreshes dynamic variables.
+     * <p/>
+     * Dynamic variables are evaluated in the order they were added. A dynamic variable that depends solely on
+     * variables is only re-evaluated if a variable read by its last evaluation has since changed.
      *
      * @throws IzPackException if variables cannot be refreshed
      */
     @Override
     public synchronized void refresh()
     {
+        if (!prefetched)
+        {
+            prefetched = true;
+            prefetch();
+        }
+        boolean log = logger.isLoggable(Level.FINE);
         for (DynamicVariable variable : dynamicVariables)
         {
+            Evaluation evaluation = evaluations.get(variable);
+            if (evaluation == null || !evaluation.isCurrent(properties))
+            {
+                evaluation = evaluate(variable);
+            }
+            else if (log)
+            {
+                logger.fine("Dynamic variable=" + variable.getName() + " not re-evaluated, its inputs are unchanged");
+            }
+
             String conditionId = variable.getConditionid();
-            boolean log = logger.isLoggable(Level.FINE);
-            if (conditionId != null && !rules.isConditionTrue(conditionId))
+            if (!evaluation.conditionMet)
             {
                 if (log)
                 {
@@ -308,47 +393,303 @@ public class DefaultVariables implements Variables
                                         + " skipped due to unmet condition=" + conditionId);
                 }
             }
-            else
+            else if (evaluation.value != null)
             {
-                String newValue;
-                try
-                {
-                    newValue = variable.evaluate(replacer);
-                }
-                catch (IzPackException exception)
+                set(variable.getName(), evaluation.value);
+                if (log)
                 {
-                    throw exception;
+                    logger.fine("Dynamic variable=" + variable.getName() + " set, value=" + evaluation.value);
                 }
-                catch (Exception exception)
-                {
-                    throw new IzPackException("Failed to refresh dynamic variables (" + variable.getName() + ")", exception);
+            }
+            else if (log)
+            {
+                logger.fine("Dynamic variable=" + variable.getName() + " unchanged, value=" + variable.getValue());
+            }
+        }
+    }
 
-                }
-                if (newValue != null)
+    /**
+     * Exposes the variables as properties.
+     *
+     * @return the variables
+     */
+    @Override
+    public Properties getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * Prefetches the values of dynamic variables that have a cache time-to-live or request prefetching, and whose
+     * conditions are currently met.
+     * <p/>
+     * Values are resolved with the current variables; if these change before a dynamic variable is evaluated, the
+     * prefetched result is simply not used. Values that reference variables that aren't yet defined aren't
+     * prefetched.
+     */
+    private void prefetch()
+    {
+        List<DynamicVariable> variables = new ArrayList<DynamicVariable>();
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            if ((variable.getCacheTTL() > 0 || variable.isPrefetch()) && variable.getValue() instanceof ValueImpl)
+            {
+                variables.add(variable);
+            }
+        }
+        if (variables.isEmpty())
+        {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(PREFETCH_THREADS, new PrefetchThreadFactory());
+        try
+        {
+            for (DynamicVariable variable : variables)
+            {
+                Value value = variable.getValue();
+                String conditionId = variable.getConditionid();
+                try
                 {
-                    set(variable.getName(), newValue);
-                    if (log)
+                    if (conditionId == null || rules.isConditionTrue(conditionId))
                     {
-                        logger.fine("Dynamic variable=" + variable.getName() + " set, value=" + newValue);
+                        ((ValueImpl) value).prefetch(executor, replacer);
                     }
                 }
-                else if (log)
+                catch (Exception exception)
                 {
-                    logger.fine("Dynamic variable=" + variable.getName() + " unchanged, value=" + variable.getValue());
+                    logger.log(Level.FINE, "Failed to prefetch dynamic variable=" + variable.getName(), exception);
                 }
             }
         }
+        finally
+        {
+            // prefetches already submitted still complete
+            executor.shutdown();
+        }
     }
 
     /**
-     * Exposes the variables as properties.
+     * Evaluates a dynamic variable and its condition.
+     * <p/>
+     * If the dynamic variable depends solely on variables, the variables read are recorded and the evaluation
+     * retained for subsequent refreshes.
      *
-     * @return the variables
+     * @param variable the dynamic variable
+     * @return the evaluation
+     * @throws IzPackException if the variable cannot be evaluated
      */
-    @Override
-    public Properties getProperties()
+    private Evaluation evaluate(DynamicVariable variable)
     {
-        return properties;
+        String conditionId = variable.getConditionid();
+        boolean track = isDependentOnVariables(variable);
+        if (track)
+        {
+            reads.clear();
+            recorder = Thread.currentThread();
+        }
+        boolean conditionMet;
+        String newValue = null;
+        try
+        {
+            conditionMet = conditionId == null || rules.isConditionTrue(conditionId);
+            if (conditionMet)
+            {
+                newValue = variable.evaluate(replacer);
+            }
+        }
+        catch (IzPackException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new IzPackException("Failed to refresh dynamic variables (" + variable.getName() + ")", exception);
+        }
+        finally
+        {
+            recorder = null;
+        }
+
+        Evaluation result = new Evaluation(reads, conditionMet, newValue);
+        if (track)
+        {
+            evaluations.put(variable, result);
+        }
+        else
+        {
+            evaluations.remove(variable);
+        }
+        reads.clear();
+        return result;
+    }
+
+    /**
+     * Determines if the evaluation of a dynamic variable depends solely on variables.
+     * <p/>
+     * This is the case for plain and environment values with the standard filters, and conditions for which
+     * {@link RulesEngineImpl#isDependentOnVariables(String, Variables)} holds. The environment is assumed not to
+     * change while the installer runs.
+     *
+     * @param variable the dynamic variable
+     * @return <tt>true</tt> if the variable depends solely on variables
+     */
+    private boolean isDependentOnVariables(DynamicVariable variable)
+    {
+        if (!(variable instanceof DynamicVariableImpl))
+        {
+            return false;
+        }
+        Value value = variable.getValue();
+        if (!(value instanceof PlainValue) && !(value instanceof EnvironmentValue))
+        {
+            return false;
+        }
+        if (variable.getFilters() != null)
+        {
+            for (ValueFilter filter : variable.getFilters())
+            {
+                if (!(filter instanceof RegularExpressionFilter) && !(filter instanceof LocationFilter))
+                {
+                    return false;
+                }
+            }
+        }
+        String conditionId = variable.getConditionid();
+        return conditionId == null
+                || (rules instanceof RulesEngineImpl
+                && ((RulesEngineImpl) rules).isDependentOnVariables(conditionId, this));
+    }
+
+    /**
+     * Records the read of a variable, if a dynamic variable is being evaluated by the current thread.
+     *
+     * @param name  the variable name
+     * @param value the variable value. May be <tt>null</tt>
+     * @return the value
+     */
+    private String record(String name, String value)
+    {
+        Thread thread = recorder;
+        if (thread != null && thread == Thread.currentThread() && !reads.containsKey(name))
+        {
+            reads.put(name, value);
+        }
+        return value;
     }
 
+    /**
+     * Creates daemon prefetch threads, so that a slow command doesn't prevent the JVM from exiting.
+     */
+    private static class PrefetchThreadFactory implements ThreadFactory
+    {
+
+        /**
+         * The thread counter, used to name threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable to execute
+         * @return a new daemon thread
+         */
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "VariablePrefetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * A variable substitutor that records the variables it resolves.
+     */
+    private class RecordingSubstitutor extends VariableSubstitutorImpl
+    {
+
+        /**
+         * Constructs a <tt>RecordingSubstitutor</tt>.
+         *
+         * @param properties the variables
+         */
+        public RecordingSubstitutor(Properties properties)
+        {
+            super(properties);
+        }
+
+        /**
+         * Resolves a variable.
+         *
+         * @param name the variable name
+         * @return the variable value, or <tt>null</tt> if it is undefined
+         */
+        @Override
+        protected String resolve(String name)
+        {
+            return record(name, super.resolve(name));
+        }
+    }
+
+    /**
+     * The outcome of evaluating a dynamic variable, and the variable values it was produced from.
+     */
+    private static class Evaluation
+    {
+
+        /**
+         * The names of the variables read.
+         */
+        private final String[] names;
+
+        /**
+         * The values of the variables read. A <tt>null</tt> value indicates the variable was undefined.
+         */
+        private final String[] values;
+
+        /**
+         * Determines if the condition was met.
+         */
+        private final boolean conditionMet;
+
+        /**
+         * The dynamic variable value. May be <tt>null</tt>
+         */
+        private final String value;
+
+        /**
+         * Constructs an <tt>Evaluation</tt>.
+         *
+         * @param reads        the variables read, and their values
+         * @param conditionMet determines if the condition was met
+         * @param value        the dynamic variable value. May be <tt>null</tt>
+         */
+        public Evaluation(Map<String, String> reads, boolean conditionMet, String value)
+        {
+            names = reads.keySet().toArray(new String[reads.size()]);
+            values = reads.values().toArray(new String[reads.size()]);
+            this.conditionMet = conditionMet;
+            this.value = value;
+        }
+
+        /**
+         * Determines if the variables read still have the same values.
+         *
+         * @param properties the variables
+         * @return <tt>true</tt> if the evaluation is current
+         */
+        public boolean isCurrent(Properties properties)
+        {
+            for (int i = 0; i < names.length; ++i)
+            {
+                String current = properties.getProperty(names[i]);
+                if ((current == null) ? values[i] != null : !current.equals(values[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -33,6 +33,7 @@ import com.izforge.izpack.api.data.Value;
 import com.izforge.izpack.api.data.ValueFilter;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.core.variable.ValueCache;
 
 public class DynamicVariableImpl implements DynamicVariable
 {
@@ -50,6 +51,10 @@ public class DynamicVariableImpl implements DynamicVariable
 
     private boolean checkonce = false;
 
+    private long cacheTTL = ValueCache.DEFAULT_TTL;
+
+    private boolean prefetch = false;
+
     private boolean ignorefailure = true;
 
     private transient String currentValue;
@@ -233,6 +238,30 @@ public class DynamicVariableImpl implements DynamicVariable
         this.checkonce = checkonce;
     }
 
+    @Override
+    public long getCacheTTL()
+    {
+        return cacheTTL;
+    }
+
+    @Override
+    public void setCacheTTL(long cacheTTL)
+    {
+        this.cacheTTL = cacheTTL;
+    }
+
+    @Override
+    public boolean isPrefetch()
+    {
+        return prefetch;
+    }
+
+    @Override
+    public void setPrefetch(boolean prefetch)
+    {
+        this.prefetch = prefetch;
+    }
+
     public boolean isIgnoreFailure()
     {
         return ignorefailure;
@@ -0,0 +1,288 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.PackCompression;
+
+
+/**
+ * Helper for reading and writing packs in the {@link Info#PACK_FORMAT_INDEXED indexed} pack format.
+ * <p/>
+ * An indexed pack has the layout:
+ * <ol>
+ * <li>the header: a magic number, the format version, and the length of the index</li>
+ * <li>the index: the file headers followed by the parsable, executable and update check meta-data, encoded by
+ * {@link PackIndexWriter}. Each file header records the {@link PackCompression compression method}, offset, length
+ * and CRC-32 checksum of its data</li>
+ * <li>the data: the independently compressed data of each file</li>
+ * </ol>
+ * Entry offsets are relative to the start of the data.
+ */
+public class IndexedPack
+{
+
+    /**
+     * The magic number identifying an indexed pack.
+     */
+    public static final int MAGIC = 0x495A5049;
+
+    /**
+     * The indexed pack layout version.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * The buffer size used when compressing and decompressing entries.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+
+    /**
+     * Writes the pack header.
+     *
+     * @param out         the stream to write to
+     * @param indexLength the length of the index, in bytes
+     * @throws IOException for any I/O error
+     */
+    public static void writeHeader(OutputStream out, int indexLength) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(indexLength);
+        data.flush();
+    }
+
+    /**
+     * Reads the pack header.
+     *
+     * @param in the stream to read from
+     * @return the length of the index, in bytes
+     * @throws IOException if the header is invalid, or for any I/O error
+     */
+    public static int readHeader(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("Invalid pack: not in the indexed pack format (installer corrupted?)");
+        }
+        int version = data.readInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported indexed pack version: " + version);
+        }
+        int length = data.readInt();
+        if (length < 0)
+        {
+            throw new IOException("Invalid pack index length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Writes an unsigned variable length integer.
+     * <p/>
+     * Values are written 7 bits at a time, least significant group first, with the high bit set on all but the last
+     * byte.
+     *
+     * @param out   the stream to write to
+     * @param value the value to write. Negative values are written in 10 bytes
+     * @throws IOException for any I/O error
+     */
+    public static void writeVarLong(OutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Writes a signed variable length integer.
+     * <p/>
+     * The value is zig-zag encoded, so that small negative values such as <tt>-1</tt> occupy a single byte.
+     *
+     * @param out   the stream to write to
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    public static void writeSignedVarLong(OutputStream out, long value) throws IOException
+    {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads an unsigned variable length integer written by {@link #writeVarLong}.
+     *
+     * @param in the stream to read from
+     * @return the value
+     * @throws IOException if the value is malformed, or for any I/O error
+     */
+    public static long readVarLong(InputStream in) throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.read();
+            if (b == -1)
+            {
+                throw new EOFException("Unexpected end of pack index (installer corrupted?)");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length integer in pack index (installer corrupted?)");
+    }
+
+    /**
+     * Reads a signed variable length integer written by {@link #writeSignedVarLong}.
+     *
+     * @param in the stream to read from
+     * @return the value
+     * @throws IOException if the value is malformed, or for any I/O error
+     */
+    public static long readSignedVarLong(InputStream in) throws IOException
+    {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Returns a stream to compress an entry.
+     * <p/>
+     * Closing the returned stream completes the entry, but doesn't close the underlying stream.
+     *
+     * @param compression the compression method
+     * @param out         the stream to write the compressed data to
+     * @param level       the compression level, or <tt>-1</tt> to use the default
+     * @return a stream to write uncompressed data to
+     * @throws IOException if the stream cannot be created
+     */
+    public static OutputStream getOutputStream(PackCompression compression, OutputStream out, int level)
+            throws IOException
+    {
+        OutputStream target = new FilterOutputStream(out)
+        {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                flush();
+            }
+        };
+        OutputStream result;
+        switch (compression)
+        {
+            case DEFLATE:
+                final Deflater deflater = new Deflater(level);
+                result = new DeflaterOutputStream(target, deflater, BUFFER_SIZE)
+                {
+                    @Override
+                    public void close() throws IOException
+                    {
+                        try
+                        {
+                            super.close();
+                        }
+                        finally
+                        {
+                            deflater.end();
+                        }
+                    }
+                };
+                break;
+            case XZ:
+                result = XZStreams.getOutputStream(target, level);
+                break;
+            default:
+                result = target;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a stream to decompress an entry.
+     *
+     * @param compression the compression method
+     * @param in          the stream to read the compressed data from. This must be limited to the entry
+     * @return a stream to read the uncompressed data from
+     * @throws IOException if the stream cannot be created
+     */
+    public static InputStream getInputStream(PackCompression compression, InputStream in) throws IOException
+    {
+        InputStream result;
+        switch (compression)
+        {
+            case DEFLATE:
+                final Inflater inflater = new Inflater();
+                result = new InflaterInputStream(in, inflater, BUFFER_SIZE)
+                {
+                    @Override
+                    public void close() throws IOException
+                    {
+                        try
+                        {
+                            super.close();
+                        }
+                        finally
+                        {
+                            inflater.end();
+                        }
+                    }
+                };
+                break;
+            case XZ:
+                result = XZStreams.getInputStream(in);
+                break;
+            default:
+                result = in;
+        }
+        return result;
+    }
+}
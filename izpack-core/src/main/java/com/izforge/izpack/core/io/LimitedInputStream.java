@@ -0,0 +1,120 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that reads at most a fixed number of bytes from an underlying stream.
+ * <p/>
+ * Closing this stream does not close the underlying stream.
+ */
+public class LimitedInputStream extends FilterInputStream
+{
+
+    /**
+     * The no. of bytes that may still be read.
+     */
+    private long remaining;
+
+
+    /**
+     * Constructs a <tt>LimitedInputStream</tt>.
+     *
+     * @param in    the underlying stream
+     * @param limit the maximum no. of bytes to read
+     */
+    public LimitedInputStream(InputStream in, long limit)
+    {
+        super(in);
+        this.remaining = limit;
+    }
+
+    /**
+     * Returns the no. of bytes that may still be read.
+     *
+     * @return the remaining bytes
+     */
+    public long getRemaining()
+    {
+        return remaining;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (remaining <= 0)
+        {
+            return -1;
+        }
+        int result = in.read();
+        if (result != -1)
+        {
+            --remaining;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (remaining <= 0)
+        {
+            return -1;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read > 0)
+        {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        long skipped = in.skip(Math.min(n, remaining));
+        if (skipped > 0)
+        {
+            remaining -= skipped;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void close()
+    {
+        // don't close the underlying stream
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.UpdateCheck;
+
+
+/**
+ * Reads the index of a pack written by {@link PackIndexWriter}.
+ * <p/>
+ * The string and OS constraint tables are read when the reader is constructed. The file headers must then be read
+ * using {@link #readFile()}, followed by the parsable files, executable files and update checks, in that order.
+ * <p/>
+ * Strings and OS constraints are shared between the file headers that refer to them, and the buffers used to
+ * decode file names are reused, so that reading a file header only allocates the file header and its target path.
+ */
+public class PackIndexReader
+{
+
+    /**
+     * The no. of string references used to encode an {@link OsModel}.
+     */
+    static final int OS_MODEL_ATTRIBUTES = 5;
+
+    /**
+     * The stream to read from.
+     */
+    private final DataInputStream in;
+
+    /**
+     * The string table.
+     */
+    private final String[] strings;
+
+    /**
+     * The OS constraint table.
+     */
+    private final List<List<OsModel>> osLists;
+
+    /**
+     * The no. of file headers.
+     */
+    private final int fileCount;
+
+    /**
+     * The buffer used to read file names.
+     */
+    private byte[] buffer = new byte[256];
+
+    /**
+     * The builder used to decode paths.
+     */
+    private final StringBuilder path = new StringBuilder();
+
+
+    /**
+     * Constructs a <tt>PackIndexReader</tt>.
+     *
+     * @param in the stream to read from
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    public PackIndexReader(InputStream in) throws IOException
+    {
+        this.in = new DataInputStream(in);
+        strings = new String[readCount()];
+        for (int i = 0; i < strings.length; ++i)
+        {
+            byte[] bytes = new byte[readCount()];
+            this.in.readFully(bytes);
+            strings[i] = new String(bytes, "UTF-8");
+        }
+        int osListCount = readCount();
+        osLists = new ArrayList<List<OsModel>>(osListCount);
+        for (int i = 0; i < osListCount; ++i)
+        {
+            int size = readCount();
+            List<OsModel> models = new ArrayList<OsModel>(size);
+            for (int j = 0; j < size; ++j)
+            {
+                models.add(new OsModel(readRef(), readRef(), readRef(), readRef(), readRef()));
+            }
+            osLists.add(Collections.unmodifiableList(models));
+        }
+        fileCount = readCount();
+    }
+
+    /**
+     * Returns the no. of file headers.
+     *
+     * @return the no. of file headers
+     */
+    public int getFileCount()
+    {
+        return fileCount;
+    }
+
+    /**
+     * Reads the next file header.
+     *
+     * @return the file header
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    public PackFile readFile() throws IOException
+    {
+        int flags = readCount();
+        String targetPath = readPath();
+        String relativePath = ((flags & PackIndexWriter.RELATIVE_PATH) != 0) ? readPath() : null;
+        long length = IndexedPack.readVarLong(in);
+        long mtime = IndexedPack.readSignedVarLong(in);
+        OverrideType override = OverrideType.getOverrideTypeFromAttribute(readRef());
+        String overrideRenameTo = readRef();
+        Blockable blockable = Blockable.getBlockableFromAttribute(readRef());
+        String condition = readRef();
+        List<OsModel> osList = readOsRef();
+        PackCompression compression = PackCompression.getCompressionFromAttribute(readRef());
+        long entryOffset = IndexedPack.readSignedVarLong(in);
+        long entryLength = IndexedPack.readVarLong(in);
+        long checksum = IndexedPack.readVarLong(in);
+        String previousPackId = null;
+        long offsetInPreviousPack = -1;
+        if ((flags & PackIndexWriter.BACK_REFERENCE) != 0)
+        {
+            previousPackId = readRef();
+            offsetInPreviousPack = IndexedPack.readSignedVarLong(in);
+        }
+        Map additionals = null;
+        if ((flags & PackIndexWriter.ADDITIONALS) != 0)
+        {
+            additionals = readAdditionals();
+        }
+
+        PackFile result = new PackFile(relativePath, targetPath, osList, length, mtime,
+                                       (flags & PackIndexWriter.DIRECTORY) != 0, override, overrideRenameTo,
+                                       blockable, additionals);
+        result.setCondition(condition);
+        result.setPack200Jar((flags & PackIndexWriter.PACK200) != 0);
+        if (compression != null)
+        {
+            result.setEntry(compression, entryOffset, entryLength, checksum);
+        }
+        if (previousPackId != null)
+        {
+            result.setPreviousPackFileRef(previousPackId, offsetInPreviousPack);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the parsable files.
+     *
+     * @param parsables the list to add the parsable files to
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    public void readParsables(List<ParsableFile> parsables) throws IOException
+    {
+        int count = readCount();
+        for (int i = 0; i < count; ++i)
+        {
+            String path = readPath();
+            SubstitutionType type = SubstitutionType.lookup(readRef());
+            String encoding = readRef();
+            ParsableFile parsable = new ParsableFile(path, type, encoding, readOsRef());
+            parsable.setCondition(readRef());
+            parsables.add(parsable);
+        }
+    }
+
+    /**
+     * Reads the executable files.
+     *
+     * @param executables the list to add the executable files to
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    public void readExecutables(List<ExecutableFile> executables) throws IOException
+    {
+        int count = readCount();
+        for (int i = 0; i < count; ++i)
+        {
+            ExecutableFile executable = new ExecutableFile();
+            executable.path = readPath();
+            executable.executionStage = readCount();
+            executable.mainClass = readRef();
+            executable.type = readCount();
+            executable.onFailure = readCount();
+            executable.argList = readStrings();
+            executable.osList = readOsRef();
+            executable.keepFile = in.readBoolean();
+            executable.setCondition(readRef());
+            executables.add(executable);
+        }
+    }
+
+    /**
+     * Reads the update checks.
+     *
+     * @param updateChecks the list to add the update checks to
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    public void readUpdateChecks(List<UpdateCheck> updateChecks) throws IOException
+    {
+        int count = readCount();
+        for (int i = 0; i < count; ++i)
+        {
+            ArrayList<String> includes = readStrings();
+            ArrayList<String> excludes = readStrings();
+            String caseSensitive = in.readBoolean() ? "yes" : "no";
+            updateChecks.add(new UpdateCheck(includes, excludes, caseSensitive));
+        }
+    }
+
+    /**
+     * Reads a path written as a reference to its directory, followed by its name.
+     *
+     * @return the path. May be <tt>null</tt>
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    private String readPath() throws IOException
+    {
+        String directory = readRef();
+        if (directory == null)
+        {
+            return null;
+        }
+        int length = readCount();
+        if (buffer.length < length)
+        {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+        path.setLength(0);
+        path.append(directory);
+        decode(buffer, length, path);
+        return path.toString();
+    }
+
+    /**
+     * Reads a list of strings.
+     *
+     * @return the list. May be <tt>null</tt>
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    private ArrayList<String> readStrings() throws IOException
+    {
+        int size = readCount();
+        if (size == 0)
+        {
+            return null;
+        }
+        ArrayList<String> result = new ArrayList<String>(size - 1);
+        for (int i = 1; i < size; ++i)
+        {
+            result.add(readRef());
+        }
+        return result;
+    }
+
+    /**
+     * Reads a reference to the string table.
+     *
+     * @return the string. May be <tt>null</tt>
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    private String readRef() throws IOException
+    {
+        int ref = readCount();
+        if (ref > strings.length)
+        {
+            throw new IOException("Invalid string reference in pack index (installer corrupted?)");
+        }
+        return (ref != 0) ? strings[ref - 1] : null;
+    }
+
+    /**
+     * Reads a reference to the OS constraint table.
+     *
+     * @return the OS constraints. May be <tt>null</tt>
+     * @throws IOException if the index is invalid, or for any I/O error
+     */
+    private List<OsModel> readOsRef() throws IOException
+    {
+        int ref = readCount();
+        if (ref > osLists.size())
+        {
+            throw new IOException("Invalid OS constraint reference in pack index (installer corrupted?)");
+        }
+        return (ref != 0) ? osLists.get(ref - 1) : null;
+    }
+
+    /**
+     * Reads serialized additional attributes.
+     *
+     * @return the additional attributes
+     * @throws IOException if the attributes cannot be deserialized, or for any I/O error
+     */
+    private Map readAdditionals() throws IOException
+    {
+        byte[] bytes = new byte[readCount()];
+        in.readFully(bytes);
+        ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try
+        {
+            return (Map) objIn.readObject();
+        }
+        catch (ClassNotFoundException exception)
+        {
+            IOException error = new IOException("Failed to read file attributes: " + exception.getMessage());
+            error.initCause(exception);
+            throw error;
+        }
+        finally
+        {
+            objIn.close();
+        }
+    }
+
+    /**
+     * Reads a non-negative integer.
+     *
+     * @return the value
+     * @throws IOException if the value is out of range, or for any I/O error
+     */
+    private int readCount() throws IOException
+    {
+        long value = IndexedPack.readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE)
+        {
+            throw new IOException("Invalid value in pack index (installer corrupted?): " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Decodes UTF-8 bytes, appending them to a builder.
+     *
+     * @param bytes   the bytes to decode
+     * @param length  the no. of bytes to decode
+     * @param builder the builder to append to
+     * @throws IOException if the bytes are not valid UTF-8
+     */
+    private static void decode(byte[] bytes, int length, StringBuilder builder) throws IOException
+    {
+        int i = 0;
+        while (i < length)
+        {
+            int b = bytes[i++] & 0xFF;
+            int remaining;
+            int codePoint;
+            if (b < 0x80)
+            {
+                builder.append((char) b);
+                continue;
+            }
+            else if ((b & 0xE0) == 0xC0)
+            {
+                remaining = 1;
+                codePoint = b & 0x1F;
+            }
+            else if ((b & 0xF0) == 0xE0)
+            {
+                remaining = 2;
+                codePoint = b & 0x0F;
+            }
+            else if ((b & 0xF8) == 0xF0)
+            {
+                remaining = 3;
+                codePoint = b & 0x07;
+            }
+            else
+            {
+                throw new IOException("Invalid UTF-8 sequence in pack index (installer corrupted?)");
+            }
+            if (i + remaining > length)
+            {
+                throw new IOException("Truncated UTF-8 sequence in pack index (installer corrupted?)");
+            }
+            for (int j = 0; j < remaining; ++j)
+            {
+                codePoint = (codePoint << 6) | (bytes[i++] & 0x3F);
+            }
+            builder.appendCodePoint(codePoint);
+        }
+    }
+}
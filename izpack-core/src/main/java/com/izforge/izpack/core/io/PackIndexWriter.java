@@ -0,0 +1,485 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.UpdateCheck;
+
+
+/**
+ * Writes the index of a pack in the {@link com.izforge.izpack.api.data.Info#PACK_FORMAT_INDEXED indexed} pack format.
+ * <p/>
+ * The index is a compact binary encoding of the file headers and the parsable, executable and update check
+ * meta-data of a pack. It has the layout:
+ * <ol>
+ * <li>the string table: the distinct directories, conditions, OS model attributes and enum attributes referred to
+ * by the index</li>
+ * <li>the OS constraint table: the distinct OS constraint lists referred to by the index</li>
+ * <li>the file headers, preceded by their count</li>
+ * <li>the parsable files, executable files and update checks, each preceded by their count</li>
+ * </ol>
+ * Integers are written as {@link IndexedPack#writeVarLong variable length integers}, and strings as their UTF-8
+ * encoded length followed by the UTF-8 bytes. References to the tables are written as the table position plus
+ * one, with <tt>0</tt> indicating <tt>null</tt>.
+ * <p/>
+ * Target paths are split into their directory, which is stored in the string table, and their name, which is
+ * written inline.
+ * <p/>
+ * File additional attributes are arbitrary objects, so these are written using Java serialization. Their presence
+ * is recorded in the file flags, so files without them incur no serialization overhead.
+ *
+ * @see PackIndexReader
+ */
+public class PackIndexWriter
+{
+
+    /**
+     * Flag indicating that the file is a directory.
+     */
+    static final int DIRECTORY = 1;
+
+    /**
+     * Flag indicating that the file is a Pack200 compressed jar.
+     */
+    static final int PACK200 = 1 << 1;
+
+    /**
+     * Flag indicating that the file refers to data in a previous pack.
+     */
+    static final int BACK_REFERENCE = 1 << 2;
+
+    /**
+     * Flag indicating that the file has a relative source path.
+     */
+    static final int RELATIVE_PATH = 1 << 3;
+
+    /**
+     * Flag indicating that the file has additional attributes.
+     */
+    static final int ADDITIONALS = 1 << 4;
+
+    /**
+     * The files.
+     */
+    private final List<PackFile> files = new ArrayList<PackFile>();
+
+    /**
+     * The parsable files.
+     */
+    private final List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+
+    /**
+     * The executable files.
+     */
+    private final List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
+
+    /**
+     * The update checks.
+     */
+    private final List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
+
+    /**
+     * The string table.
+     */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * The string table references, keyed on string.
+     */
+    private final Map<String, Integer> stringRefs = new HashMap<String, Integer>();
+
+    /**
+     * The OS constraint table, as string references.
+     */
+    private final List<long[]> osLists = new ArrayList<long[]>();
+
+    /**
+     * The OS constraint table references, keyed on the string references of the constraints.
+     */
+    private final Map<String, Integer> osListRefs = new HashMap<String, Integer>();
+
+
+    /**
+     * Adds a file header.
+     *
+     * @param file the file header
+     */
+    public void addFile(PackFile file)
+    {
+        files.add(file);
+    }
+
+    /**
+     * Adds a parsable file.
+     *
+     * @param parsable the parsable file
+     */
+    public void addParsable(ParsableFile parsable)
+    {
+        parsables.add(parsable);
+    }
+
+    /**
+     * Adds an executable file.
+     *
+     * @param executable the executable file
+     */
+    public void addExecutable(ExecutableFile executable)
+    {
+        executables.add(executable);
+    }
+
+    /**
+     * Adds an update check.
+     *
+     * @param updateCheck the update check
+     */
+    public void addUpdateCheck(UpdateCheck updateCheck)
+    {
+        updateChecks.add(updateCheck);
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param out the stream to write to
+     * @throws IOException for any I/O error
+     */
+    public void writeTo(OutputStream out) throws IOException
+    {
+        // encode the body first, to populate the tables
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeVarLong(body, files.size());
+        for (PackFile file : files)
+        {
+            writeFile(file, body);
+        }
+        writeVarLong(body, parsables.size());
+        for (ParsableFile parsable : parsables)
+        {
+            writeParsable(parsable, body);
+        }
+        writeVarLong(body, executables.size());
+        for (ExecutableFile executable : executables)
+        {
+            writeExecutable(executable, body);
+        }
+        writeVarLong(body, updateChecks.size());
+        for (UpdateCheck updateCheck : updateChecks)
+        {
+            writeUpdateCheck(updateCheck, body);
+        }
+
+        writeVarLong(out, strings.size());
+        for (String string : strings)
+        {
+            writeString(string, out);
+        }
+        writeVarLong(out, osLists.size());
+        for (long[] refs : osLists)
+        {
+            writeVarLong(out, refs.length / PackIndexReader.OS_MODEL_ATTRIBUTES);
+            for (long ref : refs)
+            {
+                writeVarLong(out, ref);
+            }
+        }
+        body.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Writes a file header.
+     *
+     * @param file the file header
+     * @param out  the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeFile(PackFile file, OutputStream out) throws IOException
+    {
+        int flags = 0;
+        if (file.isDirectory())
+        {
+            flags |= DIRECTORY;
+        }
+        if (file.isPack200Jar())
+        {
+            flags |= PACK200;
+        }
+        if (file.isBackReference())
+        {
+            flags |= BACK_REFERENCE;
+        }
+        if (file.getRelativeSourcePath() != null)
+        {
+            flags |= RELATIVE_PATH;
+        }
+        if (file.getAdditionals() != null)
+        {
+            flags |= ADDITIONALS;
+        }
+        writeVarLong(out, flags);
+        writePath(file.getTargetPath(), out);
+        if (file.getRelativeSourcePath() != null)
+        {
+            writePath(file.getRelativeSourcePath(), out);
+        }
+        writeVarLong(out, file.length());
+        IndexedPack.writeSignedVarLong(out, file.lastModified());
+        writeRef(file.override() != null ? file.override().getAttribute() : null, out);
+        writeRef(file.overrideRenameTo(), out);
+        writeRef(file.blockable() != null ? file.blockable().getAttribute() : null, out);
+        writeRef(file.getCondition(), out);
+        writeOsRef(file.osConstraints(), out);
+        writeRef(file.getCompression() != null ? file.getCompression().getAttribute() : null, out);
+        IndexedPack.writeSignedVarLong(out, file.getEntryOffset());
+        writeVarLong(out, file.getEntryLength());
+        writeVarLong(out, file.getChecksum());
+        if (file.isBackReference())
+        {
+            writeRef(file.previousPackId, out);
+            IndexedPack.writeSignedVarLong(out, file.offsetInPreviousPack);
+        }
+        if (file.getAdditionals() != null)
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objOut = new ObjectOutputStream(bytes);
+            objOut.writeObject(file.getAdditionals());
+            objOut.close();
+            writeVarLong(out, bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Writes a parsable file.
+     *
+     * @param parsable the parsable file
+     * @param out      the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeParsable(ParsableFile parsable, OutputStream out) throws IOException
+    {
+        writePath(parsable.getPath(), out);
+        writeRef(parsable.getType() != null ? parsable.getType().getType() : null, out);
+        writeRef(parsable.getEncoding(), out);
+        writeOsRef(parsable.getOsConstraints(), out);
+        writeRef(parsable.getCondition(), out);
+    }
+
+    /**
+     * Writes an executable file.
+     *
+     * @param executable the executable file
+     * @param out        the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeExecutable(ExecutableFile executable, OutputStream out) throws IOException
+    {
+        writePath(executable.path, out);
+        writeVarLong(out, executable.executionStage);
+        writeRef(executable.mainClass, out);
+        writeVarLong(out, executable.type);
+        writeVarLong(out, executable.onFailure);
+        writeStrings(executable.argList, out);
+        writeOsRef(executable.osList, out);
+        out.write(executable.keepFile ? 1 : 0);
+        writeRef(executable.getCondition(), out);
+    }
+
+    /**
+     * Writes an update check.
+     *
+     * @param updateCheck the update check
+     * @param out         the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeUpdateCheck(UpdateCheck updateCheck, OutputStream out) throws IOException
+    {
+        writeStrings(updateCheck.includesList, out);
+        writeStrings(updateCheck.excludesList, out);
+        out.write(updateCheck.isCaseSensitive() ? 1 : 0);
+    }
+
+    /**
+     * Writes a path, as a reference to its directory, followed by its name.
+     *
+     * @param path the path. May be <tt>null</tt>
+     * @param out  the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writePath(String path, OutputStream out) throws IOException
+    {
+        if (path == null)
+        {
+            writeVarLong(out, 0);
+        }
+        else
+        {
+            int index = path.lastIndexOf('/');
+            if (index == -1)
+            {
+                // distinguish from null with an empty directory
+                writeRef("", out);
+                writeString(path, out);
+            }
+            else
+            {
+                writeRef(path.substring(0, index + 1), out);
+                writeString(path.substring(index + 1), out);
+            }
+        }
+    }
+
+    /**
+     * Writes a list of strings, as references to the string table.
+     *
+     * @param list the list. May be <tt>null</tt>
+     * @param out  the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeStrings(List<String> list, OutputStream out) throws IOException
+    {
+        if (list == null)
+        {
+            writeVarLong(out, 0);
+        }
+        else
+        {
+            writeVarLong(out, list.size() + 1);
+            for (String string : list)
+            {
+                writeRef(string, out);
+            }
+        }
+    }
+
+    /**
+     * Writes a reference to the string table, adding the string if it isn't present.
+     *
+     * @param string the string. May be <tt>null</tt>
+     * @param out    the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeRef(String string, OutputStream out) throws IOException
+    {
+        writeVarLong(out, getRef(string));
+    }
+
+    /**
+     * Writes a reference to the OS constraint table, adding the constraints if they aren't present.
+     *
+     * @param osList the OS constraints. May be <tt>null</tt>
+     * @param out    the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeOsRef(List<OsModel> osList, OutputStream out) throws IOException
+    {
+        int result = 0;
+        if (osList != null)
+        {
+            long[] refs = new long[osList.size() * PackIndexReader.OS_MODEL_ATTRIBUTES];
+            StringBuilder key = new StringBuilder();
+            int i = 0;
+            for (OsModel model : osList)
+            {
+                refs[i++] = getRef(model.getArch());
+                refs[i++] = getRef(model.getFamily());
+                refs[i++] = getRef(model.getJre());
+                refs[i++] = getRef(model.getName());
+                refs[i++] = getRef(model.getVersion());
+            }
+            for (long ref : refs)
+            {
+                key.append(ref).append(',');
+            }
+            Integer ref = osListRefs.get(key.toString());
+            if (ref == null)
+            {
+                osLists.add(refs);
+                ref = osLists.size();
+                osListRefs.put(key.toString(), ref);
+            }
+            result = ref;
+        }
+        writeVarLong(out, result);
+    }
+
+    /**
+     * Returns the reference of a string in the string table, adding it if it isn't present.
+     *
+     * @param string the string. May be <tt>null</tt>
+     * @return the reference
+     */
+    private int getRef(String string)
+    {
+        int result = 0;
+        if (string != null)
+        {
+            Integer ref = stringRefs.get(string);
+            if (ref == null)
+            {
+                strings.add(string);
+                ref = strings.size();
+                stringRefs.put(string, ref);
+            }
+            result = ref;
+        }
+        return result;
+    }
+
+    /**
+     * Writes a string as its UTF-8 encoded length, followed by its UTF-8 bytes.
+     *
+     * @param string the string
+     * @param out    the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private static void writeString(String string, OutputStream out) throws IOException
+    {
+        byte[] bytes = string.getBytes("UTF-8");
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes an unsigned variable length integer.
+     *
+     * @param out   the stream to write to
+     * @param value the value
+     * @throws IOException for any I/O error
+     */
+    private static void writeVarLong(OutputStream out, long value) throws IOException
+    {
+        IndexedPack.writeVarLong(out, value);
+    }
+}
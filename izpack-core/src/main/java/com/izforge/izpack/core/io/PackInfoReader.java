@@ -0,0 +1,286 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Reads the pack meta-data written by {@link PackInfoWriter}.
+ * <p/>
+ * The header and string table are read when the reader is constructed. Strings are shared between the packs that
+ * refer to them.
+ */
+public class PackInfoReader
+{
+
+    /**
+     * The magic number identifying pack meta-data written by {@link PackInfoWriter}.
+     */
+    static final int MAGIC = 0x495A504D;
+
+    /**
+     * The pack meta-data format version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The stream to read from.
+     */
+    private final DataInputStream in;
+
+    /**
+     * The string table.
+     */
+    private final String[] strings;
+
+    /**
+     * The no. of packs.
+     */
+    private final int packCount;
+
+
+    /**
+     * Constructs a <tt>PackInfoReader</tt>.
+     *
+     * @param in the stream to read from
+     * @throws IOException if the meta-data is invalid, or for any I/O error
+     */
+    public PackInfoReader(InputStream in) throws IOException
+    {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != MAGIC)
+        {
+            throw new IOException("Invalid pack meta-data (installer corrupted?)");
+        }
+        int version = this.in.readInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported pack meta-data version: " + version);
+        }
+        strings = new String[readCount()];
+        for (int i = 0; i < strings.length; ++i)
+        {
+            byte[] bytes = new byte[readCount()];
+            this.in.readFully(bytes);
+            strings[i] = new String(bytes, "UTF-8");
+        }
+        packCount = readCount();
+    }
+
+    /**
+     * Reads all packs from a stream.
+     * <p/>
+     * Meta-data written by earlier versions, as a pack count followed by serialized packs, is also supported.
+     * The stream is closed on return.
+     *
+     * @param in the stream to read from
+     * @return the packs
+     * @throws IOException if the meta-data is invalid, or for any I/O error
+     */
+    public static List<Pack> read(InputStream in) throws IOException
+    {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        try
+        {
+            buffered.mark(4);
+            int magic = new DataInputStream(buffered).readInt();
+            buffered.reset();
+            List<Pack> packs;
+            if (magic == MAGIC)
+            {
+                PackInfoReader reader = new PackInfoReader(buffered);
+                packs = new ArrayList<Pack>(reader.getPackCount());
+                for (int i = 0; i < reader.getPackCount(); ++i)
+                {
+                    packs.add(reader.readPack());
+                }
+            }
+            else
+            {
+                packs = readSerialized(buffered);
+            }
+            return packs;
+        }
+        finally
+        {
+            buffered.close();
+        }
+    }
+
+    /**
+     * Returns the no. of packs.
+     *
+     * @return the no. of packs
+     */
+    public int getPackCount()
+    {
+        return packCount;
+    }
+
+    /**
+     * Reads the next pack.
+     *
+     * @return the pack
+     * @throws IOException if the meta-data is invalid, or for any I/O error
+     */
+    public Pack readPack() throws IOException
+    {
+        int flags = readCount();
+        String name = readRef();
+        String langPackId = readRef();
+        String description = readRef();
+        String excludeGroup = readRef();
+        String group = readRef();
+        String condition = readRef();
+        String parent = readRef();
+        String imageId = readRef();
+        long size = IndexedPack.readSignedVarLong(in);
+        long fileSize = IndexedPack.readSignedVarLong(in);
+
+        Pack pack = new Pack(name, langPackId, description, null, null, (flags & PackInfoWriter.REQUIRED) != 0,
+                             (flags & PackInfoWriter.PRESELECTED) != 0, (flags & PackInfoWriter.LOOSE) != 0,
+                             excludeGroup, (flags & PackInfoWriter.UNINSTALL) != 0, size);
+        pack.setGroup(group);
+        pack.setCondition(condition);
+        pack.setParent(parent);
+        pack.setImageId(imageId);
+        pack.setFileSize(fileSize);
+        pack.setHidden((flags & PackInfoWriter.HIDDEN) != 0);
+
+        List<String> installGroups = readStrings();
+        if (installGroups != null)
+        {
+            pack.getInstallGroups().addAll(installGroups);
+        }
+        pack.setDependencies(readStrings());
+        pack.setDependants(readStrings());
+        List<String> validators = readStrings();
+        if (validators != null)
+        {
+            for (String validator : validators)
+            {
+                pack.addValidator(validator);
+            }
+        }
+
+        int osCount = readCount();
+        if (osCount != 0)
+        {
+            List<OsModel> osConstraints = new ArrayList<OsModel>(osCount - 1);
+            for (int i = 1; i < osCount; ++i)
+            {
+                osConstraints.add(new OsModel(readRef(), readRef(), readRef(), readRef(), readRef()));
+            }
+            pack.setOsConstraints(osConstraints);
+        }
+        return pack;
+    }
+
+    /**
+     * Reads packs written as a pack count followed by serialized packs.
+     *
+     * @param in the stream to read from
+     * @return the packs
+     * @throws IOException if the packs cannot be deserialized, or for any I/O error
+     */
+    private static List<Pack> readSerialized(InputStream in) throws IOException
+    {
+        ObjectInputStream objIn = new ObjectInputStream(in);
+        int size = objIn.readInt();
+        List<Pack> packs = new ArrayList<Pack>();
+        try
+        {
+            for (int i = 0; i < size; i++)
+            {
+                packs.add((Pack) objIn.readObject());
+            }
+        }
+        catch (ClassNotFoundException exception)
+        {
+            IOException error = new IOException("Failed to read packs: " + exception.getMessage());
+            error.initCause(exception);
+            throw error;
+        }
+        return packs;
+    }
+
+    /**
+     * Reads a list of strings, written as references to the string table.
+     *
+     * @return the list. May be <tt>null</tt>
+     * @throws IOException if the meta-data is invalid, or for any I/O error
+     */
+    private List<String> readStrings() throws IOException
+    {
+        int size = readCount();
+        if (size == 0)
+        {
+            return null;
+        }
+        List<String> result = new ArrayList<String>(size - 1);
+        for (int i = 1; i < size; ++i)
+        {
+            result.add(readRef());
+        }
+        return result;
+    }
+
+    /**
+     * Reads a reference to the string table.
+     *
+     * @return the string. May be <tt>null</tt>
+     * @throws IOException if the meta-data is invalid, or for any I/O error
+     */
+    private String readRef() throws IOException
+    {
+        int ref = readCount();
+        if (ref > strings.length)
+        {
+            throw new IOException("Invalid string reference in pack meta-data (installer corrupted?)");
+        }
+        return (ref != 0) ? strings[ref - 1] : null;
+    }
+
+    /**
+     * Reads a non-negative integer.
+     *
+     * @return the value
+     * @throws IOException if the value is out of range, or for any I/O error
+     */
+    private int readCount() throws IOException
+    {
+        long value = IndexedPack.readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE)
+        {
+            throw new IOException("Invalid value in pack meta-data (installer corrupted?): " + value);
+        }
+        return (int) value;
+    }
+}
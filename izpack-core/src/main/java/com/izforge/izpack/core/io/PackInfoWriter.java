@@ -0,0 +1,261 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Writes the pack meta-data read by the installer at startup, i.e. the <em>packs.info</em> resource.
+ * <p/>
+ * This replaces Java serialization of each {@link Pack} with a compact binary encoding that can be decoded without
+ * reflection or class descriptor lookup. It has the layout:
+ * <ol>
+ * <li>the header: a magic number and the format version</li>
+ * <li>the string table: the distinct names, descriptions, conditions, groups and OS model attributes referred to by
+ * the packs</li>
+ * <li>the packs, preceded by their count</li>
+ * </ol>
+ * Integers are written as {@link IndexedPack#writeVarLong variable length integers}, and strings as their UTF-8
+ * encoded length followed by the UTF-8 bytes. References to the string table are written as the table position
+ * plus one, with <tt>0</tt> indicating <tt>null</tt>. Lists are written as their size plus one, with <tt>0</tt>
+ * indicating <tt>null</tt>.
+ *
+ * @see PackInfoReader
+ */
+public class PackInfoWriter
+{
+
+    /**
+     * Flag indicating that the pack is loose.
+     */
+    static final int LOOSE = 1;
+
+    /**
+     * Flag indicating that the pack is uninstalled.
+     */
+    static final int UNINSTALL = 1 << 1;
+
+    /**
+     * Flag indicating that the pack is required.
+     */
+    static final int REQUIRED = 1 << 2;
+
+    /**
+     * Flag indicating that the pack is preselected.
+     */
+    static final int PRESELECTED = 1 << 3;
+
+    /**
+     * Flag indicating that the pack is hidden.
+     */
+    static final int HIDDEN = 1 << 4;
+
+    /**
+     * The packs.
+     */
+    private final List<Pack> packs = new ArrayList<Pack>();
+
+    /**
+     * The string table.
+     */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * The string table references, keyed on string.
+     */
+    private final Map<String, Integer> stringRefs = new HashMap<String, Integer>();
+
+
+    /**
+     * Adds a pack.
+     *
+     * @param pack the pack
+     */
+    public void addPack(Pack pack)
+    {
+        packs.add(pack);
+    }
+
+    /**
+     * Writes the pack meta-data.
+     *
+     * @param out the stream to write to
+     * @throws IOException for any I/O error
+     */
+    public void writeTo(OutputStream out) throws IOException
+    {
+        // encode the packs first, to populate the string table
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeVarLong(body, packs.size());
+        for (Pack pack : packs)
+        {
+            writePack(pack, body);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(PackInfoReader.MAGIC);
+        data.writeInt(PackInfoReader.VERSION);
+        writeVarLong(data, strings.size());
+        for (String string : strings)
+        {
+            byte[] bytes = string.getBytes("UTF-8");
+            writeVarLong(data, bytes.length);
+            data.write(bytes);
+        }
+        body.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Writes a pack.
+     *
+     * @param pack the pack
+     * @param out  the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writePack(Pack pack, OutputStream out) throws IOException
+    {
+        int flags = 0;
+        if (pack.isLoose())
+        {
+            flags |= LOOSE;
+        }
+        if (pack.isUninstall())
+        {
+            flags |= UNINSTALL;
+        }
+        if (pack.isRequired())
+        {
+            flags |= REQUIRED;
+        }
+        if (pack.isPreselected())
+        {
+            flags |= PRESELECTED;
+        }
+        if (pack.isHidden())
+        {
+            flags |= HIDDEN;
+        }
+        writeVarLong(out, flags);
+        writeRef(pack.getName(), out);
+        writeRef(pack.getLangPackId(), out);
+        writeRef(pack.getDescription(), out);
+        writeRef(pack.getExcludeGroup(), out);
+        writeRef(pack.getGroup(), out);
+        writeRef(pack.getCondition(), out);
+        writeRef(pack.getParent(), out);
+        writeRef(pack.getImageId(), out);
+        IndexedPack.writeSignedVarLong(out, pack.getSize());
+        IndexedPack.writeSignedVarLong(out, pack.getFileSize());
+        writeStrings(pack.getInstallGroups(), out);
+        writeStrings(pack.getDependencies(), out);
+        writeStrings(pack.getDependants(), out);
+        writeStrings(pack.getValidators(), out);
+
+        List<OsModel> osConstraints = pack.getOsConstraints();
+        if (osConstraints == null)
+        {
+            writeVarLong(out, 0);
+        }
+        else
+        {
+            writeVarLong(out, osConstraints.size() + 1);
+            for (OsModel model : osConstraints)
+            {
+                writeRef(model.getArch(), out);
+                writeRef(model.getFamily(), out);
+                writeRef(model.getJre(), out);
+                writeRef(model.getName(), out);
+                writeRef(model.getVersion(), out);
+            }
+        }
+    }
+
+    /**
+     * Writes a collection of strings, as references to the string table.
+     *
+     * @param list the strings. May be <tt>null</tt>
+     * @param out  the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeStrings(Collection<String> list, OutputStream out) throws IOException
+    {
+        if (list == null)
+        {
+            writeVarLong(out, 0);
+        }
+        else
+        {
+            writeVarLong(out, list.size() + 1);
+            for (String string : list)
+            {
+                writeRef(string, out);
+            }
+        }
+    }
+
+    /**
+     * Writes a reference to the string table, adding the string if it isn't present.
+     *
+     * @param string the string. May be <tt>null</tt>
+     * @param out    the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeRef(String string, OutputStream out) throws IOException
+    {
+        int ref = 0;
+        if (string != null)
+        {
+            Integer existing = stringRefs.get(string);
+            if (existing == null)
+            {
+                strings.add(string);
+                existing = strings.size();
+                stringRefs.put(string, existing);
+            }
+            ref = existing;
+        }
+        writeVarLong(out, ref);
+    }
+
+    /**
+     * Writes an unsigned variable length integer.
+     *
+     * @param out   the stream to write to
+     * @param value the value
+     * @throws IOException for any I/O error
+     */
+    private static void writeVarLong(OutputStream out, long value) throws IOException
+    {
+        IndexedPack.writeVarLong(out, value);
+    }
+}
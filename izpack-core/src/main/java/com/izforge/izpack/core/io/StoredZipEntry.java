@@ -0,0 +1,296 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The location of an entry stored uncompressed in a zip file.
+ * <p/>
+ * The data of a stored entry can be read directly from the zip file, given its offset. This isn't exposed by
+ * {@link java.util.zip.ZipFile}, so it is determined from the zip central directory and local file headers.
+ */
+public class StoredZipEntry
+{
+
+    /**
+     * The zip file.
+     */
+    private final File file;
+
+    /**
+     * The entry name.
+     */
+    private final String name;
+
+    /**
+     * The offset of the entry data in the zip file.
+     */
+    private final long offset;
+
+    /**
+     * The length of the entry data.
+     */
+    private final long length;
+
+    /**
+     * The end of central directory record signature.
+     */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /**
+     * The central directory file header signature.
+     */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    /**
+     * The local file header signature.
+     */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    /**
+     * The size of the end of central directory record, excluding the comment.
+     */
+    private static final int END_SIZE = 22;
+
+    /**
+     * The size of a central directory file header, excluding the variable length fields.
+     */
+    private static final int CENTRAL_SIZE = 46;
+
+    /**
+     * The size of a local file header, excluding the variable length fields.
+     */
+    private static final int LOCAL_SIZE = 30;
+
+    /**
+     * The maximum size of the zip file comment.
+     */
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    /**
+     * The value of 32 bit sizes and offsets that are stored in the zip64 extra field.
+     */
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    /**
+     * The general purpose flag indicating the entry is encrypted.
+     */
+    private static final int ENCRYPTED = 1;
+
+
+    /**
+     * Constructs a <tt>StoredZipEntry</tt>.
+     *
+     * @param file   the zip file
+     * @param name   the entry name
+     * @param offset the offset of the entry data in the zip file
+     * @param length the length of the entry data
+     */
+    public StoredZipEntry(File file, String name, long offset, long length)
+    {
+        this.file = file;
+        this.name = name;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns the zip file.
+     *
+     * @return the zip file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the entry name.
+     *
+     * @return the entry name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the offset of the entry data in the zip file.
+     *
+     * @return the offset of the entry data
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the length of the entry data.
+     *
+     * @return the length of the entry data
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the entries stored uncompressed in a zip file.
+     * <p/>
+     * Compressed, encrypted and zip64 entries are excluded. If the zip file uses a zip64 central directory, or
+     * its central directory cannot be located, no entries are returned.
+     *
+     * @param file the zip file
+     * @return the stored entries, keyed on name
+     * @throws IOException for any I/O error
+     */
+    public static Map<String, StoredZipEntry> getEntries(File file) throws IOException
+    {
+        Map<String, StoredZipEntry> result = new HashMap<String, StoredZipEntry>();
+        RandomAccessFile zip = new RandomAccessFile(file, "r");
+        try
+        {
+            long end = findEnd(zip);
+            if (end != -1)
+            {
+                byte[] record = new byte[END_SIZE];
+                zip.seek(end);
+                zip.readFully(record);
+                long size = getInt(record, 12);
+                long start = getInt(record, 16);
+                if (size != ZIP64_MAGIC && start != ZIP64_MAGIC && start + size <= end)
+                {
+                    byte[] directory = new byte[(int) size];
+                    zip.seek(start);
+                    zip.readFully(directory);
+                    readEntries(file, zip, directory, result);
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return result;
+    }
+
+    /**
+     * Reads the stored entries from the central directory.
+     *
+     * @param file      the zip file
+     * @param zip       the zip file, opened for reading
+     * @param directory the central directory
+     * @param entries   the entries to add to
+     * @throws IOException for any I/O error
+     */
+    private static void readEntries(File file, RandomAccessFile zip, byte[] directory,
+                                    Map<String, StoredZipEntry> entries) throws IOException
+    {
+        byte[] local = new byte[LOCAL_SIZE];
+        int pos = 0;
+        while (pos + CENTRAL_SIZE <= directory.length && getInt(directory, pos) == CENTRAL_SIGNATURE)
+        {
+            int flags = getShort(directory, pos + 8);
+            int method = getShort(directory, pos + 10);
+            long compressedSize = getInt(directory, pos + 20);
+            long size = getInt(directory, pos + 24);
+            int nameLength = getShort(directory, pos + 28);
+            int extraLength = getShort(directory, pos + 30);
+            int commentLength = getShort(directory, pos + 32);
+            long header = getInt(directory, pos + 42);
+            if (pos + CENTRAL_SIZE + nameLength > directory.length)
+            {
+                break;
+            }
+            if (method == 0 && (flags & ENCRYPTED) == 0 && compressedSize == size && size != ZIP64_MAGIC
+                    && header != ZIP64_MAGIC)
+            {
+                // the local header may have a different extra field length to the central directory
+                zip.seek(header);
+                zip.readFully(local);
+                if (getInt(local, 0) == LOCAL_SIGNATURE)
+                {
+                    String name = new String(directory, pos + CENTRAL_SIZE, nameLength, "UTF-8");
+                    long offset = header + LOCAL_SIZE + getShort(local, 26) + getShort(local, 28);
+                    entries.put(name, new StoredZipEntry(file, name, offset, size));
+                }
+            }
+            pos += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Locates the end of central directory record.
+     *
+     * @param zip the zip file
+     * @return the offset of the record, or <tt>-1</tt> if it cannot be found
+     * @throws IOException for any I/O error
+     */
+    private static long findEnd(RandomAccessFile zip) throws IOException
+    {
+        long length = zip.length();
+        if (length < END_SIZE)
+        {
+            return -1;
+        }
+        int size = (int) Math.min(length, END_SIZE + MAX_COMMENT);
+        byte[] buffer = new byte[size];
+        zip.seek(length - size);
+        zip.readFully(buffer);
+        for (int pos = size - END_SIZE; pos >= 0; --pos)
+        {
+            if (getInt(buffer, pos) == END_SIGNATURE)
+            {
+                return length - size + pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an unsigned little-endian 16 bit value.
+     *
+     * @param buffer the buffer
+     * @param pos    the position of the value
+     * @return the value
+     */
+    private static int getShort(byte[] buffer, int pos)
+    {
+        return (buffer[pos] & 0xFF) | (buffer[pos + 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Returns an unsigned little-endian 32 bit value.
+     *
+     * @param buffer the buffer
+     * @param pos    the position of the value
+     * @return the value
+     */
+    private static long getInt(byte[] buffer, int pos)
+    {
+        return (getShort(buffer, pos) | (long) getShort(buffer, pos + 2) << 16);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+
+/**
+ * Creates xz streams for {@link IndexedPack}.
+ * <p/>
+ * This is kept separate so that the xz classes are only loaded by installers that contain xz compressed entries.
+ */
+class XZStreams
+{
+
+    /**
+     * Returns a stream to xz compress data.
+     *
+     * @param out   the stream to write the compressed data to
+     * @param level the LZMA2 preset, or <tt>-1</tt> to use the default
+     * @return a new compressing stream
+     * @throws IOException for any I/O error
+     */
+    static OutputStream getOutputStream(OutputStream out, int level) throws IOException
+    {
+        int preset = (level >= LZMA2Options.PRESET_MIN && level <= LZMA2Options.PRESET_MAX)
+                ? level : LZMA2Options.PRESET_DEFAULT;
+        return new XZOutputStream(out, new LZMA2Options(preset));
+    }
+
+    /**
+     * Returns a stream to decompress xz data.
+     *
+     * @param in the stream to read the compressed data from
+     * @return a new decompressing stream
+     * @throws IOException for any I/O error
+     */
+    static InputStream getInputStream(InputStream in) throws IOException
+    {
+        return new XZInputStream(in);
+    }
+}
@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
@@ -77,12 +79,26 @@ public class RulesEngineImpl implements RulesEngine
 
     private final Set<ConditionReference> refConditions = new HashSet<ConditionReference>();
 
+    /**
+     * The compiled condition expressions, keyed on expression. Expressions that cannot be compiled map to
+     * {@link #INVALID}.
+     * <p/>
+     * Compiled conditions are shared by all evaluations of an expression. They are discarded whenever a condition
+     * is registered, as they refer to the registered conditions directly.
+     */
+    private final Map<String, Condition> expressions = new ConcurrentHashMap<String, Condition>();
+
     private final InstallData installData;
 
     private final ConditionContainer container;
 
     private static final Logger logger = Logger.getLogger(RulesEngineImpl.class.getName());
 
+    /**
+     * Placeholder for expressions that cannot be compiled.
+     */
+    private static final Condition INVALID = new StaticCondition(false);
+
     /**
      * The built-in condition types, with their corresponding class names.
      */
@@ -136,6 +152,8 @@ public class RulesEngineImpl implements RulesEngine
                 resolveBuiltinConditions(condition);
             }
         }
+        expressions.clear();
+        compileConditions();
     }
 
     /**
@@ -185,6 +203,7 @@ public class RulesEngineImpl implements RulesEngine
                 result.setInstallData(installData);
                 result.readFromXML(condition);
                 conditionsMap.put(id, result);
+                expressions.clear();
                 if (result instanceof ConditionReference)
                 {
                     refConditions.add((ConditionReference) result);
@@ -237,6 +256,7 @@ public class RulesEngineImpl implements RulesEngine
                     {
                         resolveBuiltinConditions(cond);
                         conditionsMap.put(condid, cond);
+                        expressions.clear();
                     }
                 }
             }
@@ -269,6 +289,7 @@ public class RulesEngineImpl implements RulesEngine
                     }
                 }
             }
+            compileConditions();
         }
     }
 
@@ -278,6 +299,9 @@ public class RulesEngineImpl implements RulesEngine
      * A condition ID as defined in the install.xml
      * A simple expression with !,+,|,\
      * A complex expression with !,&&,||,\\ - must begin with char @
+     * <p/>
+     * Expressions are compiled the first time they are requested, and the compiled condition returned for
+     * subsequent requests. It is shared, so must not be modified.
      *
      * @param id
      * @return the condition. May be <tt>null</tt>
@@ -286,15 +310,17 @@ public class RulesEngineImpl implements RulesEngine
     public Condition getCondition(String id)
     {
         Condition result = conditionsMap.get(id);
-        if (result == null)
+        if (result == null && id != null)
         {
-            if (id.startsWith("@"))
+            result = expressions.get(id);
+            if (result == null)
             {
-                result = parseComplexCondition(id.substring(1));
+                result = compile(id);
+                expressions.put(id, (result != null) ? result : INVALID);
             }
-            else
+            else if (result == INVALID)
             {
-                result = getConditionByExpr(new StringBuffer(id));
+                result = null;
             }
         }
         return result;
@@ -308,7 +334,6 @@ public class RulesEngineImpl implements RulesEngine
         {
             return isConditionTrue(cond, installData);
         }
-        logger.warning("Condition " + id + " not found");
         return false;
     }
 
@@ -334,7 +359,6 @@ public class RulesEngineImpl implements RulesEngine
         {
             return isConditionTrue(cond);
         }
-        logger.warning("Condition " + id + " not found");
         return false;
     }
 
@@ -346,10 +370,31 @@ public class RulesEngineImpl implements RulesEngine
             cond.setInstallData(this.installData);
         }
         boolean value = cond.isTrue();
-        logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
+        if (logger.isLoggable(Level.FINE))
+        {
+            logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
+        }
         return value;
     }
 
+    /**
+     * Determines if the result of a condition depends solely on the values of variables.
+     * <p/>
+     * This is the case if the condition only reads variables from the supplied <tt>Variables</tt>, or is
+     * built-in and constant. Conditions that inspect the file system, pack selection, the JVM or user code never
+     * qualify.
+     *
+     * @param id        the condition identifier or expression
+     * @param variables the variables the condition must read
+     * @return <tt>true</tt> if the condition only depends on <tt>variables</tt>, <tt>false</tt> if it may depend on
+     *         anything else, or doesn't exist
+     */
+    public boolean isDependentOnVariables(String id, Variables variables)
+    {
+        Condition condition = getCondition(id);
+        return condition != null && isDependentOnVariables(condition, variables);
+    }
+
     /**
      * Can a panel be shown?
      *
@@ -438,6 +483,7 @@ public class RulesEngineImpl implements RulesEngine
             else
             {
                 conditionsMap.put(id, condition);
+                expressions.clear();
             }
         }
         else
@@ -548,6 +594,49 @@ public class RulesEngineImpl implements RulesEngine
         conditionsMap.put(condition.getId(), condition);
     }
 
+    /**
+     * Compiles the pack and panel conditions, so that any that cannot be compiled are reported when the conditions
+     * are loaded, rather than when they are first evaluated.
+     */
+    private void compileConditions()
+    {
+        for (String expression : packConditions.values())
+        {
+            getCondition(expression);
+        }
+        for (String expression : panelConditions.values())
+        {
+            getCondition(expression);
+        }
+    }
+
+    /**
+     * Compiles a condition expression.
+     * <p/>
+     * An expression that references an unknown condition cannot be compiled. This is logged once, rather than each
+     * time the expression is evaluated.
+     *
+     * @param expression the expression
+     * @return the compiled condition, or <tt>null</tt> if it cannot be compiled
+     */
+    private Condition compile(String expression)
+    {
+        Condition result;
+        if (expression.startsWith("@"))
+        {
+            result = parseComplexCondition(expression.substring(1));
+        }
+        else
+        {
+            result = getConditionByExpr(new StringBuffer(expression));
+        }
+        if (result == null)
+        {
+            logger.warning("Condition " + expression + " not found");
+        }
+        return result;
+    }
+
     /**
      * Parses the given complex expression into a condition.
      * Understands the boolean operations && (AND), || (OR)
@@ -561,7 +650,7 @@ public class RulesEngineImpl implements RulesEngine
      * Parentheses may be added at a later time.
      *
      * @param expression
-     * @return
+     * @return the condition, or <tt>null</tt> if the expression references an unknown condition
      */
     private Condition parseComplexCondition(String expression)
     {
@@ -588,7 +677,10 @@ public class RulesEngineImpl implements RulesEngine
             result = conditionsMap.get(expression);
         }
 
-        result.setInstallData(installData);
+        if (result != null)
+        {
+            result.setInstallData(installData);
+        }
 
         return result;
     }
@@ -604,8 +696,14 @@ public class RulesEngineImpl implements RulesEngine
     private Condition parseComplexOrCondition(String expression)
     {
         String[] parts = expression.split("\\|\\|", 2);
+        Condition left = parseComplexCondition(parts[0].trim());
+        Condition right = parseComplexCondition(parts[1].trim());
+        if (left == null || right == null)
+        {
+            return null;
+        }
         OrCondition orCondition = new OrCondition(this);
-        orCondition.addOperands(parseComplexCondition(parts[0].trim()), parseComplexCondition(parts[1].trim()));
+        orCondition.addOperands(left, right);
 
         return orCondition;
     }
@@ -619,8 +717,14 @@ public class RulesEngineImpl implements RulesEngine
     private Condition parseComplexXorCondition(String expression)
     {
         String[] parts = expression.split("\\^", 2);
+        Condition left = parseComplexCondition(parts[0].trim());
+        Condition right = parseComplexCondition(parts[1].trim());
+        if (left == null || right == null)
+        {
+            return null;
+        }
         XorCondition xorCondition = new XorCondition(this);
-        xorCondition.addOperands(parseComplexCondition(parts[0].trim()), parseComplexCondition(parts[1].trim()));
+        xorCondition.addOperands(left, right);
 
         return xorCondition;
     }
@@ -636,8 +740,14 @@ public class RulesEngineImpl implements RulesEngine
     private Condition parseComplexAndCondition(String expression)
     {
         String[] parts = expression.split("\\&\\&", 2);
+        Condition left = parseComplexCondition(parts[0].trim());
+        Condition right = parseComplexCondition(parts[1].trim());
+        if (left == null || right == null)
+        {
+            return null;
+        }
         AndCondition andCondition = new AndCondition(this);
-        andCondition.addOperands(parseComplexCondition(parts[0].trim()), parseComplexCondition(parts[1].trim()));
+        andCondition.addOperands(left, right);
 
         return andCondition;
     }
@@ -671,23 +781,20 @@ public class RulesEngineImpl implements RulesEngine
                     // and-condition
                     Condition op1 = conditionsMap.get(conditionexpr.substring(0, index));
                     conditionexpr.delete(0, index + 1);
-                    result = new AndCondition(this);
-                    ((ConditionWithMultipleOperands) result).addOperands(op1, getConditionByExpr(conditionexpr));
+                    result = combine(new AndCondition(this), op1, getConditionByExpr(conditionexpr));
                     break;
                 case '|':
                     // or-condition
                     op1 = conditionsMap.get(conditionexpr.substring(0, index));
                     conditionexpr.delete(0, index + 1);
-                    result = new OrCondition(this);
-                    ((ConditionWithMultipleOperands) result).addOperands(op1, getConditionByExpr(conditionexpr));
+                    result = combine(new OrCondition(this), op1, getConditionByExpr(conditionexpr));
 
                     break;
                 case '\\':
                     // xor-condition
                     op1 = conditionsMap.get(conditionexpr.substring(0, index));
                     conditionexpr.delete(0, index + 1);
-                    result = new XorCondition(this);
-                    ((ConditionWithMultipleOperands) result).addOperands(op1, getConditionByExpr(conditionexpr));
+                    result = combine(new XorCondition(this), op1, getConditionByExpr(conditionexpr));
                     break;
                 case '!':
                     // not-condition
@@ -721,6 +828,24 @@ public class RulesEngineImpl implements RulesEngine
         return result;
     }
 
+    /**
+     * Populates a condition with two operands.
+     *
+     * @param condition the condition
+     * @param op1       the first operand. May be <tt>null</tt>
+     * @param op2       the second operand. May be <tt>null</tt>
+     * @return the condition, or <tt>null</tt> if either operand is <tt>null</tt>
+     */
+    private Condition combine(ConditionWithMultipleOperands condition, Condition op1, Condition op2)
+    {
+        if (op1 == null || op2 == null)
+        {
+            return null;
+        }
+        condition.addOperands(op1, op2);
+        return condition;
+    }
+
     /**
      * Returns the class name implementing a condition type.
      *
@@ -785,6 +910,46 @@ public class RulesEngineImpl implements RulesEngine
         }
     }
 
+    /**
+     * Recursively determines if the result of a condition depends solely on the values of variables.
+     *
+     * @param condition the condition
+     * @param variables the variables the condition must read
+     * @return <tt>true</tt> if the condition only depends on <tt>variables</tt>
+     */
+    private boolean isDependentOnVariables(Condition condition, Variables variables)
+    {
+        boolean result = false;
+        if (condition instanceof StaticCondition)
+        {
+            result = true;
+        }
+        else if (condition instanceof VariableCondition || condition instanceof CompareNumericsCondition
+                || condition instanceof CompareVersionsCondition)
+        {
+            InstallData data = (condition.getInstallData() != null) ? condition.getInstallData() : installData;
+            result = data != null && data.getVariables() == variables;
+        }
+        else if (condition instanceof ConditionReference)
+        {
+            Condition referenced = ((ConditionReference) condition).getReferencedCondition();
+            result = referenced != null && isDependentOnVariables(referenced, variables);
+        }
+        else if (condition instanceof ConditionWithMultipleOperands)
+        {
+            result = true;
+            for (Condition operand : ((ConditionWithMultipleOperands) condition).getOperands())
+            {
+                if (operand == null || !isDependentOnVariables(operand, variables))
+                {
+                    result = false;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * A built-in condition, created by the RulesEngine. These are not intended to be serialized - the RulesEngine
      * will replace any instance of a built in condition with its own version.
@@ -58,12 +58,14 @@ public class AndCondition extends ConditionWithMultipleOperands
     @Override
     public boolean isTrue()
     {
-        boolean result = true;
         for (Condition condition : nestedConditions)
         {
-            result = result && condition.isTrue();
+            if (!condition.isTrue())
+            {
+                return false;
+            }
         }
-        return result;
+        return true;
     }
 
     @Override
@@ -56,12 +56,14 @@ public class OrCondition extends ConditionWithMultipleOperands
     @Override
     public boolean isTrue()
     {
-        boolean result = false;
         for (Condition condition : nestedConditions)
         {
-            result = result || condition.isTrue();
+            if (condition.isTrue())
+            {
+                return true;
+            }
         }
-        return result;
+        return false;
     }
 
     @Override
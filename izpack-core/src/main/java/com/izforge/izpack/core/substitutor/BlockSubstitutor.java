@@ -0,0 +1,382 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Substitutes variables in the data read from a reader, a block of characters at a time.
+ * <p/>
+ * Runs of literal characters are located in the block and written in bulk. Variable references are scanned in place
+ * by a {@link VariableTokenizer}, and looked up in a table keyed on the characters of their names. Each variable is resolved and escaped the first time it is referenced;
+ * subsequent references write the escaped value without creating any strings.
+ * <p/>
+ * Instances are not thread safe, and should only be used for a single substitution.
+ */
+class BlockSubstitutor
+{
+
+    /**
+     * The substitutor, used to resolve variables and escape values.
+     */
+    private final VariableSubstitutorBase substitutor;
+
+    /**
+     * The escaping type.
+     */
+    private final SubstitutionType type;
+
+    /**
+     * The character that starts a variable reference.
+     */
+    private final char start;
+
+    /**
+     * The tokenizer, used to scan variable references.
+     */
+    private final VariableTokenizer tokenizer;
+
+    /**
+     * The buffer.
+     */
+    private char[] buffer;
+
+    /**
+     * The position of the next character to process in the buffer.
+     */
+    private int pos;
+
+    /**
+     * The no. of characters in the buffer.
+     */
+    private int limit;
+
+    /**
+     * Determines if the end of the input has been reached.
+     */
+    private boolean eof;
+
+    /**
+     * The resolved variables, indexed on the hash of their names. The length is a power of 2.
+     */
+    private Variable[] variables = new Variable[32];
+
+    /**
+     * The no. of resolved variables.
+     */
+    private int size;
+
+    /**
+     * Indicates that the buffer must be filled before a reference can be processed.
+     */
+    private static final int MORE = -2;
+
+    /**
+     * The default buffer size.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+
+    /**
+     * Constructs a <tt>BlockSubstitutor</tt>.
+     *
+     * @param substitutor    the substitutor, used to resolve variables and escape values
+     * @param type           the escaping type
+     * @param start          the character that starts a variable reference
+     * @param end            the character that ends a variable reference, or <tt>'\0'</tt> if there is none
+     * @param bracesRequired determines if variable references must be enclosed in braces
+     */
+    public BlockSubstitutor(VariableSubstitutorBase substitutor, SubstitutionType type, char start, char end,
+                            boolean bracesRequired)
+    {
+        this(substitutor, type, start, end, bracesRequired, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>BlockSubstitutor</tt>.
+     *
+     * @param substitutor    the substitutor, used to resolve variables and escape values
+     * @param type           the escaping type
+     * @param start          the character that starts a variable reference
+     * @param end            the character that ends a variable reference, or <tt>'\0'</tt> if there is none
+     * @param bracesRequired determines if variable references must be enclosed in braces
+     * @param bufferSize     the initial buffer size
+     */
+    BlockSubstitutor(VariableSubstitutorBase substitutor, SubstitutionType type, char start, char end,
+                     boolean bracesRequired, int bufferSize)
+    {
+        this.substitutor = substitutor;
+        this.type = type;
+        this.start = start;
+        tokenizer = new VariableTokenizer(end, bracesRequired);
+        buffer = new char[bufferSize];
+    }
+
+    /**
+     * Substitutes the variables found in the data read from a reader.
+     *
+     * @param reader the reader to read
+     * @param writer the writer to write to
+     * @return the number of substitutions made
+     * @throws Exception if a variable cannot be resolved, or for any I/O error
+     */
+    public int substitute(Reader reader, Writer writer) throws Exception
+    {
+        int subs = 0;
+        while (true)
+        {
+            // write the run of literal characters preceding the next potential variable reference
+            int from = pos;
+            while (pos < limit && buffer[pos] != start)
+            {
+                ++pos;
+            }
+            if (pos > from)
+            {
+                writer.write(buffer, from, pos - from);
+            }
+            if (pos == limit)
+            {
+                if (eof)
+                {
+                    return subs;
+                }
+                fill(reader);
+                continue;
+            }
+
+            int result = reference(writer);
+            if (result == MORE)
+            {
+                // the reference extends past the end of the buffer
+                fill(reader);
+            }
+            else
+            {
+                subs += result;
+            }
+        }
+    }
+
+    /**
+     * Processes the potential variable reference at the current position.
+     * <p/>
+     * If the reference can be processed using the characters in the buffer, it is written, and the position is
+     * advanced past it. Otherwise, nothing is written, and the position is left unchanged.
+     *
+     * @param writer the writer to write to
+     * @return the no. of substitutions made, or {@link #MORE} if the buffer must be filled first
+     * @throws Exception if a variable cannot be resolved, or for any I/O error
+     */
+    private int reference(Writer writer) throws Exception
+    {
+        if (!tokenizer.scan(buffer, pos, limit, eof))
+        {
+            return MORE;
+        }
+
+        // check if a legal and defined variable found
+        int subs = 0;
+        char[] value = null;
+        int nameStart = tokenizer.getNameStart();
+        int nameEnd = tokenizer.getNameEnd();
+        if (tokenizer.isReference())
+        {
+            value = lookup(nameStart, nameEnd - nameStart, tokenizer.isBraces());
+            subs = 1;
+        }
+
+        if (value != null)
+        {
+            // substitute the variable
+            writer.write(value);
+            pos = tokenizer.getReferenceEnd();
+        }
+        else
+        {
+            // ...or leave it as is. The character following the name is processed as a literal
+            writer.write(buffer, pos, nameEnd - pos);
+            pos = nameEnd;
+        }
+        return subs;
+    }
+
+    /**
+     * Reads more characters into the buffer.
+     * <p/>
+     * Characters preceding the current position are discarded. If the buffer is full of unprocessed characters,
+     * it is enlarged.
+     *
+     * @param reader the reader to read
+     * @throws IOException for any I/O error
+     */
+    private void fill(Reader reader) throws IOException
+    {
+        if (pos > 0)
+        {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length)
+        {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read == -1)
+        {
+            eof = true;
+        }
+        else
+        {
+            limit += read;
+        }
+    }
+
+    /**
+     * Returns the escaped value of a variable, resolving it if it hasn't been referenced before.
+     *
+     * @param offset the offset of the name in the buffer
+     * @param length the length of the name
+     * @param braces determines if the reference is enclosed in braces
+     * @return the escaped value, or <tt>null</tt> if the variable is undefined
+     * @throws Exception if the variable cannot be resolved
+     */
+    private char[] lookup(int offset, int length, boolean braces) throws Exception
+    {
+        int hash = 0;
+        for (int i = offset; i < offset + length; ++i)
+        {
+            hash = 31 * hash + buffer[i];
+        }
+        // environment variables can only be referenced using braces, so the name alone identifies the variable
+        int mask = variables.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        Variable variable;
+        while ((variable = variables[index]) != null)
+        {
+            if (variable.hash == hash && variable.matches(buffer, offset, length))
+            {
+                return variable.value;
+            }
+            index = (index + 1) & mask;
+        }
+
+        String name = new String(buffer, offset, length);
+        String value = VariableTokenizer.resolve(substitutor, name, braces);
+        variable = new Variable(name, hash, (value != null) ? substitutor.escapeSpecialChars(value, type)
+                .toCharArray() : null);
+        variables[index] = variable;
+        if (++size * 2 > variables.length)
+        {
+            rehash();
+        }
+        return variable.value;
+    }
+
+    /**
+     * Doubles the size of the variable table.
+     */
+    private void rehash()
+    {
+        Variable[] old = variables;
+        variables = new Variable[old.length * 2];
+        int mask = variables.length - 1;
+        for (Variable variable : old)
+        {
+            if (variable != null)
+            {
+                int index = (variable.hash ^ (variable.hash >>> 16)) & mask;
+                while (variables[index] != null)
+                {
+                    index = (index + 1) & mask;
+                }
+                variables[index] = variable;
+            }
+        }
+    }
+
+    /**
+     * A resolved variable.
+     */
+    private static class Variable
+    {
+
+        /**
+         * The variable name.
+         */
+        private final String name;
+
+        /**
+         * The hash of the name.
+         */
+        private final int hash;
+
+        /**
+         * The escaped value, or <tt>null</tt> if the variable is undefined.
+         */
+        private final char[] value;
+
+        /**
+         * Constructs a <tt>Variable</tt>.
+         *
+         * @param name  the variable name
+         * @param hash  the hash of the name
+         * @param value the escaped value. May be <tt>null</tt>
+         */
+        public Variable(String name, int hash, char[] value)
+        {
+            this.name = name;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        /**
+         * Determines if the variable has the specified name.
+         *
+         * @param buffer the buffer containing the name
+         * @param offset the offset of the name in the buffer
+         * @param length the length of the name
+         * @return <tt>true</tt> if the variable has the name
+         */
+        public boolean matches(char[] buffer, int offset, int length)
+        {
+            if (name.length() != length)
+            {
+                return false;
+            }
+            for (int i = 0; i < length; ++i)
+            {
+                if (name.charAt(i) != buffer[offset + i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -25,10 +25,10 @@ import com.izforge.izpack.api.data.Value;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
-import com.izforge.izpack.util.IoHelper;
 
 import java.io.*;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -97,6 +97,24 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      */
     public final static String PLAIN = "plain";
 
+    /**
+     * The maximum no. of compiled templates to cache.
+     */
+    private static final int MAX_TEMPLATES = 1024;
+
+    /**
+     * The compiled templates of recently substituted strings, in access order.
+     */
+    private final Map<String, VariableTemplate> templates = new LinkedHashMap<String, VariableTemplate>(16, 0.75f,
+                                                                                                        true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VariableTemplate> eldest)
+        {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+
     /**
      * A mapping of file type names to corresponding integer constants.
      */
@@ -118,6 +136,19 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
 
     public abstract Value getValue(String name);
 
+    /**
+     * Returns the value of a variable.
+     *
+     * @param name the variable name
+     * @return the variable value, or <tt>null</tt> if it is undefined
+     * @throws Exception if the variable cannot be resolved
+     */
+    protected String resolve(String name) throws Exception
+    {
+        Value value = getValue(name);
+        return (value != null) ? value.resolve() : null;
+    }
+
     /**
      * Get whether this substitutor requires braces.
      */
@@ -132,6 +163,10 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
     public void setBracesRequired(boolean braces)
     {
         bracesRequired = braces;
+        synchronized (templates)
+        {
+            templates.clear();
+        }
     }
 
     /**
@@ -162,6 +197,27 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         {
             return null;
         }
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
+        if (isTemplateType(type))
+        {
+            if (str.indexOf('$') == -1)
+            {
+                // nothing to substitute
+                return str;
+            }
+            try
+            {
+                return substituteTemplate(str, type);
+            }
+            catch (Exception e)
+            {
+                LOGGER.log(Level.SEVERE, "Error when substituting variables", e);
+                throw new IzPackException(e);
+            }
+        }
 
         // Create reader and write for the strings
         StringReader reader = new StringReader(str);
@@ -182,6 +238,65 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         return writer.getBuffer().toString();
     }
 
+    /**
+     * Substitutes the variables in a string using a compiled template.
+     * <p/>
+     * A trailing path segment that contains no variables doesn't affect how the rest of the string is parsed, so it
+     * is appended to the substituted remainder. This way, paths to files in the same directory share a template.
+     *
+     * @param str  the string
+     * @param type the escaping type
+     * @return the string with substituted variables
+     * @throws Exception if a variable cannot be resolved
+     */
+    private String substituteTemplate(String str, SubstitutionType type) throws Exception
+    {
+        String result;
+        int split = str.lastIndexOf('/');
+        if (split > 0 && split > str.lastIndexOf('$') && split > str.lastIndexOf('}'))
+        {
+            result = getTemplate(str.substring(0, split)).substitute(this, type).concat(str.substring(split));
+        }
+        else
+        {
+            result = getTemplate(str).substitute(this, type);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the compiled template for a string, compiling it if it isn't cached.
+     *
+     * @param str the string
+     * @return the template
+     */
+    protected VariableTemplate getTemplate(String str)
+    {
+        synchronized (templates)
+        {
+            VariableTemplate result = templates.get(str);
+            if (result == null)
+            {
+                result = VariableTemplate.compile(str, bracesRequired);
+                templates.put(str, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Determines if strings can be substituted using a {@link VariableTemplate}. This is the case for types where
+     * variables are introduced by <tt>$</tt>, and have no end marker.
+     *
+     * @param type the substitution type
+     * @return <tt>true</tt> if strings can be substituted using a template
+     */
+    private boolean isTemplateType(SubstitutionType type)
+    {
+        return type == SubstitutionType.TYPE_PLAIN || type == SubstitutionType.TYPE_JAVA_PROPERTIES
+                || type == SubstitutionType.TYPE_XML || type == SubstitutionType.TYPE_JAVA;
+    }
+
     /**
      * Substitutes the variables found in the specified input stream. Escapes special characters
      * using file type specific escaping if necessary.
@@ -282,6 +397,9 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
     /**
      * Substitutes the variables found in the data read from the specified reader. Escapes special
      * characters using file type specific escaping if necessary.
+     * <p/>
+     * The data is processed a block at a time, so neither the reader nor the writer need to be buffered.
+     * Each variable is resolved once, the first time it is referenced.
      *
      * @param reader the reader to read
      * @param writer the writer used to write data out
@@ -318,103 +436,8 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
                 break;
         }
 
-        int subs = 0;
-
-        // Copy data and substitute variables
-        int c = reader.read();
-
-        while (true)
-        {
-            // Find the next potential variable reference or EOF
-            while (c != -1 && c != variable_start)
-            {
-                writer.write(c);
-                c = reader.read();
-            }
-            if (c == -1)
-            {
-                return subs;
-            }
-
-            // Check if braces used or start char escaped
-            boolean braces = false;
-            c = reader.read();
-            if (c == '{')
-            {
-                braces = true;
-                c = reader.read();
-            }
-            else if (bracesRequired)
-            {
-                writer.write(variable_start);
-                continue;
-            }
-            else if (c == -1)
-            {
-                writer.write(variable_start);
-                return subs;
-            }
-
-            // Read the variable name
-            StringBuffer nameBuffer = new StringBuffer();
-            while (c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
-                    || (c >= 'A' && c <= 'Z') || (braces && ((c == '[') || (c == ']')))
-                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameBuffer.length() > 0))
-            {
-                nameBuffer.append((char) c);
-                c = reader.read();
-            }
-            String name = nameBuffer.toString();
-
-            // Check if a legal and defined variable found
-            String varvalue = null;
-
-            if (((!braces || c == '}') &&
-                    (!braces || variable_end == '\0' || variable_end == c)
-            ) && name.length() > 0)
-            {
-                // check for environment variables
-                if (braces && name.startsWith("ENV[")
-                        && (name.lastIndexOf(']') == name.length() - 1))
-                {
-                    varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
-                    if (varvalue == null)
-                    {
-                        varvalue = "";
-                    }
-                }
-                else
-                {
-                    Value val = getValue(name);
-                    if (val != null)
-                    {
-                        varvalue = val.resolve();
-                    }
-                }
-
-                subs++;
-            }
-
-            // Substitute the variable...
-            if (varvalue != null)
-            {
-                writer.write(escapeSpecialChars(varvalue, type));
-                if (braces || variable_end != '\0')
-                {
-                    c = reader.read();
-                }
-            }
-            // ...or ignore it
-            else
-            {
-                writer.write(variable_start);
-                if (braces)
-                {
-                    writer.write('{');
-                }
-                writer.write(name);
-            }
-        }
+        BlockSubstitutor substitutor = new BlockSubstitutor(this, type, variable_start, variable_end, bracesRequired);
+        return substitutor.substitute(reader, writer);
     }
 
     /**
@@ -63,4 +63,16 @@ public class VariableSubstitutorImpl extends VariableSubstitutorBase implements
     {
         return new PlainValue(variables.getProperty(name));
     }
+
+    /**
+     * Returns the value of a variable.
+     *
+     * @param name the variable name
+     * @return the variable value, or <tt>null</tt> if it is undefined
+     */
+    @Override
+    protected String resolve(String name)
+    {
+        return variables.getProperty(name);
+    }
 }
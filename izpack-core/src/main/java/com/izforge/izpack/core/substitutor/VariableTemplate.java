@@ -0,0 +1,290 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * A string containing <tt>$NAME</tt> and <tt>${NAME}</tt> variable references, parsed into literal segments and
+ * variable slots.
+ * <p/>
+ * References are scanned by the {@link VariableTokenizer} shared with
+ * {@link VariableSubstitutorBase#substitute(java.io.Reader, java.io.Writer, SubstitutionType)}, so substituting a
+ * template gives the same result as substituting the string it was compiled from.
+ * <p/>
+ * The result of the last substitution is retained, along with the variable values used to produce it. It is
+ * returned as is while the referenced variables are unchanged, so repeated substitution doesn't allocate.
+ */
+public class VariableTemplate
+{
+
+    /**
+     * The string the template was compiled from.
+     */
+    private final String text;
+
+    /**
+     * The literal segments. There is one more literal than there are variables; literals may be empty.
+     */
+    private final String[] literals;
+
+    /**
+     * The variable references. The variable at index <em>i</em> follows the literal at index <em>i</em>.
+     */
+    private final Reference[] references;
+
+    /**
+     * The last substitution. May be <tt>null</tt>
+     */
+    private volatile Substitution last;
+
+
+    /**
+     * Constructs a <tt>VariableTemplate</tt>.
+     *
+     * @param text       the string the template was compiled from
+     * @param literals   the literal segments
+     * @param references the variable references
+     */
+    private VariableTemplate(String text, String[] literals, Reference[] references)
+    {
+        this.text = text;
+        this.literals = literals;
+        this.references = references;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param text           the string to compile
+     * @param bracesRequired if <tt>true</tt>, only <tt>${NAME}</tt> references are variables
+     * @return the template
+     */
+    public static VariableTemplate compile(String text, boolean bracesRequired)
+    {
+        List<String> literals = new ArrayList<String>();
+        List<Reference> references = new ArrayList<Reference>();
+        StringBuilder literal = new StringBuilder();
+        VariableTokenizer tokenizer = new VariableTokenizer('\0', bracesRequired);
+        char[] chars = text.toCharArray();
+        int pos = 0;
+        int next;
+        while ((next = text.indexOf('$', pos)) != -1)
+        {
+            literal.append(chars, pos, next - pos);
+            tokenizer.scan(chars, next, chars.length, true);
+            if (tokenizer.isReference())
+            {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                String name = text.substring(tokenizer.getNameStart(), tokenizer.getNameEnd());
+                references.add(new Reference(name, tokenizer.isBraces()));
+                // the closing brace belongs to the reference, whether or not it is resolved
+                pos = tokenizer.getReferenceEnd();
+            }
+            else
+            {
+                literal.append(chars, next, tokenizer.getNameEnd() - next);
+                pos = tokenizer.getNameEnd();
+            }
+        }
+        literal.append(chars, pos, chars.length - pos);
+        literals.add(literal.toString());
+        return new VariableTemplate(text, literals.toArray(new String[literals.size()]),
+                                    references.toArray(new Reference[references.size()]));
+    }
+
+    /**
+     * Returns the string the template was compiled from.
+     *
+     * @return the string
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Determines if the template references any variables.
+     *
+     * @return <tt>true</tt> if the template references variables
+     */
+    public boolean hasVariables()
+    {
+        return references.length != 0;
+    }
+
+    /**
+     * Substitutes variables in the template.
+     *
+     * @param substitutor the substitutor, used to resolve variables and escape values
+     * @param type        the escaping type
+     * @return the template with variables substituted
+     * @throws Exception if a variable cannot be resolved
+     */
+    public String substitute(VariableSubstitutorBase substitutor, SubstitutionType type) throws Exception
+    {
+        if (references.length == 0)
+        {
+            return text;
+        }
+        Substitution previous = last;
+        if (previous != null && previous.type == type && previous.substitutor == substitutor)
+        {
+            int i = 0;
+            while (i < references.length && equals(previous.values[i], references[i].resolve(substitutor)))
+            {
+                ++i;
+            }
+            if (i == references.length)
+            {
+                return previous.result;
+            }
+        }
+
+        String[] values = new String[references.length];
+        StringBuilder result = new StringBuilder(text.length() + 32);
+        for (int i = 0; i < references.length; ++i)
+        {
+            result.append(literals[i]);
+            Reference reference = references[i];
+            String value = reference.resolve(substitutor);
+            values[i] = value;
+            if (value != null)
+            {
+                result.append(substitutor.escapeSpecialChars(value, type));
+            }
+            else
+            {
+                // leave the reference as is
+                result.append(reference.braces ? "${" : "$").append(reference.name);
+                if (reference.braces)
+                {
+                    result.append('}');
+                }
+            }
+        }
+        result.append(literals[references.length]);
+        Substitution substitution = new Substitution(substitutor, type, values, result.toString());
+        last = substitution;
+        return substitution.result;
+    }
+
+    /**
+     * Compares two possibly <tt>null</tt> strings.
+     *
+     * @param a the first string. May be <tt>null</tt>
+     * @param b the second string. May be <tt>null</tt>
+     * @return <tt>true</tt> if the strings are equal
+     */
+    private static boolean equals(String a, String b)
+    {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * A variable reference.
+     */
+    private static class Reference
+    {
+
+        /**
+         * The variable name.
+         */
+        private final String name;
+
+        /**
+         * Determines if the reference is enclosed in braces.
+         */
+        private final boolean braces;
+
+        /**
+         * Constructs a <tt>Reference</tt>.
+         *
+         * @param name   the variable name
+         * @param braces determines if the reference is enclosed in braces
+         */
+        public Reference(String name, boolean braces)
+        {
+            this.name = name;
+            this.braces = braces;
+        }
+
+        /**
+         * Resolves the variable.
+         *
+         * @param substitutor the substitutor
+         * @return the variable value, or <tt>null</tt> if it is undefined
+         * @throws Exception if the variable cannot be resolved
+         */
+        public String resolve(VariableSubstitutorBase substitutor) throws Exception
+        {
+            return VariableTokenizer.resolve(substitutor, name, braces);
+        }
+    }
+
+    /**
+     * The result of a substitution, and the values it was produced from.
+     */
+    private static class Substitution
+    {
+
+        /**
+         * The substitutor.
+         */
+        private final VariableSubstitutorBase substitutor;
+
+        /**
+         * The escaping type.
+         */
+        private final SubstitutionType type;
+
+        /**
+         * The variable values.
+         */
+        private final String[] values;
+
+        /**
+         * The result.
+         */
+        private final String result;
+
+        /**
+         * Constructs a <tt>Substitution</tt>.
+         *
+         * @param substitutor the substitutor
+         * @param type        the escaping type
+         * @param values      the variable values
+         * @param result      the result
+         */
+        public Substitution(VariableSubstitutorBase substitutor, SubstitutionType type, String[] values,
+                            String result)
+        {
+            this.substitutor = substitutor;
+            this.type = type;
+            this.values = values;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Scans the variable references substituted by {@link VariableSubstitutorBase}.
+ * <p/>
+ * A reference starts with a start character, such as <tt>$</tt>. Without braces, the name starts with a letter, and
+ * continues with letters, digits, <tt>_</tt>, <tt>.</tt> and <tt>-</tt>. With braces, the name extends to the
+ * closing brace. <tt>${ENV[NAME]}</tt> references the environment variable <em>NAME</em>.
+ * <p/>
+ * This is shared by {@link VariableTemplate}, which compiles strings, and {@link BlockSubstitutor}, which substitutes
+ * streams a block at a time. The bounds of the last reference scanned are held by the tokenizer, so that scanning
+ * doesn't allocate.
+ * <p/>
+ * Instances are not thread safe.
+ */
+final class VariableTokenizer
+{
+
+    /**
+     * The character that ends a variable reference, or <tt>'\0'</tt> if there is none.
+     */
+    private final char end;
+
+    /**
+     * Determines if variable references must be enclosed in braces.
+     */
+    private final boolean bracesRequired;
+
+    /**
+     * Determines if the last reference scanned is enclosed in braces.
+     */
+    private boolean braces;
+
+    /**
+     * The position of the first character of the name of the last reference scanned.
+     */
+    private int nameStart;
+
+    /**
+     * The position following the name of the last reference scanned.
+     */
+    private int nameEnd;
+
+    /**
+     * The position following the last reference scanned, if it is a legal reference.
+     */
+    private int referenceEnd;
+
+    /**
+     * Determines if the last reference scanned is a legal reference.
+     */
+    private boolean reference;
+
+    /**
+     * The value returned for positions past the end of the buffer, if the end of the input hasn't been reached.
+     */
+    private static final int MORE = -2;
+
+
+    /**
+     * Constructs a <tt>VariableTokenizer</tt>.
+     *
+     * @param end            the character that ends a variable reference, or <tt>'\0'</tt> if there is none
+     * @param bracesRequired determines if variable references must be enclosed in braces
+     */
+    public VariableTokenizer(char end, boolean bracesRequired)
+    {
+        this.end = end;
+        this.bracesRequired = bracesRequired;
+    }
+
+    /**
+     * Scans the potential variable reference at the specified position.
+     * <p/>
+     * If the characters following the name can't be determined without reading past the limit of the buffer, the
+     * reference isn't scanned.
+     *
+     * @param buffer the buffer
+     * @param pos    the position of the character that starts the reference
+     * @param limit  the no. of characters in the buffer
+     * @param eof    determines if the buffer holds the remainder of the input
+     * @return <tt>true</tt> if the reference was scanned, <tt>false</tt> if more input is required
+     */
+    public boolean scan(char[] buffer, int pos, int limit, boolean eof)
+    {
+        int i = pos + 1;
+        int c = get(buffer, i, limit, eof);
+        if (c == MORE)
+        {
+            return false;
+        }
+
+        // check if braces used or start char escaped
+        braces = false;
+        if (c == '{')
+        {
+            braces = true;
+            c = get(buffer, ++i, limit, eof);
+        }
+        else if (bracesRequired)
+        {
+            nameStart = i;
+            nameEnd = i;
+            reference = false;
+            return true;
+        }
+
+        // read the variable name
+        int start = i;
+        while (c != MORE && isNameChar(c, braces, i == start))
+        {
+            c = get(buffer, ++i, limit, eof);
+        }
+        if (c == MORE)
+        {
+            return false;
+        }
+        nameStart = start;
+        nameEnd = i;
+
+        // check if a legal reference found. If so, the end character, or whatever follows the name, belongs to it
+        reference = (!braces || c == '}') && (!braces || end == '\0' || end == c) && nameEnd > nameStart;
+        referenceEnd = ((braces || end != '\0') && c != -1) ? i + 1 : i;
+        return true;
+    }
+
+    /**
+     * Determines if the last reference scanned is a legal reference.
+     * <p/>
+     * If not, the characters preceding {@link #getNameEnd()} are literals.
+     *
+     * @return <tt>true</tt> if the reference is legal
+     */
+    public boolean isReference()
+    {
+        return reference;
+    }
+
+    /**
+     * Determines if the last reference scanned is enclosed in braces.
+     *
+     * @return <tt>true</tt> if the reference is enclosed in braces
+     */
+    public boolean isBraces()
+    {
+        return braces;
+    }
+
+    /**
+     * Returns the position of the first character of the name of the last reference scanned.
+     *
+     * @return the name start position
+     */
+    public int getNameStart()
+    {
+        return nameStart;
+    }
+
+    /**
+     * Returns the position following the name of the last reference scanned.
+     *
+     * @return the name end position
+     */
+    public int getNameEnd()
+    {
+        return nameEnd;
+    }
+
+    /**
+     * Returns the position following the last reference scanned, if it is a legal reference.
+     *
+     * @return the reference end position
+     */
+    public int getReferenceEnd()
+    {
+        return referenceEnd;
+    }
+
+    /**
+     * Resolves a variable reference.
+     *
+     * @param substitutor the substitutor
+     * @param name        the variable name
+     * @param braces      determines if the reference is enclosed in braces
+     * @return the variable value, or <tt>null</tt> if it is undefined
+     * @throws Exception if the variable cannot be resolved
+     */
+    public static String resolve(VariableSubstitutorBase substitutor, String name, boolean braces) throws Exception
+    {
+        String result;
+        // environment variables can only be referenced using braces
+        if (braces && name.startsWith("ENV[") && name.lastIndexOf(']') == name.length() - 1)
+        {
+            result = IoHelper.getenv(name.substring(4, name.length() - 1));
+            if (result == null)
+            {
+                result = "";
+            }
+        }
+        else
+        {
+            result = substitutor.resolve(name);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a character belongs to a variable name.
+     *
+     * @param c      the character, or a negative value if there is none
+     * @param braces determines if the reference is enclosed in braces
+     * @param first  determines if the character is the first character of the name
+     * @return <tt>true</tt> if the character belongs to the name
+     */
+    private static boolean isNameChar(int c, boolean braces, boolean first)
+    {
+        return (braces && c >= 0 && c != '}') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (!first && ((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-'));
+    }
+
+    /**
+     * Returns the character at the specified position in a buffer.
+     *
+     * @param buffer the buffer
+     * @param i      the position
+     * @param limit  the no. of characters in the buffer
+     * @param eof    determines if the buffer holds the remainder of the input
+     * @return the character, <tt>-1</tt> if the end of the input has been reached, or {@link #MORE} if the buffer
+     *         must be filled first
+     */
+    private static int get(char[] buffer, int i, int limit, boolean eof)
+    {
+        if (i < limit)
+        {
+            return buffer[i];
+        }
+        return eof ? -1 : MORE;
+    }
+}
@@ -21,9 +21,11 @@
 
 package com.izforge.izpack.core.variable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -108,6 +110,94 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
         }
     }
 
+    /**
+     * Resolves the value, with variables substituted.
+     * <p/>
+     * If the value has a cache, the result is reused until the configuration file is modified.
+     *
+     * @param substitutors the variable substitutors
+     * @return the value. May be <tt>null</tt>
+     * @throws Exception if the value cannot be resolved
+     */
+    @Override
+    public String resolve(VariableSubstitutor... substitutors) throws Exception
+    {
+        return resolveCached(getSource(substitutors), Long.MAX_VALUE);
+    }
+
+    @Override
+    public void prefetch(Executor executor, VariableSubstitutor... substitutors)
+    {
+        prefetchCached(getSource(substitutors), Long.MAX_VALUE, executor);
+    }
+
+    /**
+     * Returns the path of the configuration file, or of the archive containing it, with variables substituted.
+     *
+     * @param substitutors the variable substitutors
+     * @return the path
+     */
+    protected abstract String substituteLocation(VariableSubstitutor... substitutors);
+
+    /**
+     * Returns the name of the archive entry containing the configuration, with variables substituted.
+     *
+     * @param substitutors the variable substitutors
+     * @return the entry name, or <tt>null</tt> if the configuration isn't read from an archive
+     */
+    protected String substituteEntry(VariableSubstitutor... substitutors)
+    {
+        return null;
+    }
+
+    /**
+     * Opens the configuration.
+     *
+     * @param location the path of the configuration file, or of the archive containing it
+     * @param entry    the name of the archive entry containing the configuration. May be <tt>null</tt>
+     * @return a stream to the configuration
+     * @throws Exception if the configuration cannot be opened
+     */
+    protected abstract InputStream getInputStream(String location, String entry) throws Exception;
+
+    /**
+     * Returns a source that reads the value from the configuration, with variables substituted.
+     * <p/>
+     * The source is stamped with the modification time and length of the file.
+     *
+     * @param substitutors the variable substitutors
+     * @return the source
+     */
+    private ValueCache.Source getSource(final VariableSubstitutor... substitutors)
+    {
+        final String location = substituteLocation(substitutors);
+        final String entry = substituteEntry(substitutors);
+        String _key_ = key;
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            _key_ = substitutor.substitute(_key_);
+        }
+        File file = new File(location);
+        String id = "config:" + getClass().getName() + ':' + type + '\0' + location + '\0' + entry + '\0'
+                + section + '\0' + _key_;
+        return new ValueCache.Source(id, file.lastModified() * 31 + file.length())
+        {
+            @Override
+            public String call() throws Exception
+            {
+                InputStream in = getInputStream(location, entry);
+                try
+                {
+                    return resolve(in, substitutors);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        };
+    }
+
     protected String resolve(InputStream in) throws Exception
     {
         switch (type)
@@ -22,6 +22,7 @@
 package com.izforge.izpack.core.variable;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
@@ -98,14 +99,31 @@ public class ExecValue extends ValueImpl implements Serializable
     }
 
     @Override
-    public String resolve()
+    public String resolve() throws Exception
     {
         VariableSubstitutor substitutor = new VariableSubstitutorImpl(getInstallData().getVariables());
         return resolve(substitutor);
     }
 
     @Override
-    public String resolve(VariableSubstitutor... substitutors)
+    public String resolve(VariableSubstitutor... substitutors) throws Exception
+    {
+        return resolveCached(getSource(substitutors), getCacheTTL());
+    }
+
+    @Override
+    public void prefetch(Executor executor, VariableSubstitutor... substitutors)
+    {
+        prefetchCached(getSource(substitutors), getCacheTTL(), executor);
+    }
+
+    /**
+     * Returns a source that runs the command, with variables substituted.
+     *
+     * @param substitutors the variable substitutors
+     * @return the source
+     */
+    private ValueCache.Source getSource(VariableSubstitutor... substitutors)
     {
         String _dir_ = null, _cmd_[] = new String[cmd.length];
 
@@ -114,6 +132,7 @@ public class ExecValue extends ValueImpl implements Serializable
             _dir_ = substitutor.substitute(dir, null);
         }
 
+        StringBuilder key = new StringBuilder("exec:").append(useStdErr).append(':').append(_dir_);
         for (int i = 0; i < cmd.length; i++)
         {
             String _cmdarg_ = cmd[i];
@@ -122,9 +141,31 @@ public class ExecValue extends ValueImpl implements Serializable
                 _cmdarg_ = substitutor.substitute(_cmdarg_, null);
             }
             _cmd_[i] = _cmdarg_;
+            key.append('\0').append(_cmdarg_);
         }
+        final String directory = _dir_;
+        final String[] command = _cmd_;
+        return new ValueCache.Source(key.toString(), 0)
+        {
+            @Override
+            public String call()
+            {
+                return execute(command, directory);
+            }
+        };
+    }
+
+    /**
+     * Runs the command.
+     *
+     * @param command the command and its arguments
+     * @param dir     the working directory. May be <tt>null</tt>
+     * @return the command output, or <tt>null</tt> if the command failed
+     */
+    private String execute(String[] command, String dir)
+    {
         String[] execOut = new String[2];
-        int ret = new FileExecutor().executeCommand(_cmd_, execOut, _dir_);
+        int ret = new FileExecutor().executeCommand(command, execOut, dir);
         if (ret == 0)
         {
             if (useStdErr)
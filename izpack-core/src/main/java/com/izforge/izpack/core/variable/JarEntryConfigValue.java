@@ -24,8 +24,6 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipException;
 
-import com.izforge.izpack.api.substitutor.VariableSubstitutor;
-
 
 public class JarEntryConfigValue extends ZipEntryConfigFileValue
 {
@@ -42,19 +40,9 @@ public class JarEntryConfigValue extends ZipEntryConfigFileValue
     }
 
     @Override
-    public String resolve(VariableSubstitutor... substitutors)
-            throws Exception
+    protected InputStream getInputStream(String location, String entry) throws Exception
     {
-        String _filename_ = getFilename(), _entryname_ = getEntryname();
-        for (VariableSubstitutor substitutor : substitutors)
-        {
-            _filename_ = substitutor.substitute(_filename_);
-        }
-        for (VariableSubstitutor substitutor : substitutors)
-        {
-            _entryname_ = substitutor.substitute(_entryname_);
-        }
-        return super.resolve(getJarEntryInputStream(_filename_, _entryname_), substitutors);
+        return getJarEntryInputStream(location, entry);
     }
 
     private InputStream getJarEntryInputStream(String filename, String entryname) throws Exception
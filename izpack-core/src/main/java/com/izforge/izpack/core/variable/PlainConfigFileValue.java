@@ -24,6 +24,7 @@ package com.izforge.izpack.core.variable;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.Serializable;
 
 public class PlainConfigFileValue extends ConfigFileValue implements Serializable
@@ -68,14 +69,19 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
     }
 
     @Override
-    public String resolve(VariableSubstitutor... substitutors)
-            throws Exception
+    protected String substituteLocation(VariableSubstitutor... substitutors)
     {
         String _location_ = location;
         for (VariableSubstitutor substitutor : substitutors)
         {
             _location_ = substitutor.substitute(_location_);
         }
-        return resolve(new FileInputStream(_location_), substitutors);
+        return _location_;
+    }
+
+    @Override
+    protected InputStream getInputStream(String location, String entry) throws Exception
+    {
+        return new FileInputStream(location);
     }
 }
@@ -22,6 +22,7 @@
 package com.izforge.izpack.core.variable;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.OsVersion;
@@ -146,44 +147,57 @@ public class RegistryValue extends ValueImpl implements Serializable
         {
             throw new Exception("Registry access allowed only on Windows OS");
         }
+        resolvedValue = resolveCached(getSource(substitutors), getCacheTTL());
+        return resolvedValue;
+    }
 
-        Reg reg = null;
-        Reg.Key regkey = null;
-        if (root != null)
+    @Override
+    public void prefetch(Executor executor, VariableSubstitutor... substitutors)
+    {
+        if (OsVersion.IS_WINDOWS)
         {
-            String _root_ = root;
-            for (VariableSubstitutor substitutor : substitutors)
-            {
-                _root_ = substitutor.substitute(_root_);
-            }
-            reg = new Reg(_root_);
+            prefetchCached(getSource(substitutors), getCacheTTL(), executor);
         }
-        if (key != null)
+    }
+
+    /**
+     * Returns a source that reads the registry value, with variables substituted.
+     *
+     * @param substitutors the variable substitutors
+     * @return the source
+     */
+    private ValueCache.Source getSource(VariableSubstitutor... substitutors)
+    {
+        String _root_ = root, _key_ = key, _value_ = value;
+        for (VariableSubstitutor substitutor : substitutors)
         {
-        	String _key_ = key;
-            for (VariableSubstitutor substitutor : substitutors)
-            {
-                _key_ = substitutor.substitute(_key_);
-            }
-            
-            if (reg == null)
-            {
-            	// If the regRoot is not provided, load the portion of the registry indicated by regKey
-                reg = new Reg(_key_);
-            }        
-            regkey = reg.get(_key_);            
+            _root_ = substitutor.substitute(_root_);
+            _key_ = substitutor.substitute(_key_);
+            _value_ = substitutor.substitute(_value_);
         }
-        if (regkey != null)
+        final String regRoot = _root_, regKey = _key_, regValue = _value_;
+        return new ValueCache.Source("registry:" + regRoot + '\0' + regKey + '\0' + regValue, 0)
         {
-            String _value_ = value;
-            for (VariableSubstitutor substitutor : substitutors)
+            @Override
+            public String call() throws Exception
             {
-                _value_ = substitutor.substitute(_value_);
+                Reg reg = null;
+                Reg.Key regkey = null;
+                if (regRoot != null)
+                {
+                    reg = new Reg(regRoot);
+                }
+                if (regKey != null)
+                {
+                    if (reg == null)
+                    {
+                        // If the regRoot is not provided, load the portion of the registry indicated by regKey
+                        reg = new Reg(regKey);
+                    }
+                    regkey = reg.get(regKey);
+                }
+                return (regkey != null) ? regkey.get(regValue) : null;
             }
-            resolvedValue = regkey.get(_value_);
-            return resolvedValue;
-        }
-
-        return null;
+        };
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.variable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Caches the results of expensive dynamic variable sources, such as commands, the registry and configuration files.
+ * <p/>
+ * Each result is identified by a key, derived from the source and its substituted arguments, and a stamp that
+ * changes when the underlying data changes, such as the modification time of a file. A result is reused while its
+ * key and stamp are unchanged, and its time-to-live hasn't elapsed. Results are computed at most once at a time;
+ * concurrent requests for the same source wait on the same computation.
+ * <p/>
+ * Sources may be {@link #prefetch prefetched} on a background executor, so that their results are available when
+ * first requested.
+ * <p/>
+ * Failures aren't cached.
+ * <p/>
+ * Each {@link com.izforge.izpack.core.data.DefaultVariables} instance owns a cache, shared by the values of its
+ * dynamic variables.
+ * <p/>
+ * This class is thread safe.
+ */
+public class ValueCache
+{
+
+    /**
+     * The default time-to-live of results whose staleness can't be detected, in milliseconds.
+     * <p/>
+     * Such results are only reused if they were prefetched and not yet requested.
+     */
+    public static final long DEFAULT_TTL = 0;
+
+    /**
+     * The results, keyed on source key.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ValueCache.class.getName());
+
+
+    /**
+     * Returns the result of a source, computing it if there is no current result.
+     *
+     * @param source the source
+     * @param ttl    the time-to-live of the result, in milliseconds. If <tt>&lt;= 0</tt>, the result is only reused
+     *               if it was prefetched and not yet requested
+     * @return the result. May be <tt>null</tt>
+     * @throws Exception if the result cannot be computed
+     */
+    public String get(Source source, long ttl) throws Exception
+    {
+        Entry entry = getEntry(source, ttl, null);
+        try
+        {
+            return entry.task.get();
+        }
+        catch (ExecutionException exception)
+        {
+            entries.remove(source.getKey(), entry);
+            Throwable cause = exception.getCause();
+            if (cause instanceof Exception)
+            {
+                throw (Exception) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw exception;
+        }
+        finally
+        {
+            entry.requested = true;
+        }
+    }
+
+    /**
+     * Computes the result of a source on an executor, unless there is a current result.
+     *
+     * @param source   the source
+     * @param ttl      the time-to-live of the result, in milliseconds
+     * @param executor the executor
+     */
+    public void prefetch(Source source, long ttl, Executor executor)
+    {
+        getEntry(source, ttl, executor);
+    }
+
+    /**
+     * Discards all results.
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Returns the entry for a source, creating it if there is no current entry.
+     * <p/>
+     * A new entry is computed on the executor if one is supplied, otherwise on the calling thread.
+     *
+     * @param source   the source
+     * @param ttl      the time-to-live of the result, in milliseconds
+     * @param executor the executor. May be <tt>null</tt>
+     * @return the entry
+     */
+    private Entry getEntry(Source source, long ttl, Executor executor)
+    {
+        String key = source.getKey();
+        while (true)
+        {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isCurrent(source.getStamp(), ttl))
+            {
+                return entry;
+            }
+            Entry created = new Entry(source, ttl);
+            boolean added = (entry == null) ? entries.putIfAbsent(key, created) == null
+                    : entries.replace(key, entry, created);
+            if (added)
+            {
+                if (executor != null)
+                {
+                    try
+                    {
+                        executor.execute(created.task);
+                    }
+                    catch (RejectedExecutionException exception)
+                    {
+                        logger.log(Level.FINE, "Failed to prefetch " + key, exception);
+                        entries.remove(key, created);
+                    }
+                }
+                else
+                {
+                    created.task.run();
+                }
+                return created;
+            }
+        }
+    }
+
+    /**
+     * A source of a dynamic variable value.
+     */
+    public static abstract class Source implements Callable<String>
+    {
+
+        /**
+         * The key identifying the source and its arguments.
+         */
+        private final String key;
+
+        /**
+         * The stamp, which changes when the underlying data changes.
+         */
+        private final long stamp;
+
+        /**
+         * Constructs a <tt>Source</tt>.
+         *
+         * @param key   the key identifying the source and its arguments
+         * @param stamp the stamp, which changes when the underlying data changes. Use <tt>0</tt> if changes can't
+         *              be detected
+         */
+        public Source(String key, long stamp)
+        {
+            this.key = key;
+            this.stamp = stamp;
+        }
+
+        /**
+         * Returns the key identifying the source and its arguments.
+         *
+         * @return the key
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * Returns the stamp, which changes when the underlying data changes.
+         *
+         * @return the stamp
+         */
+        public long getStamp()
+        {
+            return stamp;
+        }
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static class Entry
+    {
+
+        /**
+         * The task computing the result.
+         */
+        private final FutureTask<String> task;
+
+        /**
+         * The stamp of the source the result was computed from.
+         */
+        private final long stamp;
+
+        /**
+         * The time the result expires, in milliseconds.
+         */
+        private final long expires;
+
+        /**
+         * Determines if the result has been requested.
+         */
+        private volatile boolean requested;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param source the source
+         * @param ttl    the time-to-live of the result, in milliseconds
+         */
+        public Entry(Source source, long ttl)
+        {
+            task = new FutureTask<String>(source);
+            stamp = source.getStamp();
+            long now = System.currentTimeMillis();
+            expires = (ttl > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + Math.max(0, ttl);
+        }
+
+        /**
+         * Determines if the entry may be used.
+         * <p/>
+         * An entry that is still being computed is always current. A computed entry is current until its
+         * time-to-live elapses or, if it has none, until its result is first requested.
+         *
+         * @param stamp the current stamp of the source
+         * @param ttl   the time-to-live of the result, in milliseconds
+         * @return <tt>true</tt> if the entry is current
+         */
+        public boolean isCurrent(long stamp, long ttl)
+        {
+            if (stamp != this.stamp)
+            {
+                return false;
+            }
+            else if (!task.isDone())
+            {
+                return true;
+            }
+            return (ttl > 0) ? System.currentTimeMillis() < expires : !requested;
+        }
+    }
+}
@@ -21,6 +21,8 @@
 
 package com.izforge.izpack.core.variable;
 
+import java.util.concurrent.Executor;
+
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Value;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
@@ -29,6 +31,16 @@ public abstract class ValueImpl implements Value
 {
     private InstallData installData;
 
+    /**
+     * The cache of expensive results. May be <tt>null</tt>.
+     */
+    private ValueCache cache;
+
+    /**
+     * The no. of milliseconds cached results whose staleness can't be detected may be reused for.
+     */
+    private long cacheTTL = ValueCache.DEFAULT_TTL;
+
     @Override
     public abstract void validate() throws Exception;
 
@@ -38,6 +50,33 @@ public abstract class ValueImpl implements Value
     @Override
     public abstract String resolve(VariableSubstitutor... substitutors) throws Exception;
 
+    /**
+     * Starts resolving the value on an executor, so that the result is available when the value is next resolved
+     * with the same substitutors.
+     * <p/>
+     * This implementation does nothing. Values that are expensive to resolve cache their results in the
+     * {@link #setCache cache}, and override this to populate it.
+     *
+     * @param executor     the executor
+     * @param substitutors the variable substitutors
+     */
+    public void prefetch(Executor executor, VariableSubstitutor... substitutors)
+    {
+    }
+
+    /**
+     * Sets the cache that expensive results are stored in.
+     *
+     * @param cache    the cache. May be <tt>null</tt>, to resolve the value on each request
+     * @param cacheTTL the no. of milliseconds results whose staleness can't be detected, such as command output,
+     *                 may be reused for. If <tt>&lt;= 0</tt>, such results are only reused if they were prefetched
+     */
+    public void setCache(ValueCache cache, long cacheTTL)
+    {
+        this.cache = cache;
+        this.cacheTTL = cacheTTL;
+    }
+
     @Override
     public InstallData getInstallData()
     {
@@ -49,4 +88,44 @@ public abstract class ValueImpl implements Value
     {
         this.installData = installData;
     }
+
+    /**
+     * Returns the no. of milliseconds cached results whose staleness can't be detected may be reused for.
+     *
+     * @return the time-to-live
+     */
+    protected long getCacheTTL()
+    {
+        return cacheTTL;
+    }
+
+    /**
+     * Returns the result of a source, from the cache if there is one.
+     *
+     * @param source the source
+     * @param ttl    the time-to-live of the result, in milliseconds
+     * @return the result. May be <tt>null</tt>
+     * @throws Exception if the result cannot be computed
+     */
+    protected String resolveCached(ValueCache.Source source, long ttl) throws Exception
+    {
+        return (cache != null) ? cache.get(source, ttl) : source.call();
+    }
+
+    /**
+     * Computes the result of a source on an executor, if there is a cache to hold it.
+     * <p/>
+     * Sources that still reference undefined variables aren't computed, as their result would not be used.
+     *
+     * @param source   the source
+     * @param ttl      the time-to-live of the result, in milliseconds
+     * @param executor the executor
+     */
+    protected void prefetchCached(ValueCache.Source source, long ttl, Executor executor)
+    {
+        if (cache != null && !source.getKey().contains("${"))
+        {
+            cache.prefetch(source, ttl, executor);
+        }
+    }
 }
@@ -81,19 +81,31 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
     }
 
     @Override
-    public String resolve(VariableSubstitutor... substitutors)
-            throws Exception
+    protected String substituteLocation(VariableSubstitutor... substitutors)
     {
-        String _filename_ = this.filename, _entryname_ = this.entryname;
+        String _filename_ = this.filename;
         for (VariableSubstitutor substitutor : substitutors)
         {
             _filename_ = substitutor.substitute(_filename_);
         }
+        return _filename_;
+    }
+
+    @Override
+    protected String substituteEntry(VariableSubstitutor... substitutors)
+    {
+        String _entryname_ = this.entryname;
         for (VariableSubstitutor substitutor : substitutors)
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getZipEntryInputStream(_filename_, _entryname_), substitutors);
+        return _entryname_;
+    }
+
+    @Override
+    protected InputStream getInputStream(String location, String entry) throws Exception
+    {
+        return getZipEntryInputStream(location, entry);
     }
 
     private InputStream getZipEntryInputStream(String filename, String entryname) throws Exception
@@ -24,20 +24,31 @@ package com.izforge.izpack.core.data;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.container.DefaultContainer;
 import com.izforge.izpack.core.rules.ConditionContainer;
 import com.izforge.izpack.core.rules.RulesEngineImpl;
 import com.izforge.izpack.core.rules.process.VariableCondition;
+import com.izforge.izpack.core.variable.ExecValue;
 import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.core.variable.ValueCache;
+import com.izforge.izpack.core.variable.ValueImpl;
+import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.util.Platforms;
 
 
@@ -54,6 +65,12 @@ public class DefaultVariablesTest
      */
     private final Variables variables = new DefaultVariables();
 
+    /**
+     * Temporary folder for command output.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 
     /**
      * Tests the {@link Variables#set(String, String)}, {@link Variables#get(String)} and
@@ -236,6 +253,127 @@ public class DefaultVariablesTest
         assertEquals("/usr/local/bin", variables.get("INSTALL_PATH"));
     }
 
+    /**
+     * Verifies that dynamic variables that depend solely on variables are only re-evaluated when a variable they
+     * read changes.
+     */
+    @Test
+    public void testIncrementalRefresh()
+    {
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        conditions.put("unix", new VariableCondition("os", "unix"));
+        AutomatedInstallData installData = new AutomatedInstallData(variables, Platforms.FREEBSD);
+        RulesEngineImpl rules = new RulesEngineImpl(installData, null, installData.getPlatform());
+        rules.readConditionMap(conditions);
+        ((DefaultVariables) variables).setRules(rules);
+
+        CountingDynamicVariable lib = new CountingDynamicVariable("LIB", "$APP/lib", null);
+        CountingDynamicVariable ext = new CountingDynamicVariable("EXT", "${LIB}/ext", "unix");
+        variables.add(lib);
+        variables.add(ext);
+        variables.set("APP", "/opt/app");
+        variables.set("os", "unix");
+
+        variables.refresh();
+        assertEquals("/opt/app/lib", variables.get("LIB"));
+        assertEquals("/opt/app/lib/ext", variables.get("EXT"));
+        assertEquals(1, lib.evaluations);
+        assertEquals(1, ext.evaluations);
+
+        // nothing read has changed
+        variables.set("other", "value");
+        variables.refresh();
+        assertEquals(1, lib.evaluations);
+        assertEquals(1, ext.evaluations);
+
+        // overwritten values are restored, without re-evaluation
+        variables.set("LIB", "changed");
+        variables.refresh();
+        assertEquals("/opt/app/lib", variables.get("LIB"));
+        assertEquals(1, lib.evaluations);
+        assertEquals(1, ext.evaluations);
+
+        // the condition no longer holds, so EXT retains its value
+        variables.set("os", "windows");
+        variables.refresh();
+        assertEquals(1, ext.evaluations);
+        assertEquals("/opt/app/lib/ext", variables.get("EXT"));
+
+        variables.set("APP", "/usr/local/app");
+        variables.refresh();
+        assertEquals(2, lib.evaluations);
+        assertEquals("/usr/local/app/lib", variables.get("LIB"));
+        assertEquals("/opt/app/lib/ext", variables.get("EXT"));
+
+        variables.set("os", "unix");
+        variables.refresh();
+        variables.refresh();
+        assertEquals(2, lib.evaluations);
+        assertEquals(2, ext.evaluations);
+        assertEquals("/usr/local/app/lib/ext", variables.get("EXT"));
+    }
+
+    /**
+     * Verifies that results whose staleness can't be detected, such as command output, are only reused across
+     * refreshes if the dynamic variable has a cache time-to-live.
+     */
+    @Test
+    public void testCacheTTL()
+    {
+        CountingValue uncached = new CountingValue("uncached");
+        CountingValue cached = new CountingValue("cached");
+        DynamicVariable var1 = new DynamicVariableImpl();
+        var1.setName("var1");
+        var1.setValue(uncached);
+        DynamicVariable var2 = new DynamicVariableImpl();
+        var2.setName("var2");
+        var2.setValue(cached);
+        var2.setCacheTTL(60 * 1000);
+        variables.add(var1);
+        variables.add(var2);
+
+        variables.refresh();
+        variables.refresh();
+        variables.refresh();
+        assertEquals("uncached3", variables.get("var1"));
+        assertEquals(3, uncached.resolutions);
+        assertEquals("cached1", variables.get("var2"));
+        assertEquals(1, cached.resolutions);
+
+        // results aren't shared between variables instances
+        Variables other = new DefaultVariables();
+        other.add(var2);
+        other.refresh();
+        assertEquals("cached2", other.get("var2"));
+        assertEquals(2, cached.resolutions);
+    }
+
+    /**
+     * Verifies that a cached command that references another dynamic variable is only run once, i.e. it isn't
+     * prefetched before the variable it depends on is defined.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPrefetchDependentCommand() throws IOException
+    {
+        Assume.assumeTrue(OsVersion.IS_UNIX);
+
+        File log = temporaryFolder.newFile("exec.log");
+        DynamicVariable var2 = new DynamicVariableImpl();
+        var2.setName("var2");
+        var2.setValue(new ExecValue(new String[]{"-c", "echo ${var1} >> " + log.getPath()}, null, true, false));
+        var2.setCacheTTL(60 * 1000);
+        var2.setPrefetch(true);
+        variables.add(createDynamic("var1", "value1"));
+        variables.add(var2);
+
+        variables.refresh();
+        variables.refresh();
+        assertEquals(1, FileUtils.readLines(log).size());
+        assertEquals("value1", FileUtils.readFileToString(log).trim());
+    }
+
     /**
      * Creates a dynamic variable.
      *
@@ -264,5 +402,95 @@ public class DefaultVariablesTest
         result.setConditionid(conditionId);
         return result;
     }
-}
 
+    /**
+     * A value whose staleness can't be detected, that returns its key suffixed with the no. of times it has been
+     * resolved.
+     */
+    private static class CountingValue extends ValueImpl
+    {
+
+        /**
+         * The key identifying the value.
+         */
+        private final String key;
+
+        /**
+         * The no. of times the value has been resolved.
+         */
+        private int resolutions;
+
+        /**
+         * Constructs a <tt>CountingValue</tt>.
+         *
+         * @param key the key identifying the value
+         */
+        public CountingValue(String key)
+        {
+            this.key = key;
+        }
+
+        @Override
+        public void validate()
+        {
+        }
+
+        @Override
+        public String resolve() throws Exception
+        {
+            return resolve(new VariableSubstitutor[0]);
+        }
+
+        @Override
+        public String resolve(VariableSubstitutor... substitutors) throws Exception
+        {
+            return resolveCached(new ValueCache.Source(key, 0)
+            {
+                @Override
+                public String call()
+                {
+                    return key + (++resolutions);
+                }
+            }, getCacheTTL());
+        }
+    }
+
+    /**
+     * A dynamic variable that counts its evaluations.
+     */
+    private static class CountingDynamicVariable extends DynamicVariableImpl
+    {
+
+        /**
+         * The no. of evaluations.
+         */
+        private int evaluations;
+
+        /**
+         * Constructs a <tt>CountingDynamicVariable</tt>.
+         *
+         * @param name        the variable name
+         * @param value       the variable value
+         * @param conditionId the condition identifier. May be {@code null}
+         */
+        public CountingDynamicVariable(String name, String value, String conditionId)
+        {
+            super(name, value);
+            setConditionid(conditionId);
+        }
+
+        /**
+         * Evaluates the variable.
+         *
+         * @param substitutors the variable substitutors
+         * @return the value
+         * @throws Exception for any error
+         */
+        @Override
+        public String evaluate(VariableSubstitutor... substitutors) throws Exception
+        {
+            ++evaluations;
+            return super.evaluate(substitutors);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.PackCompression;
+
+/**
+ * Tests the {@link IndexedPack} class.
+ */
+public class IndexedPackTest
+{
+
+    /**
+     * Verifies that the header can be written and read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testHeader() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IndexedPack.writeHeader(out, 1234);
+        assertEquals(IndexedPack.HEADER_SIZE, out.size());
+        assertEquals(1234, IndexedPack.readHeader(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    /**
+     * Verifies that a stream not in the indexed pack format is rejected.
+     */
+    @Test
+    public void testInvalidHeader()
+    {
+        try
+        {
+            IndexedPack.readHeader(new ByteArrayInputStream(new byte[IndexedPack.HEADER_SIZE]));
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies that consecutive entries can be compressed independently, and read back individually.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testEntries() throws IOException
+    {
+        byte[] text = new byte[10000];
+        for (int i = 0; i < text.length; ++i)
+        {
+            text[i] = (byte) ('a' + i % 26);
+        }
+        byte[] binary = {1, 2, 3, 4, 5};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteCountingOutputStream out = new ByteCountingOutputStream(bytes);
+        long textEnd = write(PackCompression.DEFLATE, text, out);
+        long storedEnd = write(PackCompression.STORE, binary, out);
+        long binaryEnd = write(PackCompression.DEFLATE, binary, out);
+        long xzEnd = write(PackCompression.XZ, text, out);
+
+        // the stored entry is the same size as its content, the deflated text is smaller
+        assertTrue(textEnd < text.length);
+        assertEquals(binary.length, storedEnd - textEnd);
+
+        byte[] data = bytes.toByteArray();
+        assertEquals(xzEnd, data.length);
+        assertTrue(xzEnd - binaryEnd < text.length);
+        assertArrayEquals(text, read(PackCompression.DEFLATE, data, 0, textEnd, text.length));
+        assertArrayEquals(binary, read(PackCompression.STORE, data, textEnd, storedEnd, binary.length));
+        assertArrayEquals(binary, read(PackCompression.DEFLATE, data, storedEnd, binaryEnd, binary.length));
+        assertArrayEquals(text, read(PackCompression.XZ, data, binaryEnd, xzEnd, text.length));
+    }
+
+    /**
+     * Writes an entry.
+     *
+     * @param compression the compression method
+     * @param content     the entry content
+     * @param out         the stream to write to
+     * @return the offset of the end of the entry
+     * @throws IOException for any I/O error
+     */
+    private long write(PackCompression compression, byte[] content, ByteCountingOutputStream out) throws IOException
+    {
+        OutputStream entry = IndexedPack.getOutputStream(compression, out, -1);
+        entry.write(content);
+        entry.close();
+        return out.getByteCount();
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param compression the compression method
+     * @param data        the entries
+     * @param start       the start of the entry
+     * @param end         the end of the entry
+     * @param length      the uncompressed length
+     * @return the entry content
+     * @throws IOException for any I/O error
+     */
+    private byte[] read(PackCompression compression, byte[] data, long start, long end, int length)
+            throws IOException
+    {
+        InputStream in = new ByteArrayInputStream(data);
+        assertEquals(start, in.skip(start));
+        InputStream entry = IndexedPack.getInputStream(compression, new LimitedInputStream(in, end - start));
+        byte[] result = new byte[length];
+        int offset = 0;
+        int read;
+        while (offset < length && (read = entry.read(result, offset, length - offset)) != -1)
+        {
+            offset += read;
+        }
+        assertEquals(length, offset);
+        assertEquals(-1, entry.read());
+        entry.close();
+        return result;
+    }
+}
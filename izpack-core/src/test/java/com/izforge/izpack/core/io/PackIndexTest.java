@@ -0,0 +1,197 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.UpdateCheck;
+
+/**
+ * Tests the {@link PackIndexWriter} and {@link PackIndexReader} classes.
+ */
+public class PackIndexTest
+{
+
+    /**
+     * Verifies that file headers and meta-data can be written and read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        File source = File.createTempFile("index", ".txt");
+        List<OsModel> unix = Arrays.asList(new OsModel(null, "unix", null, null, null));
+
+        PackFile file1 = new PackFile(source, "lib/a.jar", "$INSTALL_PATH/lib/a.jar", unix, OverrideType.OVERRIDE_UPDATE,
+                                      "*.bak", Blockable.BLOCKABLE_AUTO, null);
+        file1.setCondition("cond1");
+        file1.setEntry(PackCompression.DEFLATE, 0, 10, 1234);
+
+        Map<String, String> additionals = new HashMap<String, String>();
+        additionals.put("key", "value");
+        PackFile file2 = new PackFile(source, (String) null, "$INSTALL_PATH/lib/\u00e9t\u00e9.txt", unix,
+                                      OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, additionals);
+        file2.setEntry(PackCompression.STORE, 10, 20, 0xFFFFFFFFL);
+        file2.setPreviousPackFileRef("pack0", 99L);
+
+        PackFile file3 = new PackFile(source, (String) null, "README", null, OverrideType.OVERRIDE_FALSE, null,
+                                      Blockable.BLOCKABLE_NONE, null);
+
+        ParsableFile parsable = new ParsableFile("$INSTALL_PATH/lib/a.properties", SubstitutionType.TYPE_JAVA_PROPERTIES,
+                                                 "UTF-8", unix);
+        parsable.setCondition("cond2");
+
+        ExecutableFile executable = new ExecutableFile("$INSTALL_PATH/bin/run.sh", ExecutableFile.POSTINSTALL,
+                                                       ExecutableFile.WARN, null, true);
+        executable.argList = Arrays.asList("-v");
+
+        UpdateCheck check = new UpdateCheck(new ArrayList<String>(Arrays.asList("*.jar")), null, "yes");
+
+        PackIndexWriter writer = new PackIndexWriter();
+        writer.addFile(file1);
+        writer.addFile(file2);
+        writer.addFile(file3);
+        writer.addParsable(parsable);
+        writer.addExecutable(executable);
+        writer.addUpdateCheck(check);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.writeTo(bytes);
+
+        PackIndexReader reader = new PackIndexReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(3, reader.getFileCount());
+
+        PackFile read1 = reader.readFile();
+        assertEquals("lib/a.jar", read1.getRelativeSourcePath());
+        assertEquals("$INSTALL_PATH/lib/a.jar", read1.getTargetPath());
+        assertEquals(1, read1.osConstraints().size());
+        assertEquals("unix", read1.osConstraints().get(0).getFamily());
+        assertEquals(file1.length(), read1.length());
+        assertEquals(file1.lastModified(), read1.lastModified());
+        assertEquals(OverrideType.OVERRIDE_UPDATE, read1.override());
+        assertEquals("*.bak", read1.overrideRenameTo());
+        assertEquals(Blockable.BLOCKABLE_AUTO, read1.blockable());
+        assertEquals("cond1", read1.getCondition());
+        assertEquals(PackCompression.DEFLATE, read1.getCompression());
+        assertEquals(0, read1.getEntryOffset());
+        assertEquals(10, read1.getEntryLength());
+        assertEquals(1234, read1.getChecksum());
+        assertFalse(read1.isBackReference());
+        assertNull(read1.getAdditionals());
+
+        PackFile read2 = reader.readFile();
+        assertNull(read2.getRelativeSourcePath());
+        assertEquals("$INSTALL_PATH/lib/\u00e9t\u00e9.txt", read2.getTargetPath());
+        assertSame(read1.osConstraints(), read2.osConstraints());
+        assertEquals(PackCompression.STORE, read2.getCompression());
+        assertEquals(0xFFFFFFFFL, read2.getChecksum());
+        assertTrue(read2.isBackReference());
+        assertEquals("pack0", read2.previousPackId);
+        assertEquals(99, read2.offsetInPreviousPack);
+        assertEquals(additionals, read2.getAdditionals());
+
+        PackFile read3 = reader.readFile();
+        assertEquals("README", read3.getTargetPath());
+        assertNull(read3.osConstraints());
+        assertFalse(read3.isIndexed());
+        assertFalse(read3.hasCondition());
+
+        List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+        reader.readParsables(parsables);
+        assertEquals(1, parsables.size());
+        assertEquals("$INSTALL_PATH/lib/a.properties", parsables.get(0).getPath());
+        assertEquals(SubstitutionType.TYPE_JAVA_PROPERTIES, parsables.get(0).getType());
+        assertEquals("UTF-8", parsables.get(0).getEncoding());
+        assertEquals("cond2", parsables.get(0).getCondition());
+
+        List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
+        reader.readExecutables(executables);
+        assertEquals(1, executables.size());
+        ExecutableFile readExecutable = executables.get(0);
+        assertEquals("$INSTALL_PATH/bin/run.sh", readExecutable.path);
+        assertEquals(ExecutableFile.POSTINSTALL, readExecutable.executionStage);
+        assertEquals(ExecutableFile.WARN, readExecutable.onFailure);
+        assertEquals(Arrays.asList("-v"), readExecutable.argList);
+        assertNull(readExecutable.osList);
+        assertTrue(readExecutable.keepFile);
+
+        List<UpdateCheck> checks = new ArrayList<UpdateCheck>();
+        reader.readUpdateChecks(checks);
+        assertEquals(1, checks.size());
+        assertEquals(Arrays.asList("*.jar"), checks.get(0).includesList);
+        assertNull(checks.get(0).excludesList);
+        assertTrue(checks.get(0).isCaseSensitive());
+
+        assertTrue(source.delete());
+    }
+
+    /**
+     * Verifies that variable length integers can be written and read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testVarLong() throws IOException
+    {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values)
+        {
+            IndexedPack.writeVarLong(out, value);
+            IndexedPack.writeSignedVarLong(out, value);
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        for (long value : values)
+        {
+            assertEquals(value, IndexedPack.readVarLong(in));
+            assertEquals(value, IndexedPack.readSignedVarLong(in));
+        }
+        assertEquals(-1, in.read());
+
+        // small signed values occupy a single byte
+        out.reset();
+        IndexedPack.writeSignedVarLong(out, -1);
+        assertEquals(1, out.size());
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Tests the {@link PackInfoWriter} and {@link PackInfoReader} classes.
+ */
+public class PackInfoTest
+{
+
+    /**
+     * Verifies that packs written by {@link PackInfoWriter} are read back with all of their attributes.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        Pack pack1 = createPack();
+        Pack pack2 = new Pack("Docs", null, null, null, null, false, false, false, null, false, 0);
+
+        PackInfoWriter writer = new PackInfoWriter();
+        writer.addPack(pack1);
+        writer.addPack(pack2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+
+        List<Pack> packs = PackInfoReader.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, packs.size());
+        checkEquals(pack1, packs.get(0));
+        checkEquals(pack2, packs.get(1));
+    }
+
+    /**
+     * Verifies that packs written using Java serialization can be read.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadSerialized() throws IOException
+    {
+        Pack pack = createPack();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objOut = new ObjectOutputStream(out);
+        objOut.writeInt(1);
+        objOut.writeObject(pack);
+        objOut.close();
+
+        List<Pack> packs = PackInfoReader.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1, packs.size());
+        checkEquals(pack, packs.get(0));
+    }
+
+    /**
+     * Verifies that an invalid string reference is detected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCorrupted() throws IOException
+    {
+        PackInfoWriter writer = new PackInfoWriter();
+        writer.addPack(createPack());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        bytes[8] = 0; // empty the string table
+
+        try
+        {
+            PackInfoReader.read(new ByteArrayInputStream(bytes));
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            assertTrue(expected.getMessage().contains("installer corrupted?"));
+        }
+    }
+
+    /**
+     * Creates a pack with all attributes populated.
+     *
+     * @return a new pack
+     */
+    private Pack createPack()
+    {
+        List<OsModel> osConstraints = Arrays.asList(new OsModel("x86", "windows", null, null, null),
+                                                    new OsModel(null, "unix", "1.6", "linux", "3.0"));
+        Pack pack = new Pack("Core", "core.pack", "The core files \u00e9", osConstraints, Arrays.asList("Base"),
+                             true, true, true, "exclude", true, 12345678901L);
+        pack.getInstallGroups().add("Full");
+        pack.getInstallGroups().add("Minimal");
+        pack.setDependants(Arrays.asList("Extras", "Samples"));
+        pack.setGroup("Main");
+        pack.setCondition("haveJava");
+        pack.setParent("Base");
+        pack.setImageId("core.image");
+        pack.setFileSize(42);
+        pack.addValidator("com.acme.CoreValidator");
+        pack.setHidden(true);
+        return pack;
+    }
+
+    /**
+     * Verifies that two packs have the same attributes.
+     *
+     * @param expected the expected pack
+     * @param actual   the actual pack
+     */
+    private void checkEquals(Pack expected, Pack actual)
+    {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getLangPackId(), actual.getLangPackId());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.isLoose(), actual.isLoose());
+        assertEquals(expected.isUninstall(), actual.isUninstall());
+        assertEquals(expected.isRequired(), actual.isRequired());
+        assertEquals(expected.isPreselected(), actual.isPreselected());
+        assertEquals(expected.isHidden(), actual.isHidden());
+        assertEquals(expected.getInstallGroups(), actual.getInstallGroups());
+        assertEquals(expected.getExcludeGroup(), actual.getExcludeGroup());
+        assertEquals(expected.getGroup(), actual.getGroup());
+        assertEquals(expected.getCondition(), actual.getCondition());
+        assertEquals(expected.getDependencies(), actual.getDependencies());
+        assertEquals(expected.getDependants(), actual.getDependants());
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getParent(), actual.getParent());
+        assertEquals(expected.getImageId(), actual.getImageId());
+        assertEquals(expected.getValidators(), actual.getValidators());
+        if (expected.getOsConstraints() == null)
+        {
+            assertNull(actual.getOsConstraints());
+        }
+        else
+        {
+            assertEquals(expected.getOsConstraints().size(), actual.getOsConstraints().size());
+            for (int i = 0; i < expected.getOsConstraints().size(); ++i)
+            {
+                OsModel model1 = expected.getOsConstraints().get(i);
+                OsModel model2 = actual.getOsConstraints().get(i);
+                assertEquals(model1.getArch(), model2.getArch());
+                assertEquals(model1.getFamily(), model2.getFamily());
+                assertEquals(model1.getJre(), model2.getJre());
+                assertEquals(model1.getName(), model2.getName());
+                assertEquals(model1.getVersion(), model2.getVersion());
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link StoredZipEntry} class.
+ */
+public class StoredZipEntryTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    /**
+     * Verifies that the data of stored entries can be read directly from the zip file, and that compressed entries
+     * are excluded.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testGetEntries() throws IOException
+    {
+        byte[] data1 = "stored data".getBytes("UTF-8");
+        byte[] data2 = "compressed data compressed data compressed data".getBytes("UTF-8");
+        byte[] data3 = new byte[0];
+
+        File file = temporaryFolder.newFile("test.zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        zip.setComment("a zip comment");
+        addStored(zip, "resources/packs/pack-1", data1);
+        ZipEntry compressed = new ZipEntry("resources/packs/pack-2");
+        compressed.setExtra(new byte[]{1, 2, 3, 4});
+        zip.putNextEntry(compressed);
+        zip.write(data2);
+        zip.closeEntry();
+        addStored(zip, "resources/packs/pack 3", data3);
+        zip.close();
+
+        Map<String, StoredZipEntry> entries = StoredZipEntry.getEntries(file);
+        assertEquals(2, entries.size());
+        assertFalse(entries.containsKey("resources/packs/pack-2"));
+
+        StoredZipEntry entry1 = entries.get("resources/packs/pack-1");
+        assertNotNull(entry1);
+        assertEquals(file, entry1.getFile());
+        assertEquals("resources/packs/pack-1", entry1.getName());
+        assertEquals(data1.length, entry1.getLength());
+        assertArrayEquals(data1, read(entry1));
+
+        StoredZipEntry entry3 = entries.get("resources/packs/pack 3");
+        assertNotNull(entry3);
+        assertEquals(0, entry3.getLength());
+    }
+
+    /**
+     * Verifies that no entries are returned for a file that isn't a zip.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testNotZip() throws IOException
+    {
+        File file = temporaryFolder.newFile("test.txt");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        assertTrue(StoredZipEntry.getEntries(file).isEmpty());
+    }
+
+    /**
+     * Adds an uncompressed entry to a zip.
+     *
+     * @param zip  the zip
+     * @param name the entry name
+     * @param data the entry data
+     * @throws IOException for any I/O error
+     */
+    private void addStored(ZipOutputStream zip, String name, byte[] data) throws IOException
+    {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    /**
+     * Reads the data of an entry directly from its zip file.
+     *
+     * @param entry the entry
+     * @return the entry data
+     * @throws IOException for any I/O error
+     */
+    private byte[] read(StoredZipEntry entry) throws IOException
+    {
+        byte[] result = new byte[(int) entry.getLength()];
+        RandomAccessFile file = new RandomAccessFile(entry.getFile(), "r");
+        try
+        {
+            file.seek(entry.getOffset());
+            file.readFully(result);
+        }
+        finally
+        {
+            file.close();
+        }
+        return result;
+    }
+}
@@ -22,6 +22,10 @@ package com.izforge.izpack.core.rules;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -494,6 +498,32 @@ public class RulesEngineImplTest
         assertEquals(true ^ true && true ^ true, condition.isTrue());
     }
 
+    /**
+     * Verifies that condition expressions are compiled once, that expressions referencing unknown conditions
+     * evaluate to <tt>false</tt>, and that expressions are recompiled when conditions are registered.
+     */
+    @Test
+    public void testCompiledExpressions()
+    {
+        Condition condition = engine.getCondition("@true && !false");
+        assertTrue(condition.isTrue());
+        assertSame(condition, engine.getCondition("@true && !false"));
+        assertSame(engine.getCondition("true+!false"), engine.getCondition("true+!false"));
+
+        assertNull(engine.getCondition("@true && unknown"));
+        assertNull(engine.getCondition("true|unknown"));
+        assertNull(engine.getCondition("unknown"));
+        assertFalse(engine.isConditionTrue("@true && unknown"));
+        assertFalse(engine.isConditionTrue("true|unknown"));
+
+        VariableCondition unknown = new VariableCondition("unknown.var", "yes");
+        unknown.setId("unknown");
+        engine.addCondition(unknown);
+        assertNotNull(engine.getCondition("@true && unknown"));
+        assertTrue(engine.isConditionTrue("true|unknown"));
+        assertNotSame(condition, engine.getCondition("@true && !false"));
+    }
+
     /**
      * Verifies that conditions read from a <tt>conditions.xml</tt> have the expected type.
      */
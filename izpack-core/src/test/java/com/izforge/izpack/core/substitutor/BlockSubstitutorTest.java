@@ -0,0 +1,246 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link BlockSubstitutor} class.
+ */
+public class BlockSubstitutorTest
+{
+
+    /**
+     * The characters used to generate text.
+     */
+    private static final String CHARS = "$$%%@@{{}}ab_.-1/[]ENV \t\\<&\n";
+
+    /**
+     * Verifies that generated text is substituted the same way as by a character at a time substitution, for all
+     * substitution types and a range of buffer sizes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testEquivalence() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("a", "A<&>\"'\\");
+        properties.setProperty("ab", "A\tB");
+        properties.setProperty("a.b", " A.B\r\n");
+        properties.setProperty("b-1", "B-1");
+        properties.setProperty("a b", "A B");
+        properties.setProperty("[a]", "[A]");
+        properties.setProperty("E", "$a");
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        Random random = new Random(1);
+        SubstitutionType[] types = SubstitutionType.values();
+        for (int i = 0; i < 50000; ++i)
+        {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; ++j)
+            {
+                builder.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+            String text = builder.toString();
+            boolean braces = random.nextBoolean();
+            SubstitutionType type = types[random.nextInt(types.length)];
+            int bufferSize = 1 + random.nextInt(16);
+
+            StringWriter expected = new StringWriter();
+            int expectedSubs = substituteChars(substitutor, new StringReader(text), expected, type, braces);
+
+            StringWriter actual = new StringWriter();
+            BlockSubstitutor block = new BlockSubstitutor(substitutor, type, getStart(type), getEnd(type), braces,
+                                                          bufferSize);
+            int actualSubs = block.substitute(new StringReader(text), actual);
+
+            String message = "'" + text + "', type=" + type + ", braces=" + braces + ", buffer=" + bufferSize;
+            assertEquals(message, expected.toString(), actual.toString());
+            assertEquals(message, expectedSubs, actualSubs);
+        }
+    }
+
+    /**
+     * Verifies that a reference longer than the buffer is substituted.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLongReference() throws Exception
+    {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 1000; ++i)
+        {
+            name.append((char) ('a' + i % 26));
+        }
+        Properties properties = new Properties();
+        properties.setProperty(name.toString(), "value");
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        StringWriter writer = new StringWriter();
+        BlockSubstitutor block = new BlockSubstitutor(substitutor, SubstitutionType.TYPE_PLAIN, '$', '\0', false, 8);
+        String text = "x=${" + name + "} y=$" + name + " z=${" + name;
+        assertEquals(2, block.substitute(new StringReader(text), writer));
+        assertEquals("x=value y=value z=${" + name, writer.toString());
+    }
+
+    /**
+     * Returns the character that starts a variable reference for a substitution type.
+     *
+     * @param type the substitution type
+     * @return the start character
+     */
+    private char getStart(SubstitutionType type)
+    {
+        switch (type)
+        {
+            case TYPE_SHELL:
+                return '%';
+            case TYPE_AT:
+            case TYPE_ANT:
+                return '@';
+            default:
+                return '$';
+        }
+    }
+
+    /**
+     * Returns the character that ends a variable reference for a substitution type.
+     *
+     * @param type the substitution type
+     * @return the end character, or <tt>'\0'</tt> if there is none
+     */
+    private char getEnd(SubstitutionType type)
+    {
+        return (type == SubstitutionType.TYPE_ANT) ? '@' : '\0';
+    }
+
+    /**
+     * Substitutes variables a character at a time, as a reference for the expected behaviour.
+     *
+     * @param substitutor    the substitutor
+     * @param reader         the reader to read
+     * @param writer         the writer to write to
+     * @param type           the substitution type
+     * @param bracesRequired determines if braces are required
+     * @return the number of substitutions made
+     * @throws Exception for any error
+     */
+    private int substituteChars(VariableSubstitutorBase substitutor, Reader reader, Writer writer,
+                                SubstitutionType type, boolean bracesRequired) throws Exception
+    {
+        char variableStart = getStart(type);
+        char variableEnd = getEnd(type);
+        int subs = 0;
+        int c = reader.read();
+        while (true)
+        {
+            while (c != -1 && c != variableStart)
+            {
+                writer.write(c);
+                c = reader.read();
+            }
+            if (c == -1)
+            {
+                return subs;
+            }
+
+            boolean braces = false;
+            c = reader.read();
+            if (c == '{')
+            {
+                braces = true;
+                c = reader.read();
+            }
+            else if (bracesRequired)
+            {
+                writer.write(variableStart);
+                continue;
+            }
+            else if (c == -1)
+            {
+                writer.write(variableStart);
+                return subs;
+            }
+
+            StringBuilder nameBuffer = new StringBuilder();
+            while (c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
+                    || (c >= 'A' && c <= 'Z') || (braces && ((c == '[') || (c == ']')))
+                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameBuffer.length() > 0))
+            {
+                nameBuffer.append((char) c);
+                c = reader.read();
+            }
+            String name = nameBuffer.toString();
+
+            String value = null;
+            if (((!braces || c == '}') && (!braces || variableEnd == '\0' || variableEnd == c)) && name.length() > 0)
+            {
+                if (braces && name.startsWith("ENV[") && (name.lastIndexOf(']') == name.length() - 1))
+                {
+                    value = IoHelper.getenv(name.substring(4, name.length() - 1));
+                    if (value == null)
+                    {
+                        value = "";
+                    }
+                }
+                else
+                {
+                    value = substitutor.getValue(name).resolve();
+                }
+                subs++;
+            }
+
+            if (value != null)
+            {
+                writer.write(substitutor.escapeSpecialChars(value, type));
+                if (braces || variableEnd != '\0')
+                {
+                    c = reader.read();
+                }
+            }
+            else
+            {
+                writer.write(variableStart);
+                if (braces)
+                {
+                    writer.write('{');
+                }
+                writer.write(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Tests the {@link VariableTemplate} class.
+ */
+public class VariableTemplateTest
+{
+
+    /**
+     * The characters used to generate strings.
+     */
+    private static final String CHARS = "$$${}}ab_.-1/[]ENV \t";
+
+    /**
+     * Verifies that substituting a template gives the same result as substituting the string it was compiled from,
+     * for generated strings.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testEquivalence() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("a", "A");
+        properties.setProperty("ab", "A\tB");
+        properties.setProperty("a.b", "A.B");
+        properties.setProperty("b-1", "B-1");
+        properties.setProperty("a b", "A B");
+        properties.setProperty("[a]", "[A]");
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        Random random = new Random(1);
+        SubstitutionType[] types = {SubstitutionType.TYPE_PLAIN, SubstitutionType.TYPE_JAVA_PROPERTIES,
+                SubstitutionType.TYPE_XML, SubstitutionType.TYPE_JAVA};
+        for (int i = 0; i < 20000; ++i)
+        {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; ++j)
+            {
+                builder.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+            String text = builder.toString();
+            boolean braces = random.nextBoolean();
+            SubstitutionType type = types[random.nextInt(types.length)];
+            substitutor.setBracesRequired(braces);
+            String expected = substituteStream(substitutor, text, type);
+            assertEquals("'" + text + "'", expected,
+                         VariableTemplate.compile(text, braces).substitute(substitutor, type));
+            assertEquals("'" + text + "'", expected, substitutor.substitute(text, type));
+        }
+    }
+
+    /**
+     * Verifies that the result of a substitution is reused until a referenced variable changes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResultReused() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+        properties.setProperty("OTHER", "x");
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        VariableTemplate template = VariableTemplate.compile("$INSTALL_PATH/lib/${UNSET}", false);
+        assertTrue(template.hasVariables());
+        String first = template.substitute(substitutor, SubstitutionType.TYPE_PLAIN);
+        assertEquals("/opt/app/lib/${UNSET}", first);
+        properties.setProperty("OTHER", "y");
+        assertSame(first, template.substitute(substitutor, SubstitutionType.TYPE_PLAIN));
+
+        properties.setProperty("INSTALL_PATH", "/usr/local/app");
+        assertEquals("/usr/local/app/lib/${UNSET}", template.substitute(substitutor, SubstitutionType.TYPE_PLAIN));
+        properties.setProperty("UNSET", "set");
+        assertEquals("/usr/local/app/lib/set", template.substitute(substitutor, SubstitutionType.TYPE_PLAIN));
+    }
+
+    /**
+     * Verifies that paths to files in the same directory are substituted using the directory template.
+     */
+    @Test
+    public void testPaths()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        assertEquals("/opt/app/lib/a.jar", substitutor.substitute("$INSTALL_PATH/lib/a.jar"));
+        assertEquals("/opt/app/lib/b.jar", substitutor.substitute("$INSTALL_PATH/lib/b.jar"));
+        assertSame(substitutor.getTemplate("$INSTALL_PATH/lib"), substitutor.getTemplate("$INSTALL_PATH/lib"));
+        assertEquals("/opt/app/lib/${a/b", substitutor.substitute("$INSTALL_PATH/lib/${a/b"));
+        assertEquals("/opt/app/lib/$/b", substitutor.substitute("$INSTALL_PATH/lib/$/b"));
+
+        assertFalse(VariableTemplate.compile("no variables", false).hasVariables());
+    }
+
+    /**
+     * Substitutes a string using the stream-based substitution.
+     *
+     * @param substitutor the substitutor
+     * @param text        the text
+     * @param type        the substitution type
+     * @return the substituted text
+     * @throws Exception for any error
+     */
+    private String substituteStream(VariableSubstitutorBase substitutor, String text, SubstitutionType type)
+            throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        substitutor.substitute(new StringReader(text), writer, type);
+        return writer.toString();
+    }
+}
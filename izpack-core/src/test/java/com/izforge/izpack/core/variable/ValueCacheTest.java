@@ -0,0 +1,216 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.variable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+
+
+/**
+ * Tests the {@link ValueCache} class.
+ */
+public class ValueCacheTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    /**
+     * Verifies that results are reused while the key and stamp are unchanged and the time-to-live hasn't elapsed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testGet() throws Exception
+    {
+        ValueCache cache = new ValueCache();
+        AtomicInteger count = new AtomicInteger();
+
+        assertEquals("a1", cache.get(new CountingSource("a", 0, count), 60000));
+        assertEquals("a1", cache.get(new CountingSource("a", 0, count), 60000));
+        assertEquals("b2", cache.get(new CountingSource("b", 0, count), 60000));
+
+        // a different stamp invalidates the result
+        assertEquals("a3", cache.get(new CountingSource("a", 1, count), 60000));
+
+        // results without a time-to-live aren't reused
+        assertEquals("c4", cache.get(new CountingSource("c", 0, count), 0));
+        assertEquals("c5", cache.get(new CountingSource("c", 0, count), 0));
+
+        cache.clear();
+        assertEquals("a6", cache.get(new CountingSource("a", 1, count), 60000));
+    }
+
+    /**
+     * Verifies that failures aren't cached.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        ValueCache cache = new ValueCache();
+        final AtomicInteger count = new AtomicInteger();
+        ValueCache.Source failing = new ValueCache.Source("a", 0)
+        {
+            @Override
+            public String call() throws Exception
+            {
+                count.incrementAndGet();
+                throw new IOException("failed");
+            }
+        };
+        for (int i = 0; i < 2; ++i)
+        {
+            try
+            {
+                cache.get(failing, 60000);
+                fail("Expected IOException");
+            }
+            catch (IOException expected)
+            {
+                // expected
+            }
+        }
+        assertEquals(2, count.get());
+    }
+
+    /**
+     * Verifies that a prefetched result is used by the first request, even if results have no time-to-live.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPrefetch() throws Exception
+    {
+        ValueCache cache = new ValueCache();
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        cache.prefetch(new CountingSource("a", 0, count), 0, executor);
+        cache.prefetch(new CountingSource("a", 0, count), 0, executor);
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(1, count.get());
+
+        assertEquals("a1", cache.get(new CountingSource("a", 0, count), 0));
+        assertEquals("a2", cache.get(new CountingSource("a", 0, count), 0));
+    }
+
+    /**
+     * Verifies that configuration file values are re-read when the file changes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConfigFile() throws Exception
+    {
+        File file = temporaryFolder.newFile("test.properties");
+        write(file, "value", "1");
+        Properties properties = new Properties();
+        properties.setProperty("dir", file.getParent());
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        PlainConfigFileValue value = new PlainConfigFileValue("${dir}/" + file.getName(),
+                                                              ConfigFileValue.CONFIGFILE_TYPE_OPTIONS, null, "key");
+        value.setCache(new ValueCache(), 0);
+        assertEquals("value", value.resolve(substitutor));
+        write(file, "changed value", "2");
+        assertEquals("changed value", value.resolve(substitutor));
+    }
+
+    /**
+     * Writes a property file.
+     *
+     * @param file    the file
+     * @param value   the value of the <em>key</em> property
+     * @param version used to give the file a distinct modification time
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, String value, String version) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty("key", value);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            properties.store(out, version);
+        }
+        finally
+        {
+            out.close();
+        }
+        file.setLastModified(Long.parseLong(version) * 10000);
+    }
+
+    /**
+     * A source that returns its key suffixed with the no. of results computed so far.
+     */
+    private static class CountingSource extends ValueCache.Source
+    {
+
+        /**
+         * The no. of results computed.
+         */
+        private final AtomicInteger count;
+
+        /**
+         * Constructs a <tt>CountingSource</tt>.
+         *
+         * @param key   the key
+         * @param stamp the stamp
+         * @param count the no. of results computed
+         */
+        public CountingSource(String key, long stamp, AtomicInteger count)
+        {
+            super(key, stamp);
+            this.count = count;
+        }
+
+        /**
+         * Computes the result.
+         *
+         * @return the key suffixed with the no. of results computed
+         */
+        @Override
+        public String call()
+        {
+            return getKey() + count.incrementAndGet();
+        }
+    }
+}
@@ -1139,6 +1139,27 @@ public class ConfigurationInstallerListener extends AbstractProgressInstallerLis
                     dynamicVariable.setCheckonce(Boolean.valueOf(value));
                 }
 
+                // Check how long the results of commands and registry lookups may be reused for
+                value = getAttribute(var, "cachettl");
+                if (value != null)
+                {
+                    try
+                    {
+                        dynamicVariable.setCacheTTL(Long.parseLong(value));
+                    }
+                    catch (NumberFormatException exception)
+                    {
+                        parseError("Bad cachettl " + value + " given for dynamic variable " + name);
+                    }
+                }
+
+                // Check whether the value may be resolved in the background before the first evaluation
+                value = getAttribute(var, "prefetch");
+                if (value != null)
+                {
+                    dynamicVariable.setPrefetch(Boolean.valueOf(value));
+                }
+
                 // Check whether evaluation failures of the dynamic variable should be ignored
                 value = getAttribute(var, "ignorefailure");
                 if (value != null)
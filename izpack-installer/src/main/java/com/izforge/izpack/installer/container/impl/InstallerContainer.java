@@ -23,6 +23,7 @@ import com.izforge.izpack.core.resource.ResourceManager;
 import com.izforge.izpack.core.rules.ConditionContainer;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 import com.izforge.izpack.installer.base.InstallDataConfiguratorWithRules;
+import com.izforge.izpack.installer.container.provider.BufferPoolProvider;
 import com.izforge.izpack.installer.container.provider.LocalesProvider;
 import com.izforge.izpack.installer.container.provider.RulesProvider;
 import com.izforge.izpack.installer.data.UninstallData;
@@ -40,6 +41,7 @@ import com.izforge.izpack.installer.unpacker.IUnpacker;
 import com.izforge.izpack.merge.MergeManagerImpl;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.merge.resolve.PathResolver;
+import com.izforge.izpack.util.BufferPool;
 import com.izforge.izpack.util.DefaultTargetPlatformFactory;
 import com.izforge.izpack.util.Housekeeper;
 import com.izforge.izpack.util.Librarian;
@@ -91,6 +93,7 @@ public abstract class InstallerContainer extends AbstractContainer
         pico.addAdapter(new ProviderAdapter(new RulesProvider()));
         pico.addAdapter(new ProviderAdapter(new PlatformProvider()));
         pico.addAdapter(new ProviderAdapter(new LocalesProvider()));
+        pico.addAdapter(new ProviderAdapter(new BufferPoolProvider()));
 
         addComponent(InstallDataConfiguratorWithRules.class);
         addComponent(InstallerRequirementChecker.class);
@@ -134,6 +137,9 @@ public abstract class InstallerContainer extends AbstractContainer
      */
     protected void resolveComponents(MutablePicoContainer pico)
     {
+        // configure the buffer pool before anything is copied
+        pico.getComponent(BufferPool.class);
+
         InstallData installData = pico.getComponent(InstallData.class);
         String className = installData.getInfo().getUnpackerClassName();
         Class<IUnpacker> unpackerClass = getClass(className, IUnpacker.class);
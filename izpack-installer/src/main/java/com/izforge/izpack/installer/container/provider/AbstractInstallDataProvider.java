@@ -2,8 +2,6 @@ package com.izforge.izpack.installer.container.provider;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
@@ -32,6 +30,7 @@ import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.core.io.PackInfoReader;
 import com.izforge.izpack.util.Housekeeper;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsVersion;
@@ -111,22 +110,16 @@ public abstract class AbstractInstallDataProvider implements Provider
         List<Panel> panelsOrder = (List<Panel>) resources.getObject("panelsOrder");
 
         // We read the packs data
-        InputStream in = resources.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
-        int size = objIn.readInt();
+        List<Pack> allPacks = PackInfoReader.read(resources.getInputStream("packs.info"));
         List<Pack> availablePacks = new ArrayList<Pack>();
-        List<Pack> allPacks = new ArrayList<Pack>();
 
-        for (int i = 0; i < size; i++)
+        for (Pack pack : allPacks)
         {
-            Pack pack = (Pack) objIn.readObject();
-            allPacks.add(pack);
             if (matcher.matchesCurrentPlatform(pack.getOsConstraints()))
             {
                 availablePacks.add(pack);
             }
         }
-        objIn.close();
 
         setStandardVariables(installData, dir);
 
@@ -0,0 +1,73 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.container.provider;
+
+import java.util.logging.Logger;
+
+import org.picocontainer.injectors.Provider;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.util.BufferPool;
+
+
+/**
+ * Injection provider for the {@link BufferPool}.
+ * <p/>
+ * The pool is configured from the {@link InstallData#IO_BUFFER_SIZE} and {@link InstallData#IO_BUFFER_POOL_SIZE}
+ * variables, and becomes the {@link BufferPool#getDefault() default} pool, so that it is also used by static
+ * helpers.
+ */
+public class BufferPoolProvider implements Provider
+{
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(BufferPoolProvider.class.getName());
+
+
+    /**
+     * Creates the buffer pool.
+     *
+     * @param installData the installation data
+     * @return a new buffer pool
+     */
+    public BufferPool provide(AutomatedInstallData installData)
+    {
+        Variables variables = installData.getVariables();
+        int bufferSize = variables.getInt(InstallData.IO_BUFFER_SIZE, BufferPool.DEFAULT_BUFFER_SIZE);
+        if (bufferSize < 1)
+        {
+            logger.warning("Invalid " + InstallData.IO_BUFFER_SIZE + ": " + bufferSize);
+            bufferSize = BufferPool.DEFAULT_BUFFER_SIZE;
+        }
+        long maxRetained = variables.getLong(InstallData.IO_BUFFER_POOL_SIZE, BufferPool.DEFAULT_MAX_RETAINED);
+        if (maxRetained < 0)
+        {
+            logger.warning("Invalid " + InstallData.IO_BUFFER_POOL_SIZE + ": " + maxRetained);
+            maxRetained = BufferPool.DEFAULT_MAX_RETAINED;
+        }
+        BufferPool result = new BufferPool(bufferSize, maxRetained);
+        BufferPool.setDefault(result);
+        return result;
+    }
+}
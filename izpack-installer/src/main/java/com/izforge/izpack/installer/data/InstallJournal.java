@@ -0,0 +1,477 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * A journal of the progress of an installation, used to resume it if it is interrupted.
+ * <p/>
+ * Each file is recorded once it has been completely written, along with its size, modification time and the
+ * checksum of the pack file it was unpacked from. Packs are recorded once all of their files have been written.
+ * Records are only ever appended, so a journal left by an interrupted installation describes a prefix of the work
+ * done; a record torn by the interruption is ignored.
+ * <p/>
+ * When resuming, a recorded file is considered installed if its size and modification time are unchanged, and it
+ * comes from the same pack file. This avoids reading the file back.
+ * <p/>
+ * The journal is written through a buffer, flushed periodically and at the end of each pack. Files whose records
+ * are lost are simply unpacked again. Failures to write the journal are logged, and stop journalling, as they
+ * shouldn't fail the installation.
+ */
+public class InstallJournal
+{
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * The application name.
+     */
+    private final String appName;
+
+    /**
+     * The application version.
+     */
+    private final String appVersion;
+
+    /**
+     * The recorded files, keyed on absolute path.
+     */
+    private final Map<String, Entry> files = new HashMap<String, Entry>();
+
+    /**
+     * The names of the recorded packs.
+     */
+    private final Set<String> packs = new HashSet<String>();
+
+    /**
+     * The length of the valid records in the journal file, or <tt>-1</tt> if it hasn't been loaded.
+     */
+    private long validLength = -1;
+
+    /**
+     * The stream to append records to, or <tt>null</tt> if the journal isn't open.
+     */
+    private DataOutputStream out;
+
+    /**
+     * The no. of records written since the journal was last flushed.
+     */
+    private int unflushed;
+
+    /**
+     * Determines if journalling has failed.
+     */
+    private boolean failed;
+
+    /**
+     * The journal file signature.
+     */
+    private static final int MAGIC = 0x495a4a4e;
+
+    /**
+     * The journal format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The file record type.
+     */
+    private static final int FILE = 1;
+
+    /**
+     * The pack record type.
+     */
+    private static final int PACK = 2;
+
+    /**
+     * The no. of records written before the journal is flushed.
+     */
+    private static final int FLUSH_INTERVAL = 64;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallJournal.class.getName());
+
+
+    /**
+     * Constructs an <tt>InstallJournal</tt>.
+     *
+     * @param file       the journal file
+     * @param appName    the application name
+     * @param appVersion the application version
+     */
+    public InstallJournal(File file, String appName, String appVersion)
+    {
+        this.file = file;
+        this.appName = (appName != null) ? appName : "";
+        this.appVersion = (appVersion != null) ? appVersion : "";
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Loads the journal left by a previous installation, if any.
+     * <p/>
+     * The journal is only loaded if it was written by an installation of the same application and version.
+     *
+     * @return <tt>true</tt> if a journal was loaded, <tt>false</tt> if there is none, or it doesn't apply
+     */
+    public synchronized boolean load()
+    {
+        files.clear();
+        packs.clear();
+        validLength = -1;
+        if (!file.isFile())
+        {
+            return false;
+        }
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !appName.equals(in.readUTF())
+                    || !appVersion.equals(in.readUTF()))
+            {
+                return false;
+            }
+            long length = file.length();
+            validLength = length - in.available();
+            try
+            {
+                while (true)
+                {
+                    int type = in.readByte();
+                    if (type == FILE)
+                    {
+                        String path = in.readUTF();
+                        Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(), in.readBoolean());
+                        files.put(path, entry);
+                    }
+                    else if (type == PACK)
+                    {
+                        packs.add(in.readUTF());
+                    }
+                    else
+                    {
+                        break;
+                    }
+                    validLength = length - in.available();
+                }
+            }
+            catch (EOFException ignore)
+            {
+                // the last record was torn
+            }
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.WARNING, "Failed to read installation journal: " + file, exception);
+        }
+        finally
+        {
+            FileUtils.close(in);
+        }
+        if (validLength == -1)
+        {
+            files.clear();
+            packs.clear();
+        }
+        return validLength != -1;
+    }
+
+    /**
+     * Returns the no. of files recorded.
+     *
+     * @return the no. of files recorded
+     */
+    public synchronized int getFileCount()
+    {
+        return files.size();
+    }
+
+    /**
+     * Determines if a pack has been recorded.
+     *
+     * @param name the pack name
+     * @return <tt>true</tt> if all of the pack's files were written
+     */
+    public synchronized boolean isPackComplete(String name)
+    {
+        return packs.contains(name);
+    }
+
+    /**
+     * Determines if a file was installed, and is unchanged since.
+     *
+     * @param target   the installed file
+     * @param checksum the checksum of the pack file it is unpacked from
+     * @param parsed   determines if the file is parsed as it is unpacked
+     * @return <tt>true</tt> if the file is recorded and unchanged
+     */
+    public synchronized boolean isInstalled(File target, long checksum, boolean parsed)
+    {
+        Entry entry = files.get(target.getAbsolutePath());
+        return entry != null && entry.checksum == checksum && entry.parsed == parsed && target.isFile()
+                && target.length() == entry.length && target.lastModified() == entry.lastModified;
+    }
+
+    /**
+     * Records an installed file.
+     * <p/>
+     * This must only be invoked once the file has been completely written.
+     *
+     * @param target   the installed file
+     * @param checksum the checksum of the pack file it was unpacked from
+     * @param parsed   determines if the file was parsed as it was unpacked
+     */
+    public synchronized void addFile(File target, long checksum, boolean parsed)
+    {
+        String path = target.getAbsolutePath();
+        Entry entry = new Entry(target.length(), target.lastModified(), checksum, parsed);
+        files.put(path, entry);
+        if (open())
+        {
+            try
+            {
+                out.writeByte(FILE);
+                out.writeUTF(path);
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.checksum);
+                out.writeBoolean(entry.parsed);
+                if (++unflushed >= FLUSH_INTERVAL)
+                {
+                    flush();
+                }
+            }
+            catch (IOException exception)
+            {
+                failed(exception);
+            }
+        }
+    }
+
+    /**
+     * Records a pack, once all of its files have been written.
+     * <p/>
+     * The journal is flushed.
+     *
+     * @param name the pack name
+     */
+    public synchronized void addPack(String name)
+    {
+        packs.add(name);
+        if (open())
+        {
+            try
+            {
+                out.writeByte(PACK);
+                out.writeUTF(name);
+                flush();
+            }
+            catch (IOException exception)
+            {
+                failed(exception);
+            }
+        }
+    }
+
+    /**
+     * Closes the journal and deletes the journal file.
+     * <p/>
+     * This is used once an installation completes, or if a previous installation isn't to be resumed.
+     */
+    public synchronized void reset()
+    {
+        close();
+        files.clear();
+        packs.clear();
+        validLength = -1;
+        failed = false;
+        if (file.exists() && !file.delete())
+        {
+            logger.warning("Failed to delete installation journal: " + file);
+        }
+    }
+
+    /**
+     * Closes the journal, retaining the journal file so that the installation may be resumed.
+     */
+    public synchronized void close()
+    {
+        if (out != null)
+        {
+            try
+            {
+                out.close();
+            }
+            catch (IOException exception)
+            {
+                logger.log(Level.WARNING, "Failed to close installation journal: " + file, exception);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Opens the journal for appending, if it isn't already open.
+     * <p/>
+     * If a journal was loaded, any torn record is truncated before appending to it, otherwise a new journal is
+     * created.
+     *
+     * @return <tt>true</tt> if the journal is open, <tt>false</tt> if journalling has failed
+     */
+    private boolean open()
+    {
+        if (out == null && !failed)
+        {
+            FileOutputStream stream = null;
+            try
+            {
+                File dir = file.getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+                {
+                    throw new IOException("Failed to create directory: " + dir);
+                }
+                if (validLength != -1)
+                {
+                    stream = new FileOutputStream(file, true);
+                    stream.getChannel().truncate(validLength);
+                    out = new DataOutputStream(new BufferedOutputStream(stream));
+                }
+                else
+                {
+                    stream = new FileOutputStream(file);
+                    out = new DataOutputStream(new BufferedOutputStream(stream));
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(appName);
+                    out.writeUTF(appVersion);
+                }
+            }
+            catch (IOException exception)
+            {
+                FileUtils.close(stream);
+                failed(exception);
+            }
+        }
+        return out != null;
+    }
+
+    /**
+     * Flushes the journal.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void flush() throws IOException
+    {
+        out.flush();
+        unflushed = 0;
+    }
+
+    /**
+     * Stops journalling after a failure.
+     *
+     * @param exception the cause of the failure
+     */
+    private void failed(IOException exception)
+    {
+        logger.log(Level.WARNING, "Failed to write installation journal: " + file, exception);
+        failed = true;
+        if (out != null)
+        {
+            FileUtils.close(out);
+            out = null;
+        }
+    }
+
+    /**
+     * A recorded file.
+     */
+    private static class Entry
+    {
+
+        /**
+         * The file length.
+         */
+        private final long length;
+
+        /**
+         * The file modification time.
+         */
+        private final long lastModified;
+
+        /**
+         * The checksum of the pack file.
+         */
+        private final long checksum;
+
+        /**
+         * Determines if the file was parsed as it was unpacked.
+         */
+        private final boolean parsed;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param length       the file length
+         * @param lastModified the file modification time
+         * @param checksum     the checksum of the pack file
+         * @param parsed       determines if the file was parsed as it was unpacked
+         */
+        public Entry(long length, long lastModified, long checksum, boolean parsed)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.parsed = parsed;
+        }
+    }
+}
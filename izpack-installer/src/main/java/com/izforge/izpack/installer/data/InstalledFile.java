@@ -0,0 +1,116 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import java.io.File;
+import java.io.Serializable;
+
+
+/**
+ * A file installed from a pack in the {@link com.izforge.izpack.api.data.Info#PACK_FORMAT_INDEXED indexed} pack
+ * format, recorded in the installation information.
+ * <p/>
+ * The file is identified by the checksum of the pack file it was unpacked from. It is unchanged since it was
+ * installed if its size and modification time are the same.
+ */
+public class InstalledFile implements Serializable
+{
+
+    /**
+     * The serialization version.
+     */
+    private static final long serialVersionUID = 4402739138446813285L;
+
+    /**
+     * The absolute path of the file.
+     */
+    private final String path;
+
+    /**
+     * The file length, when it was installed.
+     */
+    private final long length;
+
+    /**
+     * The file modification time, when it was installed.
+     */
+    private final long lastModified;
+
+    /**
+     * The checksum of the pack file it was unpacked from.
+     */
+    private final long checksum;
+
+
+    /**
+     * Constructs an <tt>InstalledFile</tt> for a file that has just been installed.
+     *
+     * @param file     the installed file
+     * @param checksum the checksum of the pack file it was unpacked from
+     */
+    public InstalledFile(File file, long checksum)
+    {
+        this.path = file.getAbsolutePath();
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+        this.checksum = checksum;
+    }
+
+    /**
+     * Returns the absolute path of the file.
+     *
+     * @return the path
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Returns the file length, when it was installed.
+     *
+     * @return the file length
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the checksum of the pack file the file was unpacked from.
+     *
+     * @return the checksum
+     */
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * Determines if the file is unchanged since it was installed.
+     *
+     * @param file the file
+     * @return <tt>true</tt> if the file has the same size and modification time as when it was installed
+     */
+    public boolean isUnchanged(File file)
+    {
+        return file.isFile() && file.length() == length && file.lastModified() == lastModified;
+    }
+}
@@ -23,8 +23,8 @@ package com.izforge.izpack.installer.multiunpacker;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.io.ObjectInputStream;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.PackFile;
@@ -77,7 +77,7 @@ public class MultiVolumeFileUnpacker extends FileUnpacker
      * @throws InstallerException     for any installer exception
      */
     @Override
-    public void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+    public void unpack(PackFile file, InputStream packInputStream, File target)
             throws IOException, InstallerException
     {
         // read in the position of this file
@@ -187,6 +187,19 @@ public class MultiVolumeUnpacker extends UnpackerBase
         return unpacker;
     }
 
+    /**
+     * Returns the maximum no. of packs to unpack at the same time.
+     * <p/>
+     * Volumes are read in sequence, so packs are always unpacked one at a time.
+     *
+     * @return <tt>1</tt>
+     */
+    @Override
+    protected int getPackThreads()
+    {
+        return 1;
+    }
+
     /**
      * Skips a pack file.
      *
@@ -22,14 +22,24 @@
 package com.izforge.izpack.installer.unpacker;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
 
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.core.io.StoredZipEntry;
 
 
 /**
@@ -49,6 +59,17 @@ public abstract class AbstractPackResources implements PackResources
      */
     private final InstallData installData;
 
+    /**
+     * The entries stored uncompressed in local installer jars, keyed on jar.
+     */
+    private final Map<File, Map<String, StoredZipEntry>> storedEntries
+            = new HashMap<File, Map<String, StoredZipEntry>>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(AbstractPackResources.class.getName());
+
     /**
      * Constructs an {@code AbstractPackResources}.
      *
@@ -84,8 +105,10 @@ public abstract class AbstractPackResources implements PackResources
         {
             result = getWebPackStream(name, webDirURL);
         }
-        String className = installData.getInfo().getPackDecoderClassName();
-        if (className != null)
+        // indexed packs compress each file independently, so the pack itself is never decoded
+        Info info = installData.getInfo();
+        String className = info.getPackDecoderClassName();
+        if (className != null && info.getPackFormatVersion() != Info.PACK_FORMAT_INDEXED)
         {
             result = getDecodingInputStream(result, className);
         }
@@ -93,6 +116,27 @@ public abstract class AbstractPackResources implements PackResources
         return result;
     }
 
+    /**
+     * Returns the location of a pack stored uncompressed in a local installer jar.
+     * <p/>
+     * Only packs in the {@link Info#PACK_FORMAT_INDEXED indexed} pack format are supported, as other packs may need
+     * to be decoded.
+     *
+     * @param name the pack name
+     * @return the location of the pack, or <tt>null</tt> if the pack isn't stored uncompressed in a local file
+     */
+    @Override
+    public StoredZipEntry getStoredPackEntry(String name)
+    {
+        StoredZipEntry result = null;
+        Info info = installData.getInfo();
+        if (info.getWebDirURL() == null && info.getPackFormatVersion() == Info.PACK_FORMAT_INDEXED)
+        {
+            result = getStoredEntry(resources.getURL("packs/pack-" + name));
+        }
+        return result;
+    }
+
     /**
      * Returns the stream to a resource.
      *
@@ -154,6 +198,65 @@ public abstract class AbstractPackResources implements PackResources
         return resources.getInputStream("packs/pack-" + name);
     }
 
+    /**
+     * Returns the location of an entry stored uncompressed in a local jar.
+     *
+     * @param url the entry URL
+     * @return the location of the entry, or <tt>null</tt> if the URL doesn't refer to an entry stored uncompressed
+     *         in a local jar
+     */
+    protected StoredZipEntry getStoredEntry(URL url)
+    {
+        StoredZipEntry result = null;
+        if ("jar".equals(url.getProtocol()))
+        {
+            String spec = url.getFile();
+            int index = spec.indexOf("!/");
+            try
+            {
+                if (index != -1)
+                {
+                    URL jarURL = new URL(spec.substring(0, index));
+                    if ("file".equals(jarURL.getProtocol()))
+                    {
+                        // jar URLs escape the entry name, but don't encode spaces as '+'
+                        String entry = URLDecoder.decode(spec.substring(index + 2).replace("+", "%2B"), "UTF-8");
+                        result = getStoredEntries(new File(jarURL.toURI())).get(entry);
+                    }
+                }
+            }
+            catch (IOException exception)
+            {
+                logger.warning("Failed to read " + url + ": " + exception.getMessage());
+            }
+            catch (URISyntaxException exception)
+            {
+                logger.warning("Failed to read " + url + ": " + exception.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries stored uncompressed in a jar.
+     * <p/>
+     * The entries are cached, so that the jar's central directory is only read once.
+     *
+     * @param jar the jar
+     * @return the stored entries, keyed on name
+     * @throws IOException for any I/O error
+     */
+    protected synchronized Map<String, StoredZipEntry> getStoredEntries(File jar) throws IOException
+    {
+        Map<String, StoredZipEntry> result = storedEntries.get(jar);
+        if (result == null)
+        {
+            result = StoredZipEntry.getEntries(jar);
+            storedEntries.put(jar, result);
+        }
+        return result;
+    }
+
     /**
      * Returns the stream to a web-based pack resource.
      *
@@ -0,0 +1,164 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Aggregates the progress of packs being unpacked concurrently into a single {@link ProgressListener}.
+ * <p/>
+ * Notifications are serialized. Steps are numbered in the order packs start, so overall progress only moves
+ * forward. Sub-step progress is only reported for the pack that started most recently, as the listener can only
+ * display one step at a time.
+ */
+class ConcurrentProgressListener implements ProgressListener
+{
+
+    /**
+     * The listener to delegate to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The no. of steps started.
+     */
+    private int steps;
+
+    /**
+     * The thread unpacking the current step.
+     */
+    private Thread current;
+
+
+    /**
+     * Constructs a <tt>ConcurrentProgressListener</tt>.
+     *
+     * @param listener the listener to delegate to
+     */
+    public ConcurrentProgressListener(ProgressListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Invoked when an action starts.
+     *
+     * @param name  the name of the action
+     * @param steps the number of steps the action consists of
+     */
+    @Override
+    public synchronized void startAction(String name, int steps)
+    {
+        listener.startAction(name, steps);
+    }
+
+    /**
+     * Invoked when an action finishes.
+     */
+    @Override
+    public synchronized void stopAction()
+    {
+        listener.stopAction();
+    }
+
+    /**
+     * Invoked when an action step starts.
+     * <p/>
+     * The step becomes the current step, and is renumbered in start order.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param subSteps the number of sub-steps the step consists of
+     */
+    @Override
+    public synchronized void nextStep(String stepName, int step, int subSteps)
+    {
+        current = Thread.currentThread();
+        listener.nextStep(stepName, ++steps, subSteps);
+    }
+
+    /**
+     * Sets the number of sub-steps of the current step.
+     *
+     * @param subSteps the number of sub-steps
+     */
+    @Override
+    public synchronized void setSubStepNo(int subSteps)
+    {
+        if (isCurrent())
+        {
+            listener.setSubStepNo(subSteps);
+        }
+    }
+
+    /**
+     * Invoked to notify progress of the current step.
+     *
+     * @param message a message describing the step
+     */
+    @Override
+    public synchronized void progress(String message)
+    {
+        if (isCurrent())
+        {
+            listener.progress(message);
+        }
+    }
+
+    /**
+     * Invoked to notify progress of the current step.
+     *
+     * @param subStep the sub-step which will be performed next
+     * @param message an additional message describing the sub-step
+     */
+    @Override
+    public synchronized void progress(int subStep, String message)
+    {
+        if (isCurrent())
+        {
+            listener.progress(subStep, message);
+        }
+    }
+
+    /**
+     * Invoked when an action restarts.
+     *
+     * @param name           the name of the action
+     * @param overallMessage a message describing the overall progress
+     * @param tip            a tip describing the current progress
+     * @param steps          the number of steps the action consists of
+     */
+    @Override
+    public synchronized void restartAction(String name, String overallMessage, String tip, int steps)
+    {
+        listener.restartAction(name, overallMessage, tip, steps);
+    }
+
+    /**
+     * Determines if the calling thread is unpacking the current step.
+     *
+     * @return <tt>true</tt> if the calling thread is unpacking the current step, or no step has started
+     */
+    private boolean isCurrent()
+    {
+        return current == null || current == Thread.currentThread();
+    }
+}
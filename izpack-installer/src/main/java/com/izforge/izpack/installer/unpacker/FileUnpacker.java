@@ -26,13 +26,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.io.ObjectInputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.util.BufferPool;
 import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.os.FileQueue;
 import com.izforge.izpack.util.os.FileQueueMove;
@@ -48,6 +49,11 @@ import com.izforge.izpack.util.os.FileQueueMove;
 public abstract class FileUnpacker
 {
 
+    /**
+     * The maximum no. of bytes to transfer between checks for cancellation.
+     */
+    private static final long TRANSFER_SIZE = 8 * 1024 * 1024;
+
     /**
      * Determines if unpacking should be cancelled.
      */
@@ -100,7 +106,7 @@ public abstract class FileUnpacker
      * @throws IOException        for any I/O error
      * @throws InstallerException for any installer exception
      */
-    public abstract void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+    public abstract void unpack(PackFile file, InputStream packInputStream, File target)
             throws IOException, InstallerException;
 
     /**
@@ -117,6 +123,8 @@ public abstract class FileUnpacker
      * Copies an input stream to a target, setting its timestamp to that of the pack file.
      * <p/>
      * If the target is a blockable file, then a temporary file will be created, and the file queued.
+     * <p/>
+     * The data is copied through a buffer from the {@link BufferPool#getDefault() default buffer pool}.
      *
      * @param file   the pack file
      * @param in     the pack file stream
@@ -129,16 +137,31 @@ public abstract class FileUnpacker
         OutputStream out = getTarget(file, target);
         try
         {
-            byte[] buffer = new byte[5120];
-            long bytesCopied = 0;
-            while (bytesCopied < file.length())
+            if (in instanceof StoredFileInputStream && out instanceof FileOutputStream)
             {
-                if (cancellable.isCancelled())
+                transfer(file, (StoredFileInputStream) in, ((FileOutputStream) out).getChannel());
+            }
+            else
+            {
+                BufferPool pool = BufferPool.getDefault();
+                byte[] buffer = pool.acquire();
+                try
                 {
-                    // operation cancelled
-                    throw new InterruptedIOException("Copy operation cancelled");
+                    long bytesCopied = 0;
+                    while (bytesCopied < file.length())
+                    {
+                        if (cancellable.isCancelled())
+                        {
+                            // operation cancelled
+                            throw new InterruptedIOException("Copy operation cancelled");
+                        }
+                        bytesCopied = copy(file, buffer, in, out, bytesCopied);
+                    }
+                }
+                finally
+                {
+                    pool.release(buffer);
                 }
-                bytesCopied = copy(file, buffer, in, out, bytesCopied);
             }
         }
         finally
@@ -148,6 +171,37 @@ public abstract class FileUnpacker
         postCopy(file);
     }
 
+    /**
+     * Transfers a file stored uncompressed in the installer directly to the target, without copying it through
+     * a buffer.
+     * <p/>
+     * The data is transferred in chunks, so that the operation can be cancelled.
+     *
+     * @param file the pack file
+     * @param in   the pack file stream
+     * @param out  the channel to write to
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
+     */
+    private void transfer(PackFile file, StoredFileInputStream in, FileChannel out) throws IOException
+    {
+        long bytesCopied = 0;
+        while (bytesCopied < file.length())
+        {
+            if (cancellable.isCancelled())
+            {
+                // operation cancelled
+                throw new InterruptedIOException("Copy operation cancelled");
+            }
+            long transferred = in.transferTo(out, Math.min(file.length() - bytesCopied, TRANSFER_SIZE));
+            if (transferred == 0)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            bytesCopied += transferred;
+        }
+    }
+
     /**
      * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
      *
@@ -273,7 +327,11 @@ public abstract class FileUnpacker
         FileQueueMove move = new FileQueueMove(tmpTarget, target);
         move.setForceInUse(true);
         move.setOverwrite(true);
-        queue.add(move);
+        synchronized (queue)
+        {
+            // packs may be unpacked concurrently
+            queue.add(move);
+        }
         logger.fine(tmpTarget.getAbsolutePath() + " -> " + target.getAbsolutePath()
                             + " added to file queue for being copied after reboot");
         // The temporary file must not be deleted until the file queue will be committed
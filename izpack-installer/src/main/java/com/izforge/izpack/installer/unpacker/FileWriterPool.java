@@ -0,0 +1,246 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.BufferPool;
+
+
+/**
+ * A pool of threads that write unpacked files, and of the buffers that file data is passed to them in.
+ * <p/>
+ * The number of buffers is bounded, so that the thread decoding a pack blocks when the writers fall behind, rather
+ * than buffering an entire pack in memory. Buffers are allocated from a {@link BufferPool}, and returned to it on
+ * {@link #shutdown()}.
+ *
+ * @see PipelinedFileUnpacker
+ */
+public class FileWriterPool
+{
+
+    /**
+     * The default maximum no. of buffers.
+     */
+    public static final int MAX_BUFFERS = 256;
+
+    /**
+     * The maximum time to wait for writers to terminate on shutdown, in seconds.
+     */
+    private static final int SHUTDOWN_TIMEOUT = 60;
+
+    /**
+     * The writer threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The free buffers.
+     */
+    private final BlockingQueue<byte[]> buffers = new LinkedBlockingQueue<byte[]>();
+
+    /**
+     * The maximum no. of buffers.
+     */
+    private final int maxBuffers;
+
+    /**
+     * The no. of buffers allocated.
+     */
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    /**
+     * The pool that buffers are allocated from.
+     */
+    private final BufferPool bufferPool;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FileWriterPool.class.getName());
+
+
+    /**
+     * Constructs a <tt>FileWriterPool</tt> with {@link #MAX_BUFFERS} buffers.
+     *
+     * @param threads the no. of writer threads
+     */
+    public FileWriterPool(int threads)
+    {
+        this(threads, MAX_BUFFERS);
+    }
+
+    /**
+     * Constructs a <tt>FileWriterPool</tt>, allocating buffers from the {@link BufferPool#getDefault() default}
+     * buffer pool.
+     *
+     * @param threads    the no. of writer threads
+     * @param maxBuffers the maximum no. of buffers
+     */
+    public FileWriterPool(int threads, int maxBuffers)
+    {
+        this(threads, maxBuffers, BufferPool.getDefault());
+    }
+
+    /**
+     * Constructs a <tt>FileWriterPool</tt>.
+     *
+     * @param threads    the no. of writer threads
+     * @param maxBuffers the maximum no. of buffers
+     * @param bufferPool the pool to allocate buffers from
+     */
+    public FileWriterPool(int threads, int maxBuffers, BufferPool bufferPool)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Argument 'threads' must be > 0");
+        }
+        if (maxBuffers < 1)
+        {
+            throw new IllegalArgumentException("Argument 'maxBuffers' must be > 0");
+        }
+        this.maxBuffers = maxBuffers;
+        this.bufferPool = bufferPool;
+        executor = Executors.newFixedThreadPool(threads, new WriterThreadFactory());
+    }
+
+    /**
+     * Stops the writer threads, waiting for any write in progress to terminate.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+        try
+        {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS))
+            {
+                logger.warning("Timed out waiting for file writers to terminate");
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        byte[] buffer;
+        while ((buffer = buffers.poll()) != null)
+        {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Returns the size of each buffer.
+     *
+     * @return the buffer size
+     */
+    public int getBufferSize()
+    {
+        return bufferPool.getBufferSize();
+    }
+
+    /**
+     * Submits a write.
+     *
+     * @param write the write
+     * @return the result of the write
+     */
+    <T> Future<T> submit(Callable<T> write)
+    {
+        return executor.submit(write);
+    }
+
+    /**
+     * Acquires a buffer, blocking until one is free if the maximum no. of buffers are in use.
+     *
+     * @return the buffer
+     * @throws InterruptedIOException if the thread is interrupted while waiting for a buffer
+     */
+    byte[] acquire() throws InterruptedIOException
+    {
+        byte[] result = buffers.poll();
+        if (result == null)
+        {
+            if (allocated.incrementAndGet() <= maxBuffers)
+            {
+                result = bufferPool.acquire();
+            }
+            else
+            {
+                allocated.decrementAndGet();
+                try
+                {
+                    result = buffers.take();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for a buffer");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Releases a buffer acquired via {@link #acquire()}.
+     *
+     * @param buffer the buffer
+     */
+    void release(byte[] buffer)
+    {
+        buffers.add(buffer);
+    }
+
+    /**
+     * Creates daemon writer threads, so that a failed installation doesn't prevent the JVM from exiting.
+     */
+    private static class WriterThreadFactory implements ThreadFactory
+    {
+
+        /**
+         * The thread counter, used to name threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable to execute
+         * @return a new daemon thread
+         */
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "FileWriter-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
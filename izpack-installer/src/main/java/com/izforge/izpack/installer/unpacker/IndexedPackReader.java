@@ -0,0 +1,418 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.core.io.IndexedPack;
+import com.izforge.izpack.core.io.LimitedInputStream;
+import com.izforge.izpack.core.io.PackIndexReader;
+import com.izforge.izpack.core.io.StoredZipEntry;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Reads a pack in the {@link com.izforge.izpack.api.data.Info#PACK_FORMAT_INDEXED indexed} pack format.
+ * <p/>
+ * The index is read when the reader is constructed. File data is located using the offsets recorded in the index,
+ * so files that aren't installed are skipped without being decompressed. When the pack is stored uncompressed in
+ * the installer jar, skipping is a seek.
+ * <p/>
+ * If the pack is stored uncompressed in a local installer jar, the data of files stored without compression is
+ * read directly from the jar, so that it can be transferred to the target without being copied.
+ */
+class IndexedPackReader
+{
+
+    /**
+     * The pack resources.
+     */
+    private final PackResources resources;
+
+    /**
+     * The pack stream.
+     */
+    private final InputStream in;
+
+    /**
+     * The pack index.
+     */
+    private final PackIndexReader index;
+
+    /**
+     * The position of the pack stream, relative to the start of the data section.
+     */
+    private long position;
+
+    /**
+     * The last entry returned from the pack stream. May be <tt>null</tt>
+     */
+    private LimitedInputStream entry;
+
+    /**
+     * The position of the last entry, relative to the start of the data section.
+     */
+    private long entryOffset;
+
+    /**
+     * The length of the last entry.
+     */
+    private long entryLength;
+
+    /**
+     * The installer jar channel, if the pack is stored uncompressed in a local installer jar.
+     * May be <tt>null</tt>
+     */
+    private FileChannel channel;
+
+    /**
+     * The position of the pack data section in the {@link #channel}.
+     */
+    private long dataOffset;
+
+
+    /**
+     * Constructs an <tt>IndexedPackReader</tt>.
+     *
+     * @param resources the pack resources
+     * @param name      the pack name
+     * @throws IOException for any I/O error
+     */
+    public IndexedPackReader(PackResources resources, String name) throws IOException
+    {
+        this.resources = resources;
+        in = resources.getPackStream(name);
+        try
+        {
+            int length = IndexedPack.readHeader(in);
+            index = readIndex(in, length);
+            StoredZipEntry stored = resources.getStoredPackEntry(name);
+            if (stored != null)
+            {
+                dataOffset = stored.getOffset() + IndexedPack.HEADER_SIZE + length;
+                channel = new RandomAccessFile(stored.getFile(), "r").getChannel();
+            }
+        }
+        catch (IOException exception)
+        {
+            FileUtils.close(in);
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns the pack index.
+     * <p/>
+     * This contains the file headers, followed by the parsable, executable and update check meta-data.
+     *
+     * @return the pack index
+     */
+    public PackIndexReader getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Returns a stream to the uncompressed data of a file.
+     * <p/>
+     * Files in this pack should be requested in index order. Requesting a file that precedes the last file requested
+     * is not supported. If the file is a back reference, its data is read from the referenced pack.
+     * <p/>
+     * The returned stream verifies the checksum of the data once it has been completely read. For files stored
+     * uncompressed in a local installer jar, this is a {@link StoredFileInputStream}.
+     *
+     * @param file the pack file
+     * @return a stream to the file data. The caller is responsible for closing it
+     * @throws IOException for any I/O error
+     */
+    public InputStream getInputStream(PackFile file) throws IOException
+    {
+        if (channel != null && !file.isBackReference() && file.getCompression() == PackCompression.STORE)
+        {
+            // read the data directly from the installer. The pack stream is left as is
+            return new StoredFileInputStream(channel, dataOffset + file.getEntryOffset(), file);
+        }
+        InputStream result;
+        if (file.isBackReference())
+        {
+            final InputStream packStream = resources.getPackStream(file.previousPackId);
+            try
+            {
+                int length = IndexedPack.readHeader(packStream);
+                skip(packStream, length + file.getEntryOffset());
+            }
+            catch (IOException exception)
+            {
+                FileUtils.close(packStream);
+                throw exception;
+            }
+            result = new LimitedInputStream(packStream, file.getEntryLength())
+            {
+                @Override
+                public void close()
+                {
+                    FileUtils.close(packStream);
+                }
+            };
+        }
+        else
+        {
+            if (entry != null)
+            {
+                position = entryOffset + entryLength - entry.getRemaining();
+            }
+            if (file.getEntryOffset() < position)
+            {
+                throw new IOException("Cannot read " + file.getTargetPath() + ": pack entries must be read in order");
+            }
+            skip(in, file.getEntryOffset() - position);
+            position = file.getEntryOffset();
+            entryOffset = position;
+            entryLength = file.getEntryLength();
+            entry = new LimitedInputStream(in, file.getEntryLength());
+            result = entry;
+        }
+        try
+        {
+            return new ChecksumInputStream(IndexedPack.getInputStream(file.getCompression(), result), file);
+        }
+        catch (IOException exception)
+        {
+            FileUtils.close(result);
+            throw exception;
+        }
+    }
+
+    /**
+     * Closes the pack.
+     */
+    public void close()
+    {
+        FileUtils.close(in);
+        FileUtils.close(channel);
+    }
+
+    /**
+     * Reads the pack index.
+     *
+     * @param in     the pack stream, positioned after the header
+     * @param length the length of the index
+     * @return the index
+     * @throws IOException for any I/O error
+     */
+    private PackIndexReader readIndex(InputStream in, int length) throws IOException
+    {
+        byte[] buffer = new byte[length];
+        new DataInputStream(in).readFully(buffer);
+        return new PackIndexReader(new ByteArrayInputStream(buffer));
+    }
+
+    /**
+     * Skips bytes in a stream.
+     *
+     * @param stream the stream
+     * @param bytes  the no. of bytes to skip
+     * @throws IOException if the bytes cannot be skipped, or for any I/O error
+     */
+    private void skip(InputStream stream, long bytes) throws IOException
+    {
+        long remaining = bytes;
+        while (remaining > 0)
+        {
+            long skipped = stream.skip(remaining);
+            if (skipped <= 0)
+            {
+                // skip() may legitimately return 0, so read a byte to detect the end of the stream
+                if (stream.read() == -1)
+                {
+                    throw new IOException("Unexpected end of stream (installer corrupted?)");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Verifies the checksum of file data, once it has been completely read.
+     */
+    private static class ChecksumInputStream extends FilterInputStream
+    {
+
+        /**
+         * The pack file.
+         */
+        private final PackFile file;
+
+        /**
+         * The checksum of the data read so far.
+         */
+        private final CRC32 checksum = new CRC32();
+
+        /**
+         * The no. of bytes remaining before the checksum is verified, or <tt>-1</tt> if it is only verified at the
+         * end of the stream.
+         */
+        private long remaining;
+
+        /**
+         * Determines if the stream has been closed.
+         */
+        private boolean closed;
+
+        /**
+         * Determines if the end of the stream has been reached.
+         */
+        private boolean eof;
+
+
+        /**
+         * Constructs a <tt>ChecksumInputStream</tt>.
+         *
+         * @param in   the uncompressed data stream
+         * @param file the pack file
+         */
+        public ChecksumInputStream(InputStream in, PackFile file)
+        {
+            super(in);
+            this.file = file;
+            // the data of a Pack200 jar is its Pack200 id, not the jar
+            remaining = file.isPack200Jar() ? -1 : file.length();
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int result = in.read();
+            if (result == -1)
+            {
+                verify();
+            }
+            else
+            {
+                checksum.update(result);
+                consumed(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int result = in.read(b, off, len);
+            if (result == -1)
+            {
+                verify();
+            }
+            else
+            {
+                checksum.update(b, off, result);
+                consumed(result);
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            throw new IOException("Skipping pack file data is not supported");
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        /**
+         * Closes the stream.
+         * <p/>
+         * If all of the data has been read, the checksum is verified.
+         *
+         * @throws IOException if the checksum is invalid, or for any I/O error
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            try
+            {
+                if (!eof && in.read() == -1)
+                {
+                    verify();
+                }
+            }
+            finally
+            {
+                super.close();
+            }
+        }
+
+        /**
+         * Verifies the checksum once the file length has been read.
+         * <p/>
+         * Unpackers read exactly the file length, so they never see the end of the stream.
+         *
+         * @param bytes the no. of bytes read
+         * @throws IOException if the checksum is invalid
+         */
+        private void consumed(int bytes) throws IOException
+        {
+            if (remaining > 0)
+            {
+                remaining -= bytes;
+                if (remaining <= 0)
+                {
+                    verify();
+                }
+            }
+        }
+
+        /**
+         * Verifies the checksum.
+         *
+         * @throws IOException if the checksum is invalid
+         */
+        private void verify() throws IOException
+        {
+            if (!eof)
+            {
+                eof = true;
+                if (checksum.getValue() != file.getChecksum())
+                {
+                    throw new IOException("Checksum mismatch for " + file.getTargetPath() + " (installer corrupted?)");
+                }
+            }
+        }
+    }
+}
@@ -21,10 +21,11 @@
 
 package com.izforge.izpack.installer.unpacker;
 
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
@@ -78,10 +79,10 @@ class Pack200FileUnpacker extends FileUnpacker
      * @throws InstallerException for any installer exception
      */
     @Override
-    public void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+    public void unpack(PackFile file, InputStream packInputStream, File target)
             throws IOException, InstallerException
     {
-        int key = packInputStream.readInt();
+        int key = readKey(packInputStream);
         InputStream in = null;
         OutputStream out = null;
         JarOutputStream jarOut = null;
@@ -104,4 +105,18 @@ class Pack200FileUnpacker extends FileUnpacker
         postCopy(file);
     }
 
+    /**
+     * Reads the Pack200 resource key from the pack stream.
+     *
+     * @param packInputStream the pack input stream
+     * @return the key
+     * @throws IOException for any I/O error
+     */
+    private int readKey(InputStream packInputStream) throws IOException
+    {
+        DataInput input = (packInputStream instanceof DataInput) ? (DataInput) packInputStream
+                : new DataInputStream(packInputStream);
+        return input.readInt();
+    }
+
 }
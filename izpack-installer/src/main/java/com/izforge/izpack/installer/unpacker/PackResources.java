@@ -27,6 +27,7 @@ import java.io.InputStream;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import com.izforge.izpack.core.io.StoredZipEntry;
 
 /**
  * Provides access to installation packs.
@@ -47,6 +48,17 @@ public interface PackResources
      */
     InputStream getPackStream(String name);
 
+    /**
+     * Returns the location of a pack stored uncompressed in a local installer jar.
+     * <p/>
+     * This enables pack data to be read directly from the installer jar. The returned location refers to the data
+     * returned by {@link #getPackStream(String)}.
+     *
+     * @param name the pack name
+     * @return the location of the pack, or <tt>null</tt> if the pack isn't stored uncompressed in a local file
+     */
+    StoredZipEntry getStoredPackEntry(String name);
+
     /**
      * Returns the stream to a resource.
      *
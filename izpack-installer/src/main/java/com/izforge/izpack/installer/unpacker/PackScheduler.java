@@ -0,0 +1,286 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.izforge.izpack.api.data.Pack;
+
+
+/**
+ * Schedules packs to be unpacked concurrently.
+ * <p/>
+ * A pack must be unpacked after any earlier pack that it depends on, that depends on it, or that installs any of
+ * the same files. Packs with no such relationship are independent, and may be unpacked at the same time.
+ * <p/>
+ * Related packs are unpacked in the order they are supplied, so the result is the same as unpacking them in
+ * sequence.
+ */
+class PackScheduler
+{
+
+    /**
+     * Unpacks a pack.
+     */
+    interface Task
+    {
+
+        /**
+         * Unpacks a pack.
+         *
+         * @param index the index of the pack
+         * @throws Exception for any error
+         */
+        void unpack(int index) throws Exception;
+    }
+
+    /**
+     * The packs.
+     */
+    private final List<Pack> packs;
+
+    /**
+     * The packs that must be unpacked before each pack, by index.
+     */
+    private final List<List<Integer>> predecessors;
+
+    /**
+     * The packs that must be unpacked after each pack, by index.
+     */
+    private final List<List<Integer>> successors;
+
+
+    /**
+     * Constructs a <tt>PackScheduler</tt>.
+     *
+     * @param packs   the packs, in installation order
+     * @param targets the paths of the files installed by each pack. A <tt>null</tt> element indicates the files
+     *                aren't known, and that the pack must be unpacked after all earlier packs
+     */
+    public PackScheduler(List<Pack> packs, List<Set<String>> targets)
+    {
+        this.packs = packs;
+        int count = packs.size();
+        predecessors = new ArrayList<List<Integer>>(count);
+        successors = new ArrayList<List<Integer>>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            predecessors.add(new ArrayList<Integer>());
+            successors.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            for (int j = 0; j < i; ++j)
+            {
+                if (isRelated(packs.get(j), targets.get(j), packs.get(i), targets.get(i)))
+                {
+                    predecessors.get(i).add(j);
+                    successors.get(j).add(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the packs that must be unpacked before a pack.
+     *
+     * @param index the index of the pack
+     * @return the indexes of the packs that must be unpacked first, in ascending order
+     */
+    public List<Integer> getPredecessors(int index)
+    {
+        return Collections.unmodifiableList(predecessors.get(index));
+    }
+
+    /**
+     * Unpacks the packs, unpacking independent packs concurrently.
+     * <p/>
+     * If a pack fails, no further packs are started. Packs already being unpacked are waited for, and the first
+     * failure rethrown.
+     *
+     * @param threads the maximum no. of packs to unpack at the same time
+     * @param task    the task to unpack a pack
+     * @throws Exception the first exception thrown by <tt>task</tt>
+     */
+    public void run(int threads, final Task task) throws Exception
+    {
+        int count = packs.size();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, count)),
+                                                                new PackThreadFactory());
+        try
+        {
+            CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(executor);
+            int[] waiting = new int[count];
+            int running = 0;
+            for (int i = 0; i < count; ++i)
+            {
+                waiting[i] = predecessors.get(i).size();
+                if (waiting[i] == 0)
+                {
+                    submit(completion, task, i);
+                    ++running;
+                }
+            }
+            Exception failure = null;
+            while (running > 0)
+            {
+                Future<Integer> future = completion.take();
+                --running;
+                try
+                {
+                    int index = future.get();
+                    if (failure == null)
+                    {
+                        for (int successor : successors.get(index))
+                        {
+                            if (--waiting[successor] == 0)
+                            {
+                                submit(completion, task, successor);
+                                ++running;
+                            }
+                        }
+                    }
+                }
+                catch (ExecutionException exception)
+                {
+                    if (failure == null)
+                    {
+                        Throwable cause = exception.getCause();
+                        if (cause instanceof Error)
+                        {
+                            throw (Error) cause;
+                        }
+                        failure = (Exception) cause;
+                    }
+                }
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Submits a pack to be unpacked.
+     *
+     * @param completion the completion service
+     * @param task       the task to unpack the pack
+     * @param index      the index of the pack
+     */
+    private void submit(CompletionService<Integer> completion, final Task task, final int index)
+    {
+        completion.submit(new Callable<Integer>()
+        {
+            @Override
+            public Integer call() throws Exception
+            {
+                task.unpack(index);
+                return index;
+            }
+        });
+    }
+
+    /**
+     * Determines if a pack must be unpacked after an earlier pack.
+     *
+     * @param first         the earlier pack
+     * @param firstTargets  the files installed by the earlier pack. May be <tt>null</tt>
+     * @param second        the later pack
+     * @param secondTargets the files installed by the later pack. May be <tt>null</tt>
+     * @return <tt>true</tt> if the packs are related
+     */
+    private boolean isRelated(Pack first, Set<String> firstTargets, Pack second, Set<String> secondTargets)
+    {
+        if (dependsOn(second, first) || dependsOn(first, second))
+        {
+            return true;
+        }
+        if (firstTargets == null || secondTargets == null)
+        {
+            return true;
+        }
+        Set<String> smaller = (firstTargets.size() < secondTargets.size()) ? firstTargets : secondTargets;
+        Set<String> larger = (smaller == firstTargets) ? secondTargets : firstTargets;
+        for (String target : smaller)
+        {
+            if (larger.contains(target))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a pack depends on another.
+     *
+     * @param pack       the pack
+     * @param dependency the potential dependency
+     * @return <tt>true</tt> if <tt>pack</tt> depends on <tt>dependency</tt>
+     */
+    private boolean dependsOn(Pack pack, Pack dependency)
+    {
+        List<String> dependencies = pack.getDependencies();
+        return dependencies != null && dependencies.contains(dependency.getName());
+    }
+
+    /**
+     * Creates daemon threads to unpack packs.
+     */
+    private static class PackThreadFactory implements ThreadFactory
+    {
+
+        /**
+         * The thread counter, used to name threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable to execute
+         * @return a new daemon thread
+         */
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "PackUnpacker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
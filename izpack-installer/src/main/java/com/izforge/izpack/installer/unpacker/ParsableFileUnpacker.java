@@ -0,0 +1,116 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Unpacks a {@link ParsableFile parsable} pack file, substituting variables as it is written.
+ * <p/>
+ * This produces the same result as unpacking the file and parsing it with {@link ScriptParser}, without
+ * re-reading and re-writing the file.
+ */
+public class ParsableFileUnpacker extends FileUnpacker
+{
+
+    /**
+     * Determines if unpacking should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The variable replacer.
+     */
+    private final VariableSubstitutor replacer;
+
+    /**
+     * The parsable file.
+     */
+    private final ParsableFile parsable;
+
+
+    /**
+     * Constructs a <tt>ParsableFileUnpacker</tt>.
+     *
+     * @param cancellable determines if unpacking should be cancelled
+     * @param queue       the file queue. May be <tt>null</tt>
+     * @param replacer    the variable replacer
+     * @param parsable    the parsable file
+     */
+    public ParsableFileUnpacker(Cancellable cancellable, FileQueue queue, VariableSubstitutor replacer,
+                                ParsableFile parsable)
+    {
+        super(cancellable, queue);
+        this.cancellable = cancellable;
+        this.replacer = replacer;
+        this.parsable = parsable;
+    }
+
+    /**
+     * Unpacks a pack file.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream. This must be limited to the file data
+     * @param target          the target
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    @Override
+    public void unpack(PackFile file, InputStream packInputStream, File target)
+            throws IOException, InstallerException
+    {
+        if (cancellable.isCancelled())
+        {
+            // operation cancelled
+            throw new InterruptedIOException("Copy operation cancelled");
+        }
+        OutputStream out = null;
+        try
+        {
+            out = getTarget(file, target);
+            replacer.substitute(packInputStream, out, parsable.getType(), parsable.getEncoding());
+        }
+        catch (IOException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to parse: " + target, exception);
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+        postCopy(file);
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * A file unpacker that decouples reading a file from the pack stream from writing it to disk.
+ * <p/>
+ * {@link #unpack} reads the file data into buffers from a {@link FileWriterPool}, and hands them to a writer thread
+ * which creates, writes, timestamps and closes the target. It returns once the data has been read, so that the next
+ * file can be decoded while this one is still being written. {@link #complete()} waits for the write to finish.
+ */
+public class PipelinedFileUnpacker extends FileUnpacker
+{
+
+    /**
+     * Marks the end of the file data.
+     */
+    private static final Chunk END = new Chunk(null, 0);
+
+    /**
+     * Marks that the file data could not be read. The partially written target is left as is, as per
+     * {@link DefaultFileUnpacker}.
+     */
+    private static final Chunk ABORT = new Chunk(null, 0);
+
+    /**
+     * Determines if unpacking should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The writer pool.
+     */
+    private final FileWriterPool pool;
+
+    /**
+     * The file data waiting to be written.
+     */
+    private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+
+    /**
+     * Determines if the writer has stopped accepting data.
+     */
+    private boolean closed;
+
+    /**
+     * The result of the write.
+     */
+    private Future<Void> write;
+
+
+    /**
+     * Constructs a <tt>PipelinedFileUnpacker</tt>.
+     *
+     * @param cancellable determines if unpacking should be cancelled
+     * @param queue       the file queue. May be {@code null}
+     * @param pool        the writer pool
+     */
+    public PipelinedFileUnpacker(Cancellable cancellable, FileQueue queue, FileWriterPool pool)
+    {
+        super(cancellable, queue);
+        this.cancellable = cancellable;
+        this.pool = pool;
+    }
+
+    /**
+     * Reads a pack file, handing its data to a writer thread.
+     * <p/>
+     * On return, the file may still be being written.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    @Override
+    public void unpack(final PackFile file, InputStream packInputStream, final File target)
+            throws IOException, InstallerException
+    {
+        write = pool.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws IOException
+            {
+                write(file, target);
+                return null;
+            }
+        });
+
+        Chunk last = ABORT;
+        try
+        {
+            long remaining = file.length();
+            while (remaining > 0)
+            {
+                if (cancellable.isCancelled())
+                {
+                    // operation cancelled
+                    throw new InterruptedIOException("Copy operation cancelled");
+                }
+                byte[] buffer = pool.acquire();
+                int length;
+                try
+                {
+                    length = fill(buffer, packInputStream, (int) Math.min(remaining, buffer.length));
+                }
+                catch (IOException exception)
+                {
+                    pool.release(buffer);
+                    throw exception;
+                }
+                if (!add(new Chunk(buffer, length)))
+                {
+                    // the write failed. Report why
+                    complete();
+                    throw new IOException("Failed to write " + target);
+                }
+                remaining -= length;
+            }
+            last = END;
+        }
+        finally
+        {
+            add(last);
+        }
+    }
+
+    /**
+     * Determines if the write has finished, successfully or not.
+     *
+     * @return <tt>true</tt> if the write has finished
+     */
+    public boolean isDone()
+    {
+        return write != null && write.isDone();
+    }
+
+    /**
+     * Waits for the write to finish.
+     *
+     * @throws InterruptedIOException if the write was cancelled, or the thread was interrupted while waiting
+     * @throws IOException            if the write failed
+     */
+    public void complete() throws IOException
+    {
+        try
+        {
+            write.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for write to complete");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Writes the file data to the target. This is invoked by a writer thread.
+     *
+     * @param file   the pack file meta-data
+     * @param target the target
+     * @throws InterruptedIOException if the write is cancelled
+     * @throws IOException            for any I/O error
+     */
+    private void write(PackFile file, File target) throws IOException
+    {
+        boolean written = false;
+        try
+        {
+            OutputStream out = getTarget(file, target);
+            try
+            {
+                Chunk chunk = take();
+                while (chunk != END && chunk != ABORT)
+                {
+                    try
+                    {
+                        if (cancellable.isCancelled())
+                        {
+                            // operation cancelled
+                            throw new InterruptedIOException("Copy operation cancelled");
+                        }
+                        out.write(chunk.buffer, 0, chunk.length);
+                    }
+                    finally
+                    {
+                        pool.release(chunk.buffer);
+                    }
+                    chunk = take();
+                }
+                written = (chunk == END);
+            }
+            finally
+            {
+                FileUtils.close(out);
+            }
+            if (written)
+            {
+                postCopy(file);
+            }
+        }
+        finally
+        {
+            if (!written)
+            {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Adds file data for the writer.
+     *
+     * @param chunk the file data
+     * @return <tt>true</tt> if the data was added, <tt>false</tt> if the writer has stopped
+     */
+    private synchronized boolean add(Chunk chunk)
+    {
+        if (closed)
+        {
+            if (chunk.buffer != null)
+            {
+                pool.release(chunk.buffer);
+            }
+            return false;
+        }
+        chunks.add(chunk);
+        return true;
+    }
+
+    /**
+     * Takes the next file data to write, waiting for it to be read if necessary.
+     *
+     * @return the file data
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    private Chunk take() throws InterruptedIOException
+    {
+        try
+        {
+            return chunks.take();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Write interrupted");
+        }
+    }
+
+    /**
+     * Stops accepting file data, and releases any data not written.
+     */
+    private synchronized void close()
+    {
+        closed = true;
+        Chunk chunk;
+        while ((chunk = chunks.poll()) != null)
+        {
+            if (chunk.buffer != null)
+            {
+                pool.release(chunk.buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads exactly <tt>length</tt> bytes into a buffer.
+     *
+     * @param buffer the buffer
+     * @param in     the stream to read from
+     * @param length the no. of bytes to read
+     * @return the no. of bytes read
+     * @throws IOException if the stream ends prematurely, or for any other I/O error
+     */
+    private int fill(byte[] buffer, InputStream in, int length) throws IOException
+    {
+        int count = 0;
+        while (count < length)
+        {
+            int read = in.read(buffer, count, length - count);
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            count += read;
+        }
+        return count;
+    }
+
+    /**
+     * File data passed from the reading thread to the writer.
+     */
+    private static class Chunk
+    {
+
+        /**
+         * The buffer holding the data.
+         */
+        private final byte[] buffer;
+
+        /**
+         * The no. of bytes of data in the buffer.
+         */
+        private final int length;
+
+        /**
+         * Constructs a <tt>Chunk</tt>.
+         *
+         * @param buffer the buffer holding the data. May be <tt>null</tt> for markers
+         * @param length the no. of bytes of data in the buffer
+         */
+        public Chunk(byte[] buffer, int length)
+        {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+}
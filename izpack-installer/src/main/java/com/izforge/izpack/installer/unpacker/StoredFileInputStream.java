@@ -0,0 +1,203 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+import com.izforge.izpack.api.data.PackFile;
+
+
+/**
+ * A stream to the data of a pack file stored uncompressed in a local installer jar.
+ * <p/>
+ * The data is read from the installer using positional reads, so the channel may be shared by several streams.
+ * It may also be transferred directly to a target channel using {@link #transferTo}, in which case the operating
+ * system copies the data without it passing through the JVM.
+ * <p/>
+ * If the data is read, its checksum is verified once it has been completely read. Transferred data isn't verified,
+ * as it is never seen.
+ */
+class StoredFileInputStream extends InputStream
+{
+
+    /**
+     * The installer channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The pack file.
+     */
+    private final PackFile file;
+
+    /**
+     * The position of the next byte to read in the installer.
+     */
+    private long position;
+
+    /**
+     * The no. of bytes remaining.
+     */
+    private long remaining;
+
+    /**
+     * The checksum of the data read so far.
+     */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Determines if the checksum should be verified. This is <tt>false</tt> once data has been transferred or
+     * skipped, or the checksum has been verified.
+     */
+    private boolean verify = true;
+
+
+    /**
+     * Constructs a <tt>StoredFileInputStream</tt>.
+     *
+     * @param channel  the installer channel
+     * @param position the position of the file data in the installer
+     * @param file     the pack file
+     */
+    public StoredFileInputStream(FileChannel channel, long position, PackFile file)
+    {
+        this.channel = channel;
+        this.position = position;
+        this.file = file;
+        remaining = file.getEntryLength();
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] buffer = new byte[1];
+        int read = read(buffer, 0, 1);
+        return (read == -1) ? -1 : buffer[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (remaining == 0)
+        {
+            verify();
+            return -1;
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+        int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+        if (read == -1)
+        {
+            throw new IOException("Unexpected end of stream (installer corrupted?)");
+        }
+        position += read;
+        remaining -= read;
+        if (verify)
+        {
+            checksum.update(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        long skipped = Math.max(0, Math.min(n, remaining));
+        if (skipped > 0)
+        {
+            verify = false;
+            position += skipped;
+            remaining -= skipped;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Transfers data directly to a channel.
+     *
+     * @param target the channel to transfer to
+     * @param count  the maximum no. of bytes to transfer
+     * @return the no. of bytes transferred. This is <tt>0</tt> if no data remains
+     * @throws IOException for any I/O error
+     */
+    public long transferTo(WritableByteChannel target, long count) throws IOException
+    {
+        long transferred = 0;
+        long length = Math.min(count, remaining);
+        if (length > 0)
+        {
+            verify = false;
+            transferred = channel.transferTo(position, length, target);
+            if (transferred == 0 && position >= channel.size())
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+        return transferred;
+    }
+
+    /**
+     * Closes the stream.
+     * <p/>
+     * The installer channel is not closed. If all of the data has been read, the checksum is verified.
+     *
+     * @throws IOException if the checksum is invalid
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (remaining == 0)
+        {
+            verify();
+        }
+    }
+
+    /**
+     * Verifies the checksum, if required.
+     *
+     * @throws IOException if the checksum is invalid
+     */
+    private void verify() throws IOException
+    {
+        if (verify)
+        {
+            verify = false;
+            if (checksum.getValue() != file.getChecksum())
+            {
+                throw new IOException("Checksum mismatch for " + file.getTargetPath() + " (installer corrupted?)");
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import static com.izforge.izpack.api.handler.Prompt.Option;
 import static com.izforge.izpack.api.handler.Prompt.Options;
 import static com.izforge.izpack.api.handler.Prompt.Type;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -37,13 +38,19 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Pack200;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
@@ -60,9 +67,12 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.handler.ProgressHandler;
 import com.izforge.izpack.core.handler.PromptUIHandler;
+import com.izforge.izpack.core.io.PackIndexReader;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
+import com.izforge.izpack.installer.data.InstallJournal;
+import com.izforge.izpack.installer.data.InstalledFile;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
 import com.izforge.izpack.installer.util.PackHelper;
@@ -137,9 +147,9 @@ public abstract class UnpackerBase implements IUnpacker
     private File absoluteInstallSource;
 
     /**
-     * The Pack200 unpacker.
+     * The Pack200 unpackers. These aren't thread safe, so one is created for each thread unpacking packs.
      */
-    private Pack200.Unpacker unpacker;
+    private final ThreadLocal<Pack200.Unpacker> unpacker = new ThreadLocal<Pack200.Unpacker>();
 
     /**
      * The prompt.
@@ -179,6 +189,49 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private boolean disableInterrupt = false;
 
+    /**
+     * The file writers, or <tt>null</tt> if files are written by the unpacking thread.
+     */
+    private FileWriterPool writers;
+
+    /**
+     * The files being written by the {@link #writers}, keyed on pack.
+     */
+    private final Map<Pack, PendingFiles> pending = new ConcurrentHashMap<Pack, PendingFiles>();
+
+    /**
+     * The directories known to exist, shared by all packs. Each directory is only checked or created once per
+     * installation.
+     */
+    private final Set<File> directories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    /**
+     * The parsable files that may be parsed as they are extracted, keyed on target.
+     */
+    private final Map<File, ParsableFile> parsableTargets = new ConcurrentHashMap<File, ParsableFile>();
+
+    /**
+     * The parsable files that were parsed as they were extracted, keyed on target. These are skipped after unpacking.
+     */
+    private final Map<File, ParsableFile> parsed = new ConcurrentHashMap<File, ParsableFile>();
+
+    /**
+     * The installation journal, or <tt>null</tt> if progress isn't journalled.
+     */
+    private volatile InstallJournal journal;
+
+    /**
+     * The files installed from indexed packs, by this and previous installations to the same location, keyed on
+     * absolute path. These are written to the installation information.
+     */
+    private final Map<String, InstalledFile> installedFiles = new ConcurrentHashMap<String, InstalledFile>();
+
+    /**
+     * Determines if files unchanged since a previous installation, and identical to those being installed, are
+     * skipped.
+     */
+    private boolean skipUnchanged;
+
     /**
      * The logger.
      */
@@ -256,9 +309,17 @@ public abstract class UnpackerBase implements IUnpacker
             FileQueue queue = queueFactory.isSupported() ? queueFactory.create() : null;
 
             List<Pack> packs = installData.getSelectedPacks();
+            writers = createFileWriterPool();
+            journal = openJournal();
+            readInstalledFiles();
             preUnpack(packs);
             unpack(packs, queue, parsables, executables, updateChecks);
             postUnpack(packs, queue, parsables, executables, updateChecks);
+            if (journal != null)
+            {
+                // nothing to resume
+                journal.reset();
+            }
         }
         catch (Exception exception)
         {
@@ -396,18 +457,205 @@ public abstract class UnpackerBase implements IUnpacker
     protected void unpack(List<Pack> packs, FileQueue queue, List<ParsableFile> parsables,
                           List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
     {
-        int count = packs.size();
-        for (int i = 0; i < count; i++)
+        int threads = getPackThreads();
+        if (threads > 1 && packs.size() > 1
+                && installData.getInfo().getPackFormatVersion() == Info.PACK_FORMAT_INDEXED)
+        {
+            unpackConcurrently(packs, threads, queue, parsables, executables, updateChecks);
+        }
+        else
+        {
+            int count = packs.size();
+            for (int i = 0; i < count; i++)
+            {
+                Pack pack = packs.get(i);
+                if (shouldUnpack(pack))
+                {
+                    install(pack, i, queue, parsables, executables, updateChecks);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpacks the selected packs, unpacking independent packs concurrently.
+     * <p/>
+     * Packs are independent if neither depends on the other, and they don't install any of the same files. The files
+     * installed by each pack are determined from its index.
+     * <p/>
+     * Listener notifications are serialized, and the parsable files, executables and update checks of each pack
+     * are collected in pack order.
+     *
+     * @param packs        the packs to unpack
+     * @param threads      the maximum no. of packs to unpack at the same time
+     * @param queue        the file queue, or {@code null} if queuing is not supported
+     * @param parsables    used to collect parsable files in the pack
+     * @param executables  used to collect executable files files in the pack
+     * @param updateChecks used to collect update checks in the pack
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws IzPackException              for any error
+     */
+    protected void unpackConcurrently(List<Pack> packs, int threads, final FileQueue queue,
+                                      List<ParsableFile> parsables, List<ExecutableFile> executables,
+                                      List<UpdateCheck> updateChecks)
+    {
+        final List<Pack> selected = new ArrayList<Pack>();
+        final List<Integer> packNos = new ArrayList<Integer>();
+        List<Set<String>> targets = new ArrayList<Set<String>>();
+        for (int i = 0; i < packs.size(); i++)
         {
             Pack pack = packs.get(i);
             if (shouldUnpack(pack))
             {
-                listeners.beforePack(pack, i, listener);
-                unpack(pack, i, queue, parsables, executables, updateChecks);
-                checkInterrupt();
-                listeners.afterPack(pack, i, listener);
+                selected.add(pack);
+                packNos.add(i);
+                targets.add(getTargets(pack));
+            }
+        }
+
+        final int count = selected.size();
+        final List<List<ParsableFile>> packParsables = new ArrayList<List<ParsableFile>>();
+        final List<List<ExecutableFile>> packExecutables = new ArrayList<List<ExecutableFile>>();
+        final List<List<UpdateCheck>> packUpdateChecks = new ArrayList<List<UpdateCheck>>();
+        for (int i = 0; i < count; ++i)
+        {
+            packParsables.add(new ArrayList<ParsableFile>());
+            packExecutables.add(new ArrayList<ExecutableFile>());
+            packUpdateChecks.add(new ArrayList<UpdateCheck>());
+        }
+
+        ProgressListener progress = listener;
+        listener = new ConcurrentProgressListener(progress);
+        try
+        {
+            PackScheduler scheduler = new PackScheduler(selected, targets);
+            scheduler.run(threads, new PackScheduler.Task()
+            {
+                @Override
+                public void unpack(int index)
+                {
+                    install(selected.get(index), packNos.get(index), queue, packParsables.get(index),
+                            packExecutables.get(index), packUpdateChecks.get(index));
+                }
+            });
+        }
+        catch (IzPackException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to unpack packs", exception);
+        }
+        finally
+        {
+            listener = progress;
+        }
+
+        for (int i = 0; i < count; ++i)
+        {
+            parsables.addAll(packParsables.get(i));
+            executables.addAll(packExecutables.get(i));
+            updateChecks.addAll(packUpdateChecks.get(i));
+        }
+    }
+
+    /**
+     * Installs a pack, notifying listeners before and after it is unpacked.
+     *
+     * @param pack         the pack to unpack
+     * @param packNo       the pack number
+     * @param queue        the file queue, or {@code null} if queuing is not supported
+     * @param parsables    used to collect parsable files in the pack
+     * @param executables  used to collect executable files files in the pack
+     * @param updateChecks used to collect update checks in the pack
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void install(Pack pack, int packNo, FileQueue queue, List<ParsableFile> parsables,
+                         List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
+    {
+        synchronized (listeners)
+        {
+            listeners.beforePack(pack, packNo, listener);
+        }
+        if (journal != null && journal.isPackComplete(pack.getName()))
+        {
+            logger.fine("Verifying files of pack installed by interrupted installation: " + pack.getName());
+        }
+        try
+        {
+            unpack(pack, packNo, queue, parsables, executables, updateChecks);
+            completePackFiles(pack);
+            if (journal != null)
+            {
+                journal.addPack(pack.getName());
+            }
+        }
+        finally
+        {
+            pending.remove(pack);
+        }
+        checkInterrupt();
+        synchronized (listeners)
+        {
+            listeners.afterPack(pack, packNo, listener);
+        }
+    }
+
+    /**
+     * Returns the paths of the files installed by a pack in the {@link Info#PACK_FORMAT_INDEXED indexed} pack
+     * format.
+     * <p/>
+     * All files are included, regardless of conditions. Directories are excluded, as packs may share them.
+     *
+     * @param pack the pack
+     * @return the paths of the files installed by the pack
+     * @throws IzPackException if the pack index cannot be read
+     */
+    protected Set<String> getTargets(Pack pack)
+    {
+        Set<String> result = new HashSet<String>();
+        IndexedPackReader reader = null;
+        try
+        {
+            reader = new IndexedPackReader(resources, pack.getName());
+            PackIndexReader index = reader.getIndex();
+            Variables variables = installData.getVariables();
+            int fileCount = index.getFileCount();
+            for (int i = 0; i < fileCount; ++i)
+            {
+                PackFile file = index.readFile();
+                if (!file.isDirectory())
+                {
+                    result.add(new File(IoHelper.translatePath(file.getTargetPath(), variables)).getPath());
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new InstallerException("Failed to read pack: " + pack.getName(), exception);
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                reader.close();
             }
         }
+        return result;
+    }
+
+    /**
+     * Returns the maximum no. of packs to unpack at the same time.
+     * <p/>
+     * This is determined by the {@link InstallData#UNPACKER_PACK_THREADS} variable.
+     *
+     * @return the maximum no. of packs to unpack at the same time. If <tt>1</tt>, packs are unpacked in sequence
+     */
+    protected int getPackThreads()
+    {
+        return getThreads(InstallData.UNPACKER_PACK_THREADS);
     }
 
     /**
@@ -424,6 +672,11 @@ public abstract class UnpackerBase implements IUnpacker
     protected void unpack(Pack pack, int packNo, FileQueue queue, List<ParsableFile> parsables,
                           List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
     {
+        if (installData.getInfo().getPackFormatVersion() == Info.PACK_FORMAT_INDEXED)
+        {
+            unpackIndexed(pack, packNo, queue, parsables, executables, updateChecks);
+            return;
+        }
         InputStream in = null;
         ObjectInputStream packInputStream = null;
         try
@@ -470,6 +723,122 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Unpacks a pack in the {@link Info#PACK_FORMAT_INDEXED indexed} pack format.
+     * <p/>
+     * Only the data of files that are unpacked is read. Skipped files don't need to be decompressed.
+     * <p/>
+     * As the parsable files are known before any file is extracted, they are parsed as they are extracted where
+     * possible, avoiding a second pass over them after unpacking.
+     *
+     * @param pack         the pack to unpack
+     * @param packNo       the pack number
+     * @param queue        the file queue, or {@code null} if queuing is not supported
+     * @param parsables    used to collect parsable files in the pack
+     * @param executables  used to collect executable files files in the pack
+     * @param updateChecks used to collect update checks in the pack
+     * @throws IzPackException for any error
+     */
+    protected void unpackIndexed(Pack pack, int packNo, FileQueue queue, List<ParsableFile> parsables,
+                                 List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
+    {
+        IndexedPackReader reader = null;
+        try
+        {
+            reader = new IndexedPackReader(resources, pack.getName());
+            PackIndexReader index = reader.getIndex();
+
+            int fileCount = index.getFileCount();
+            List<PackFile> files = new ArrayList<PackFile>(fileCount);
+            for (int i = 0; i < fileCount; ++i)
+            {
+                files.add(index.readFile());
+            }
+            List<ParsableFile> packParsables = new ArrayList<ParsableFile>();
+            index.readParsables(packParsables);
+            boolean parseInline = isParseInline();
+            for (ParsableFile parsable : packParsables)
+            {
+                if (addParsableFile(parsable, parsables) && parseInline
+                        && matcher.matchesCurrentPlatform(parsable.getOsConstraints()))
+                {
+                    parsableTargets.put(new File(parsable.getPath()), parsable);
+                }
+            }
+            List<ExecutableFile> packExecutables = new ArrayList<ExecutableFile>();
+            index.readExecutables(packExecutables);
+            for (ExecutableFile executable : packExecutables)
+            {
+                addExecutableFile(executable, executables);
+            }
+            index.readUpdateChecks(updateChecks);
+
+            if (!listeners.isFileListener()
+                    && getInstallData().getVariables().getBoolean(InstallData.UNPACKER_CREATE_DIRECTORIES))
+            {
+                createDirectories(files, pack);
+            }
+
+            String stepName = getStepName(pack);
+            listener.nextStep(stepName, packNo + 1, fileCount);
+
+            for (int i = 0; i < fileCount; ++i)
+            {
+                PackFile file = files.get(i);
+                if (shouldUnpack(file))
+                {
+                    InputStream in = null;
+                    try
+                    {
+                        if (file.isIndexed())
+                        {
+                            in = reader.getInputStream(file);
+                        }
+                        unpack(file, in, i, pack, queue);
+                        if (in != null)
+                        {
+                            // closing verifies the checksum of any data not yet verified
+                            in.close();
+                            in = null;
+                        }
+                    }
+                    finally
+                    {
+                        FileUtils.close(in);
+                    }
+                }
+            }
+        }
+        catch (IzPackException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to unpack pack: " + pack.getName(), exception);
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Determines if parsable files may be parsed as they are extracted, rather than after all packs are unpacked.
+     * <p/>
+     * This is only done if there are no installer listeners, as these may change the variables referenced by parsable
+     * files during unpacking.
+     *
+     * @return <tt>true</tt> if parsable files may be parsed as they are extracted
+     */
+    private boolean isParseInline()
+    {
+        return listeners.isEmpty();
+    }
+
     /**
      * Determines if a file should be unpacked.
      *
@@ -501,7 +870,7 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws IOException     for any I/O error
      * @throws IzPackException for any other error
      */
-    protected void unpack(PackFile file, ObjectInputStream packInputStream, int fileNo, Pack pack, FileQueue queue)
+    protected void unpack(PackFile file, InputStream packInputStream, int fileNo, Pack pack, FileQueue queue)
             throws IOException
     {
         if (logger.isLoggable(Level.FINE))
@@ -529,27 +898,40 @@ public abstract class UnpackerBase implements IUnpacker
             return;
         }
 
-        listeners.beforeFile(target, file, pack);
+        synchronized (listeners)
+        {
+            listeners.beforeFile(target, file, pack);
+        }
 
         listener.progress(fileNo, path);
 
-        // if this file exists and should not be overwritten, check what to do
-        if (target.exists() && (file.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(file, target))
+        PendingFiles files = pending.get(pack);
+        if (files != null && files.targets.contains(target))
+        {
+            // the file is overwriting one still being written
+            completeFiles(pack, true);
+        }
+
+        if (isInstalled(file, target))
         {
-            if (!file.isBackReference() && !pack.isLoose())
+            // installed by an interrupted installation being resumed, or identical to the installed file
+            skipData(file, pack, packInputStream);
+            completeFiles(pack, true);
+            addInstalledFile(target, file, parsed.containsKey(target));
+            synchronized (listeners)
             {
-                if (file.isPack200Jar())
-                {
-                    skip(packInputStream, Integer.SIZE / 8);
-                }
-                else
-                {
-                    skip(packInputStream, file.length());
-                }
+                listeners.afterFile(target, file, pack);
             }
         }
+        // if this file exists and should not be overwritten, check what to do
+        else if (target.exists() && (file.override() != OverrideType.OVERRIDE_TRUE)
+                && !isOverwriteFile(file, target))
+        {
+            skipData(file, pack, packInputStream);
+        }
         else
         {
+            installedFiles.remove(target.getAbsolutePath());
             handleOverrideRename(file, target);
             extract(file, target, packInputStream, pack, queue);
         }
@@ -567,16 +949,17 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws ResourceInterruptedException if installation is cancelled
      * @throws IzPackException              for any IzPack error
      */
-    protected void extract(PackFile file, File target, ObjectInputStream packInputStream, Pack pack, FileQueue queue)
+    protected void extract(PackFile file, File target, InputStream packInputStream, Pack pack, FileQueue queue)
             throws IOException
     {
-        ObjectInputStream packStream = packInputStream;
+        InputStream packStream = packInputStream;
         InputStream in = null;
         try
         {
             FileUnpacker unpacker;
 
-            if (!pack.isLoose() && file.isBackReference())
+            // indexed pack streams are already positioned at the file data, even for back references
+            if (!pack.isLoose() && file.isBackReference() && !file.isIndexed())
             {
                 in = resources.getPackStream(file.previousPackId);
                 packStream = new ObjectInputStream(in);
@@ -586,13 +969,55 @@ public abstract class UnpackerBase implements IUnpacker
                 // but the stream header is now already read (== 4 bytes)
             }
 
-            unpacker = createFileUnpacker(file, pack, queue, cancellable);
-            unpacker.unpack(file, packStream, target);
-            checkInterrupt();
-
-            if (!unpacker.isQueued())
+            // the target is no longer the file that was parsed, if any
+            parsed.remove(target);
+            ParsableFile parsable = (file.isIndexed() && !file.isPack200Jar()) ? parsableTargets.get(target) : null;
+            if (parsable != null)
             {
-                listeners.afterFile(target, file, pack);
+                unpacker = new ParsableFileUnpacker(cancellable, queue, getVariableSubstitutor(), parsable);
+            }
+            else
+            {
+                unpacker = createFileUnpacker(file, pack, queue, cancellable);
+                if (unpacker instanceof PipelinedFileUnpacker && packStream instanceof StoredFileInputStream)
+                {
+                    // stored data is transferred directly to the target, so there's nothing to gain from a writer
+                    // thread
+                    unpacker = new DefaultFileUnpacker(cancellable, queue);
+                }
+            }
+            if (unpacker instanceof PipelinedFileUnpacker)
+            {
+                unpacker.unpack(file, packStream, target);
+                checkInterrupt();
+                PendingFiles files = pending.get(pack);
+                if (files == null)
+                {
+                    files = new PendingFiles();
+                    pending.put(pack, files);
+                }
+                files.add(new PendingFile((PipelinedFileUnpacker) unpacker, target, file, pack));
+                completeFiles(pack, false);
+            }
+            else
+            {
+                // notify listeners of files still being written first, to preserve the order of notifications
+                completeFiles(pack, true);
+                unpacker.unpack(file, packStream, target);
+                checkInterrupt();
+                if (parsable != null)
+                {
+                    parsed.put(target, parsable);
+                }
+
+                if (!unpacker.isQueued())
+                {
+                    addInstalledFile(target, file, parsable != null);
+                    synchronized (listeners)
+                    {
+                        listeners.afterFile(target, file, pack);
+                    }
+                }
             }
         }
         finally
@@ -605,6 +1030,102 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Skips the data of a pack file that isn't to be extracted.
+     * <p/>
+     * Only the data of files in the pack stream needs to be skipped. Indexed files are read from their own streams.
+     *
+     * @param file            the pack file
+     * @param pack            the pack that the pack file comes from
+     * @param packInputStream the pack file input stream
+     * @throws IOException if the data cannot be skipped
+     */
+    private void skipData(PackFile file, Pack pack, InputStream packInputStream) throws IOException
+    {
+        if (!file.isBackReference() && !pack.isLoose() && !file.isIndexed())
+        {
+            if (file.isPack200Jar())
+            {
+                skip(packInputStream, Integer.SIZE / 8);
+            }
+            else
+            {
+                skip(packInputStream, file.length());
+            }
+        }
+    }
+
+    /**
+     * Determines if a pack file is already installed, and needn't be extracted.
+     * <p/>
+     * This is the case if:
+     * <ul>
+     * <li>it was installed by an interrupted installation that is being resumed, and is unchanged since.
+     * A file parsed as it is extracted is only considered installed if it was parsed when it was installed. If so,
+     * it won't be parsed again.</li>
+     * <li>it is identical to the file installed by a previous installation, and is unchanged since. The files
+     * are identical if they have the same length and pack file checksum. Files that are parsed as they are
+     * extracted, are renamed before being overwritten, or are Pack200 jars, are always extracted. The checksum of a
+     * Pack200 jar is that of its Pack200 id, not of the jar.</li>
+     * </ul>
+     *
+     * @param file   the pack file
+     * @param target the file to write to
+     * @return <tt>true</tt> if the file is installed
+     */
+    private boolean isInstalled(PackFile file, File target)
+    {
+        boolean result = false;
+        ParsableFile parsable = (file.isIndexed() && !file.isPack200Jar()) ? parsableTargets.get(target) : null;
+        if (journal != null && journal.isInstalled(target, file.getChecksum(), parsable != null))
+        {
+            result = true;
+            if (parsable != null)
+            {
+                parsed.put(target, parsable);
+            }
+        }
+        else if (skipUnchanged && parsable == null && file.isIndexed() && !file.isPack200Jar()
+                && file.overrideRenameTo() == null)
+        {
+            InstalledFile installed = installedFiles.get(target.getAbsolutePath());
+            if (installed != null && installed.getChecksum() == file.getChecksum()
+                    && installed.getLength() == file.length() && installed.isUnchanged(target))
+            {
+                result = true;
+                if (file.lastModified() >= 0 && target.lastModified() != file.lastModified()
+                        && !target.setLastModified(file.lastModified()))
+                {
+                    logger.warning("Failed to set last modified timestamp for: " + target);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a file once it has been completely written.
+     * <p/>
+     * Files from indexed packs are recorded in the installation information, unless they were parsed as they were
+     * extracted, as their content then depends on the variables, or are Pack200 jars.
+     *
+     * @param target the installed file
+     * @param file   the pack file
+     * @param parsed determines if the file was parsed as it was extracted
+     */
+    private void addInstalledFile(File target, PackFile file, boolean parsed)
+    {
+        if (journal != null)
+        {
+            journal.addFile(target, file.getChecksum(), parsed);
+        }
+        if (file.isIndexed() && !parsed && !file.isPack200Jar())
+        {
+            InstalledFile installed = new InstalledFile(target, file.getChecksum());
+            installedFiles.put(installed.getPath(), installed);
+        }
+    }
+
     /**
      * Skips a pack file.
      *
@@ -649,6 +1170,11 @@ public abstract class UnpackerBase implements IUnpacker
         {
             unpacker = new Pack200FileUnpacker(cancellable, resources, getPack200Unpacker(), queue);
         }
+        else if (writers != null && (queue == null || file.blockable() == Blockable.BLOCKABLE_NONE))
+        {
+            // blockable files are written by the unpacking thread, as the file queue isn't thread safe
+            unpacker = new PipelinedFileUnpacker(cancellable, queue, writers);
+        }
         else
         {
             unpacker = new DefaultFileUnpacker(cancellable, queue);
@@ -700,14 +1226,225 @@ public abstract class UnpackerBase implements IUnpacker
         listener.stopAction();
     }
 
+    /**
+     * Opens the installation journal, used to resume the installation if it is interrupted.
+     * <p/>
+     * If the journal of an interrupted installation of the same application exists, the user is asked if it should
+     * be resumed. If not, the journal is discarded.
+     * <p/>
+     * Journalling is disabled if the {@link InstallData#UNPACKER_JOURNAL} variable is <tt>false</tt>.
+     *
+     * @return the journal, or <tt>null</tt> if progress isn't journalled
+     */
+    protected InstallJournal openJournal()
+    {
+        String installPath = installData.getInstallPath();
+        if (installPath == null || !installData.getVariables().getBoolean(InstallData.UNPACKER_JOURNAL, true))
+        {
+            return null;
+        }
+        Info info = installData.getInfo();
+        File file = new File(installPath, InstallData.INSTALLATION_JOURNAL);
+        InstallJournal result = new InstallJournal(file, info.getAppName(), info.getAppVersion());
+        if (result.load())
+        {
+            Messages messages = installData.getMessages();
+            Option answer = prompt.confirm(Type.QUESTION, messages.get("InstallPanel.resume.title"),
+                                           messages.get("InstallPanel.resume.question"), Options.YES_NO,
+                                           Option.YES);
+            if (answer == Option.YES)
+            {
+                logger.info("Resuming installation. " + result.getFileCount() + " files previously installed");
+            }
+            else
+            {
+                result.reset();
+            }
+        }
+        else
+        {
+            result.reset();
+        }
+        return result;
+    }
+
+    /**
+     * Reads the files installed by previous installations to the same location from the installation information.
+     * <p/>
+     * Installation information written by earlier versions doesn't contain installed files. Files unchanged since
+     * they were installed are only skipped if the {@link InstallData#UNPACKER_SKIP_UNCHANGED} variable is
+     * <tt>true</tt>, or if it is unset and the installation is being modified.
+     */
+    @SuppressWarnings("unchecked")
+    protected void readInstalledFiles()
+    {
+        Variables variables = installData.getVariables();
+        skipUnchanged = variables.getBoolean(InstallData.UNPACKER_SKIP_UNCHANGED,
+                                             variables.getBoolean(InstallData.MODIFY_INSTALLATION, false));
+        String installPath = installData.getInstallPath();
+        File installationInfo = (installPath != null)
+                ? new File(installPath, InstallData.INSTALLATION_INFORMATION) : null;
+        if (installationInfo == null || !installationInfo.isFile())
+        {
+            return;
+        }
+        FileInputStream fin = null;
+        ObjectInputStream oin = null;
+        try
+        {
+            fin = new FileInputStream(installationInfo);
+            oin = new ObjectInputStream(new BufferedInputStream(fin));
+            oin.readObject(); // the installed packs
+            oin.readObject(); // the variables
+            for (InstalledFile installed : (List<InstalledFile>) oin.readObject())
+            {
+                installedFiles.put(installed.getPath(), installed);
+            }
+            logger.fine("Found " + installedFiles.size() + " installed files");
+        }
+        catch (Exception exception)
+        {
+            logger.log(Level.FINE, "No installed files read from " + installationInfo, exception);
+        }
+        finally
+        {
+            FileUtils.close(oin);
+            FileUtils.close(fin);
+        }
+    }
+
     /**
      * Invoked after unpacking has completed, in order to clean up.
+     * <p/>
+     * The installation journal is closed, but retained if unpacking didn't complete.
      */
     protected void cleanup()
     {
+        if (journal != null)
+        {
+            journal.close();
+            journal = null;
+        }
+        if (writers != null)
+        {
+            writers.shutdown();
+            writers = null;
+        }
+        pending.clear();
+        installedFiles.clear();
+        directories.clear();
+        parsableTargets.clear();
+        parsed.clear();
         state = State.READY;
     }
 
+    /**
+     * Creates the pool of threads that write unpacked files.
+     * <p/>
+     * The no. of threads is determined by the {@link InstallData#UNPACKER_THREADS} variable.
+     * <p/>
+     * If packs are unpacked concurrently, there is at least one more writer thread than pack threads. Otherwise,
+     * each writer could be waiting on a pack thread that is in turn waiting for buffers held by queued writes.
+     *
+     * @return a new pool, or <tt>null</tt> if files should be written by the unpacking thread
+     */
+    protected FileWriterPool createFileWriterPool()
+    {
+        FileWriterPool result = null;
+        int threads = getThreads(InstallData.UNPACKER_THREADS);
+        if (threads > 1)
+        {
+            int packThreads = getPackThreads();
+            if (packThreads > 1)
+            {
+                threads = Math.max(threads, packThreads + 1);
+            }
+            result = new FileWriterPool(threads);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a no. of threads from a variable.
+     *
+     * @param name the variable name
+     * @return the no. of threads, or <tt>1</tt> if the variable is unset or invalid
+     */
+    private int getThreads(String name)
+    {
+        int result = 1;
+        String value = installData.getVariable(name);
+        if (value != null)
+        {
+            try
+            {
+                result = Math.max(1, Integer.parseInt(value.trim()));
+            }
+            catch (NumberFormatException exception)
+            {
+                logger.warning("Invalid " + name + ": " + value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the files of a pack still being written to complete.
+     *
+     * @param pack the pack
+     * @throws ResourceInterruptedException if installation is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void completePackFiles(Pack pack)
+    {
+        try
+        {
+            completeFiles(pack, true);
+        }
+        catch (IOException exception)
+        {
+            throw new InstallerException("Failed to unpack pack: " + pack.getName(), exception);
+        }
+    }
+
+    /**
+     * Completes the files of a pack written by the file writers, notifying listeners in the order the files were
+     * unpacked.
+     *
+     * @param pack the pack
+     * @param wait if <tt>true</tt>, wait for all files to be written, otherwise only complete those files at the
+     *             head of the queue that have been written
+     * @throws IOException                  if a file could not be written
+     * @throws ResourceInterruptedException if installation is cancelled
+     * @throws IzPackException              if a listener throws an exception
+     */
+    private void completeFiles(Pack pack, boolean wait) throws IOException
+    {
+        PendingFiles files = pending.get(pack);
+        PendingFile next;
+        while (files != null && (next = files.next(wait)) != null)
+        {
+            try
+            {
+                next.unpacker.complete();
+            }
+            catch (IOException exception)
+            {
+                checkInterrupt();
+                throw exception;
+            }
+            checkInterrupt();
+            if (!next.unpacker.isQueued())
+            {
+                addInstalledFile(next.target, next.file, false);
+                synchronized (listeners)
+                {
+                    listeners.afterFile(next.target, next.file, next.pack);
+                }
+            }
+        }
+    }
+
     /**
      * Returns the installation data.
      *
@@ -815,6 +1552,9 @@ public abstract class UnpackerBase implements IUnpacker
      * Creates a directory including any necessary but nonexistent parent directories, associated with a pack file.
      * <p/>
      * If {@link InstallerListener}s are registered, these will be notified for each directory created.
+     * <p/>
+     * Directories are remembered once they have been verified or created, so the file system is checked at most once
+     * for each directory during an installation, even when packs are unpacked concurrently.
      *
      * @param dir  the directory to create
      * @param file the pack file
@@ -822,13 +1562,39 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws IzPackException if the directory cannot be created or a listener throws an exception
      */
     protected void createDirectory(File dir, PackFile file, Pack pack)
+    {
+        if (directories.contains(dir))
+        {
+            return;
+        }
+        synchronized (directories)
+        {
+            if (!directories.contains(dir))
+            {
+                makeDirectory(dir, file, pack);
+                directories.add(dir);
+            }
+        }
+    }
+
+    /**
+     * Creates a directory not yet known to exist, including any necessary but nonexistent parent directories.
+     * <p/>
+     * If {@link InstallerListener}s are registered, these will be notified for each directory created.
+     *
+     * @param dir  the directory to create
+     * @param file the pack file
+     * @param pack the pack that {@code file} comes from
+     * @throws IzPackException if the directory cannot be created or a listener throws an exception
+     */
+    protected void makeDirectory(File dir, PackFile file, Pack pack)
     {
         if (!dir.exists())
         {
             if (!listeners.isFileListener())
             {
                 // Create it in one step.
-                if (!dir.mkdirs())
+                if (!dir.mkdirs() && !dir.isDirectory())
                 {
                     throw new IzPackException("Could not create directory: " + dir.getPath());
                 }
@@ -840,18 +1606,56 @@ public abstract class UnpackerBase implements IUnpacker
                 {
                     createDirectory(parent, file, pack);
                 }
-                listeners.beforeDir(dir, file, pack);
-                if (!dir.mkdir())
+                synchronized (listeners)
+                {
+                    listeners.beforeDir(dir, file, pack);
+                }
+                if (!dir.mkdir() && !dir.isDirectory())
                 {
                     throw new IzPackException("Could not create directory: " + dir.getPath());
                 }
-                listeners.afterDir(dir, file, pack);
+                synchronized (listeners)
+                {
+                    listeners.afterDir(dir, file, pack);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the directories of the files of a pack that will be unpacked, before any file is unpacked.
+     * <p/>
+     * This creates the directory skeleton of the pack in one sweep, rather than interleaving directory creation with
+     * file writes.
+     *
+     * @param files the pack files
+     * @param pack  the pack
+     * @throws IzPackException if a directory cannot be created
+     */
+    protected void createDirectories(List<PackFile> files, Pack pack)
+    {
+        Variables variables = getInstallData().getVariables();
+        for (PackFile file : files)
+        {
+            if (shouldUnpack(file))
+            {
+                File dir = new File(IoHelper.translatePath(file.getTargetPath(), variables));
+                if (!file.isDirectory())
+                {
+                    dir = dir.getParentFile();
+                }
+                if (dir != null)
+                {
+                    createDirectory(dir, file, pack);
+                }
             }
         }
     }
 
     /**
      * Parses {@link ParsableFile} instances collected during unpacking.
+     * <p/>
+     * Files that were parsed as they were extracted, and haven't been overwritten since, are skipped.
      *
      * @param files the files to parse
      * @throws InstallerException           if parsing fails
@@ -864,6 +1668,11 @@ public abstract class UnpackerBase implements IUnpacker
             ScriptParser parser = new ScriptParser(getVariableSubstitutor(), matcher);
             for (ParsableFile file : files)
             {
+                if (parsed.get(new File(file.getPath())) == file)
+                {
+                    // parsed as it was extracted
+                    continue;
+                }
                 try
                 {
                     parser.parse(file);
@@ -1143,6 +1952,7 @@ public abstract class UnpackerBase implements IUnpacker
         }
         */
         oout.writeObject(installData.getVariables().getProperties());
+        oout.writeObject(new ArrayList<InstalledFile>(installedFiles.values()));
         logger.fine("Writing installation information finished");
         FileUtils.close(oout);
         FileUtils.close(fout);
@@ -1301,15 +2111,30 @@ public abstract class UnpackerBase implements IUnpacker
         for (int i = 0; i < count; ++i)
         {
             ParsableFile file = (ParsableFile) stream.readObject();
-            if (!file.hasCondition() || isConditionTrue(file.getCondition()))
-            {
-                String path = IoHelper.translatePath(file.getPath(), installData.getVariables());
-                file.setPath(path);
-                parsables.add(file);
-            }
+            addParsableFile(file, parsables);
         }
     }
 
+    /**
+     * Adds a parsable file, if its condition is true, translating its path.
+     *
+     * @param file      the parsable file
+     * @param parsables the parsable files to add to
+     * @return <tt>true</tt> if the file was added
+     */
+    private boolean addParsableFile(ParsableFile file, List<ParsableFile> parsables)
+    {
+        boolean result = false;
+        if (!file.hasCondition() || isConditionTrue(file.getCondition()))
+        {
+            String path = IoHelper.translatePath(file.getPath(), installData.getVariables());
+            file.setPath(path);
+            parsables.add(file);
+            result = true;
+        }
+        return result;
+    }
+
     /**
      * Reads {@link ExecutableFile executable files} from the supplied stream.
      *
@@ -1326,25 +2151,36 @@ public abstract class UnpackerBase implements IUnpacker
         for (int i = 0; i < count; ++i)
         {
             ExecutableFile file = (ExecutableFile) stream.readObject();
-            if (!file.hasCondition() || isConditionTrue(file.getCondition()))
+            addExecutableFile(file, executables);
+        }
+    }
+
+    /**
+     * Adds an executable file, if its condition is true, translating its path and arguments.
+     *
+     * @param file        the executable file
+     * @param executables the executable files to add to
+     */
+    private void addExecutableFile(ExecutableFile file, List<ExecutableFile> executables)
+    {
+        if (!file.hasCondition() || isConditionTrue(file.getCondition()))
+        {
+            Variables variables = installData.getVariables();
+            file.path = IoHelper.translatePath(file.path, variables);
+            if (null != file.argList && !file.argList.isEmpty())
             {
-                Variables variables = installData.getVariables();
-                file.path = IoHelper.translatePath(file.path, variables);
-                if (null != file.argList && !file.argList.isEmpty())
-                {
-                    for (int j = 0; j < file.argList.size(); j++)
-                    {
-                        String arg = file.argList.get(j);
-                        arg = IoHelper.translatePath(arg, variables);
-                        file.argList.set(j, arg);
-                    }
-                }
-                executables.add(file);
-                if (file.executionStage == ExecutableFile.UNINSTALL)
+                for (int j = 0; j < file.argList.size(); j++)
                 {
-                    uninstallData.addExecutable(file);
+                    String arg = file.argList.get(j);
+                    arg = IoHelper.translatePath(arg, variables);
+                    file.argList.set(j, arg);
                 }
             }
+            executables.add(file);
+            if (file.executionStage == ExecutableFile.UNINSTALL)
+            {
+                uninstallData.addExecutable(file);
+            }
         }
     }
 
@@ -1374,13 +2210,101 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Pack200.Unpacker getPack200Unpacker()
     {
-        if (unpacker == null)
+        Pack200.Unpacker result = unpacker.get();
+        if (result == null)
         {
-            unpacker = Pack200.newUnpacker();
+            result = Pack200.newUnpacker();
+            unpacker.set(result);
         }
-        return unpacker;
+        return result;
     }
 
+    /**
+     * A file being written by a {@link PipelinedFileUnpacker}, whose listeners have yet to be notified.
+     */
+    private static class PendingFile
+    {
 
-}
+        /**
+         * The unpacker writing the file.
+         */
+        private final PipelinedFileUnpacker unpacker;
+
+        /**
+         * The target file.
+         */
+        private final File target;
+
+        /**
+         * The pack file.
+         */
+        private final PackFile file;
+
+        /**
+         * The pack that the pack file comes from.
+         */
+        private final Pack pack;
+
+        /**
+         * Constructs a <tt>PendingFile</tt>.
+         *
+         * @param unpacker the unpacker writing the file
+         * @param target   the target file
+         * @param file     the pack file
+         * @param pack     the pack that the pack file comes from
+         */
+        public PendingFile(PipelinedFileUnpacker unpacker, File target, PackFile file, Pack pack)
+        {
+            this.unpacker = unpacker;
+            this.target = target;
+            this.file = file;
+            this.pack = pack;
+        }
+    }
+
+    /**
+     * The files of a pack being written by {@link PipelinedFileUnpacker}s, in the order they were unpacked.
+     */
+    private static class PendingFiles
+    {
 
+        /**
+         * The files.
+         */
+        private final LinkedList<PendingFile> files = new LinkedList<PendingFile>();
+
+        /**
+         * The targets of the files.
+         */
+        private final Set<File> targets = new HashSet<File>();
+
+        /**
+         * Adds a file.
+         *
+         * @param file the file
+         */
+        public void add(PendingFile file)
+        {
+            files.add(file);
+            targets.add(file.target);
+        }
+
+        /**
+         * Removes the next file to complete.
+         *
+         * @param wait if <tt>true</tt>, return the next file even if it is still being written
+         * @return the next file, or <tt>null</tt> if there are no files, or <tt>wait</tt> is <tt>false</tt> and the
+         *         next file is still being written
+         */
+        public PendingFile next(boolean wait)
+        {
+            PendingFile result = null;
+            if (!files.isEmpty() && (wait || files.getFirst().unpacker.isDone()))
+            {
+                result = files.removeFirst();
+                targets.remove(result.target);
+            }
+            return result;
+        }
+    }
+}
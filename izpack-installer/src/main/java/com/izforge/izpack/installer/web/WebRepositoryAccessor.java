@@ -42,6 +42,7 @@ import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
+import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsConstraintHelper;
 
 /**
@@ -252,11 +253,8 @@ public class WebRepositoryAccessor
      */
     public static String getCachedUrl(String url, String tempFolder) throws IOException
     {
-        int max = BUFFER_SIZE;
-        byte[] raw = new byte[max];
         WebAccessor webAccessor = new WebAccessor(null);
         InputStream in = webAccessor.openInputStream(new URL(url));
-        int r = in.read(raw);
         File tempDir = new File(tempFolder);
 
         tempDir.mkdirs();
@@ -264,11 +262,7 @@ public class WebRepositoryAccessor
         File temp = File.createTempFile("izpacktempfile", "jar", new File(tempFolder));
         FileOutputStream fos = new FileOutputStream(temp);
         String path = "file:///" + temp.getAbsolutePath();
-        while (r > 0)
-        {
-            fos.write(raw, 0, r);
-            r = in.read(raw);
-        }
+        IoHelper.copyStream(in, fos);
         in.close();
         fos.close();
 
@@ -0,0 +1,156 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link InstallJournal} class.
+ */
+public class InstallJournalTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    /**
+     * Verifies that recorded files and packs are loaded by a new journal, and that files changed since are not
+     * considered installed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testResume() throws IOException
+    {
+        File dir = temporaryFolder.getRoot();
+        File journalFile = new File(dir, "journal");
+        File file1 = createFile(dir, "file1", 10);
+        File file2 = createFile(dir, "file2", 20);
+        File file3 = createFile(dir, "file3", 30);
+
+        InstallJournal journal = new InstallJournal(journalFile, "app", "1.0");
+        assertFalse(journal.load());
+        journal.addFile(file1, 1, false);
+        journal.addFile(file2, 2, true);
+        journal.addPack("pack1");
+        journal.addFile(file3, 3, false);
+        journal.close();
+
+        createFile(dir, "file3", 31);
+
+        journal = new InstallJournal(journalFile, "app", "1.0");
+        assertTrue(journal.load());
+        assertEquals(3, journal.getFileCount());
+        assertTrue(journal.isPackComplete("pack1"));
+        assertFalse(journal.isPackComplete("pack2"));
+        assertTrue(journal.isInstalled(file1, 1, false));
+        assertFalse(journal.isInstalled(file1, 2, false));
+        assertFalse(journal.isInstalled(file1, 1, true));
+        assertTrue(journal.isInstalled(file2, 2, true));
+        assertFalse(journal.isInstalled(file3, 3, false));
+        assertFalse(journal.isInstalled(new File(dir, "file4"), 4, false));
+
+        // a journal written by a different version doesn't apply
+        assertFalse(new InstallJournal(journalFile, "app", "2.0").load());
+
+        journal.reset();
+        assertFalse(journalFile.exists());
+        assertFalse(journal.isInstalled(file1, 1, false));
+    }
+
+    /**
+     * Verifies that a record torn by an interruption is ignored, and that records appended when resuming follow the
+     * last complete record.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testTornRecord() throws IOException
+    {
+        File dir = temporaryFolder.getRoot();
+        File journalFile = new File(dir, "journal");
+        File file1 = createFile(dir, "file1", 10);
+        File file2 = createFile(dir, "file2", 20);
+        File file3 = createFile(dir, "file3", 30);
+
+        InstallJournal journal = new InstallJournal(journalFile, "app", "1.0");
+        journal.addFile(file1, 1, false);
+        journal.addFile(file2, 2, false);
+        journal.close();
+
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        journal = new InstallJournal(journalFile, "app", "1.0");
+        assertTrue(journal.load());
+        assertEquals(1, journal.getFileCount());
+        assertTrue(journal.isInstalled(file1, 1, false));
+        assertFalse(journal.isInstalled(file2, 2, false));
+        journal.addFile(file3, 3, false);
+        journal.close();
+
+        journal = new InstallJournal(journalFile, "app", "1.0");
+        assertTrue(journal.load());
+        assertEquals(2, journal.getFileCount());
+        assertTrue(journal.isInstalled(file1, 1, false));
+        assertTrue(journal.isInstalled(file3, 3, false));
+    }
+
+    /**
+     * Creates a file.
+     *
+     * @param dir    the parent directory
+     * @param name   the file name
+     * @param length the file length
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(File dir, String name, int length) throws IOException
+    {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(new byte[length]);
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+}
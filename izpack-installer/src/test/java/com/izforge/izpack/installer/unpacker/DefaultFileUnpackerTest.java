@@ -21,15 +21,26 @@
 
 package com.izforge.izpack.installer.unpacker;
 
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
 
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.os.FileQueue;
 
@@ -42,6 +53,68 @@ import com.izforge.izpack.util.os.FileQueue;
 public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
 {
 
+    /**
+     * Data preceding the file data in the installer created by {@link #createInstaller}.
+     */
+    private static final byte[] HEADER = {1, 2, 3, 4, 5, 6, 7};
+
+    /**
+     * Verifies that a file stored uncompressed in the installer is transferred directly to the target.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTransfer() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createStoredPackFile(baseDir, source, target, getChecksum(source));
+
+        FileChannel channel = createInstaller(baseDir, source);
+        try
+        {
+            FileUnpacker unpacker = createUnpacker(baseDir, null);
+            unpacker.unpack(file, new StoredFileInputStream(channel, HEADER.length, file), target);
+        }
+        finally
+        {
+            channel.close();
+        }
+        checkTarget(source, target);
+    }
+
+    /**
+     * Verifies that the checksum of a file stored uncompressed in the installer is verified when it is read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testStoredChecksum() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createStoredPackFile(baseDir, source, target, getChecksum(source) + 1);
+
+        FileChannel channel = createInstaller(baseDir, source);
+        StoredFileInputStream in = new StoredFileInputStream(channel, HEADER.length, file);
+        try
+        {
+            IoHelper.copyStream(in, new ByteArrayOutputStream());
+            in.close();
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
     /**
      * Creates a pack file stream.
      *
@@ -71,4 +144,55 @@ public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
         return new DefaultFileUnpacker(getCancellable(), queue);
     }
 
+    /**
+     * Creates an installer containing the source file data, stored uncompressed after the {@link #HEADER}.
+     *
+     * @param baseDir the base directory
+     * @param source  the source file
+     * @return a channel to the installer
+     * @throws IOException for any I/O error
+     */
+    private FileChannel createInstaller(File baseDir, File source) throws IOException
+    {
+        File installer = new File(baseDir, "installer.jar");
+        OutputStream out = new FileOutputStream(installer);
+        out.write(HEADER);
+        IoHelper.copyStream(new FileInputStream(source), out);
+        out.close();
+        return new RandomAccessFile(installer, "r").getChannel();
+    }
+
+    /**
+     * Creates a pack file stored without compression.
+     *
+     * @param baseDir  the base directory
+     * @param source   the source file
+     * @param target   the target file
+     * @param checksum the checksum of the file data
+     * @return a new pack file
+     * @throws IOException if the source file doesn't exist
+     */
+    private PackFile createStoredPackFile(File baseDir, File source, File target, long checksum) throws IOException
+    {
+        PackFile result = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        result.setEntry(PackCompression.STORE, 0, source.length(), checksum);
+        return result;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of a file.
+     *
+     * @param file the file
+     * @return the checksum
+     * @throws IOException for any I/O error
+     */
+    private long getChecksum(File file) throws IOException
+    {
+        CRC32 result = new CRC32();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoHelper.copyStream(new FileInputStream(file), out);
+        result.update(out.toByteArray());
+        return result.getValue();
+    }
+
 }
@@ -0,0 +1,188 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Pack;
+
+
+/**
+ * Tests the {@link PackScheduler} class.
+ */
+public class PackSchedulerTest
+{
+
+    /**
+     * Verifies that packs are related by dependencies, regardless of which pack declares the dependency.
+     */
+    @Test
+    public void testDependencies()
+    {
+        Pack base = createPack("base");
+        Pack docs = createPack("docs");
+        Pack samples = createPack("samples", "base");
+        Pack extras = createPack("extras");
+        Pack core = createPack("core");
+        core.setDependencies(Arrays.asList("extras"));
+
+        List<Pack> packs = Arrays.asList(base, docs, samples, extras, core);
+        PackScheduler scheduler = new PackScheduler(packs, targets(set("a"), set("b"), set("c"), set("d"), set("e")));
+        assertEquals(Collections.<Integer>emptyList(), scheduler.getPredecessors(0));
+        assertEquals(Collections.<Integer>emptyList(), scheduler.getPredecessors(1));
+        assertEquals(Arrays.asList(0), scheduler.getPredecessors(2));
+        assertEquals(Collections.<Integer>emptyList(), scheduler.getPredecessors(3));
+        assertEquals(Arrays.asList(3), scheduler.getPredecessors(4));
+    }
+
+    /**
+     * Verifies that packs installing the same files are related, and that packs with unknown files are related to
+     * all earlier packs.
+     */
+    @Test
+    public void testTargets()
+    {
+        List<Pack> packs = Arrays.asList(createPack("a"), createPack("b"), createPack("c"), createPack("d"));
+        PackScheduler scheduler = new PackScheduler(packs, targets(set("x", "y"), set("z"), set("y"), null));
+        assertEquals(Collections.<Integer>emptyList(), scheduler.getPredecessors(0));
+        assertEquals(Collections.<Integer>emptyList(), scheduler.getPredecessors(1));
+        assertEquals(Arrays.asList(0), scheduler.getPredecessors(2));
+        assertEquals(Arrays.asList(0, 1, 2), scheduler.getPredecessors(3));
+    }
+
+    /**
+     * Verifies that independent packs are unpacked concurrently, and that related packs are unpacked after their
+     * predecessors.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRun() throws Exception
+    {
+        List<Pack> packs = Arrays.asList(createPack("a"), createPack("b"), createPack("c", "a"), createPack("d"));
+        PackScheduler scheduler = new PackScheduler(packs, targets(set("1"), set("2"), set("3"), set("2")));
+
+        // packs a and b can only both complete if they run at the same time
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+        scheduler.run(2, new PackScheduler.Task()
+        {
+            @Override
+            public void unpack(int index) throws Exception
+            {
+                if (index < 2)
+                {
+                    latch.countDown();
+                    assertTrue(latch.await(30, TimeUnit.SECONDS));
+                }
+                completed.add(index);
+            }
+        });
+
+        assertEquals(4, completed.size());
+        assertTrue(completed.indexOf(2) > completed.indexOf(0));
+        assertTrue(completed.indexOf(3) > completed.indexOf(1));
+    }
+
+    /**
+     * Verifies that a failure stops later packs from being unpacked, and is rethrown.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        List<Pack> packs = Arrays.asList(createPack("a"), createPack("b", "a"), createPack("c", "b"));
+        PackScheduler scheduler = new PackScheduler(packs, targets(set("1"), set("2"), set("3")));
+
+        final Exception failure = new Exception("failed");
+        final List<Integer> unpacked = Collections.synchronizedList(new ArrayList<Integer>());
+        try
+        {
+            scheduler.run(2, new PackScheduler.Task()
+            {
+                @Override
+                public void unpack(int index) throws Exception
+                {
+                    unpacked.add(index);
+                    if (index == 1)
+                    {
+                        throw failure;
+                    }
+                }
+            });
+            fail("Expected failure to be rethrown");
+        }
+        catch (Exception expected)
+        {
+            assertSame(failure, expected);
+        }
+        assertEquals(Arrays.asList(0, 1), unpacked);
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param name         the pack name
+     * @param dependencies the names of the packs that the pack depends on
+     * @return a new pack
+     */
+    private Pack createPack(String name, String... dependencies)
+    {
+        List<String> depends = (dependencies.length != 0) ? Arrays.asList(dependencies) : null;
+        return new Pack(name, null, null, null, depends, false, true, false, null, true, 0);
+    }
+
+    /**
+     * Helper to create a list of pack targets.
+     *
+     * @param targets the targets of each pack
+     * @return the targets
+     */
+    private List<Set<String>> targets(Set<String>... targets)
+    {
+        return Arrays.asList(targets);
+    }
+
+    /**
+     * Helper to create a set of paths.
+     *
+     * @param paths the paths
+     * @return the paths
+     */
+    private Set<String> set(String... paths)
+    {
+        return new HashSet<String>(Arrays.asList(paths));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link ParsableFileUnpacker} class.
+ */
+public class ParsableFileUnpackerTest extends AbstractFileUnpackerTest
+{
+
+    /**
+     * Verifies that variables are substituted as the file is unpacked.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSubstitute() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.properties");
+        FileOutputStream out = new FileOutputStream(source);
+        out.write("path=${INSTALL_PATH}\nname=$APP_NAME\nother=${UNSET}\n".getBytes("ISO-8859-1"));
+        out.close();
+        File target = getTargetFile(baseDir);
+
+        Properties properties = new Properties();
+        properties.setProperty("INSTALL_PATH", "C:\\Program Files\\App");
+        properties.setProperty("APP_NAME", "App");
+        ParsableFile parsable = new ParsableFile(target.getPath(), SubstitutionType.TYPE_JAVA_PROPERTIES, null, null);
+        FileUnpacker unpacker = new ParsableFileUnpacker(getCancellable(), null,
+                                                         new VariableSubstitutorImpl(properties), parsable);
+
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(target);
+        IoHelper.copyStream(in, content);
+        in.close();
+        assertEquals("path=C:\\\\Program Files\\\\App\nname=App\nother=${UNSET}\n", content.toString("ISO-8859-1"));
+        assertEquals(source.lastModified(), target.lastModified());
+    }
+
+    /**
+     * Creates a pack file stream.
+     *
+     * @param source the source
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected ObjectInputStream createPackStream(File source) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        IoHelper.copyStream(new FileInputStream(source), objectOut);
+        objectOut.close();
+        return new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Helper to create an unpacker.
+     *
+     * @param sourceDir the source directory
+     * @param queue     the file queue. May be {@code null}
+     * @return a new unpacker
+     */
+    @Override
+    protected FileUnpacker createUnpacker(File sourceDir, FileQueue queue)
+    {
+        ParsableFile parsable = new ParsableFile(getTargetFile(sourceDir).getPath(), SubstitutionType.TYPE_PLAIN,
+                                                 null, null);
+        return new ParsableFileUnpacker(getCancellable(), queue, new VariableSubstitutorImpl(new Properties()),
+                                        parsable);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link PipelinedFileUnpacker} class.
+ */
+public class PipelinedFileUnpackerTest extends AbstractFileUnpackerTest
+{
+
+    /**
+     * The writer pool.
+     */
+    private FileWriterPool pool = new FileWriterPool(2, 2);
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Verifies that a file larger than the available buffers is unpacked, with the reader waiting for the writer
+     * to release buffers.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackLargeFile() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.dat");
+        byte[] content = new byte[pool.getBufferSize() * 5 + 123];
+        new Random(1).nextBytes(content);
+        OutputStream out = new FileOutputStream(source);
+        out.write(content);
+        out.close();
+        File target = getTargetFile(baseDir);
+
+        PipelinedFileUnpacker unpacker = new PipelinedFileUnpacker(getCancellable(), null, pool);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, new ByteArrayInputStream(content), target);
+        unpacker.complete();
+        assertTrue(unpacker.isDone());
+
+        checkTarget(source, target);
+    }
+
+    /**
+     * Verifies that a truncated pack stream fails the unpack, and releases the buffers read so far.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTruncatedStream() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+
+        PipelinedFileUnpacker unpacker = new PipelinedFileUnpacker(getCancellable(), null, pool);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        try
+        {
+            unpacker.unpack(file, new ByteArrayInputStream(new byte[1]), target);
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        unpacker.complete();
+
+        // verify the buffers have been released
+        checkUnpack(new PipelinedFileUnpacker(getCancellable(), null, pool), baseDir);
+        checkUnpack(new PipelinedFileUnpacker(getCancellable(), null, pool), baseDir);
+    }
+
+    /**
+     * Verifies that writes are cancelled.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCancel() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+
+        Cancellable cancelled = new Cancellable()
+        {
+            @Override
+            public boolean isCancelled()
+            {
+                return true;
+            }
+        };
+        PipelinedFileUnpacker unpacker = new PipelinedFileUnpacker(cancelled, null, pool);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        try
+        {
+            unpacker.unpack(file, createPackStream(source), target);
+            fail("Expected InterruptedIOException");
+        }
+        catch (InterruptedIOException expected)
+        {
+            // expected
+        }
+        unpacker.complete();
+        assertFalse(unpacker.isQueued());
+    }
+
+    /**
+     * Helper to create an unpacker.
+     * <p/>
+     * The unpacker waits for each file to be written, so that the target can be checked on return.
+     *
+     * @param sourceDir the source directory
+     * @param queue     the file queue. May be {@code null}
+     * @return a new unpacker
+     */
+    @Override
+    protected FileUnpacker createUnpacker(File sourceDir, FileQueue queue)
+    {
+        return new PipelinedFileUnpacker(getCancellable(), queue, pool)
+        {
+            @Override
+            public void unpack(PackFile file, InputStream packInputStream, File target) throws IOException
+            {
+                super.unpack(file, packInputStream, target);
+                complete();
+            }
+        };
+    }
+
+    /**
+     * Creates a pack file stream.
+     *
+     * @param source the source
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected ObjectInputStream createPackStream(File source) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        IoHelper.copyStream(new FileInputStream(source), objectOut);
+        objectOut.close();
+        return new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Unpacks the source file to the target, and verifies it is written.
+     *
+     * @param unpacker the unpacker
+     * @param baseDir  the base directory
+     * @throws Exception for any error
+     */
+    private void checkUnpack(PipelinedFileUnpacker unpacker, File baseDir) throws Exception
+    {
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, createPackStream(source), target);
+        unpacker.complete();
+        checkTarget(source, target);
+    }
+}
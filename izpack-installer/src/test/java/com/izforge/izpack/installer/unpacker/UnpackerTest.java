@@ -0,0 +1,793 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.AbstractInstallerListener;
+import com.izforge.izpack.api.event.InstallerListener;
+import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import com.izforge.izpack.api.handler.AbstractPrompt;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.io.IndexedPack;
+import com.izforge.izpack.core.io.PackIndexWriter;
+import com.izforge.izpack.core.io.StoredZipEntry;
+import com.izforge.izpack.core.rules.RulesEngineImpl;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.Platform;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Platforms;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link Unpacker}, installing packs in the {@link Info#PACK_FORMAT_INDEXED indexed} pack format.
+ */
+public class UnpackerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation directory.
+     */
+    private File installDir;
+
+    /**
+     * The packs, keyed on name.
+     */
+    private final Map<String, byte[]> packs = new HashMap<String, byte[]>();
+
+    /**
+     * The current platform.
+     */
+    private final Platform platform = new Platforms().getCurrentPlatform();
+
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        installDir = temporaryFolder.newFolder("install");
+    }
+
+    /**
+     * Verifies that the installation fails if the data of an entry is corrupt, for each compression method.
+     * <p/>
+     * Unpackers read exactly the file length, so the checksum must be verified without reaching the end of the
+     * entry stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCorruptEntry() throws IOException
+    {
+        for (PackCompression compression : Arrays.asList(PackCompression.DEFLATE, PackCompression.STORE))
+        {
+            File file = new File(installDir, "lib/a.bin");
+            byte[] data = createData(10000);
+            Pack pack = createPack("core", compression, new Entry("lib/a.bin", data));
+
+            TestUnpacker unpacker = createUnpacker(pack);
+            unpacker.unpack();
+            assertTrue(compression.toString(), unpacker.getResult());
+            assertArrayEquals(data, read(file));
+
+            // flip a byte in the entry data
+            byte[] bytes = packs.get("core");
+            bytes[bytes.length - 100] ^= 1;
+            assertTrue(file.delete());
+
+            unpacker = createUnpacker(pack);
+            unpacker.unpack();
+            assertFalse(compression.toString(), unpacker.getResult());
+            assertEquals(1, unpacker.errors.size());
+        }
+    }
+
+    /**
+     * Verifies that modifying an installation skips files that are unchanged since they were installed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSkipUnchanged() throws IOException
+    {
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", createData(1000)),
+                               new Entry("lib/b.bin", createData(2000)));
+        install(pack, "a.txt", "lib/b.bin");
+
+        // reinstall. Nothing should be written
+        install(pack);
+    }
+
+    /**
+     * Verifies that a reinstallation rewrites files whose modification time has changed since they were installed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRewriteChangedModificationTime() throws IOException
+    {
+        byte[] data = createData(1000);
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", data),
+                               new Entry("b.txt", createData(2000)));
+        install(pack, "a.txt", "b.txt");
+
+        File file = new File(installDir, "a.txt");
+        assertTrue(file.setLastModified(2000000000000L));
+
+        install(pack, "a.txt");
+        assertArrayEquals(data, read(file));
+        assertEquals(1000000000000L, file.lastModified());
+    }
+
+    /**
+     * Verifies that a reinstallation rewrites files whose size has changed since they were installed, even if the
+     * modification time is unchanged.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRewriteChangedSize() throws IOException
+    {
+        byte[] data = createData(1000);
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", data),
+                               new Entry("b.txt", createData(2000)));
+        install(pack, "a.txt", "b.txt");
+
+        File file = new File(installDir, "a.txt");
+        write(file, createData(500));
+        assertTrue(file.setLastModified(1000000000000L));
+
+        install(pack, "a.txt");
+        assertArrayEquals(data, read(file));
+    }
+
+    /**
+     * Verifies that a reinstallation rewrites files whose pack checksum has changed, even if the length is the same.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRewriteChangedChecksum() throws IOException
+    {
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", createData(1000)),
+                               new Entry("b.txt", createData(2000)));
+        install(pack, "a.txt", "b.txt");
+
+        byte[] data = createData(1000);
+        data[10] ^= 1;
+        pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", data),
+                          new Entry("b.txt", createData(2000)));
+        install(pack, "a.txt");
+        assertArrayEquals(data, read(new File(installDir, "a.txt")));
+    }
+
+    /**
+     * Verifies that a reinstallation rewrites all files if {@link InstallData#UNPACKER_SKIP_UNCHANGED} is
+     * <tt>false</tt>.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSkipUnchangedDisabled() throws IOException
+    {
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", createData(1000)),
+                               new Entry("lib/b.bin", createData(2000)));
+        install(pack, "a.txt", "lib/b.bin");
+
+        TestUnpacker unpacker = createUnpacker(pack);
+        unpacker.getInstallData().setVariable(InstallData.MODIFY_INSTALLATION, "true");
+        unpacker.getInstallData().setVariable(InstallData.UNPACKER_SKIP_UNCHANGED, "false");
+        unpacker.unpack();
+        assertTrue(unpacker.getResult());
+        assertEquals(Arrays.asList(new File(installDir, "a.txt"), new File(installDir, "lib/b.bin")),
+                     unpacker.extracted);
+    }
+
+    /**
+     * Verifies that a reinstallation that doesn't modify the previous installation rewrites all files, unless
+     * {@link InstallData#UNPACKER_SKIP_UNCHANGED} is <tt>true</tt>.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReinstallRewritesUnchanged() throws IOException
+    {
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a.txt", createData(1000)),
+                               new Entry("lib/b.bin", createData(2000)));
+        install(pack, "a.txt", "lib/b.bin");
+
+        TestUnpacker unpacker = createUnpacker(pack);
+        unpacker.unpack();
+        assertTrue(unpacker.getResult());
+        assertEquals(Arrays.asList(new File(installDir, "a.txt"), new File(installDir, "lib/b.bin")),
+                     unpacker.extracted);
+
+        unpacker = createUnpacker(pack);
+        unpacker.getInstallData().setVariable(InstallData.UNPACKER_SKIP_UNCHANGED, "true");
+        unpacker.unpack();
+        assertTrue(unpacker.getResult());
+        assertTrue(unpacker.extracted.isEmpty());
+    }
+
+    /**
+     * Verifies that each directory is checked and created once across all packs, whether or not directories are
+     * created before unpacking, and whether or not packs are unpacked concurrently.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDirectoriesCreatedOnce() throws IOException
+    {
+        Pack pack1 = createPack("pack1", PackCompression.DEFLATE, new Entry("a/1.txt", createData(100)),
+                                new Entry("a/b/2.txt", createData(100)), new Entry("a/b/3.txt", createData(100)),
+                                new Entry("c/4.txt", createData(100)));
+        Pack pack2 = createPack("pack2", PackCompression.DEFLATE, new Entry("a/b/5.txt", createData(100)),
+                                new Entry("c/6.txt", createData(100)), new Entry("d/7.txt", createData(100)));
+        for (String createDirectories : Arrays.asList("false", "true"))
+        {
+            for (String threads : Arrays.asList("1", "2"))
+            {
+                String label = "createDirectories=" + createDirectories + ", threads=" + threads;
+                installDir = temporaryFolder.newFolder("install-" + createDirectories + "-" + threads);
+                TestUnpacker unpacker = createUnpacker(pack1, pack2);
+                InstallData installData = unpacker.getInstallData();
+                installData.setVariable(InstallData.UNPACKER_CREATE_DIRECTORIES, createDirectories);
+                installData.setVariable(InstallData.UNPACKER_PACK_THREADS, threads);
+                unpacker.unpack();
+                assertTrue(label, unpacker.getResult());
+
+                List<File> expected = Arrays.asList(new File(installDir, "a"), new File(installDir, "a/b"),
+                                                    new File(installDir, "c"), new File(installDir, "d"));
+                for (File dir : expected)
+                {
+                    assertTrue(label, dir.isDirectory());
+                    assertEquals(label, 1, Collections.frequency(unpacker.directories, dir));
+                }
+                assertEquals(label, new HashSet<File>(unpacker.directories).size(), unpacker.directories.size());
+            }
+        }
+    }
+
+    /**
+     * Verifies that when directories are created before unpacking, the directory skeleton of a pack is created
+     * from its index before any file is extracted.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCreateDirectories() throws IOException
+    {
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a/1.txt", createData(100)),
+                               new Entry("b/c/2.txt", createData(100)), new Entry("d/e/f/3.txt", createData(100)));
+        TestUnpacker unpacker = createUnpacker(pack);
+        unpacker.getInstallData().setVariable(InstallData.UNPACKER_CREATE_DIRECTORIES, "true");
+        unpacker.unpack();
+        assertTrue(unpacker.getResult());
+        assertEquals(Arrays.asList("a", "b", "b/c", "d", "d/e", "d/e/f"), unpacker.firstExtractDirectories);
+    }
+
+    /**
+     * Verifies that directories aren't created before unpacking if there are file listeners, so that the listeners
+     * are notified of each directory as the files in it are unpacked.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCreateDirectoriesWithFileListener() throws IOException
+    {
+        Pack pack = createPack("core", PackCompression.DEFLATE, new Entry("a/1.txt", createData(100)),
+                               new Entry("b/c/2.txt", createData(100)), new Entry("d/3.txt", createData(100)));
+        final List<File> dirs = new ArrayList<File>();
+        InstallerListener listener = new AbstractInstallerListener()
+        {
+            @Override
+            public boolean isFileListener()
+            {
+                return true;
+            }
+
+            @Override
+            public void beforeDir(File dir, PackFile packFile, Pack pack)
+            {
+                dirs.add(dir);
+            }
+        };
+        TestUnpacker unpacker = createUnpacker(listener, pack);
+        unpacker.getInstallData().setVariable(InstallData.UNPACKER_CREATE_DIRECTORIES, "true");
+        unpacker.unpack();
+        assertTrue(unpacker.getResult());
+        assertEquals(Arrays.asList("a"), unpacker.firstExtractDirectories);
+        assertEquals(Arrays.asList(new File(installDir, "a"), new File(installDir, "b"), new File(installDir, "b/c"),
+                                   new File(installDir, "d")), dirs);
+    }
+
+    /**
+     * Installs a pack as a modification of any previous installation, verifying that the installation succeeds and
+     * extracts the expected files.
+     *
+     * @param pack      the pack to install
+     * @param extracted the paths of the files expected to be extracted, relative to the installation directory
+     */
+    private void install(Pack pack, String... extracted)
+    {
+        TestUnpacker unpacker = createUnpacker(pack);
+        unpacker.getInstallData().setVariable(InstallData.MODIFY_INSTALLATION, "true");
+        unpacker.unpack();
+        assertTrue(unpacker.getResult());
+        List<File> expected = new ArrayList<File>();
+        for (String path : extracted)
+        {
+            expected.add(new File(installDir, path));
+        }
+        assertEquals(expected, unpacker.extracted);
+    }
+
+    /**
+     * Creates an unpacker to install packs.
+     *
+     * @param packs the packs to install
+     * @return a new unpacker
+     */
+    private TestUnpacker createUnpacker(Pack... packs)
+    {
+        return createUnpacker(null, packs);
+    }
+
+    /**
+     * Creates an unpacker to install packs.
+     *
+     * @param listener the installer listener. May be <tt>null</tt>
+     * @param packs    the packs to install
+     * @return a new unpacker
+     */
+    private TestUnpacker createUnpacker(InstallerListener listener, Pack... packs)
+    {
+        DefaultVariables variables = new DefaultVariables();
+        AutomatedInstallData installData = new AutomatedInstallData(variables, platform);
+        Info info = new Info();
+        info.setPackFormatVersion(Info.PACK_FORMAT_INDEXED);
+        installData.setInfo(info);
+        installData.setInstallPath(installDir.getPath());
+        installData.setSelectedPacks(new ArrayList<Pack>(Arrays.asList(packs)));
+        installData.setVariable(InstallData.UNPACKER_JOURNAL, "false");
+        RulesEngine rules = new RulesEngineImpl(installData, null, platform);
+        variables.setRules(rules);
+        InstallerListeners listeners = new InstallerListeners(installData, null);
+        if (listener != null)
+        {
+            listeners.add(listener);
+        }
+        listeners.initialise();
+        return new TestUnpacker(installData, rules, listeners);
+    }
+
+    /**
+     * Creates a pack, and writes it in the indexed pack format.
+     *
+     * @param name        the pack name
+     * @param compression the compression method of the entries
+     * @param entries     the pack entries
+     * @return the pack
+     * @throws IOException for any I/O error
+     */
+    private Pack createPack(String name, PackCompression compression, Entry... entries) throws IOException
+    {
+        PackIndexWriter index = new PackIndexWriter();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (Entry entry : entries)
+        {
+            PackFile file = new PackFile(entry.path, "$INSTALL_PATH/" + entry.path, null, entry.data.length,
+                                         entry.lastModified, false, OverrideType.OVERRIDE_TRUE, null,
+                                         Blockable.BLOCKABLE_NONE, null);
+            long offset = data.size();
+            OutputStream out = IndexedPack.getOutputStream(compression, data, -1);
+            out.write(entry.data);
+            out.close();
+            CRC32 checksum = new CRC32();
+            checksum.update(entry.data);
+            file.setEntry(compression, offset, data.size() - offset, checksum.getValue());
+            index.addFile(file);
+        }
+        ByteArrayOutputStream indexData = new ByteArrayOutputStream();
+        index.writeTo(indexData);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        IndexedPack.writeHeader(result, indexData.size());
+        indexData.writeTo(result);
+        data.writeTo(result);
+        packs.put(name, result.toByteArray());
+        return new Pack(name, null, null, null, null, true, true, false, null, true, 0);
+    }
+
+    /**
+     * Creates data that doesn't compress to nothing.
+     *
+     * @param length the data length
+     * @return the data
+     */
+    private byte[] createData(int length)
+    {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; ++i)
+        {
+            result[i] = (byte) ((i * 31) ^ (i >> 3));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the directories below the installation directory.
+     *
+     * @return the directory paths, relative to the installation directory, in sorted order
+     */
+    private List<String> getDirectories()
+    {
+        List<String> result = new ArrayList<String>();
+        getDirectories(installDir, "", result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Collects the directories below a directory.
+     *
+     * @param dir    the directory
+     * @param prefix the path of the directory, relative to the installation directory, with a trailing separator
+     * @param result the list to collect directory paths in
+     */
+    private void getDirectories(File dir, String prefix, List<String> result)
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                {
+                    String path = prefix + file.getName();
+                    result.add(path);
+                    getDirectories(file, path + "/", result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a file.
+     *
+     * @param file the file to read
+     * @return the file content
+     * @throws IOException for any I/O error
+     */
+    private byte[] read(File file) throws IOException
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                result.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param file the file to write
+     * @param data the file content
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, byte[] data) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(data);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * A file to add to a pack.
+     */
+    private static class Entry
+    {
+
+        /**
+         * The file path, relative to the installation directory.
+         */
+        private final String path;
+
+        /**
+         * The file data.
+         */
+        private final byte[] data;
+
+        /**
+         * The file modification time.
+         */
+        private final long lastModified;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param path the file path, relative to the installation directory
+         * @param data the file data
+         */
+        public Entry(String path, byte[] data)
+        {
+            this.path = path;
+            this.data = data;
+            this.lastModified = 1000000000000L;
+        }
+    }
+
+    /**
+     * An unpacker that reads packs from the test, records errors rather than shutting down, and records the files
+     * it extracts.
+     */
+    private class TestUnpacker extends Unpacker
+    {
+
+        /**
+         * The error messages.
+         */
+        private final List<String> errors;
+
+        /**
+         * The extracted files, in the order they were extracted.
+         */
+        private final List<File> extracted = Collections.synchronizedList(new ArrayList<File>());
+
+        /**
+         * The directories checked or created on the file system, in the order they were checked.
+         */
+        private final List<File> directories = Collections.synchronizedList(new ArrayList<File>());
+
+        /**
+         * The directories that existed when the first file was extracted, or <tt>null</tt> if no file was extracted.
+         */
+        private List<String> firstExtractDirectories;
+
+        /**
+         * Constructs a <tt>TestUnpacker</tt>.
+         *
+         * @param installData the installation data
+         * @param rules       the rules engine
+         * @param listeners   the installer listeners
+         */
+        public TestUnpacker(AutomatedInstallData installData, RulesEngine rules, InstallerListeners listeners)
+        {
+            this(installData, rules, new ArrayList<String>(), listeners);
+        }
+
+        /**
+         * Constructs a <tt>TestUnpacker</tt>.
+         *
+         * @param installData the installation data
+         * @param rules       the rules engine
+         * @param errors      the list to collect error messages in
+         * @param listeners   the installer listeners
+         */
+        private TestUnpacker(AutomatedInstallData installData, RulesEngine rules, final List<String> errors,
+                             InstallerListeners listeners)
+        {
+            super(installData, new TestPackResources(), rules,
+                  new VariableSubstitutorImpl(installData.getVariables()), new UninstallData(),
+                  new FileQueueFactory(platform, null), new TestHousekeeper(), listeners, new AbstractPrompt()
+            {
+                @Override
+                public void message(Type type, String title, String message)
+                {
+                    errors.add(message);
+                }
+
+                @Override
+                public Option confirm(Type type, String title, String message, Options options,
+                                      Option defaultOption)
+                {
+                    return defaultOption;
+                }
+            }, new PlatformModelMatcher(new Platforms(), platform));
+            this.errors = errors;
+            setProgressListener(new TestProgressListener());
+        }
+
+        /**
+         * Extracts a pack file, recording its target.
+         *
+         * @param file            the pack file
+         * @param target          the file to write to
+         * @param packInputStream the pack file input stream
+         * @param pack            the pack that the pack file comes from
+         * @param queue           the file queue, or {@code null} if queuing is not supported
+         * @throws IOException for any I/O error
+         */
+        @Override
+        protected void extract(PackFile file, File target, InputStream packInputStream, Pack pack, FileQueue queue)
+                throws IOException
+        {
+            synchronized (extracted)
+            {
+                if (extracted.isEmpty())
+                {
+                    firstExtractDirectories = getDirectories();
+                }
+                extracted.add(target);
+            }
+            super.extract(file, target, packInputStream, pack, queue);
+        }
+
+        /**
+         * Creates a directory not yet known to exist, recording it.
+         *
+         * @param dir  the directory to create
+         * @param file the pack file
+         * @param pack the pack that {@code file} comes from
+         */
+        @Override
+        protected void makeDirectory(File dir, PackFile file, Pack pack)
+        {
+            directories.add(dir);
+            super.makeDirectory(dir, file, pack);
+        }
+    }
+
+    /**
+     * Returns the packs written by the test.
+     */
+    private class TestPackResources implements PackResources
+    {
+        @Override
+        public InputStream getPackStream(String name)
+        {
+            byte[] pack = packs.get(name);
+            if (pack == null)
+            {
+                throw new ResourceNotFoundException("Pack not found: " + name);
+            }
+            return new ByteArrayInputStream(pack);
+        }
+
+        @Override
+        public StoredZipEntry getStoredPackEntry(String name)
+        {
+            return null;
+        }
+
+        @Override
+        public InputStream getInputStream(String name)
+        {
+            throw new ResourceNotFoundException("Resource not found: " + name);
+        }
+    }
+
+    /**
+     * A housekeeper that doesn't shut down the JVM.
+     */
+    private static class TestHousekeeper extends Housekeeper
+    {
+        @Override
+        public void shutDown(int exitCode, boolean reboot)
+        {
+        }
+    }
+
+    /**
+     * A progress listener that ignores progress.
+     */
+    private static class TestProgressListener implements ProgressListener
+    {
+        @Override
+        public void startAction(String name, int steps)
+        {
+        }
+
+        @Override
+        public void stopAction()
+        {
+        }
+
+        @Override
+        public void nextStep(String stepName, int step, int subSteps)
+        {
+        }
+
+        @Override
+        public void setSubStepNo(int subSteps)
+        {
+        }
+
+        @Override
+        public void progress(String message)
+        {
+        }
+
+        @Override
+        public void progress(int subStep, String message)
+        {
+        }
+
+        @Override
+        public void restartAction(String name, String overallMessage, String tip, int steps)
+        {
+        }
+    }
+}
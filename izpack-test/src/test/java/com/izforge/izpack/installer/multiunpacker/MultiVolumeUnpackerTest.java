@@ -28,11 +28,9 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -59,6 +57,7 @@ import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.packager.impl.MultiVolumePackager;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.io.PackInfoReader;
 import com.izforge.izpack.core.io.VolumeLocator;
 import com.izforge.izpack.core.resource.ResourceManager;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
@@ -351,24 +350,11 @@ public class MultiVolumeUnpackerTest
      *
      * @param resources the resources
      * @return the pack meta-data
-     * @throws IOException            for any I/O error
-     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     * @throws IOException for any I/O error
      */
-    private List<Pack> getPacks(Resources resources) throws IOException, ClassNotFoundException
+    private List<Pack> getPacks(Resources resources) throws IOException
     {
-        // We read the packs data
-        InputStream in = resources.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
-        int size = objIn.readInt();
-        List<Pack> packs = new ArrayList<Pack>();
-
-        for (int i = 0; i < size; i++)
-        {
-            Pack pack = (Pack) objIn.readObject();
-            packs.add(pack);
-        }
-        objIn.close();
-        return packs;
+        return PackInfoReader.read(resources.getInputStream("packs.info"));
     }
 
     /**
@@ -0,0 +1,132 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+
+/**
+ * A zip archive whose entries are installed as pack files.
+ * <p/>
+ * The archive is opened on first access, and shared by all of its {@link ArchiveEntry entries}, so that entries can
+ * be read directly from the archive, without being extracted first. It remains open until {@link #close() closed}.
+ * <p/>
+ * This class is thread safe.
+ */
+public class Archive implements Closeable, Serializable
+{
+
+    private static final long serialVersionUID = 4527305316640917362L;
+
+    /**
+     * The archive file.
+     */
+    private final File file;
+
+    /**
+     * The opened archive, or <tt>null</tt> if it isn't open.
+     */
+    private transient ZipFile zip;
+
+
+    /**
+     * Constructs an <tt>Archive</tt>.
+     *
+     * @param file the archive file
+     */
+    public Archive(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the archive file.
+     *
+     * @return the archive file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns a stream to read an entry.
+     *
+     * @param name the entry name
+     * @return a new stream to read the entry
+     * @throws FileNotFoundException if the entry doesn't exist
+     * @throws IOException           if the archive cannot be opened
+     */
+    public synchronized InputStream getInputStream(String name) throws IOException
+    {
+        if (zip == null)
+        {
+            zip = new ZipFile(file);
+        }
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null)
+        {
+            throw new FileNotFoundException("No entry " + name + " in archive " + file);
+        }
+        return zip.getInputStream(entry);
+    }
+
+    /**
+     * Closes the archive.
+     * <p/>
+     * Any stream returned by {@link #getInputStream(String)} is closed. The archive will be reopened if it is
+     * subsequently accessed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (zip != null)
+        {
+            try
+            {
+                zip.close();
+            }
+            finally
+            {
+                zip = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the archive path.
+     *
+     * @return the archive path
+     */
+    @Override
+    public String toString()
+    {
+        return file.getPath();
+    }
+}
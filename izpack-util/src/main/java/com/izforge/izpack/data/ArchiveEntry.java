@@ -0,0 +1,171 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.zip.ZipEntry;
+
+
+/**
+ * An entry of an {@link Archive}, used as the source of a pack file in place of a file on disk.
+ * <p/>
+ * Entries are equal if they have the same name, and belong to the same archive file.
+ */
+public class ArchiveEntry implements Serializable
+{
+
+    private static final long serialVersionUID = -2286870451209366573L;
+
+    /**
+     * The archive.
+     */
+    private final Archive archive;
+
+    /**
+     * The entry name.
+     */
+    private final String name;
+
+    /**
+     * The uncompressed size of the entry.
+     */
+    private final long size;
+
+    /**
+     * The last-modification time of the entry.
+     */
+    private final long time;
+
+    /**
+     * Determines if the entry is a directory.
+     */
+    private final boolean directory;
+
+
+    /**
+     * Constructs an <tt>ArchiveEntry</tt>.
+     *
+     * @param archive the archive
+     * @param entry   the entry, as read from the archive's central directory
+     */
+    public ArchiveEntry(Archive archive, ZipEntry entry)
+    {
+        this.archive = archive;
+        this.name = entry.getName();
+        this.directory = entry.isDirectory();
+        this.size = directory ? 0 : entry.getSize();
+        this.time = entry.getTime();
+    }
+
+    /**
+     * Returns the archive.
+     *
+     * @return the archive
+     */
+    public Archive getArchive()
+    {
+        return archive;
+    }
+
+    /**
+     * Returns the entry name.
+     *
+     * @return the entry name. Directory names end in <em>/</em>
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the uncompressed size of the entry.
+     *
+     * @return the size, in bytes
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the last-modification time of the entry.
+     *
+     * @return the last-modification time, or <tt>-1</tt> if it is not specified
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Determines if the entry is a directory.
+     *
+     * @return <tt>true</tt> if the entry is a directory
+     */
+    public boolean isDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Returns a stream to read the entry.
+     *
+     * @return a new stream to read the entry
+     * @throws IOException if the entry cannot be read
+     */
+    public InputStream getInputStream() throws IOException
+    {
+        return archive.getInputStream(name);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+        if (!(other instanceof ArchiveEntry))
+        {
+            return false;
+        }
+        ArchiveEntry entry = (ArchiveEntry) other;
+        return name.equals(entry.name) && archive.getFile().equals(entry.archive.getFile());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return name.hashCode() ^ archive.getFile().hashCode();
+    }
+
+    /**
+     * Returns the entry location, in the form <em>archive!/name</em>.
+     *
+     * @return the entry location
+     */
+    @Override
+    public String toString()
+    {
+        return archive + "!/" + name;
+    }
+}
@@ -22,10 +22,13 @@
 package com.izforge.izpack.data;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +38,7 @@ import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackColor;
+import com.izforge.izpack.api.data.PackCompression;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.binding.OsModel;
 
@@ -67,6 +71,11 @@ public class PackInfo implements Serializable
      */
     private Map<PackFile, File> files = new LinkedHashMap<PackFile, File>();
 
+    /**
+     * The archive entries that are the source of pack files, keyed on pack file.
+     */
+    private Map<PackFile, ArchiveEntry> archiveEntries = new HashMap<PackFile, ArchiveEntry>();
+
     /**
      * Parsables files in this Pack.
      */
@@ -82,6 +91,11 @@ public class PackInfo implements Serializable
      */
     private List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
 
+    /**
+     * The compression method for the pack's file data, or <tt>null</tt> to use the installer default.
+     */
+    private PackCompression compression;
+
     /**
      * Constructor with required info.
      *
@@ -241,6 +255,41 @@ public class PackInfo implements Serializable
         files.put(packFile, file);
     }
 
+    /**
+     * Add an archive entry to be installed.
+     * <p/>
+     * The entry is read directly from the archive when the pack is written, rather than being extracted first.
+     *
+     * @param entry            the archive entry
+     * @param targetfile       path file will be installed to
+     * @param osList           the target operation system(s) of this pack
+     * @param override         what to do if the file already exists when installing
+     * @param overrideRenameTo the globmapper expression for renaming the file if it exists. May be <tt>null</tt>
+     * @param blockable        determines if the file might be blocked by the operating system
+     * @param additionals      additional attributes. May be <tt>null</tt>
+     * @param condition        the condition. May be <tt>null</tt>
+     */
+    public void addArchiveEntry(ArchiveEntry entry, String targetfile, List<OsModel> osList, OverrideType override,
+                                String overrideRenameTo, Blockable blockable, Map additionals, String condition)
+    {
+        String target = targetfile.replace(File.separatorChar, '/');
+        if (target.endsWith("/"))
+        {
+            target = target.substring(0, target.length() - 1);
+        }
+        String name = entry.getName();
+        if (name.endsWith("/"))
+        {
+            name = name.substring(0, name.length() - 1);
+        }
+        PackFile packFile = new PackFile(name, target, osList, entry.getSize(), entry.getTime(),
+                                         entry.isDirectory(), override, overrideRenameTo, blockable, additionals);
+        packFile.setLoosePackInfo(pack.isLoose());
+        packFile.setCondition(condition);
+        files.put(packFile, null);
+        archiveEntries.put(packFile, entry);
+    }
+
     /**
      * Set of PackFile objects for this Pack.
      */
@@ -251,13 +300,74 @@ public class PackInfo implements Serializable
 
     /**
      * The file described by the specified PackFile. Returns <tt>null</tt> if the PackFile did not
-     * come from the set returned by {@link #getPackFiles()}.
+     * come from the set returned by {@link #getPackFiles()}, or was added from an archive.
      */
     public File getFile(PackFile packFile)
     {
         return files.get(packFile);
     }
 
+    /**
+     * Returns the archive entry described by the specified PackFile.
+     *
+     * @param packFile the pack file
+     * @return the archive entry, or <tt>null</tt> if the pack file wasn't added from an archive
+     */
+    public ArchiveEntry getArchiveEntry(PackFile packFile)
+    {
+        return archiveEntries.get(packFile);
+    }
+
+    /**
+     * Returns the source of the specified PackFile.
+     * <p/>
+     * Sources are equal if they refer to the same file or archive entry.
+     *
+     * @param packFile the pack file
+     * @return the {@link File} or {@link ArchiveEntry} the pack file was added from, or <tt>null</tt> if the
+     *         PackFile did not come from the set returned by {@link #getPackFiles()}
+     */
+    public Object getSource(PackFile packFile)
+    {
+        ArchiveEntry entry = archiveEntries.get(packFile);
+        return (entry != null) ? entry : files.get(packFile);
+    }
+
+    /**
+     * Returns a stream to read the content of the specified PackFile, from its file or archive entry.
+     *
+     * @param packFile the pack file
+     * @return a new stream
+     * @throws IOException if the source cannot be read
+     */
+    public InputStream getInputStream(PackFile packFile) throws IOException
+    {
+        ArchiveEntry entry = archiveEntries.get(packFile);
+        if (entry != null)
+        {
+            return entry.getInputStream();
+        }
+        File file = files.get(packFile);
+        if (file == null)
+        {
+            throw new FileNotFoundException("No source for " + packFile.getTargetPath());
+        }
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Closes the archives that pack files were added from.
+     *
+     * @throws IOException for any I/O error
+     */
+    public void closeArchives() throws IOException
+    {
+        for (ArchiveEntry entry : archiveEntries.values())
+        {
+            entry.getArchive().close();
+        }
+    }
+
     /**
      * Parsable files have variables substituted after installation.
      */
@@ -363,4 +473,27 @@ public class PackInfo implements Serializable
     {
         pack.addValidator(validatorClassName);
     }
+
+    /**
+     * Sets the compression method for the pack's file data.
+     * <p/>
+     * This is only supported by the {@link com.izforge.izpack.api.data.Info#PACK_FORMAT_INDEXED indexed} pack
+     * format.
+     *
+     * @param compression the compression method, or <tt>null</tt> to use the installer default
+     */
+    public void setCompression(PackCompression compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the compression method for the pack's file data.
+     *
+     * @return the compression method, or <tt>null</tt> to use the installer default
+     */
+    public PackCompression getCompression()
+    {
+        return compression;
+    }
 }
@@ -82,4 +82,13 @@ public class UpdateCheck implements Serializable
         this.caseSensitive = ((casesensitive != null) && "yes".equalsIgnoreCase(casesensitive));
     }
 
+    /**
+     * Determines if pattern matching is performed case-sensitive.
+     *
+     * @return <tt>true</tt> if matching is case-sensitive
+     */
+    public boolean isCaseSensitive()
+    {
+        return caseSensitive;
+    }
 }
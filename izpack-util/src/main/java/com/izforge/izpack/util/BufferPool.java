@@ -0,0 +1,251 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A pool of reusable I/O buffers.
+ * <p/>
+ * Buffers are allocated in size classes that are powers of two, so a buffer may be larger than requested. Released
+ * buffers are retained for reuse up to a limit on the total no. of bytes retained; beyond that, they are left to
+ * the garbage collector.
+ * <p/>
+ * Static helpers that copy data use the {@link #getDefault() default} pool. The installer replaces this with a pool
+ * configured from its variables.
+ * <p/>
+ * This class is thread safe.
+ */
+public class BufferPool
+{
+
+    /**
+     * The default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The default maximum no. of bytes to retain.
+     */
+    public static final long DEFAULT_MAX_RETAINED = 16 * 1024 * 1024;
+
+    /**
+     * The smallest size class, as a power of two.
+     */
+    private static final int MIN_SHIFT = 10;
+
+    /**
+     * The largest size class, as a power of two. Larger buffers aren't pooled.
+     */
+    private static final int MAX_SHIFT = 26;
+
+    /**
+     * The default pool.
+     */
+    private static volatile BufferPool defaultPool = new BufferPool();
+
+    /**
+     * The buffer size returned by {@link #acquire()}.
+     */
+    private final int bufferSize;
+
+    /**
+     * The maximum no. of bytes to retain.
+     */
+    private final long maxRetained;
+
+    /**
+     * The no. of bytes retained.
+     */
+    private final AtomicLong retained = new AtomicLong();
+
+    /**
+     * The free buffers, indexed on size class.
+     */
+    private final Queue<byte[]>[] free;
+
+
+    /**
+     * Constructs a <tt>BufferPool</tt> with a buffer size of {@link #DEFAULT_BUFFER_SIZE}, retaining up to
+     * {@link #DEFAULT_MAX_RETAINED} bytes.
+     */
+    public BufferPool()
+    {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RETAINED);
+    }
+
+    /**
+     * Constructs a <tt>BufferPool</tt>.
+     *
+     * @param bufferSize  the buffer size returned by {@link #acquire()}. This is rounded up to a power of two
+     * @param maxRetained the maximum no. of bytes to retain. If <tt>0</tt>, no buffers are retained
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int bufferSize, long maxRetained)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("Argument 'bufferSize' must be > 0");
+        }
+        if (maxRetained < 0)
+        {
+            throw new IllegalArgumentException("Argument 'maxRetained' must be >= 0");
+        }
+        this.bufferSize = getSize(bufferSize);
+        this.maxRetained = maxRetained;
+        free = new Queue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < free.length; ++i)
+        {
+            free[i] = new ConcurrentLinkedQueue<byte[]>();
+        }
+    }
+
+    /**
+     * Returns the default pool.
+     *
+     * @return the default pool
+     */
+    public static BufferPool getDefault()
+    {
+        return defaultPool;
+    }
+
+    /**
+     * Sets the default pool.
+     *
+     * @param pool the default pool
+     */
+    public static void setDefault(BufferPool pool)
+    {
+        defaultPool = pool;
+    }
+
+    /**
+     * Returns the buffer size returned by {@link #acquire()}.
+     *
+     * @return the buffer size
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the maximum no. of bytes retained.
+     *
+     * @return the maximum no. of bytes retained
+     */
+    public long getMaxRetained()
+    {
+        return maxRetained;
+    }
+
+    /**
+     * Acquires a buffer of {@link #getBufferSize()} bytes.
+     *
+     * @return the buffer
+     */
+    public byte[] acquire()
+    {
+        return acquire(bufferSize);
+    }
+
+    /**
+     * Acquires a buffer of at least the specified size.
+     * <p/>
+     * The buffer should be {@link #release released} when it is no longer required.
+     *
+     * @param size the minimum buffer size
+     * @return the buffer
+     */
+    public byte[] acquire(int size)
+    {
+        byte[] result = null;
+        int index = getIndex(size);
+        if (index < free.length)
+        {
+            result = free[index].poll();
+        }
+        if (result != null)
+        {
+            retained.addAndGet(-result.length);
+        }
+        else
+        {
+            result = new byte[getSize(size)];
+        }
+        return result;
+    }
+
+    /**
+     * Releases a buffer, making it available for reuse.
+     * <p/>
+     * Buffers that weren't acquired from a pool, or that would exceed the maximum no. of retained bytes, are
+     * discarded. The buffer must not be used after it is released.
+     *
+     * @param buffer the buffer. May be <tt>null</tt>
+     */
+    public void release(byte[] buffer)
+    {
+        if (buffer != null)
+        {
+            int length = buffer.length;
+            int index = getIndex(length);
+            if (index < free.length && getSize(length) == length)
+            {
+                if (retained.addAndGet(length) <= maxRetained)
+                {
+                    free[index].offer(buffer);
+                }
+                else
+                {
+                    retained.addAndGet(-length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the size class index of a size.
+     *
+     * @param size the size
+     * @return the size class index. This may exceed the no. of size classes, for sizes too large to pool
+     */
+    private static int getIndex(int size)
+    {
+        int shift = (size <= 1 << MIN_SHIFT) ? MIN_SHIFT : 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    /**
+     * Rounds a size up to its size class.
+     *
+     * @param size the size
+     * @return the size of the size class, or <tt>size</tt> if it is too large to pool
+     */
+    private static int getSize(int size)
+    {
+        int index = getIndex(size);
+        return (index <= MAX_SHIFT - MIN_SHIFT) ? 1 << (index + MIN_SHIFT) : size;
+    }
+}
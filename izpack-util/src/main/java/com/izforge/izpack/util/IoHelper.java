@@ -21,8 +21,6 @@
 
 package com.izforge.izpack.util;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -191,31 +189,22 @@ public class IoHelper
     {
         if (vs == null)
         {
-            byte[] buffer = new byte[5120];
-            long bytesCopied = 0;
-            int bytesInBuffer;
-            while ((bytesInBuffer = in.read(buffer)) != -1)
-            {
-                out.write(buffer, 0, bytesInBuffer);
-                bytesCopied += bytesInBuffer;
-            }
+            copyStream(in, out);
             in.close();
             out.close();
         }
         else
         {
-            BufferedInputStream bin = new BufferedInputStream(in, 5120);
-            BufferedOutputStream bout = new BufferedOutputStream(out, 5120);
             try
             {
-                vs.substitute(bin, bout, type, null);
+                vs.substitute(in, out, type, null);
             }
             catch (Exception e)
             {
                 throw new IOException("Substitution failed during copying a stream(" + e.getMessage() + ")");
             }
-            bin.close();
-            bout.close();
+            in.close();
+            out.close();
         }
     }
 
@@ -875,6 +864,8 @@ public class IoHelper
 
     /**
      * Copies all the data from the specified input stream to the specified output stream.
+     * <p/>
+     * The data is copied through a buffer from the {@link BufferPool#getDefault() default buffer pool}.
      *
      * @param in  the input stream to read
      * @param out the output stream to write
@@ -883,14 +874,22 @@ public class IoHelper
      */
     public static long copyStream(InputStream in, OutputStream out) throws IOException
     {
-        byte[] buffer = new byte[5120];
-        long bytesCopied = 0;
-        int bytesInBuffer;
-        while ((bytesInBuffer = in.read(buffer)) != -1)
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire();
+        try
+        {
+            long bytesCopied = 0;
+            int bytesInBuffer;
+            while ((bytesInBuffer = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, bytesInBuffer);
+                bytesCopied += bytesInBuffer;
+            }
+            return bytesCopied;
+        }
+        finally
         {
-            out.write(buffer, 0, bytesInBuffer);
-            bytesCopied += bytesInBuffer;
+            pool.release(buffer);
         }
-        return bytesCopied;
     }
 }
@@ -44,7 +44,12 @@ class JVMHelper
      * <li>-Dizpack.mode</li>
      * <li>-agentlib</li>
      * <li>-javaagent</li>
+     * <li>-XX:ArchiveClassesAtExit</li>
+     * <li>-XX:+AutoCreateSharedArchive</li>
      * </ul>
+     * The class data sharing dump options are excluded so that a relaunched JVM uses, but doesn't overwrite, the
+     * archive of the JVM that launched it. A relaunched JVM may run as a different user, and with a different class
+     * path.
      *
      * @return the JVM arguments
      */
@@ -57,7 +62,8 @@ class JVMHelper
         {
             if (!arg.startsWith("-Dself.mod.") && !arg.equals("-Xdebug") && !arg.startsWith("-Xrunjdwp")
                     && !arg.startsWith("-Dizpack.mode") && !arg.startsWith("-agentlib")
-                    && !arg.startsWith("-javaagent"))
+                    && !arg.startsWith("-javaagent") && !arg.startsWith("-XX:ArchiveClassesAtExit")
+                    && !arg.equals("-XX:+AutoCreateSharedArchive"))
             {
                 result.add(arg);
             }
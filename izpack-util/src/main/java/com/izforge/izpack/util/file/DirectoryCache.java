@@ -0,0 +1,339 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Caches the contents of directories, so that directory trees shared by several {@link DirectoryScanner}s are only
+ * listed once.
+ * <p/>
+ * Each directory is listed together with the type of each of its entries, so that scanners needn't query the file
+ * system for each file. If constructed with reader threads, listing a directory also queues its sub-directories to be
+ * listed in the background, so that they are ready by the time a scanner descends into them.
+ * <p/>
+ * The cache assumes that directories don't change while it is in use. It should be {@link #clear() cleared} once
+ * the directories have been scanned.
+ * <p/>
+ * This class is thread safe.
+ */
+public class DirectoryCache
+{
+
+    /**
+     * The listings, keyed on absolute directory.
+     */
+    private final ConcurrentMap<File, FutureTask<Listing>> listings = new ConcurrentHashMap<File, FutureTask<Listing>>();
+
+    /**
+     * The executor used to list sub-directories ahead of time, or <tt>null</tt> if directories are only listed on
+     * demand.
+     */
+    private final ThreadPoolExecutor executor;
+
+
+    /**
+     * Constructs a <tt>DirectoryCache</tt> that only lists directories on demand.
+     */
+    public DirectoryCache()
+    {
+        this(0);
+    }
+
+    /**
+     * Constructs a <tt>DirectoryCache</tt>.
+     *
+     * @param threads the no. of threads used to list sub-directories ahead of time. If <tt>0</tt>, directories are
+     *                only listed on demand
+     */
+    public DirectoryCache(int threads)
+    {
+        if (threads > 0)
+        {
+            executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                                              new LinkedBlockingQueue<Runnable>(), new ReaderThreadFactory());
+            // idle threads exit, so the cache needn't be shut down
+            executor.allowCoreThreadTimeOut(true);
+        }
+        else
+        {
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the listing of a directory.
+     * <p/>
+     * If the directory is being listed by a reader thread, this waits for it to complete. If it is queued but hasn't
+     * started, it is listed by the calling thread.
+     *
+     * @param dir the directory
+     * @return the directory listing, or <tt>null</tt> if <tt>dir</tt> isn't a directory, or cannot be read
+     * @throws IOException if the thread is interrupted while waiting for the listing
+     */
+    public Listing getListing(File dir) throws IOException
+    {
+        File key = dir.getAbsoluteFile();
+        FutureTask<Listing> task = listings.get(key);
+        if (task == null)
+        {
+            FutureTask<Listing> created = createTask(key);
+            task = listings.putIfAbsent(key, created);
+            if (task == null)
+            {
+                task = created;
+            }
+        }
+        task.run(); // does nothing if the task has already run, or is running in a reader thread
+        Listing result;
+        try
+        {
+            result = task.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing " + dir);
+        }
+        catch (ExecutionException exception)
+        {
+            throw new IOException("Failed to list " + dir, exception.getCause());
+        }
+        if (result == null)
+        {
+            // don't cache failures; the directory may be created later
+            listings.remove(key, task);
+        }
+        else if (executor != null && result.readAhead.compareAndSet(false, true))
+        {
+            for (int i = 0; i < result.names.length; ++i)
+            {
+                if (result.isDirectory(i))
+                {
+                    File subdir = new File(key, result.names[i]);
+                    FutureTask<Listing> child = createTask(subdir);
+                    if (listings.putIfAbsent(subdir, child) == null)
+                    {
+                        executor.execute(child);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discards all cached listings.
+     */
+    public void clear()
+    {
+        listings.clear();
+        if (executor != null)
+        {
+            executor.getQueue().clear();
+        }
+    }
+
+    /**
+     * Creates a task to list a directory.
+     *
+     * @param dir the directory
+     * @return a new task
+     */
+    private FutureTask<Listing> createTask(final File dir)
+    {
+        return new FutureTask<Listing>(new Callable<Listing>()
+        {
+            @Override
+            public Listing call()
+            {
+                return list(dir);
+            }
+        });
+    }
+
+    /**
+     * Lists a directory.
+     *
+     * @param dir the directory
+     * @return the directory listing, or <tt>null</tt> if <tt>dir</tt> isn't a directory, or cannot be read
+     */
+    private static Listing list(File dir)
+    {
+        String[] names = dir.list();
+        if (names == null)
+        {
+            return null;
+        }
+        byte[] types = new byte[names.length];
+        for (int i = 0; i < names.length; ++i)
+        {
+            File file = new File(dir, names[i]);
+            if (file.isDirectory())
+            {
+                types[i] = Listing.DIRECTORY;
+            }
+            else if (file.isFile())
+            {
+                types[i] = Listing.FILE;
+            }
+        }
+        return new Listing(names, types);
+    }
+
+    /**
+     * The contents of a directory.
+     */
+    public static class Listing
+    {
+
+        /**
+         * Entry type for directories.
+         */
+        private static final byte DIRECTORY = 1;
+
+        /**
+         * Entry type for normal files.
+         */
+        private static final byte FILE = 2;
+
+        /**
+         * The entry names.
+         */
+        private final String[] names;
+
+        /**
+         * The entry types. Entries that are neither directories nor normal files have type <tt>0</tt>.
+         */
+        private final byte[] types;
+
+        /**
+         * Determines if the sub-directories have been queued for listing.
+         */
+        private final AtomicBoolean readAhead = new AtomicBoolean();
+
+
+        /**
+         * Constructs a <tt>Listing</tt>.
+         *
+         * @param names the entry names
+         * @param types the entry types
+         */
+        private Listing(String[] names, byte[] types)
+        {
+            this.names = names;
+            this.types = types;
+        }
+
+        /**
+         * Returns the no. of entries.
+         *
+         * @return the no. of entries
+         */
+        public int size()
+        {
+            return names.length;
+        }
+
+        /**
+         * Returns the name of an entry.
+         *
+         * @param index the entry index
+         * @return the entry name
+         */
+        public String getName(int index)
+        {
+            return names[index];
+        }
+
+        /**
+         * Returns the entry names, in the order returned by {@link File#list()}.
+         *
+         * @return a copy of the entry names
+         */
+        public String[] getNames()
+        {
+            return names.clone();
+        }
+
+        /**
+         * Determines if an entry is a directory.
+         *
+         * @param index the entry index
+         * @return <tt>true</tt> if the entry is a directory
+         */
+        public boolean isDirectory(int index)
+        {
+            return types[index] == DIRECTORY;
+        }
+
+        /**
+         * Determines if an entry is a normal file.
+         *
+         * @param index the entry index
+         * @return <tt>true</tt> if the entry is a normal file
+         */
+        public boolean isFile(int index)
+        {
+            return types[index] == FILE;
+        }
+    }
+
+    /**
+     * Creates daemon threads to list directories, so that an unfinished read-ahead doesn't prevent the JVM from
+     * exiting.
+     */
+    private static class ReaderThreadFactory implements ThreadFactory
+    {
+
+        /**
+         * The thread counter, used to name threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable to execute
+         * @return a new daemon thread
+         */
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "DirectoryCache-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
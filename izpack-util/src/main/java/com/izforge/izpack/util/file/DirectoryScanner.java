@@ -22,10 +22,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
@@ -280,9 +278,16 @@ public class DirectoryScanner
     protected boolean everythingIncluded = true;
 
     /**
-     * Temporary table to speed up the various scanning methods.
+     * The directory cache shared with other scanners, or <tt>null</tt> if
+     * directories are listed afresh for each scan.
      */
-    private Map<File, String[]> fileListMap = new HashMap<File, String[]>();
+    private DirectoryCache directoryCache;
+
+    /**
+     * Temporary cache to speed up the various scanning methods, used if
+     * no directory cache is shared.
+     */
+    private DirectoryCache listings;
 
     /**
      * List of all scanned directories.
@@ -333,6 +338,25 @@ public class DirectoryScanner
      */
     private String[] excludePatterns;
 
+    /**
+     * The tokenized include patterns, in the same order as
+     * {@link #includes}. These are tokenized once, rather than for each
+     * path matched.
+     * <p/>
+     * <p>Initialized and cleared along with the non-pattern sets.</p>
+     */
+    private String[][] includeTokens;
+
+    /**
+     * The tokenized {@link #includePatterns}.
+     */
+    private String[][] includePatternTokens;
+
+    /**
+     * The tokenized {@link #excludePatterns}.
+     */
+    private String[][] excludePatternTokens;
+
     /**
      * Have the non-pattern sets and pattern arrays for in- and
      * excludes been initialized?
@@ -623,6 +647,28 @@ public class DirectoryScanner
         this.followSymlinks = followSymlinks;
     }
 
+    /**
+     * Returns the directory cache shared with other scanners.
+     *
+     * @return the directory cache, or <code>null</code> if directories are
+     *         listed afresh for each scan.
+     */
+    public synchronized DirectoryCache getDirectoryCache()
+    {
+        return directoryCache;
+    }
+
+    /**
+     * Sets a directory cache to share with other scanners, so that
+     * overlapping directory trees are only listed once.
+     *
+     * @param directoryCache the directory cache. May be <code>null</code>
+     */
+    public synchronized void setDirectoryCache(DirectoryCache directoryCache)
+    {
+        this.directoryCache = directoryCache;
+    }
+
     /**
      * Set the list of include patterns to use. All '/' and '\' characters
      * are replaced by <code>File.separatorChar</code>, so the separator used
@@ -1109,9 +1155,9 @@ public class DirectoryScanner
         {
             return;
         }
-        String[] newfiles = dir.list();
+        DirectoryCache.Listing listing = getListings().getListing(dir);
 
-        if (newfiles == null)
+        if (listing == null)
         {
             /*
              * two reasons are mentioned in the API docs for File.list
@@ -1123,24 +1169,22 @@ public class DirectoryScanner
             throw new Exception("IO error scanning directory "
                     + dir.getAbsolutePath());
         }
+        int size = listing.size();
+        boolean[] links = new boolean[size];
         if (!followSymlinks)
         {
-            Vector<String> noLinks = new Vector<String>();
-            for (String newfile : newfiles)
+            for (int i = 0; i < size; i++)
             {
+                String newfile = listing.getName(i);
                 try
                 {
                     if (FILE_UTILS.isSymbolicLink(dir, newfile))
                     {
+                        links[i] = true;
                         String name = vpath + newfile;
-                        File file = new File(dir, newfile);
-                        (file.isDirectory()
+                        (listing.isDirectory(i)
                                 ? dirsExcluded : filesExcluded).addElement(name);
                     }
-                    else
-                    {
-                        noLinks.addElement(newfile);
-                    }
                 }
                 catch (IOException ioe)
                 {
@@ -1148,17 +1192,19 @@ public class DirectoryScanner
                             + "for links, couldn't get canonical path!";
                     // will be caught and redirected to Ant's logging system
                     System.err.println(msg);
-                    noLinks.addElement(newfile);
                 }
             }
-            newfiles = new String[noLinks.size()];
-            noLinks.copyInto(newfiles);
         }
-        for (String newfile : newfiles)
+        for (int i = 0; i < size; i++)
         {
+            if (links[i])
+            {
+                continue;
+            }
+            String newfile = listing.getName(i);
             String name = vpath + newfile;
             File file = new File(dir, newfile);
-            if (file.isDirectory())
+            if (listing.isDirectory(i))
             {
                 if (isIncluded(name))
                 {
@@ -1178,7 +1224,7 @@ public class DirectoryScanner
                     scandir(file, name + File.separator, fast);
                 }
             }
-            else if (file.isFile())
+            else if (listing.isFile(i))
             {
                 if (isIncluded(name))
                 {
@@ -1280,14 +1326,7 @@ public class DirectoryScanner
         {
             return true;
         }
-        for (String includePattern : includePatterns)
-        {
-            if (matchPath(includePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return matchPath(includePatterns, includePatternTokens, name);
     }
 
     /**
@@ -1300,11 +1339,17 @@ public class DirectoryScanner
      */
     protected boolean couldHoldIncluded(String name)
     {
-        for (String include : includes)
+        ensureNonPatternSetsReady();
+
+        boolean absolute = name.startsWith(File.separator);
+        String[] nameTokens = SelectorUtils.tokenizePathAsArray(name);
+        for (int i = 0; i < includes.length; i++)
         {
-            if (matchPatternStart(include, name, isCaseSensitive())
+            String include = includes[i];
+            if (include.startsWith(File.separator) == absolute
+                    && SelectorUtils.matchPatternStart(includeTokens[i], nameTokens, isCaseSensitive())
                     && isMorePowerfulThanExcludes(name, include)
-                    && isDeeper(include, name))
+                    && isDeeper(includeTokens[i], nameTokens))
             {
                 return true;
             }
@@ -1316,15 +1361,41 @@ public class DirectoryScanner
      * Verify that a pattern specifies files deeper
      * than the level of the specified file.
      *
-     * @param pattern the pattern to check.
-     * @param name    the name to check.
+     * @param pattern the tokenized pattern to check.
+     * @param name    the tokenized name to check.
      * @return whether the pattern is deeper than the name.
      */
-    private boolean isDeeper(String pattern, String name)
+    private boolean isDeeper(String[] pattern, String[] name)
     {
-        Vector<?> p = SelectorUtils.tokenizePath(pattern);
-        Vector<?> n = SelectorUtils.tokenizePath(name);
-        return p.contains("**") || p.size() > n.size();
+        return Arrays.asList(pattern).contains("**") || pattern.length > name.length;
+    }
+
+    /**
+     * Test whether or not a name matches at least one of a set of
+     * patterns.
+     *
+     * @param patterns the patterns.
+     * @param tokens   the tokenized patterns.
+     * @param name     the name to match.
+     * @return <code>true</code> when the name matches at least one pattern.
+     */
+    private boolean matchPath(String[] patterns, String[][] tokens, String name)
+    {
+        if (patterns.length == 0)
+        {
+            return false;
+        }
+        boolean absolute = name.startsWith(File.separator);
+        String[] nameTokens = SelectorUtils.tokenizePathAsArray(name);
+        for (int i = 0; i < patterns.length; i++)
+        {
+            if (patterns[i].startsWith(File.separator) == absolute
+                    && SelectorUtils.matchPath(tokens[i], nameTokens, isCaseSensitive()))
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -1393,14 +1464,7 @@ public class DirectoryScanner
         {
             return true;
         }
-        for (String excludePattern : excludePatterns)
-        {
-            if (matchPath(excludePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return matchPath(excludePatterns, excludePatternTokens, name);
     }
 
     /**
@@ -1641,18 +1705,29 @@ public class DirectoryScanner
      *
      * @param file File (dir) to list.
      */
-    private String[] list(File file)
+    private String[] list(File file) throws IOException
     {
-        String[] files = fileListMap.get(file);
-        if (files == null)
+        DirectoryCache.Listing listing = getListings().getListing(file);
+        return (listing != null) ? listing.getNames() : null;
+    }
+
+    /**
+     * Returns the cache to list directories with.
+     *
+     * @return the shared directory cache, if one has been set, otherwise
+     *         a cache that lasts until the end of the scan.
+     */
+    private synchronized DirectoryCache getListings()
+    {
+        if (directoryCache != null)
         {
-            files = file.list();
-            if (files != null)
-            {
-                fileListMap.put(file, files);
-            }
+            return directoryCache;
         }
-        return files;
+        if (listings == null)
+        {
+            listings = new DirectoryCache();
+        }
+        return listings;
     }
 
     /**
@@ -1780,11 +1855,14 @@ public class DirectoryScanner
      */
     private synchronized void clearCaches()
     {
-        fileListMap.clear();
+        listings = null;
         includeNonPatterns.clear();
         excludeNonPatterns.clear();
         includePatterns = null;
         excludePatterns = null;
+        includeTokens = null;
+        includePatternTokens = null;
+        excludePatternTokens = null;
         areNonPatternSetsReady = false;
     }
 
@@ -1798,6 +1876,9 @@ public class DirectoryScanner
         {
             includePatterns = fillNonPatternSet(includeNonPatterns, includes);
             excludePatterns = fillNonPatternSet(excludeNonPatterns, excludes);
+            includeTokens = tokenize(includes);
+            includePatternTokens = tokenize(includePatterns);
+            excludePatternTokens = tokenize(excludePatterns);
             areNonPatternSetsReady = true;
         }
     }
@@ -1827,4 +1908,21 @@ public class DirectoryScanner
                 : al.toArray(new String[al.size()]);
     }
 
+    /**
+     * Tokenizes patterns, so that they needn't be tokenized each time
+     * they are matched.
+     *
+     * @param patterns the patterns.
+     * @return the tokenized patterns, in the same order.
+     */
+    private static String[][] tokenize(String[] patterns)
+    {
+        String[][] result = new String[patterns.length][];
+        for (int i = 0; i < patterns.length; i++)
+        {
+            result[i] = SelectorUtils.tokenizePathAsArray(patterns[i]);
+        }
+        return result;
+    }
+
 }
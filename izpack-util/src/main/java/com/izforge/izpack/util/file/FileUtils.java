@@ -17,6 +17,7 @@
 
 package com.izforge.izpack.util.file;
 
+import com.izforge.izpack.util.BufferPool;
 import com.izforge.izpack.util.OsVersion;
 
 import java.io.BufferedInputStream;
@@ -236,12 +237,13 @@ public class FileUtils
 
             FileInputStream in = null;
             FileOutputStream out = null;
+            BufferPool pool = BufferPool.getDefault();
+            byte[] buffer = pool.acquire();
             try
             {
                 in = new FileInputStream(sourceFile);
                 out = new FileOutputStream(destFile);
 
-                byte[] buffer = new byte[BUF_SIZE];
                 int count = 0;
                 do
                 {
@@ -252,6 +254,7 @@ public class FileUtils
             }
             finally
             {
+                pool.release(buffer);
                 close(out);
                 close(in);
             }
@@ -23,6 +23,7 @@ import java.util.Enumeration;
 import java.util.Vector;
 import java.util.logging.Logger;
 
+import com.izforge.izpack.util.file.DirectoryCache;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileScanner;
 import com.izforge.izpack.util.file.types.selectors.*;
@@ -45,6 +46,7 @@ public class FileSet extends DataType
     private boolean useDefaultExcludes = true;
     private boolean isCaseSensitive = true;
     private boolean followSymlinks = true;
+    private DirectoryCache directoryCache;
 
     /**
      * Construct a new <code>FileSet</code>.
@@ -187,6 +189,27 @@ public class FileSet extends DataType
         return followSymlinks;
     }
 
+    /**
+     * Sets a directory cache to share with other filesets, so that
+     * overlapping directory trees are only listed once.
+     *
+     * @param directoryCache the directory cache. May be <code>null</code>
+     */
+    public void setDirectoryCache(DirectoryCache directoryCache)
+    {
+        this.directoryCache = directoryCache;
+    }
+
+    /**
+     * Returns the directory cache shared with other filesets.
+     *
+     * @return the directory cache, or <code>null</code> if none is shared
+     */
+    public DirectoryCache getDirectoryCache()
+    {
+        return directoryCache;
+    }
+
     /**
      * Returns the directory scanner needed to access the files to process.
      *
@@ -210,6 +233,7 @@ public class FileSet extends DataType
         DirectoryScanner ds = new DirectoryScanner();
         setupDirectoryScanner(ds);
         ds.setFollowSymlinks(followSymlinks);
+        ds.setDirectoryCache(directoryCache);
         ds.scan();
         return ds;
     }
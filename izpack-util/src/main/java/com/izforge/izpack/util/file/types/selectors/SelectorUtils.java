@@ -103,9 +103,29 @@ public final class SelectorUtils
             return false;
         }
 
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
+        return matchPatternStart(tokenizePathAsArray(pattern), tokenizePathAsArray(str), isCaseSensitive);
+    }
 
+    /**
+     * Tests whether or not a tokenized path matches the start of a tokenized
+     * pattern up to the first "**".
+     * <p/>
+     * This avoids tokenizing the pattern for each path, when the same pattern
+     * is matched against many paths. The caller is responsible for checking
+     * that both the pattern and the path are either absolute or relative.
+     *
+     * @param patDirs         The pattern elements, as returned by
+     *                        {@link #tokenizePathAsArray(String)}.
+     * @param strDirs         The path elements, as returned by
+     *                        {@link #tokenizePathAsArray(String)}.
+     * @param isCaseSensitive Whether or not matching should be performed
+     *                        case sensitively.
+     * @return whether or not a given path matches the start of a given
+     *         pattern up to the first "**".
+     */
+    public static boolean matchPatternStart(String[] patDirs, String[] strDirs,
+                                            boolean isCaseSensitive)
+    {
         int patIdxStart = 0;
         int patIdxEnd = patDirs.length - 1;
         int strIdxStart = 0;
@@ -185,9 +205,28 @@ public final class SelectorUtils
             return false;
         }
 
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
+        return matchPath(tokenizePathAsArray(pattern), tokenizePathAsArray(str), isCaseSensitive);
+    }
 
+    /**
+     * Tests whether or not a tokenized path matches a tokenized pattern.
+     * <p/>
+     * This avoids tokenizing the pattern for each path, when the same pattern
+     * is matched against many paths. The caller is responsible for checking
+     * that both the pattern and the path are either absolute or relative.
+     *
+     * @param patDirs         The pattern elements, as returned by
+     *                        {@link #tokenizePathAsArray(String)}.
+     * @param strDirs         The path elements, as returned by
+     *                        {@link #tokenizePathAsArray(String)}.
+     * @param isCaseSensitive Whether or not matching should be performed
+     *                        case sensitively.
+     * @return <code>true</code> if the pattern matches against the path,
+     *         or <code>false</code> otherwise.
+     */
+    public static boolean matchPath(String[] patDirs, String[] strDirs,
+                                    boolean isCaseSensitive)
+    {
         int patIdxStart = 0;
         int patIdxEnd = patDirs.length - 1;
         int strIdxStart = 0;
@@ -582,8 +621,11 @@ public final class SelectorUtils
 
     /**
      * Same as {@link #tokenizePath tokenizePath} but hopefully faster.
+     *
+     * @param path Path to tokenize. Must not be <code>null</code>.
+     * @return the path elements
      */
-    private static String[] tokenizePathAsArray(String path)
+    public static String[] tokenizePathAsArray(String path)
     {
         char sep = File.separatorChar;
         int start = 0;
@@ -0,0 +1,90 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link BufferPool} class.
+ */
+public class BufferPoolTest
+{
+
+    /**
+     * Verifies that buffers are rounded up to their size class, and reused once released.
+     */
+    @Test
+    public void testAcquire()
+    {
+        BufferPool pool = new BufferPool(5000, 1024 * 1024);
+        assertEquals(8192, pool.getBufferSize());
+
+        byte[] buffer = pool.acquire();
+        assertEquals(8192, buffer.length);
+        assertEquals(1024, pool.acquire(1).length);
+        assertEquals(65536, pool.acquire(65535).length);
+
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire(5000));
+        assertNotSame(buffer, pool.acquire(5000));
+    }
+
+    /**
+     * Verifies that buffers are discarded once the maximum no. of bytes are retained, or if they weren't acquired
+     * from a pool.
+     */
+    @Test
+    public void testRelease()
+    {
+        BufferPool pool = new BufferPool(4096, 8192);
+        byte[] buffer1 = pool.acquire();
+        byte[] buffer2 = pool.acquire();
+        byte[] buffer3 = pool.acquire();
+        pool.release(buffer1);
+        pool.release(buffer2);
+        pool.release(buffer3);
+        pool.release(new byte[5000]);
+        pool.release(null);
+
+        assertSame(buffer1, pool.acquire());
+        assertSame(buffer2, pool.acquire());
+        assertNotSame(buffer3, pool.acquire());
+        assertEquals(8192, pool.acquire(5000).length);
+    }
+
+    /**
+     * Verifies that buffers too large to pool are allocated at the requested size.
+     */
+    @Test
+    public void testLarge()
+    {
+        BufferPool pool = new BufferPool();
+        int size = (1 << 26) + 1;
+        byte[] buffer = pool.acquire(size);
+        assertEquals(size, buffer.length);
+        pool.release(buffer);
+        assertNotSame(buffer, pool.acquire(size));
+    }
+}
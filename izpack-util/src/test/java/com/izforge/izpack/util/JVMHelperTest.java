@@ -73,6 +73,30 @@ public class JVMHelperTest
         assertTrue(args.contains("-XX:MaxPermSize=64m"));
     }
 
+    /**
+     * Verifies that class data sharing archives are passed on to relaunched JVMs, but the options to create them
+     * are not.
+     */
+    @Test
+    public void testClassDataSharingArguments()
+    {
+        JVMHelper helper = new JVMHelper()
+        {
+            @Override
+            protected List<String> getInputArguments()
+            {
+                return Arrays.asList("-Xshare:auto",
+                                     "-XX:SharedArchiveFile=installer.jsa",
+                                     "-XX:ArchiveClassesAtExit=installer.jsa",
+                                     "-XX:+AutoCreateSharedArchive");
+            }
+        };
+        List<String> args = helper.getJVMArguments();
+        assertEquals(2, args.size());
+        assertTrue(args.contains("-Xshare:auto"));
+        assertTrue(args.contains("-XX:SharedArchiveFile=installer.jsa"));
+    }
+
 
     /**
      * Tests {@link JVMHelper#getJVMArguments()} for arguments that contain spaces.
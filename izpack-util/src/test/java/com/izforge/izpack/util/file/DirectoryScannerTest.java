@@ -0,0 +1,187 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link DirectoryScanner}.
+ */
+public class DirectoryScannerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The base directory to scan.
+     */
+    private File baseDir;
+
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        baseDir = temporaryFolder.getRoot();
+        createFile("a.txt");
+        createFile("a.xml");
+        createFile("lib/b.txt");
+        createFile("lib/c.jar");
+        createFile("lib/ext/d.txt");
+        createFile("doc/e.txt");
+        createFile("doc/api/f.html");
+    }
+
+    /**
+     * Verifies that include and exclude patterns are applied.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testScan() throws Exception
+    {
+        DirectoryScanner scanner = scan(baseDir, null);
+        assertArrayEquals(new String[]{"a.txt", path("lib/b.txt"), path("lib/ext/d.txt")},
+                          scanner.getIncludedFiles());
+        assertArrayEquals(new String[]{"a.xml", path("doc/api/f.html"), path("lib/c.jar")},
+                          sort(scanner.getNotIncludedFiles()));
+        assertArrayEquals(new String[]{path("doc/e.txt")}, scanner.getExcludedFiles());
+    }
+
+    /**
+     * Verifies that scanners sharing a {@link DirectoryCache} produce the same results as those that don't,
+     * and that a scanner can scan a sub-directory of a tree already cached by another.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSharedCache() throws Exception
+    {
+        DirectoryCache cache = new DirectoryCache(2);
+        DirectoryScanner expected = scan(baseDir, null);
+        DirectoryScanner actual = scan(baseDir, cache);
+        assertArrayEquals(expected.getIncludedFiles(), actual.getIncludedFiles());
+        assertArrayEquals(expected.getIncludedDirectories(), actual.getIncludedDirectories());
+        assertArrayEquals(sort(expected.getNotIncludedFiles()), sort(actual.getNotIncludedFiles()));
+        assertArrayEquals(sort(expected.getExcludedFiles()), sort(actual.getExcludedFiles()));
+
+        DirectoryScanner lib = scan(new File(baseDir, "lib"), cache);
+        assertArrayEquals(new String[]{"b.txt", path("ext/d.txt")}, lib.getIncludedFiles());
+    }
+
+    /**
+     * Verifies that directories that cannot be listed aren't cached.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testMissingDirectoryNotCached() throws Exception
+    {
+        DirectoryCache cache = new DirectoryCache();
+        File dir = new File(baseDir, "new");
+        assertNull(cache.getListing(dir));
+        assertNotNull(createFile("new/g.txt"));
+        assertArrayEquals(new String[]{"g.txt"}, cache.getListing(dir).getNames());
+    }
+
+    /**
+     * Scans a directory for text files, excluding the <em>doc</em> directory.
+     *
+     * @param dir   the directory to scan
+     * @param cache the directory cache. May be <tt>null</tt>
+     * @return the scanner
+     * @throws Exception for any error
+     */
+    private DirectoryScanner scan(File dir, DirectoryCache cache) throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(dir);
+        scanner.setIncludes(new String[]{"**/*.txt"});
+        scanner.setExcludes(new String[]{"doc/**"});
+        scanner.setDirectoryCache(cache);
+        scanner.scan();
+        return scanner;
+    }
+
+    /**
+     * Creates a file under the base directory.
+     *
+     * @param path the file path, using '/' as the separator
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(String path) throws IOException
+    {
+        File file = new File(baseDir, path);
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("Failed to create " + parent);
+        }
+        if (!file.createNewFile())
+        {
+            throw new IOException("Failed to create " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Sorts paths, as only included files and directories are returned in order.
+     *
+     * @param paths the paths to sort
+     * @return the sorted paths
+     */
+    private static String[] sort(String[] paths)
+    {
+        Arrays.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Converts a path to use the platform separator.
+     *
+     * @param path the path, using '/' as the separator
+     * @return the converted path
+     */
+    private static String path(String path)
+    {
+        return path.replace('/', File.separatorChar);
+    }
+}